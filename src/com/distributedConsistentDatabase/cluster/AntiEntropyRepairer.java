@@ -0,0 +1,142 @@
+package com.distributedConsistentDatabase.cluster;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.distributedConsistentDatabase.cluster.pojo.ClusterNode;
+import com.distributedConsistentDatabase.dataStore.MultiVersionKeyValueStore;
+import com.distributedConsistentDatabase.dataStore.merkle.MerkleTree;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+import com.distributedConsistentDatabase.sao.DistributedConsistentDatabaseSAO;
+
+/**
+ * Repairs the entries on which a replica diverged from the local store, e.g. after it missed a replicated write.
+ * The merkle trees of both stores are compared level by level from the root, fetching only the children of the
+ * nodes which differ, and only the entries of the differing leaves are fetched and compared. Every step is paced by
+ * a {@link RateLimiter}, so the repair traffic is proportional to the divergence and capped in rate.
+ * Entries are compared by version: the newer entry is copied to the other replica. An entry which only the replica
+ * holds was deleted locally if its version is not newer than the latest local version, and is copied to the local
+ * store otherwise, as the local store then never saw it. Repairs are conditional on the entry not having been
+ * written since it was compared, so they never undo a concurrent write.
+ * @author abshukla
+ */
+public class AntiEntropyRepairer {
+    private static final int LEAVES_PER_REQUEST = 64;
+
+    private final MultiVersionKeyValueStore keyValueStore;
+    private final DistributedConsistentDatabaseSAO dcdbSao;
+    private final RateLimiter rateLimiter;
+
+    /**
+     * @param keyValueStore : local store.
+     * @param dcdbSao : SAO to reach the replicas.
+     * @param rateLimiter : limiter taking a permit per fetched tree node and per fetched or repaired entry.
+     */
+    public AntiEntropyRepairer(final MultiVersionKeyValueStore keyValueStore,
+            final DistributedConsistentDatabaseSAO dcdbSao, final RateLimiter rateLimiter) {
+        this.keyValueStore = keyValueStore;
+        this.dcdbSao = dcdbSao;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Compares the local store with the replica and repairs the entries which differ.
+     * @param replica : node to compare with.
+     * @return : number of repaired entries, on either side.
+     * @throws InterruptedException : if the thread is interrupted while it waits for the rate limiter.
+     */
+    public int repair(final ClusterNode replica) throws InterruptedException {
+        final List<Integer> differingLeaves = findDifferingLeaves(replica);
+        int repairedCount = 0;
+        for (int i = 0; i < differingLeaves.size(); i += LEAVES_PER_REQUEST) {
+            repairedCount += repairLeaves(replica,
+                differingLeaves.subList(i, Math.min(i + LEAVES_PER_REQUEST, differingLeaves.size())));
+        }
+        return repairedCount;
+    }
+
+    private List<Integer> findDifferingLeaves(final ClusterNode replica) throws InterruptedException {
+        final MerkleTree merkleTree = keyValueStore.getMerkleTree();
+        final List<Integer> differingLeaves = new ArrayList<>();
+        List<Integer> level = new ArrayList<>();
+        level.add(MerkleTree.ROOT);
+        while (false == level.isEmpty()) {
+            rateLimiter.acquire(level.size());
+            final int[] nodes = toArray(level);
+            final long[] replicaHashes = dcdbSao.internalGetMerkleTreeHashes(replica, nodes);
+            final long[] localHashes = merkleTree.getHashes(nodes);
+            final List<Integer> nextLevel = new ArrayList<>();
+            for (int i = 0; i < nodes.length; i++) {
+                if (replicaHashes[i] == localHashes[i]) {
+                    continue;
+                }
+                if (merkleTree.isLeaf(nodes[i])) {
+                    differingLeaves.add(nodes[i]);
+                } else {
+                    nextLevel.add(2 * nodes[i]);
+                    nextLevel.add(2 * nodes[i] + 1);
+                }
+            }
+            level = nextLevel;
+        }
+        return differingLeaves;
+    }
+
+    private int repairLeaves(final ClusterNode replica, final List<Integer> leaves) throws InterruptedException {
+        // the replica is read first, so that a local entry is never older than the replica entry it is compared to.
+        final List<VersionedEntry> replicaEntries = dcdbSao.internalGetMerkleLeafEntries(replica, toArray(leaves));
+        final List<VersionedEntry> localEntries = keyValueStore.getEntries(new HashSet<>(leaves));
+        rateLimiter.acquire(replicaEntries.size() + localEntries.size());
+
+        final Map<String, VersionedEntry> replicaEntryByKey = new HashMap<>();
+        for (final VersionedEntry replicaEntry : replicaEntries) {
+            replicaEntryByKey.put(replicaEntry.getKey(), replicaEntry);
+        }
+        final List<VersionedEntry> replicaPuts = new ArrayList<>();
+        final List<VersionedEntry> replicaDeletes = new ArrayList<>();
+        int repairedCount = 0;
+        final Set<String> localKeys = new HashSet<>();
+        for (final VersionedEntry localEntry : localEntries) {
+            localKeys.add(localEntry.getKey());
+            final VersionedEntry replicaEntry = replicaEntryByKey.get(localEntry.getKey());
+            if (replicaEntry != null && replicaEntry.getVersion() > localEntry.getVersion()) {
+                repairedCount += keyValueStore.repair(replicaEntry) ? 1 : 0;
+            } else if (replicaEntry == null || false == isSameEntry(localEntry, replicaEntry)) {
+                replicaPuts.add(localEntry);
+            }
+        }
+        final long latestVersion = keyValueStore.getLatestVersion();
+        for (final VersionedEntry replicaEntry : replicaEntries) {
+            if (localKeys.contains(replicaEntry.getKey())) {
+                continue;
+            }
+            if (replicaEntry.getVersion() > latestVersion) {
+                repairedCount += keyValueStore.repair(replicaEntry) ? 1 : 0;
+            } else {
+                replicaDeletes.add(replicaEntry);
+            }
+        }
+        if (false == replicaPuts.isEmpty() || false == replicaDeletes.isEmpty()) {
+            rateLimiter.acquire(replicaPuts.size() + replicaDeletes.size());
+            repairedCount += dcdbSao.internalRepairValues(replica, replicaPuts, replicaDeletes);
+        }
+        return repairedCount;
+    }
+
+    private static boolean isSameEntry(final VersionedEntry entry, final VersionedEntry otherEntry) {
+        return entry.getVersion() == otherEntry.getVersion() && entry.getExpiresAtMillis() == otherEntry
+            .getExpiresAtMillis() && entry.getValue().equals(otherEntry.getValue());
+    }
+
+    private static int[] toArray(final List<Integer> nodes) {
+        final int[] nodeArray = new int[nodes.size()];
+        for (int i = 0; i < nodeArray.length; i++) {
+            nodeArray[i] = nodes.get(i);
+        }
+        return nodeArray;
+    }
+}
@@ -1,37 +1,77 @@
 package com.distributedConsistentDatabase.cluster;
 
-import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
 
 import com.distributedConsistentDatabase.cluster.pojo.ClusterNode;
 
+/**
+ * Membership of the cluster. Learners are nodes which joined the cluster but do not hold the dataset yet: they
+ * receive the writes, but are not counted towards the quorum and cannot become the leader until they are promoted.
+ * @author abshukla
+ */
 public class ClusterManager {
     private static final int HEALTHY_CLUSTER_MIN_SIZE = 3;
     private List<ClusterNode> clusterNodes;
+    private final Set<Integer> learnerNodeIds;
 
     public ClusterManager() {
-        this.clusterNodes = new ArrayList<>();
+        // writes replicate concurrently while the heartbeat adds and removes nodes.
+        this(new CopyOnWriteArrayList<>());
     }
 
     public ClusterManager(final List<ClusterNode> clusterNodes) {
         this.clusterNodes = clusterNodes;
+        this.learnerNodeIds = ConcurrentHashMap.newKeySet();
     }
 
     public void addClusterNode(final ClusterNode node) {
         this.clusterNodes.add(node);
     }
 
+    public void addLearnerNode(final ClusterNode node) {
+        this.learnerNodeIds.add(node.getNodeId());
+        if (false == this.clusterNodes.contains(node)) {
+            this.clusterNodes.add(node);
+        }
+    }
+
+    /**
+     * Makes a learner a voting member of the cluster.
+     */
+    public void promoteLearnerNode(final ClusterNode node) {
+        this.learnerNodeIds.remove(node.getNodeId());
+    }
+
+    public boolean isLearner(final ClusterNode node) {
+        return this.learnerNodeIds.contains(node.getNodeId());
+    }
+
     public void removeClusterNode(final ClusterNode node) {
         this.clusterNodes.remove(node);
+        this.learnerNodeIds.remove(node.getNodeId());
     }
 
+    /**
+     * @return : every node of the cluster, learners included.
+     */
     public List<ClusterNode> getClusterNodes() {
         return clusterNodes;
     }
 
+    /**
+     * @return : nodes of the cluster which count towards the quorum.
+     */
+    public List<ClusterNode> getVotingNodes() {
+        return clusterNodes.stream().filter(node -> false == isLearner(node)).collect(Collectors.toList());
+    }
+
     public ClusterNode getClusterLeader() {
-        return clusterNodes.stream().min(Comparator.comparing(ClusterNode::getNodeId)).get();
+        return getVotingNodes().stream().min(Comparator.comparing(ClusterNode::getNodeId)).get();
     }
 
     public boolean isClusterHealthy() {
@@ -39,7 +79,7 @@ public class ClusterManager {
     }
 
     public int getClusterQuorumSize() {
-        final int currentClusterQuorum = (clusterNodes.size()/ 2) + 1;
+        final int currentClusterQuorum = (getVotingNodes().size()/ 2) + 1;
         return Math.max(currentClusterQuorum, HEALTHY_CLUSTER_MIN_SIZE);
     }
 }
@@ -0,0 +1,189 @@
+package com.distributedConsistentDatabase.cluster;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import com.distributedConsistentDatabase.cluster.mesh.KeyHandedOverException;
+import com.distributedConsistentDatabase.cluster.pojo.ClusterNode;
+import com.distributedConsistentDatabase.cluster.pojo.KeyValueMutation;
+import com.distributedConsistentDatabase.cluster.pojo.WriteResult;
+import com.distributedConsistentDatabase.sao.DistributedConsistentDatabaseSAO;
+
+/**
+ * Forwards the writes a follower receives to the leader. Rather than a request per write, the writes waiting to be
+ * forwarded are sent together as a batch (see {@link NodeManager#writeValuesToCluster(List)}), and up to
+ * {@value #MAX_BATCHES_IN_FLIGHT} batches are in flight at a time, so a follower forwards many writes concurrently
+ * over a few requests and every writer gets back the result at the position of its own write in the batch.
+ * A key is in a single batch in flight at a time, so the writes of a key are forwarded in the order they arrived.
+ * The writes of a batch are a single entry of the log of the leader. If the leader refuses a batch without applying
+ * it, as it is invalid or one of its keys is being handed over to another replica group, its writes are sent again
+ * one by one so that only the refused ones fail. If the batch fails otherwise, e.g. the leader cannot be reached or
+ * did not meet its quorum in time, every write of the batch fails: the leader may still apply the batch, so its
+ * writes are not sent again.
+ * @author abshukla
+ */
+class LeaderForwarder {
+    static final int MAX_BATCHES_IN_FLIGHT = 4;
+    // the batch endpoint takes at most 1000 mutations.
+    private static final int MAX_WRITES_PER_BATCH = 1000;
+
+    private final DistributedConsistentDatabaseSAO dcdbSao;
+    private final Supplier<ClusterNode> leader;
+    private final ExecutorService executorService;
+    private final long timeoutMillis;
+    // writes waiting to be forwarded, in the order they arrived.
+    private final Deque<ForwardedWrite> pendingWrites;
+    // keys of the batches in flight.
+    private final Set<String> inFlightKeys;
+    private int batchesInFlight;
+
+    /**
+     * @param dcdbSao : SAO to reach the leader.
+     * @param leader : current leader of the cluster, looked up for every batch.
+     * @param executorService : executor running up to {@value #MAX_BATCHES_IN_FLIGHT} batches.
+     * @param timeoutMillis : time a write waits for its result.
+     */
+    LeaderForwarder(final DistributedConsistentDatabaseSAO dcdbSao, final Supplier<ClusterNode> leader,
+            final ExecutorService executorService, final long timeoutMillis) {
+        this.dcdbSao = dcdbSao;
+        this.leader = leader;
+        this.executorService = executorService;
+        this.timeoutMillis = timeoutMillis;
+        this.pendingWrites = new ArrayDeque<>();
+        this.inFlightKeys = new HashSet<>();
+        this.batchesInFlight = 0;
+    }
+
+    /**
+     * Forwards the write to the leader, and waits for its result. A write which timed out before it was sent is
+     * withdrawn, one which was sent may still be applied.
+     * @return : true if the key was put, or deleted while it existed, with the session token of the write.
+     * @throws IllegalStateException : if the leader could not apply the write, or did not reply in time.
+     */
+    WriteResult<Boolean> forward(final KeyValueMutation mutation) {
+        final ForwardedWrite write = new ForwardedWrite(mutation);
+        synchronized (this) {
+            pendingWrites.add(write);
+            if (batchesInFlight < MAX_BATCHES_IN_FLIGHT) {
+                batchesInFlight++;
+                executorService.execute(this::sendBatches);
+            }
+        }
+        try {
+            return write.result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException e) {
+            throw new IllegalStateException("write not acknowledged by the leader within " + timeoutMillis + " ms, "
+                + (withdraw(write) ? "it was not sent to the leader" : "it may still be applied"), e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while the write was forwarded to the leader, "
+                + (withdraw(write) ? "it was not sent to the leader" : "it may still be applied"), e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @return : true if the write was still pending and will not be sent, false if it was sent already.
+     */
+    private synchronized boolean withdraw(final ForwardedWrite write) {
+        return pendingWrites.remove(write);
+    }
+
+    /**
+     * Sends batches of the pending writes until none is left which can be sent.
+     */
+    private void sendBatches() {
+        List<ForwardedWrite> batch = takeBatch(null);
+        while (false == batch.isEmpty()) {
+            send(batch);
+            batch = takeBatch(batch);
+        }
+    }
+
+    /**
+     * @param sentBatch : batch which was sent, whose keys are no longer in flight, null if none.
+     * @return : pending writes of distinct keys which are not in flight, empty if there is none.
+     */
+    private synchronized List<ForwardedWrite> takeBatch(final List<ForwardedWrite> sentBatch) {
+        if (sentBatch != null) {
+            for (final ForwardedWrite write : sentBatch) {
+                inFlightKeys.remove(write.mutation.getKey());
+            }
+        }
+        final List<ForwardedWrite> batch = new ArrayList<>();
+        final Set<String> skippedKeys = new HashSet<>();
+        final Iterator<ForwardedWrite> writes = pendingWrites.iterator();
+        while (writes.hasNext() && batch.size() < MAX_WRITES_PER_BATCH) {
+            final ForwardedWrite write = writes.next();
+            final String key = write.mutation.getKey();
+            // a later write of a key waits for the earlier ones.
+            if (inFlightKeys.contains(key) || skippedKeys.contains(key)) {
+                skippedKeys.add(key);
+                continue;
+            }
+            inFlightKeys.add(key);
+            writes.remove();
+            batch.add(write);
+        }
+        if (batch.isEmpty()) {
+            batchesInFlight--;
+        }
+        return batch;
+    }
+
+    private void send(final List<ForwardedWrite> batch) {
+        final List<KeyValueMutation> mutations = new ArrayList<>();
+        for (final ForwardedWrite write : batch) {
+            mutations.add(write.mutation);
+        }
+        try {
+            final WriteResult<List<Boolean>> result = dcdbSao.writeValues(leader.get(), mutations);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(new WriteResult<>(result.getResult().get(i), result.getSessionToken()));
+            }
+        } catch (final IllegalArgumentException | KeyHandedOverException e) {
+            if (batch.size() == 1) {
+                batch.get(0).result.completeExceptionally(e);
+                return;
+            }
+            // the leader refused the batch without applying it, which may be due to a single one of its writes.
+            for (final ForwardedWrite write : batch) {
+                send(Collections.singletonList(write));
+            }
+        } catch (final Exception e) {
+            // the leader cannot be reached, or may have applied the batch, e.g. if its quorum was not met in time.
+            for (final ForwardedWrite write : batch) {
+                write.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Write waiting for its result from the leader.
+     */
+    private static class ForwardedWrite {
+        private final KeyValueMutation mutation;
+        private final CompletableFuture<WriteResult<Boolean>> result;
+
+        ForwardedWrite(final KeyValueMutation mutation) {
+            this.mutation = mutation;
+            this.result = new CompletableFuture<>();
+        }
+    }
+}
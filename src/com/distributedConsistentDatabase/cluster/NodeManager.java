@@ -1,17 +1,80 @@
 package com.distributedConsistentDatabase.cluster;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import com.distributedConsistentDatabase.cluster.hint.HintStats;
+import com.distributedConsistentDatabase.cluster.hint.HintedHandoff;
+import com.distributedConsistentDatabase.cluster.log.AppendEntries;
+import com.distributedConsistentDatabase.cluster.log.AppendResult;
+import com.distributedConsistentDatabase.cluster.log.LogEntry;
+import com.distributedConsistentDatabase.cluster.log.LogReplicator;
+import com.distributedConsistentDatabase.cluster.log.LogTail;
+import com.distributedConsistentDatabase.cluster.log.ReplicatedLog;
+import com.distributedConsistentDatabase.cluster.mesh.ClusterMesh;
+import com.distributedConsistentDatabase.cluster.mesh.KeyHandedOverException;
+import com.distributedConsistentDatabase.cluster.mesh.MeshRebalancer;
+import com.distributedConsistentDatabase.cluster.mesh.MigrationPlan;
+import com.distributedConsistentDatabase.cluster.mesh.MigrationResult;
+import com.distributedConsistentDatabase.cluster.mesh.RangeMigrator;
+import com.distributedConsistentDatabase.cluster.mesh.RebalanceProgress;
 import com.distributedConsistentDatabase.cluster.pojo.ClusterNode;
+import com.distributedConsistentDatabase.cluster.pojo.CompareAndSetResult;
+import com.distributedConsistentDatabase.cluster.pojo.KeyValueMutation;
+import com.distributedConsistentDatabase.cluster.pojo.ReadConsistency;
+import com.distributedConsistentDatabase.cluster.pojo.WriteResult;
+import com.distributedConsistentDatabase.dataStore.BinaryKeyValueStore;
+import com.distributedConsistentDatabase.dataStore.BoundedKeyValueStore;
+import com.distributedConsistentDatabase.dataStore.ExpiringKeyValueStore;
 import com.distributedConsistentDatabase.dataStore.KeyValueStore;
 import com.distributedConsistentDatabase.dataStore.KeyValueStoreFactory;
+import com.distributedConsistentDatabase.dataStore.KeyValueStoreType;
+import com.distributedConsistentDatabase.dataStore.MultiVersionKeyValueStore;
+import com.distributedConsistentDatabase.dataStore.cache.CacheStats;
+import com.distributedConsistentDatabase.dataStore.expiry.ExpiringKey;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedValue;
+import com.distributedConsistentDatabase.dataStore.snapshot.SnapshotMetadata;
+import com.distributedConsistentDatabase.dataStore.snapshot.SnapshotReader;
+import com.distributedConsistentDatabase.dataStore.snapshot.SnapshotStreamWriter;
+import com.distributedConsistentDatabase.dataStore.snapshot.SnapshotWriter;
 import com.distributedConsistentDatabase.sao.DistributedConsistentDatabaseSAO;
 
 /**
@@ -23,21 +86,169 @@ import com.distributedConsistentDatabase.sao.DistributedConsistentDatabaseSAO;
  * @author abshukla
  */
 public class NodeManager {
+    public static final String SNAPSHOT_INTERVAL_PROPERTY = "dcdb.snapshot.intervalMillis";
+    public static final String ANTI_ENTROPY_INTERVAL_PROPERTY = "dcdb.antiEntropy.intervalMillis";
+    public static final String ANTI_ENTROPY_RATE_PROPERTY = "dcdb.antiEntropy.maxEntriesPerSecond";
+    public static final String HINTS_MAX_PER_NODE_PROPERTY = "dcdb.hints.maxPerNode";
+    public static final String READ_REPAIR_CHANCE_PROPERTY = "dcdb.readRepair.chance";
+    public static final String HINTS_REPLAY_RATE_PROPERTY = "dcdb.hints.maxReplayPerSecond";
+    public static final String LOG_MAX_RETAINED_ENTRIES_PROPERTY = "dcdb.log.maxRetainedEntries";
+    public static final String LOG_COMMIT_TIMEOUT_PROPERTY = "dcdb.log.commitTimeoutMillis";
+    public static final String LEASE_DURATION_PROPERTY = "dcdb.lease.durationMillis";
+    public static final String MESH_VIRTUAL_NODES_PROPERTY = "dcdb.mesh.virtualNodesPerGroup";
+    public static final String MESH_MIGRATION_RATE_PROPERTY = "dcdb.mesh.migration.maxBytesPerSecond";
+    private static final long DEFAULT_ANTI_ENTROPY_INTERVAL_MILLIS = 10000L;
+    private static final long DEFAULT_ANTI_ENTROPY_RATE = 1000L;
+    private static final long DEFAULT_HINTS_MAX_PER_NODE = 100000L;
+    private static final long DEFAULT_HINTS_REPLAY_RATE = 5000L;
+    private static final double DEFAULT_READ_REPAIR_CHANCE = 1.0;
+    private static final long DEFAULT_LOG_MAX_RETAINED_ENTRIES = 100000L;
+    private static final long DEFAULT_LOG_COMMIT_TIMEOUT_MILLIS = 5000L;
+    private static final long DEFAULT_MESH_MIGRATION_RATE = 10L * 1024 * 1024;
+    // half of the time the followers wait for the leader before taking over, the rest is left for clock drift.
+    private static final long DEFAULT_LEASE_DURATION_MILLIS = 5000L;
+    private static final long LOG_REPLICATION_INTERVAL_MILLIS = 50L;
+    // time a batch waits for the batches it follows, which were sent concurrently.
+    private static final long LOG_APPEND_WAIT_MILLIS = 1000L;
+    private static final int READ_REPAIR_QUEUE_SIZE = 10000;
+    private static final int WRITE_LOCK_STRIPES = 256;
+    private static final int REPLICATION_THREADS = 64;
+    private static final int READ_THREADS = 64;
+    private static final long EXPIRY_INTERVAL_MILLIS = 1000L;
+    private static final int EXPIRY_BATCH_SIZE = 1000;
+    private static final long VERSION_GC_INTERVAL_MILLIS = 1000L;
+    private static final int STATE_TRANSFER_ATTEMPTS = 3;
+    private static final long HANDOVER_POLL_INTERVAL_MILLIS = 10L;
+    // time the shutdown waits for the running tasks of the executors.
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000L;
+
     private boolean isInitialized;
     private volatile boolean isLeader;
+    // the current node is the leader by node id, but could not reach a majority of the voting nodes to take over.
+    private volatile boolean isTakeOverPending;
     private ClusterNode currentNode;
     private ClusterManager clusterManager;
     private long lastPingTimestampMillis;  // represents the last time this node was pinged by anyone.
+    private KeyValueStoreType keyValueStoreType;
     private KeyValueStore<String, String> keyValueStore;
+    // view of keyValueStore which hides and expires the entries with a time to live.
+    private ExpiringKeyValueStore expiringKeyValueStore;
+    // view of expiringKeyValueStore which versions the writes and serves the snapshot reads.
+    private MultiVersionKeyValueStore multiVersionKeyValueStore;
+    private AntiEntropyRepairer antiEntropyRepairer;
+    // writes the other nodes missed. created on initialization, as the hints are kept per node.
+    private HintedHandoff hintedHandoff;
+    private ExecutorService hintExecutorService;
+    private final Set<Integer> replayingNodeIds;
+    // log of the writes, replicated by the leader.
+    private final ReplicatedLog replicatedLog;
+    // created on initialization, as it replicates from the current node.
+    private LogReplicator logReplicator;
+    private final long logMaxRetainedEntries;
+    private final long logCommitTimeoutMillis;
+    private final long leaseDurationMillis;
+    // serialize the cluster writes of a key, so that writes to different keys replicate concurrently.
+    private final Object[] writeLocks;
+    // last write of every key the leader appended to the log but did not apply yet, which the updates of the key
+    // computed on the leader build on.
+    private final Map<String, VersionedEntry> unappliedWrites;
+    // sends the writes to the other nodes, so that they are replicated concurrently.
+    private final ExecutorService replicationExecutorService;
+    // reads the key from the nodes, so that the quorum reads are fanned out concurrently.
+    private final ExecutorService readExecutorService;
+    // pushes the value read from a quorum to the replicas which disagreed. repairs over the queue size are dropped.
+    private final ExecutorService readRepairExecutorService;
+    // sends the batches of the writes forwarded to the leader.
+    private final ExecutorService forwarderExecutorService;
+    // run the periodic tasks of the node, e.g. the pings and the expiry. created on initialization.
+    private final List<ScheduledExecutorService> scheduledExecutorServices;
+    private boolean isShutDown;
+    private final double readRepairChance;
+    private final File hintDirectory;
+    // view of multiVersionKeyValueStore holding the binary values, under keys of a range of their own.
+    private BinaryKeyValueStore binaryKeyValueStore;
     private DistributedConsistentDatabaseSAO dcdbSao;
+    private final File snapshotFile;
+    private final Object snapshotLock;
+    // number of writes applied to the local key value store.
+    private final AtomicLong lastAppliedWritePosition;
+    // time at which a batch of the leader was received, after which every write the leader had committed when it
+    // sent the batch was applied.
+    private volatile long leaderCaughtUpMillis;
+    // highest session token returned by the leader for the writes redirected to it.
+    private final AtomicLong redirectedSessionToken;
+    // replica groups of the mesh the current node is part of, null if the keyspace is not partitioned.
+    private volatile ClusterMesh clusterMesh;
+    private int groupId;
+    // forwards the puts and deletes received by a follower to the leader, in batches.
+    private final LeaderForwarder leaderForwarder;
+    // streams the keys the group of the current node hands over when the mesh is rebalanced.
+    private final RangeMigrator rangeMigrator;
+    // runs the rebalances coordinated by the current node, and moves the keys of the store which change owner.
+    private final MeshRebalancer meshRebalancer;
 
     /**
      * Constructor
      */
     public NodeManager(final DistributedConsistentDatabaseSAO distributedConsistentDatabaseSAO) {
+        this(distributedConsistentDatabaseSAO, KeyValueStoreFactory.getSnapshotFile());
+    }
+
+    /**
+     * Constructor
+     * @param snapshotFile : file holding the snapshot of the key value store.
+     */
+    public NodeManager(final DistributedConsistentDatabaseSAO distributedConsistentDatabaseSAO,
+            final File snapshotFile) {
+        this(distributedConsistentDatabaseSAO, snapshotFile, KeyValueStoreFactory.getHintDirectory());
+    }
+
+    /**
+     * Constructor
+     * @param snapshotFile : file holding the snapshot of the key value store.
+     * @param hintDirectory : directory holding the hints of the writes other nodes missed.
+     */
+    public NodeManager(final DistributedConsistentDatabaseSAO distributedConsistentDatabaseSAO,
+            final File snapshotFile, final File hintDirectory) {
         this.clusterManager = new ClusterManager();
-        this.keyValueStore = KeyValueStoreFactory.getKeyValueStore();
+        this.keyValueStoreType = KeyValueStoreFactory.getStoreType();
+        this.keyValueStore = KeyValueStoreFactory.getKeyValueStore(keyValueStoreType);
+        this.expiringKeyValueStore = new ExpiringKeyValueStore(keyValueStore);
+        this.multiVersionKeyValueStore = new MultiVersionKeyValueStore(expiringKeyValueStore);
+        this.binaryKeyValueStore = new BinaryKeyValueStore(multiVersionKeyValueStore);
         this.dcdbSao = distributedConsistentDatabaseSAO;
+        this.antiEntropyRepairer = new AntiEntropyRepairer(multiVersionKeyValueStore, dcdbSao,
+            new RateLimiter(Long.getLong(ANTI_ENTROPY_RATE_PROPERTY, DEFAULT_ANTI_ENTROPY_RATE)));
+        this.snapshotFile = snapshotFile;
+        this.snapshotLock = new Object();
+        this.hintDirectory = hintDirectory;
+        this.replayingNodeIds = ConcurrentHashMap.newKeySet();
+        this.replicationExecutorService = Executors.newFixedThreadPool(REPLICATION_THREADS);
+        this.replicatedLog = new ReplicatedLog();
+        this.logMaxRetainedEntries = Long.getLong(LOG_MAX_RETAINED_ENTRIES_PROPERTY, DEFAULT_LOG_MAX_RETAINED_ENTRIES);
+        this.logCommitTimeoutMillis = Long.getLong(LOG_COMMIT_TIMEOUT_PROPERTY, DEFAULT_LOG_COMMIT_TIMEOUT_MILLIS);
+        this.leaseDurationMillis = Long.getLong(LEASE_DURATION_PROPERTY, DEFAULT_LEASE_DURATION_MILLIS);
+        this.readExecutorService = Executors.newFixedThreadPool(READ_THREADS);
+        this.writeLocks = new Object[WRITE_LOCK_STRIPES];
+        this.unappliedWrites = new ConcurrentHashMap<>();
+        for (int i = 0; i < WRITE_LOCK_STRIPES; i++) {
+            writeLocks[i] = new Object();
+        }
+        this.readRepairChance = Double.parseDouble(System.getProperty(READ_REPAIR_CHANCE_PROPERTY,
+            String.valueOf(DEFAULT_READ_REPAIR_CHANCE)));
+        final ThreadPoolExecutor readRepairExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(READ_REPAIR_QUEUE_SIZE), new ThreadPoolExecutor.DiscardPolicy());
+        this.readRepairExecutorService = readRepairExecutor;
+        this.lastAppliedWritePosition = new AtomicLong(0);
+        this.redirectedSessionToken = new AtomicLong(0);
+        this.forwarderExecutorService = Executors.newFixedThreadPool(LeaderForwarder.MAX_BATCHES_IN_FLIGHT);
+        this.leaderForwarder = new LeaderForwarder(dcdbSao, () -> getClusterLeader(null),
+            this.forwarderExecutorService, this.logCommitTimeoutMillis);
+        this.scheduledExecutorServices = new ArrayList<>();
+        this.isShutDown = false;
+        this.rangeMigrator = new RangeMigrator(multiVersionKeyValueStore, dcdbSao,
+            new RateLimiter(Long.getLong(MESH_MIGRATION_RATE_PROPERTY, DEFAULT_MESH_MIGRATION_RATE)));
+        this.meshRebalancer = new MeshRebalancer(multiVersionKeyValueStore, dcdbSao);
         this.isInitialized = false;
     }
 
@@ -49,25 +260,374 @@ public class NodeManager {
      * @param seedServerNode
      */
     public synchronized void initialize(final ClusterNode currentClusterNode, final ClusterNode seedServerNode) {
+        initialize(currentClusterNode, seedServerNode, null, null);
+    }
+
+    /**
+     * Initializes the current node as a node of a replica group of a mesh. The view of the mesh is taken from the
+     * seed server, or from the mesh seed server for the first node of a group.
+     * @param groupId : replica group of the current node, null if the keyspace is not partitioned.
+     * @param meshSeedServerNode : node of another group of the mesh, null for the first node of the mesh.
+     */
+    public synchronized void initialize(final ClusterNode currentClusterNode, final ClusterNode seedServerNode,
+            final Integer groupId, final ClusterNode meshSeedServerNode) {
         if (false == isInitialized) {
             this.currentNode = currentClusterNode;
+            if (groupId != null) {
+                joinMesh(groupId, (seedServerNode != null) ? seedServerNode : meshSeedServerNode);
+            }
             this.lastPingTimestampMillis = System.currentTimeMillis();
+            this.hintedHandoff = new HintedHandoff(multiVersionKeyValueStore, dcdbSao,
+                new RateLimiter(Long.getLong(HINTS_REPLAY_RATE_PROPERTY, DEFAULT_HINTS_REPLAY_RATE)),
+                new File(hintDirectory, String.valueOf(currentClusterNode.getNodeId())),
+                Long.getLong(HINTS_MAX_PER_NODE_PROPERTY, DEFAULT_HINTS_MAX_PER_NODE));
+            this.logReplicator = new LogReplicator(replicatedLog, dcdbSao, clusterManager, currentClusterNode,
+                replicationExecutorService, hintedHandoff, this::applyLogEntry, term -> stepDown(),
+                logMaxRetainedEntries, leaseDurationMillis);
+            final SnapshotMetadata snapshotMetadata = this.restoreSnapshot();
             this.initialize();
             this.clusterManager.addClusterNode(currentClusterNode);
             this.isLeader = true;
 
+            isInitialized = true;
+
             if (seedServerNode != null) {
                 final List<ClusterNode> clusterNodeList =
                     dcdbSao.getClusterDetails(seedServerNode);
-                // Add the current node to all cluster nodes
-                for (final ClusterNode node : clusterNodeList) {
-                    dcdbSao.addClusterNode(node, currentNode);
-                    addOtherClusterNode(node);
+                if (false == clusterNodeList.isEmpty()) {
+                    // the current node does not hold the data of the cluster yet. it must not vote before it does.
+                    this.clusterManager.addLearnerNode(currentClusterNode);
+                    this.isLeader = false;
+                    // Add the current node to all cluster nodes
+                    for (final ClusterNode node : clusterNodeList) {
+                        dcdbSao.addLearnerClusterNode(node, currentNode);
+                        this.clusterManager.addClusterNode(node);
+                    }
+                    transferState();
+                    return;
                 }
             }
+            if (snapshotMetadata != null) {
+                // the log of a node joining a cluster is the one of its leader, so only a node starting the cluster
+                // resumes the log after the snapshot.
+                this.replicatedLog.restore(snapshotMetadata.getLogIndex(), snapshotMetadata.getLogTerm());
+            }
+            takeOver();
+        }
+    }
 
-            isInitialized = true;
+    /**
+     * Adds the current node to a replica group of the mesh, and to the view of the mesh of every node of the mesh.
+     * @param meshSeedServerNode : node which is already part of the mesh, null for the first node of the mesh.
+     */
+    private void joinMesh(final int meshGroupId, final ClusterNode meshSeedServerNode) {
+        final ClusterMesh mesh = (meshSeedServerNode == null) ? new ClusterMesh(Integer.getInteger(
+            MESH_VIRTUAL_NODES_PROPERTY, ClusterMesh.DEFAULT_VIRTUAL_NODES_PER_GROUP))
+            : this.dcdbSao.getClusterMesh(meshSeedServerNode);
+        mesh.addNode(meshGroupId, this.currentNode);
+        this.groupId = meshGroupId;
+        this.clusterMesh = mesh;
+        for (final List<ClusterNode> groupNodes : mesh.getGroups().values()) {
+            for (final ClusterNode node : groupNodes) {
+                if (false == node.equals(this.currentNode)) {
+                    try {
+                        this.dcdbSao.addMeshNode(node, meshGroupId, this.currentNode);
+                    } catch (final Exception e) {
+                        // the node is down, it takes the view of the mesh again when it is bootstrapped.
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a node which joined a replica group to the view of the mesh of the current node.
+     * @throws IllegalStateException : if the current node is not part of a mesh.
+     */
+    public void addMeshNode(final int meshGroupId, final ClusterNode node) {
+        getMesh().addNode(meshGroupId, node);
+    }
+
+    /**
+     * @return : copy of the view of the mesh of the current node. Empty if the keyspace is not partitioned.
+     */
+    public ClusterMesh getClusterMesh() {
+        final ClusterMesh mesh = this.clusterMesh;
+        return (mesh == null) ? new ClusterMesh(Integer.getInteger(MESH_VIRTUAL_NODES_PROPERTY,
+            ClusterMesh.DEFAULT_VIRTUAL_NODES_PER_GROUP)) : mesh.copy();
+    }
+
+    /**
+     * Moves the keys to a ring of the given replica groups, e.g. to hand keys over to groups which joined the mesh.
+     * @throws IllegalStateException : if the current node is not part of a mesh.
+     * @see MeshRebalancer#rebalance(ClusterMesh, List)
+     */
+    public RebalanceProgress rebalanceMesh(final List<Integer> targetGroupIds) {
+        return this.meshRebalancer.rebalance(getMesh(), targetGroupIds);
+    }
+
+    /**
+     * @return : progress of the last rebalance coordinated by the current node.
+     */
+    public RebalanceProgress getRebalanceProgress() {
+        return this.meshRebalancer.getProgress();
+    }
+
+    /**
+     * Starts copying the writes of the keys which move to another replica group to their new group.
+     * @see ClusterMesh#startMigration(java.util.Collection)
+     */
+    public void startMeshMigration(final List<Integer> targetGroupIds) {
+        getMesh().startMigration(targetGroupIds);
+    }
+
+    /**
+     * Streams the keys the replica group of the current node hands over to their new groups. A follower has the
+     * leader stream them, as the leader alone knows of the writes which are not acknowledged yet.
+     * @return : amount of data streamed.
+     * @throws IllegalStateException : if the mesh is not being rebalanced, or the keys could not be streamed.
+     */
+    public MigrationResult migrateMeshKeys() {
+        final ClusterMesh mesh = getMesh();
+        if (false == mesh.isMigrating()) {
+            throw new IllegalStateException("the mesh is not being rebalanced");
+        }
+        if (false == this.isLeader) {
+            return this.dcdbSao.migrateMeshKeys(this.getClusterLeader(null));
+        }
+        try {
+            return this.rangeMigrator.migrate(mesh, MigrationPlan.between(mesh.getHashRing(), mesh.getTargetRing()),
+                this.groupId, this::getMigratedEntryChange);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while streaming the keys of replica group " + this.groupId,
+                e);
+        }
+    }
+
+    /**
+     * @param sentEntry : entry sent to the new group of its key.
+     * @return : entry to send again as the key was written since the entry was read, null if it was not. The writes
+     * which are not acknowledged yet are copied to the new group once they are.
+     */
+    private VersionedEntry getMigratedEntryChange(final VersionedEntry sentEntry) {
+        final String key = sentEntry.getKey();
+        synchronized (writeLock(key)) {
+            if (this.unappliedWrites.containsKey(key)) {
+                return null;
+            }
+            final VersionedEntry currentEntry = this.multiVersionKeyValueStore.getEntry(key);
+            if (currentEntry == null) {
+                // a later write of the key takes a later version than the delete.
+                return (sentEntry.getValue() == null) ? null : new VersionedEntry(key, null,
+                    this.multiVersionKeyValueStore.nextVersion(), ExpiringKeyValueStore.NO_EXPIRY);
+            }
+            return (currentEntry.getVersion() == sentEntry.getVersion()) ? null : currentEntry;
+        }
+    }
+
+    /**
+     * Stops serving the keys which the group of the current node hands over, once they were streamed. The leader
+     * waits for the writes of those keys which are not applied yet, for at most the log commit timeout, so that they
+     * are copied to their new groups before these take the keys over.
+     * @throws IllegalStateException : if the mesh is not being rebalanced, or the writes of the keys were not applied
+     * in time.
+     */
+    public void handOverMeshKeys() {
+        final ClusterMesh mesh = getMesh();
+        mesh.startHandover();
+        // the writes proposed from now on are rejected, the write locks are held while they are proposed.
+        for (final Object writeLock : this.writeLocks) {
+            synchronized (writeLock) {
+                // the proposal holding the lock, if any, is done.
+            }
+        }
+        final long deadlineMillis = System.currentTimeMillis() + this.logCommitTimeoutMillis;
+        while (this.unappliedWrites.keySet().stream().anyMatch(mesh::isHandingOver)) {
+            if (System.currentTimeMillis() >= deadlineMillis) {
+                // the new groups would miss these writes if they took the keys over.
+                throw new IllegalStateException("writes of the keys handed over by replica group " + this.groupId
+                    + " were not applied within " + this.logCommitTimeoutMillis + " ms");
+            }
+            try {
+                Thread.sleep(HANDOVER_POLL_INTERVAL_MILLIS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while handing the keys over", e);
+            }
+        }
+    }
+
+    /**
+     * Hands the keys over to the groups of the migration, and drops the keys the group of the current node no longer
+     * owns.
+     * @see ClusterMesh#completeMigration(java.util.Collection)
+     */
+    public void completeMeshMigration(final List<Integer> targetGroupIds) {
+        final ClusterMesh mesh = getMesh();
+        mesh.completeMigration(targetGroupIds);
+        this.meshRebalancer.dropForeignKeys(mesh, this.groupId);
+    }
+
+    /**
+     * Drops the running migration, and the keys the group of the current node took in for it.
+     */
+    public void abortMeshMigration() {
+        final ClusterMesh mesh = getMesh();
+        mesh.abortMigration();
+        this.meshRebalancer.dropForeignKeys(mesh, this.groupId);
+    }
+
+    /**
+     * @throws IllegalStateException : if the current node is not part of a mesh.
+     */
+    private ClusterMesh getMesh() {
+        final ClusterMesh mesh = this.clusterMesh;
+        if (mesh == null) {
+            throw new IllegalStateException("node " + this.currentNode.getNodeId() + " is not part of a mesh");
+        }
+        return mesh;
+    }
+
+    /**
+     * @return : nodes of the replica group owning the key by node id, null if the key belongs to the group of the
+     * current node or the keyspace is not partitioned.
+     * @throws IllegalStateException : if the group of the current node is handing the key over.
+     */
+    private List<ClusterNode> getOwnerGroupNodes(final String key) {
+        final ClusterMesh mesh = this.clusterMesh;
+        if (mesh == null) {
+            return null;
+        }
+        final int ownerGroupId = getOwnerGroupId(mesh, key);
+        return (ownerGroupId == this.groupId) ? null : mesh.getGroupNodes(ownerGroupId);
+    }
+
+    /**
+     * @return : id of the replica group owning the key.
+     * @throws KeyHandedOverException : if the group of the current node is handing the key over, until its new group
+     * took it over.
+     */
+    private int getOwnerGroupId(final ClusterMesh mesh, final String key) {
+        final int ownerGroupId = mesh.getGroupId(key);
+        if (ownerGroupId == this.groupId && mesh.isHandingOver(key)) {
+            throw new KeyHandedOverException("key " + key + " is being handed over to replica group "
+                + mesh.getTargetGroupId(key) + ", the request can be retried");
+        }
+        return ownerGroupId;
+    }
+
+    /**
+     * Sends a request to the replica group owning its keys, which handles it as if a client sent it. The nodes of the
+     * group are tried in the order of their ids, so the request goes to the leader of the group first, unless it is
+     * down. A node which replied, even with a failure, is not tried again.
+     * @throws IllegalStateException : if the request failed, or no node of the group could be reached.
+     */
+    private <T> T forwardToGroup(final List<ClusterNode> groupNodes, final Function<ClusterNode, T> request) {
+        final IllegalStateException failure = new IllegalStateException("no node of the replica group can be reached");
+        for (final ClusterNode node : groupNodes) {
+            try {
+                return request.apply(node);
+            } catch (final IllegalStateException | IllegalArgumentException e) {
+                throw e;
+            } catch (final Exception e) {
+                failure.addSuppressed(e);
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * Copies the dataset of the leader to the current node and promotes it to a voting node of the cluster. Writes
+     * keep flowing while the dataset is streamed and are replicated to the current node as well. Entries are applied
+     * unless the current node already holds a newer version, and the writes the stream missed, such as deletes of
+     * keys which were already streamed, are caught up by a repair from the leader before the promotion.
+     * @throws IllegalStateException : if the state could not be transferred. The node stays a learner.
+     */
+    private void transferState() {
+        RuntimeException lastException = null;
+        for (int attempt = 0; attempt < STATE_TRANSFER_ATTEMPTS; attempt++) {
+            try {
+                final ClusterNode leader = this.clusterManager.getClusterLeader();
+                this.dcdbSao.internalTransferState(leader, entry -> {
+                    if (this.multiVersionKeyValueStore.repair(entry)) {
+                        this.lastAppliedWritePosition.incrementAndGet();
+                    }
+                });
+                this.dcdbSao.internalRepairNode(leader, this.currentNode);
+                for (final ClusterNode node : new ArrayList<>(this.clusterManager.getClusterNodes())) {
+                    if (node.getNodeId() != this.currentNode.getNodeId()) {
+                        this.dcdbSao.promoteClusterNode(node, this.currentNode);
+                    }
+                }
+                promoteClusterNode(this.currentNode);
+                return;
+            } catch (final RuntimeException e) {
+                lastException = e;
+            }
+        }
+        throw new IllegalStateException("unable to transfer the state of the cluster", lastException);
+    }
+
+    /**
+     * Adds an incoming node as a learner: writes are replicated to it, but it neither counts towards the quorum nor
+     * takes the leader position until it is promoted.
+     * @param clusterNode : cluster node to add.
+     */
+    public synchronized void addLearnerClusterNode(final ClusterNode clusterNode) {
+        this.clusterManager.addLearnerNode(clusterNode);
+        // the entries the leader applied so far are part of the state transferred to the node.
+        this.logReplicator.replicate();
+    }
+
+    /**
+     * Makes a learner a voting node of the cluster. If it has a lower node id than the current leader, it takes over
+     * the leader position.
+     * @param clusterNode : cluster node to promote.
+     */
+    public synchronized void promoteClusterNode(final ClusterNode clusterNode) {
+        this.clusterManager.promoteLearnerNode(clusterNode);
+        if (clusterNode.getNodeId() == this.currentNode.getNodeId()) {
+            if (this.clusterManager.getClusterLeader().getNodeId() == this.currentNode.getNodeId()) {
+                takeOver();
+            }
+        } else if (this.isLeader && this.currentNode.getNodeId() > clusterNode.getNodeId()) {
+            stepDown();
+        }
+    }
+
+    /**
+     * @return : true if the current node is the leader by node id, but did not take over yet.
+     */
+    public boolean isTakeOverPending() {
+        return this.isTakeOverPending;
+    }
+
+    /**
+     * @return : true if the current node joined the cluster but was not promoted to a voting node yet.
+     */
+    public boolean isLearner() {
+        return this.clusterManager.isLearner(this.currentNode);
+    }
+
+    /**
+     * Streams every entry of the local store, as chunked and checksummed frames, to a node joining the cluster.
+     * @param output : stream to write the frames to. It is not closed.
+     */
+    public void writeState(final OutputStream output) throws IOException {
+        final SnapshotStreamWriter writer = new SnapshotStreamWriter(output);
+        try {
+            this.multiVersionKeyValueStore.forEachEntry(entry -> {
+                try {
+                    writer.write(entry);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
         }
+        writer.finish();
     }
 
     /**
@@ -81,32 +641,83 @@ public class NodeManager {
         if (this.isLeader) {
             if (this.currentNode.getNodeId() > clusterNode.getNodeId()) {
                 // we have a new leader which will init itself as a leader. change the current node to be a follower.
-                this.isLeader = false;
+                stepDown();
             }
         }
         this.clusterManager.addClusterNode(clusterNode);
     }
 
     /**
-     * Returns the cluster leader for the provided key.
-     * TODO: Implement ClusterMesh where multiple clusters can exist with individual key spaces (and implement data partioning)
-     * @param key : key for which the cluster leader is required.
+     * Returns the cluster leader for the provided key. The leader of another replica group of the mesh is the node of
+     * the group with the minimum id.
+     * @param key : key for which the cluster leader is required, null for the cluster of the current node.
      * @return : Leader cluster node
      */
     public ClusterNode getClusterLeader(final String key) {
+        final List<ClusterNode> ownerGroupNodes = (key == null) ? null : getOwnerGroupNodes(key);
+        if (ownerGroupNodes != null) {
+            return ownerGroupNodes.get(0);
+        }
         if (isLeader) {
             return this.currentNode;
-        } else {
-            return this.clusterManager.getClusterLeader();
         }
+        final ClusterNode clusterLeader = this.clusterManager.getClusterLeader();
+        if (clusterLeader.getNodeId() != this.currentNode.getNodeId()) {
+            return clusterLeader;
+        }
+        if (this.isTakeOverPending) {
+            throw new IllegalStateException("node " + this.currentNode.getNodeId()
+                + " did not reach a majority of the voting nodes to take over as the leader");
+        }
+        // the current node stepped down for the leader of a later term.
+        final int leaderId = this.replicatedLog.getLeaderId();
+        for (final ClusterNode node : this.clusterManager.getClusterNodes()) {
+            if (node.getNodeId() == leaderId && leaderId != this.currentNode.getNodeId()) {
+                return node;
+            }
+        }
+        throw new IllegalStateException("node " + this.currentNode.getNodeId() + " stepped down as the leader");
+    }
+
+    /**
+     * Takes over the leader position. A takeover which does not reach a majority of the voting nodes leaves the
+     * current node a follower, and is retried with the next heartbeat.
+     */
+    private synchronized void takeOver() {
+        try {
+            this.logReplicator.lead();
+        } catch (final IllegalStateException e) {
+            this.isLeader = false;
+            this.isTakeOverPending = true;
+            return;
+        }
+        this.isTakeOverPending = false;
+        if (false == this.isLeader) {
+            // as a follower this node dropped its deadlines. the new leader has to expire those keys.
+            this.expiringKeyValueStore.rebuildTimingWheel();
+            this.isLeader = true;
+        }
+    }
+
+    /**
+     * Stops leading the cluster, once another node took over.
+     */
+    private void stepDown() {
+        this.isLeader = false;
+        this.isTakeOverPending = false;
+        this.logReplicator.stepDown();
     }
 
     /**
      * Fetches the list of nodes in the cluster for the current node.
-     * @param key : key for which the cluster nodes are required.
+     * @param key : key for which the cluster nodes are required, null for the cluster of the current node.
      * @return : node list representing the cluster for the given key space.
      */
     public List<ClusterNode> getClusterDetails(final String key) {
+        final List<ClusterNode> ownerGroupNodes = (key == null) ? null : getOwnerGroupNodes(key);
+        if (ownerGroupNodes != null) {
+            return ownerGroupNodes;
+        }
         return this.clusterManager.getClusterNodes();
     }
 
@@ -118,7 +729,9 @@ public class NodeManager {
     }
 
     private void initialize() {
-        final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+        // separate thread, so that replaying the hints does not delay the pings.
+        hintExecutorService = Executors.newSingleThreadExecutor();
+        final ScheduledExecutorService executorService = newScheduledExecutorService();
         executorService.scheduleAtFixedRate(new Runnable() {
             @Override
             public void run() {
@@ -126,8 +739,23 @@ public class NodeManager {
                     for (ClusterNode clusterNodeToPing : clusterManager.getClusterNodes()) {
                         if (false == isNodeHealthy(clusterNodeToPing)) {
                             clusterManager.removeClusterNode(clusterNodeToPing);
+                            // the node receives the whole dataset when it joins again.
+                            hintedHandoff.discard(clusterNodeToPing);
+                        } else if (hintedHandoff.hasHints(clusterNodeToPing)
+                            && replayingNodeIds.add(clusterNodeToPing.getNodeId())) {
+                            hintExecutorService.execute(() -> {
+                                try {
+                                    replayHints(clusterNodeToPing);
+                                } catch (final RuntimeException e) {
+                                    // replayed with the next heartbeat. no-op
+                                } finally {
+                                    replayingNodeIds.remove(clusterNodeToPing.getNodeId());
+                                }
+                            });
                         }
                     }
+                } else if (isTakeOverPending) {
+                    takeOver();
                 } else if (System.currentTimeMillis() - lastPingTimestampMillis > 10000L) {
                     // 10 seconds since the last ping. Assume the leader has died. remove leader from cluster.
                     clusterManager.removeClusterNode(clusterManager.getClusterLeader());
@@ -135,7 +763,7 @@ public class NodeManager {
                     lastPingTimestampMillis = System.currentTimeMillis();
                     // Check if this node becomes the leader.
                     if (clusterManager.getClusterLeader().getNodeId() == currentNode.getNodeId()) {
-                        isLeader = true;
+                        takeOver();
                     }
                 }
             }
@@ -154,102 +782,1259 @@ public class NodeManager {
                 return false;
             }
         }, 0, 3000, TimeUnit.MILLISECONDS);
+
+        // separate thread, so that the heartbeats and retries of the log do not wait for the pings.
+        final ScheduledExecutorService logExecutorService = newScheduledExecutorService();
+        logExecutorService.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (logReplicator.isLeading()) {
+                        logReplicator.replicate();
+                        logReplicator.compact();
+                    } else {
+                        replicatedLog.compact(replicatedLog.getLastIndex() - logMaxRetainedEntries);
+                    }
+                } catch (final RuntimeException e) {
+                    // retried with the next run. no-op
+                }
+            }
+        }, LOG_REPLICATION_INTERVAL_MILLIS, LOG_REPLICATION_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+        // separate thread, so that the replication of the expired keys does not delay the pings.
+        final ScheduledExecutorService expiryExecutorService = newScheduledExecutorService();
+        expiryExecutorService.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    expireKeys();
+                } catch (final RuntimeException e) {
+                    // retried with the next run. no-op
+                }
+            }
+        }, EXPIRY_INTERVAL_MILLIS, EXPIRY_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+        // separate thread, so that reclaiming the prior versions of idle keys does not delay the expiry.
+        final ScheduledExecutorService versionExecutorService = newScheduledExecutorService();
+        versionExecutorService.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    multiVersionKeyValueStore.collectGarbage();
+                } catch (final RuntimeException e) {
+                    // retried with the next run. no-op
+                }
+            }
+        }, VERSION_GC_INTERVAL_MILLIS, VERSION_GC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+        final long antiEntropyIntervalMillis =
+            Long.getLong(ANTI_ENTROPY_INTERVAL_PROPERTY, DEFAULT_ANTI_ENTROPY_INTERVAL_MILLIS);
+        if (antiEntropyIntervalMillis > 0) {
+            // separate thread, as the repairs are paced and may take long.
+            final ScheduledExecutorService antiEntropyExecutorService = newScheduledExecutorService();
+            antiEntropyExecutorService.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    if (isLeader) {
+                        repairReplicas();
+                    }
+                }
+            }, antiEntropyIntervalMillis, antiEntropyIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+
+        final long snapshotIntervalMillis = Long.getLong(SNAPSHOT_INTERVAL_PROPERTY, 0L);
+        if (snapshotIntervalMillis > 0) {
+            // separate thread, so that a long snapshot does not delay the pings.
+            final ScheduledExecutorService snapshotExecutorService = newScheduledExecutorService();
+            snapshotExecutorService.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        createSnapshot();
+                    } catch (final IllegalStateException e) {
+                        // retried with the next snapshot. no-op
+                    }
+                }
+            }, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        }
     }
 
-    public String getValue(final String key) {
-        return this.keyValueStore.get(key);
+    /**
+     * @return : single threaded executor for a periodic task, stopped when the node is shut down.
+     */
+    private ScheduledExecutorService newScheduledExecutorService() {
+        final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+        scheduledExecutorServices.add(executorService);
+        return executorService;
     }
 
-    public boolean putValue(final String key, final String value) {
-        return this.keyValueStore.put(key, value);
+    /**
+     * Stops the periodic tasks and the executors of the node, and closes the local key value store if it holds
+     * files. The running tasks are interrupted, and waited for at most {@value #SHUTDOWN_TIMEOUT_MILLIS} ms. The
+     * node does not serve requests once it is shut down, it is called when the application stops.
+     * @throws IllegalStateException : if the key value store could not be closed.
+     */
+    public synchronized void shutdown() {
+        if (isShutDown) {
+            return;
+        }
+        isShutDown = true;
+        final List<ExecutorService> executorServices = new ArrayList<>(scheduledExecutorServices);
+        if (hintExecutorService != null) {
+            executorServices.add(hintExecutorService);
+        }
+        executorServices.add(forwarderExecutorService);
+        executorServices.add(readRepairExecutorService);
+        executorServices.add(readExecutorService);
+        executorServices.add(replicationExecutorService);
+        executorServices.forEach(ExecutorService::shutdownNow);
+        final long deadlineMillis = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MILLIS;
+        try {
+            for (final ExecutorService executorService : executorServices) {
+                executorService.awaitTermination(Math.max(0L, deadlineMillis - System.currentTimeMillis()),
+                    TimeUnit.MILLISECONDS);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (keyValueStore instanceof Closeable) {
+            try {
+                ((Closeable) keyValueStore).close();
+            } catch (final IOException e) {
+                throw new IllegalStateException("key value store could not be closed", e);
+            }
+        }
     }
 
-    public boolean delete(final String key) {
-        return this.keyValueStore.delete(key);
+    /**
+     * Writes a fuzzy checkpoint of the local key value store: writes keep flowing while it is taken, so it holds
+     * every write up to the last applied entry of the log it records, and may hold some of the later ones. Replaying
+     * the entries after that one in order over it reaches the state of the log, as every entry carries the resolved
+     * value of its writes: a later write already in the checkpoint is applied again over the earlier writes of its
+     * key. The snapshot records the last write position and the last applied entry of the log which are guaranteed
+     * to be included.
+     * @return : metadata of the written snapshot.
+     */
+    public SnapshotMetadata createSnapshot() {
+        synchronized (snapshotLock) {
+            final long logIndex;
+            final long logTerm;
+            // the applied entry is not dropped from the log while the log is locked.
+            synchronized (this.replicatedLog) {
+                logIndex = this.replicatedLog.getAppliedIndex();
+                logTerm = this.replicatedLog.termAt(logIndex);
+            }
+            return SnapshotWriter.write(this.keyValueStore, this.lastAppliedWritePosition.get(), logIndex, logTerm,
+                this.snapshotFile);
+        }
     }
 
-    public String getValueFromCluster(final String key) {
-        final Map<String, Long> countingMap = this.clusterManager.getClusterNodes().stream()
-            .map(k -> this.dcdbSao.internalGetValue(k, key))
-            .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    /**
+     * @return : number of writes applied to the local key value store, including the ones restored from a snapshot.
+     */
+    public long getLastAppliedWritePosition() {
+        return this.lastAppliedWritePosition.get();
+    }
 
-        long maxOccurance = 0;
-        String maxEntry = null;
-        for (Entry<String, Long> entry : countingMap.entrySet()) {
-            if (entry != null && entry.getValue() > maxOccurance) {
-                maxEntry = entry.getKey();
-            }
+    /**
+     * @return : hit ratio, evictions and weighted size of the local key value store, or null if the store is not
+     *         a bounded cache.
+     */
+    public CacheStats getKeyValueStoreStats() {
+        if (this.keyValueStore instanceof BoundedKeyValueStore) {
+            return ((BoundedKeyValueStore) this.keyValueStore).getStats();
         }
+        return null;
+    }
 
-        if (this.clusterManager.getClusterQuorumSize() <= countingMap.get(maxEntry)) {
-            return maxEntry;
-        } else {
-            throw new IllegalStateException();
+    /**
+     * Loads the snapshot into a volatile key value store. Persistent stores recover their data by themselves and
+     * may already hold newer writes than the snapshot.
+     * @return : metadata of the loaded snapshot, null if none was loaded.
+     */
+    private SnapshotMetadata restoreSnapshot() {
+        if (this.keyValueStoreType.isPersistent() || false == this.snapshotFile.isFile()) {
+            return null;
         }
+        final SnapshotMetadata snapshotMetadata = SnapshotReader.load(this.snapshotFile, this.keyValueStore);
+        this.lastAppliedWritePosition.set(snapshotMetadata.getLastAppliedWritePosition());
+        this.expiringKeyValueStore.rebuildTimingWheel();
+        this.multiVersionKeyValueStore.rebuild();
+        return snapshotMetadata;
     }
 
-    public synchronized boolean putValueToCluster(final String key, final String value) {
-        // Leader puts the value to cluster
-        if (this.isLeader) {
-            final boolean result = putValue(key, value);
-            // added to the current node.. so starting with success count as 1.
-            int successCount = 1;
+    /**
+     * Removes the keys whose deadline has passed. Only the leader decides on expiry: it removes the keys locally and
+     * replicates them to every follower as a single batch. Followers only drop the deadlines, their expired keys are
+     * already invisible and get removed by the batches of the leader.
+     */
+    private void expireKeys() {
+        List<ExpiringKey> expiredKeys;
+        do {
+            expiredKeys = this.expiringKeyValueStore.pollExpired(System.currentTimeMillis(), EXPIRY_BATCH_SIZE);
+            if (false == this.isLeader || expiredKeys.isEmpty()) {
+                return;
+            }
+            // the removals of a batch share a version.
+            final long version = this.multiVersionKeyValueStore.nextVersion();
+            final List<ExpiringKey> removedKeys = new ArrayList<>();
+            for (final ExpiringKey expiredKey : expiredKeys) {
+                if (this.multiVersionKeyValueStore.expire(expiredKey.getKey(), expiredKey.getExpiresAtMillis(),
+                    version)) {
+                    this.lastAppliedWritePosition.incrementAndGet();
+                    removedKeys.add(expiredKey);
+                }
+            }
             for (final ClusterNode node : this.clusterManager.getClusterNodes()) {
-                if (node.getNodeId() == this.currentNode.getNodeId()) {
-                    // we have already put entry to this store. skipping
+                if (node.getNodeId() == this.currentNode.getNodeId() || removedKeys.isEmpty()) {
                     continue;
                 }
-
                 try {
-                    this.dcdbSao.internalPutValue(node, key, value);
-                    successCount++;
+                    this.dcdbSao.internalExpireValues(node, removedKeys, version);
                 } catch (final Exception e) {
-                    // continue to the next node. no-op
+                    // the keys stay invisible on the node until the hints are replayed.
+                    for (final ExpiringKey removedKey : removedKeys) {
+                        this.hintedHandoff.hint(node, new VersionedEntry(removedKey.getKey(), null, version,
+                            ExpiringKeyValueStore.NO_EXPIRY));
+                    }
                 }
             }
+        } while (expiredKeys.size() == EXPIRY_BATCH_SIZE);
+    }
 
-            if (this.clusterManager.getClusterQuorumSize() <= successCount) {
-                return result;
-            } else {
-                throw new IllegalStateException("quorum not met. quorum size: " + this.clusterManager.getClusterQuorumSize()
-                   + ". success count: " + successCount);
+    /**
+     * Removes a batch of expired keys replicated by the leader. Keys which were written again since they expired
+     * are kept.
+     * @param expiredKeys : expired keys with the deadline with which they expired.
+     * @param version : version of the removals.
+     * @return : number of removed keys.
+     */
+    public int expireValues(final List<ExpiringKey> expiredKeys, final long version) {
+        int removedCount = 0;
+        for (final ExpiringKey expiredKey : expiredKeys) {
+            if (this.multiVersionKeyValueStore.expire(expiredKey.getKey(), expiredKey.getExpiresAtMillis(),
+                version)) {
+                this.lastAppliedWritePosition.incrementAndGet();
+                removedCount++;
             }
-        } else {
-            // follower just redirects the request to leader.
-            return this.dcdbSao.putValue(this.getClusterLeader(null), key, value);
         }
+        return removedCount;
     }
 
-    public synchronized boolean deleteValueFromCluster(final String key) {
-        // Leader puts the value to cluster
-        if (this.isLeader) {
-            final boolean result = delete(key);
-            // deleted from current node.. so starting with success count as 1.
-            int successCount = 1;
-            for (final ClusterNode node : this.clusterManager.getClusterNodes()) {
-                if (node.getNodeId() == this.currentNode.getNodeId()) {
-                    // we have already removed entry from this store. skipping
-                    continue;
-                }
+    public String getValue(final String key) {
+        return this.multiVersionKeyValueStore.get(key);
+    }
 
-                try {
-                    this.dcdbSao.internalDeleteValue(node, key);
-                    successCount++;
-                } catch (final Exception e) {
-                    // continue to the next node. no-op
-                }
-            }
+    /**
+     * @return : local value of the key with its version, null if the key does not exist.
+     */
+    public VersionedValue getVersionedValue(final String key) {
+        return this.multiVersionKeyValueStore.getVersioned(key);
+    }
+
+    /**
+     * @return : local entry of the key with its version and expiry deadline, null if the key does not exist.
+     */
+    public VersionedEntry getVersionedEntry(final String key) {
+        return this.multiVersionKeyValueStore.getEntry(key);
+    }
 
-            if (this.clusterManager.getClusterQuorumSize() <= successCount) {
-                return result;
-            } else {
-                throw new IllegalStateException("quorum not met. quorum size: " + this.clusterManager.getClusterQuorumSize()
-                   + ". success count: " + successCount);
+    /**
+     * @return : local entries of the keys which exist, with their version and expiry deadline.
+     */
+    public List<VersionedEntry> getVersionedEntries(final List<String> keys) {
+        final List<VersionedEntry> entries = new ArrayList<>();
+        for (final String key : keys) {
+            final VersionedEntry entry = this.multiVersionKeyValueStore.getEntry(key);
+            if (entry != null) {
+                entries.add(entry);
             }
-        } else {
-            // follower just redirects the request to leader.
-            return this.dcdbSao.deleteValue(this.getClusterLeader(null), key);
         }
+        return entries;
+    }
+
+    /**
+     * Opens a consistent view of the local store as of the latest applied write. Reads through the snapshot do not
+     * block the writes, and it has to be closed once the reads are done.
+     * @return : open snapshot.
+     */
+    public MultiVersionKeyValueStore.Snapshot openSnapshot() {
+        return this.multiVersionKeyValueStore.openSnapshot();
+    }
+
+    /**
+     * Scans a key range of the local store in key order. Scans are served by the node receiving them, from the
+     * writes it has applied, and do not consult the rest of the cluster.
+     * @param fromKey : inclusive lower bound, null for no bound.
+     * @param toKey : exclusive upper bound, null for no bound.
+     * @param limit : maximum number of entries to visit.
+     * @param action : action to perform on every key and value.
+     */
+    public void scanValues(final String fromKey, final String toKey, final int limit,
+            final BiConsumer<? super String, ? super String> action) {
+        // the key range of the binary values is skipped.
+        final int[] visitedCount = new int[] {0};
+        final BiConsumer<String, String> visit = (key, value) -> {
+            visitedCount[0]++;
+            action.accept(key, value);
+        };
+        if (fromKey == null || fromKey.compareTo(BinaryKeyValueStore.KEY_RANGE_START) < 0) {
+            this.multiVersionKeyValueStore.scan(fromKey,
+                (toKey == null || toKey.compareTo(BinaryKeyValueStore.KEY_RANGE_START) > 0)
+                    ? BinaryKeyValueStore.KEY_RANGE_START : toKey, limit, visit);
+        }
+        if ((toKey == null || toKey.compareTo(BinaryKeyValueStore.KEY_RANGE_END) > 0) && visitedCount[0] < limit) {
+            this.multiVersionKeyValueStore.scan(
+                (fromKey == null || fromKey.compareTo(BinaryKeyValueStore.KEY_RANGE_END) < 0)
+                    ? BinaryKeyValueStore.KEY_RANGE_END : fromKey, toKey, limit - visitedCount[0], visit);
+        }
+    }
+
+    public boolean putValue(final String key, final String value) {
+        return putValue(key, value, ExpiringKeyValueStore.NO_EXPIRY);
+    }
+
+    /**
+     * Puts the entry to the local store.
+     * @param expiresAtMillis : expiry deadline of the entry, {@link ExpiringKeyValueStore#NO_EXPIRY} if it does not
+     * expire.
+     */
+    public boolean putValue(final String key, final String value, final long expiresAtMillis) {
+        return putValue(key, value, expiresAtMillis, this.multiVersionKeyValueStore.nextVersion());
+    }
+
+    /**
+     * Puts the entry to the local store with the version decided by the leader.
+     * @param version : version of the write.
+     */
+    public boolean putValue(final String key, final String value, final long expiresAtMillis, final long version) {
+        final boolean result = this.multiVersionKeyValueStore.put(key, value, expiresAtMillis, version);
+        this.lastAppliedWritePosition.incrementAndGet();
+        return result;
+    }
+
+    public boolean delete(final String key) {
+        return delete(key, this.multiVersionKeyValueStore.nextVersion());
+    }
+
+    /**
+     * Deletes the entry from the local store with the version decided by the leader.
+     * @param version : version of the delete.
+     */
+    public boolean delete(final String key, final long version) {
+        final boolean result = this.multiVersionKeyValueStore.delete(key, version);
+        this.lastAppliedWritePosition.incrementAndGet();
+        return result;
+    }
+
+    public String getValueFromCluster(final String key) {
+        final VersionedValue versionedValue = getVersionedValueFromCluster(key);
+        return (versionedValue == null) ? null : versionedValue.getValue();
+    }
+
+    /**
+     * Reads the key from every voting node concurrently and returns the value held by a quorum of them, as soon as
+     * the quorum agrees. The replies are compared along with their version, so equal values put by different writes
+     * are not mistaken for each other. Nodes which cannot be read from are tolerated while the others can still make
+     * a quorum. The reads still outstanding are cancelled, unless the read is sampled for read repair: then the nodes
+     * which replied with another value are repaired in the background once every read completed.
+     * The leader serves the read from its own store instead, once its leadership is confirmed.
+     * @return : value with its version, null if a quorum of the nodes does not hold the key.
+     * @throws IllegalStateException : if no value is held by a quorum of the nodes.
+     */
+    public VersionedValue getVersionedValueFromCluster(final String key) {
+        final List<ClusterNode> ownerGroupNodes = getOwnerGroupNodes(key);
+        if (ownerGroupNodes != null) {
+            return forwardToGroup(ownerGroupNodes,
+                node -> this.dcdbSao.getValue(node, key, ReadConsistency.LINEARIZABLE));
+        }
+        if (this.isLeader && isLeadershipConfirmed()) {
+            return getVersionedValue(key);
+        }
+        final List<ClusterNode> votingNodes = this.clusterManager.getVotingNodes();
+        final ReadQuorum<VersionedEntry, VersionedValue> readQuorum = new ReadQuorum<>(
+            this.clusterManager.getClusterQuorumSize(), votingNodes.size(), NodeManager::toVersionedValue);
+        final CompletableFuture<?>[] reads = readFromVotingNodes(votingNodes, readQuorum,
+            node -> this.dcdbSao.internalGetVersionedEntry(node, key));
+        final boolean quorumMet = awaitQuorum(readQuorum, key);
+        if (quorumMet && ThreadLocalRandom.current().nextDouble() < this.readRepairChance) {
+            final VersionedValue quorumValue = readQuorum.getQuorumValue();
+            CompletableFuture.allOf(reads).thenRun(() -> {
+                if (readQuorum.hasDisagreement()) {
+                    readRepairExecutorService.execute(() -> repairReplies(quorumValue, readQuorum.getReplies()));
+                }
+            });
+        } else {
+            for (final CompletableFuture<?> read : reads) {
+                read.cancel(false);
+            }
+        }
+        if (false == quorumMet) {
+            throw new IllegalStateException("quorum not met for key: " + key);
+        }
+        return readQuorum.getQuorumValue();
+    }
+
+    /**
+     * Reads from every voting node concurrently, each reply going to the quorum. A node which cannot be read from
+     * counts as a failure of the quorum.
+     * @return : reads of the nodes.
+     */
+    private <R> CompletableFuture<?>[] readFromVotingNodes(final List<ClusterNode> votingNodes,
+            final ReadQuorum<R, ?> readQuorum, final Function<ClusterNode, R> read) {
+        final CompletableFuture<?>[] reads = new CompletableFuture<?>[votingNodes.size()];
+        for (int i = 0; i < reads.length; i++) {
+            final ClusterNode node = votingNodes.get(i);
+            reads[i] = CompletableFuture.runAsync(() -> {
+                try {
+                    readQuorum.reply(node, read.apply(node));
+                } catch (final Exception e) {
+                    readQuorum.failure();
+                }
+            }, this.readExecutorService);
+        }
+        return reads;
+    }
+
+    /**
+     * Waits for the quorum of the read of the key, for at most the log commit timeout.
+     * @return : true if the quorum is met.
+     */
+    private boolean awaitQuorum(final ReadQuorum<?, ?> readQuorum, final String key) {
+        try {
+            return readQuorum.await(this.logCommitTimeoutMillis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while reading key: " + key, e);
+        }
+    }
+
+    /**
+     * Reads the key with the requested consistency. A relaxed read is served from the local store if it satisfies
+     * the consistency, and from a quorum otherwise. Learners, which may not hold the dataset yet, always read from the
+     * quorum.
+     * @return : value with its version, null if the key does not exist.
+     * @throws IllegalStateException : if the read goes to a quorum and no value is held by a quorum of the nodes.
+     */
+    public VersionedValue getVersionedValueFromCluster(final String key, final ReadConsistency consistency) {
+        final List<ClusterNode> ownerGroupNodes = getOwnerGroupNodes(key);
+        if (ownerGroupNodes != null) {
+            return forwardToGroup(ownerGroupNodes, node -> this.dcdbSao.getValue(node, key, consistency));
+        }
+        if (isLocalReadAllowed(consistency)) {
+            return getVersionedValue(key);
+        }
+        return getVersionedValueFromCluster(key);
+    }
+
+    private boolean isLocalReadAllowed(final ReadConsistency consistency) {
+        if (consistency.getLevel() == ReadConsistency.Level.LINEARIZABLE || isLearner()) {
+            return false;
+        }
+        if (consistency.getLevel() == ReadConsistency.Level.SESSION) {
+            // the log matches the one of the leader up to the applied entries.
+            return this.replicatedLog.getAppliedIndex() >= consistency.getSessionToken();
+        }
+        return getStalenessMillis() <= consistency.getMaxStalenessMillis();
+    }
+
+    /**
+     * @return : maximum age of the committed writes the local store may miss, {@link Long#MAX_VALUE} if it is not
+     * known. A leader holding its lease misses none. A follower does not know how long a batch of the leader was in
+     * flight, so the staleness is understated by the time it took the batch to arrive.
+     */
+    public long getStalenessMillis() {
+        if (this.isLeader) {
+            return this.logReplicator.hasLease() ? 0L : Long.MAX_VALUE;
+        }
+        final long caughtUpMillis = this.leaderCaughtUpMillis;
+        return (caughtUpMillis == 0L) ? Long.MAX_VALUE : System.currentTimeMillis() - caughtUpMillis;
+    }
+
+    /**
+     * Reads several keys from the cluster with a single read of every voting node, each node replying with the
+     * entries of all the keys it holds. The value of every key is resolved by its own quorum, as for
+     * {@link #getVersionedValueFromCluster(String)}, and the nodes are repaired key by key when the read is sampled
+     * for read repair. The leader serves the read from its own store instead, once its leadership is confirmed.
+     * The keys of the other replica groups of the mesh are read with a single request to every group owning some of
+     * them, concurrently.
+     * @param keys : keys to read, possibly repeated.
+     * @return : value with its version of every key, in order, null where a quorum of the nodes does not hold it.
+     * @throws IllegalStateException : if no value of one of the keys is held by a quorum of the nodes.
+     */
+    public List<VersionedValue> getVersionedValuesFromCluster(final List<String> keys) {
+        final ClusterMesh mesh = this.clusterMesh;
+        if (mesh == null) {
+            return getVersionedValuesFromGroup(keys);
+        }
+        final Map<Integer, List<String>> groupKeys = new TreeMap<>();
+        for (final String key : keys) {
+            groupKeys.computeIfAbsent(getOwnerGroupId(mesh, key), group -> new ArrayList<>()).add(key);
+        }
+        final Map<Integer, CompletableFuture<List<VersionedValue>>> groupReads = new TreeMap<>();
+        for (final Entry<Integer, List<String>> group : groupKeys.entrySet()) {
+            if (group.getKey() != this.groupId) {
+                final List<ClusterNode> groupNodes = mesh.getGroupNodes(group.getKey());
+                groupReads.put(group.getKey(), CompletableFuture.supplyAsync(() -> forwardToGroup(groupNodes,
+                    node -> this.dcdbSao.getValues(node, group.getValue())), this.readExecutorService));
+            }
+        }
+        final Map<String, VersionedValue> values = new HashMap<>();
+        final List<String> localKeys = groupKeys.get(this.groupId);
+        if (localKeys != null) {
+            final List<VersionedValue> localValues = getVersionedValuesFromGroup(localKeys);
+            for (int i = 0; i < localKeys.size(); i++) {
+                values.put(localKeys.get(i), localValues.get(i));
+            }
+        }
+        for (final Entry<Integer, CompletableFuture<List<VersionedValue>>> groupRead : groupReads.entrySet()) {
+            final List<String> readKeys = groupKeys.get(groupRead.getKey());
+            final List<VersionedValue> readValues;
+            try {
+                readValues = groupRead.getValue().join();
+            } catch (final CompletionException e) {
+                throw new IllegalStateException("read of replica group " + groupRead.getKey() + " failed",
+                    e.getCause());
+            }
+            for (int i = 0; i < readKeys.size(); i++) {
+                values.put(readKeys.get(i), readValues.get(i));
+            }
+        }
+        return keys.stream().map(values::get).collect(Collectors.toList());
+    }
+
+    /**
+     * Reads several keys from the cluster of the current node.
+     * @see #getVersionedValuesFromCluster(List)
+     */
+    private List<VersionedValue> getVersionedValuesFromGroup(final List<String> keys) {
+        if (this.isLeader && isLeadershipConfirmed()) {
+            return keys.stream().map(this::getVersionedValue).collect(Collectors.toList());
+        }
+        final List<ClusterNode> votingNodes = this.clusterManager.getVotingNodes();
+        final Map<String, ReadQuorum<VersionedEntry, VersionedValue>> readQuorums = new LinkedHashMap<>();
+        for (final String key : keys) {
+            readQuorums.computeIfAbsent(key, k -> new ReadQuorum<>(this.clusterManager.getClusterQuorumSize(),
+                votingNodes.size(), NodeManager::toVersionedValue));
+        }
+        final List<String> distinctKeys = new ArrayList<>(readQuorums.keySet());
+        final CompletableFuture<?>[] reads = new CompletableFuture<?>[votingNodes.size()];
+        for (int i = 0; i < reads.length; i++) {
+            final ClusterNode node = votingNodes.get(i);
+            reads[i] = CompletableFuture.runAsync(() -> {
+                final Map<String, VersionedEntry> entries = new HashMap<>();
+                try {
+                    for (final VersionedEntry entry : this.dcdbSao.internalGetVersionedEntries(node, distinctKeys)) {
+                        entries.put(entry.getKey(), entry);
+                    }
+                } catch (final Exception e) {
+                    readQuorums.values().forEach(ReadQuorum::failure);
+                    return;
+                }
+                for (final Entry<String, ReadQuorum<VersionedEntry, VersionedValue>> readQuorum
+                        : readQuorums.entrySet()) {
+                    readQuorum.getValue().reply(node, entries.get(readQuorum.getKey()));
+                }
+            }, this.readExecutorService);
+        }
+
+        String failedKey = null;
+        // the keys share the deadline of the read.
+        final long deadlineMillis = System.currentTimeMillis() + this.logCommitTimeoutMillis;
+        try {
+            for (final Entry<String, ReadQuorum<VersionedEntry, VersionedValue>> readQuorum
+                    : readQuorums.entrySet()) {
+                if (false == readQuorum.getValue().await(deadlineMillis - System.currentTimeMillis())) {
+                    failedKey = readQuorum.getKey();
+                    break;
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while reading keys: " + distinctKeys, e);
+        }
+        if (failedKey == null && ThreadLocalRandom.current().nextDouble() < this.readRepairChance) {
+            CompletableFuture.allOf(reads).thenRun(() -> {
+                for (final ReadQuorum<VersionedEntry, VersionedValue> readQuorum : readQuorums.values()) {
+                    if (readQuorum.hasDisagreement()) {
+                        final VersionedValue quorumValue = readQuorum.getQuorumValue();
+                        readRepairExecutorService.execute(() -> repairReplies(quorumValue, readQuorum.getReplies()));
+                    }
+                }
+            });
+        } else {
+            for (final CompletableFuture<?> read : reads) {
+                read.cancel(false);
+            }
+        }
+        if (failedKey != null) {
+            throw new IllegalStateException("quorum not met for key: " + failedKey);
+        }
+        return keys.stream().map(key -> readQuorums.get(key).getQuorumValue()).collect(Collectors.toList());
+    }
+
+    /**
+     * Confirms that the current node still leads the cluster and applied every acknowledged write, so that a read from
+     * its own store is linearizable: right away while it holds the lease, otherwise once a quorum of the voting nodes
+     * appended a round of batches sent after the read arrived and the writes committed before it were applied.
+     * @return : false if the leadership could not be confirmed within {@value #LOG_COMMIT_TIMEOUT_PROPERTY}
+     * milliseconds.
+     */
+    private boolean isLeadershipConfirmed() {
+        if (this.logReplicator.hasLease()) {
+            return true;
+        }
+        final long deadlineMillis = System.currentTimeMillis() + this.logCommitTimeoutMillis;
+        try {
+            final long readIndex = this.logReplicator.readIndex().get(this.logCommitTimeoutMillis,
+                TimeUnit.MILLISECONDS);
+            return this.replicatedLog.awaitApplied(readIndex, deadlineMillis - System.currentTimeMillis());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (final ExecutionException | TimeoutException | IllegalStateException e) {
+            // the read falls back to the quorum. no-op
+            return false;
+        }
+    }
+
+    /**
+     * Pushes the value read from a quorum to the nodes which replied with another one. The repairs are conditional:
+     * a node keeps an entry newer than the pushed one, and only deletes the entry it replied with if the value read
+     * is a missing key, the entry was not written since, and the entry is not newer than the writes this node
+     * applied.
+     * @param quorumValue : value held by the quorum, null for a missing key.
+     * @param replies : entry every node replied with.
+     */
+    private void repairReplies(final VersionedValue quorumValue, final Map<ClusterNode, VersionedEntry> replies) {
+        VersionedEntry quorumEntry = null;
+        for (final VersionedEntry reply : replies.values()) {
+            if (quorumValue != null && quorumValue.equals(toVersionedValue(reply))) {
+                quorumEntry = reply;
+            }
+        }
+        for (final Entry<ClusterNode, VersionedEntry> reply : replies.entrySet()) {
+            final VersionedEntry staleEntry = reply.getValue();
+            if (Objects.equals(quorumValue, toVersionedValue(staleEntry))) {
+                continue;
+            }
+            try {
+                if (quorumEntry != null) {
+                    this.dcdbSao.internalRepairValues(reply.getKey(), Collections.singletonList(quorumEntry),
+                        Collections.emptyList());
+                } else if (staleEntry.getVersion() <= this.multiVersionKeyValueStore.getLatestVersion()) {
+                    this.dcdbSao.internalRepairValues(reply.getKey(), Collections.emptyList(),
+                        Collections.singletonList(staleEntry));
+                }
+            } catch (final Exception e) {
+                // repaired by the anti-entropy. no-op
+            }
+        }
+    }
+
+    private static VersionedValue toVersionedValue(final VersionedEntry entry) {
+        return (entry == null) ? null : new VersionedValue(entry.getValue(), entry.getVersion());
+    }
+
+    public boolean putValueToCluster(final String key, final String value) {
+        return putValueToCluster(key, value, ExpiringKeyValueStore.NO_EXPIRY);
+    }
+
+    /**
+     * Puts the entry to the cluster.
+     * @param ttlMillis : time to live of the entry, {@link ExpiringKeyValueStore#NO_EXPIRY} if it does not expire.
+     */
+    public boolean putValueToCluster(final String key, final String value, final long ttlMillis) {
+        final List<ClusterNode> ownerGroupNodes = getOwnerGroupNodes(key);
+        if (ownerGroupNodes != null) {
+            return fromLeader(forwardToGroup(ownerGroupNodes,
+                node -> this.dcdbSao.putValue(node, key, value, ttlMillis)));
+        }
+        // Leader puts the value to cluster
+        if (this.isLeader) {
+            final List<VersionedEntry> writes;
+            final CompletableFuture<List<Boolean>> result;
+            synchronized (writeLock(key)) {
+                // the leader decides the deadline, so that every node expires the entry at the same time.
+                final long expiresAtMillis = (ttlMillis == ExpiringKeyValueStore.NO_EXPIRY)
+                    ? ExpiringKeyValueStore.NO_EXPIRY : System.currentTimeMillis() + ttlMillis;
+                final long version = this.multiVersionKeyValueStore.nextVersion();
+                writes = Collections.singletonList(new VersionedEntry(key, value, version, expiresAtMillis));
+                result = proposeToCluster(writes);
+            }
+            return awaitAcknowledgement(result, writes).get(0);
+        } else {
+            // follower forwards the write to leader, along with the other writes it is forwarding.
+            return fromLeader(this.leaderForwarder.forward(new KeyValueMutation(key, value, ttlMillis)));
+        }
+    }
+
+    /**
+     * Applies a batch of puts and deletes to the cluster. The batch is a single entry of the replicated log: it takes
+     * a single quorum decision, and every node applies all of its mutations together. The mutations share a version.
+     * @param mutations : mutations of distinct keys, of the same replica group if the keyspace is partitioned.
+     * @return : result of every mutation, in order: true if the key was put, or deleted while it existed.
+     * @throws IllegalArgumentException : if several mutations have the same key, or the keys of the batch belong to
+     * several replica groups.
+     */
+    public List<Boolean> writeValuesToCluster(final List<KeyValueMutation> mutations) {
+        if (mutations.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final ClusterMesh mesh = this.clusterMesh;
+        if (mesh != null) {
+            // a batch is a single entry of the log of a group.
+            final int batchGroupId = getOwnerGroupId(mesh, mutations.get(0).getKey());
+            for (final KeyValueMutation mutation : mutations) {
+                if (getOwnerGroupId(mesh, mutation.getKey()) != batchGroupId) {
+                    throw new IllegalArgumentException("the keys of the batch belong to several replica groups: "
+                        + mutations.get(0).getKey() + ", " + mutation.getKey());
+                }
+            }
+            if (batchGroupId != this.groupId) {
+                return fromLeader(forwardToGroup(mesh.getGroupNodes(batchGroupId),
+                    node -> this.dcdbSao.writeValues(node, mutations)));
+            }
+        }
+        if (false == this.isLeader) {
+            // follower just redirects the request to leader.
+            return fromLeader(this.dcdbSao.writeValues(this.getClusterLeader(null), mutations));
+        }
+        final Set<String> keys = new HashSet<>();
+        final SortedSet<Integer> stripes = new TreeSet<>();
+        for (final KeyValueMutation mutation : mutations) {
+            if (false == keys.add(mutation.getKey())) {
+                throw new IllegalArgumentException("duplicate key in the batch: " + mutation.getKey());
+            }
+            stripes.add(writeStripe(mutation.getKey()));
+        }
+        final List<VersionedEntry> writes = new ArrayList<>();
+        final CompletableFuture<List<Boolean>> result = withWriteLocks(stripes.iterator(), () -> {
+            final long nowMillis = System.currentTimeMillis();
+            final long version = this.multiVersionKeyValueStore.nextVersion();
+            for (final KeyValueMutation mutation : mutations) {
+                final long expiresAtMillis = (mutation.isDelete()
+                    || mutation.getTtlMillis() == ExpiringKeyValueStore.NO_EXPIRY)
+                    ? ExpiringKeyValueStore.NO_EXPIRY : nowMillis + mutation.getTtlMillis();
+                writes.add(new VersionedEntry(mutation.getKey(), mutation.getValue(), version, expiresAtMillis));
+            }
+            return proposeToCluster(writes);
+        });
+        return awaitAcknowledgement(result, writes);
+    }
+
+    /**
+     * @return : result of a write redirected to the leader, or to another replica group of the mesh, whose session
+     * token is kept for the writes through the current node.
+     */
+    private <T> T fromLeader(final WriteResult<T> writeResult) {
+        this.redirectedSessionToken.accumulateAndGet(writeResult.getSessionToken(), Math::max);
+        return writeResult.getResult();
+    }
+
+    /**
+     * Session token covering every write acknowledged through the current node: the position of the log up to which
+     * the leader applied the writes, which a node has to apply before it serves a session read from its own store.
+     * @return : session token, to be returned with the writes.
+     */
+    public long getSessionToken() {
+        return Math.max(this.replicatedLog.getAppliedIndex(), this.redirectedSessionToken.get());
+    }
+
+    /**
+     * Runs the action holding the write locks of the stripes, taken in ascending order so that concurrent batches do
+     * not deadlock.
+     */
+    private <T> T withWriteLocks(final Iterator<Integer> stripes, final Supplier<T> action) {
+        if (false == stripes.hasNext()) {
+            return action.get();
+        }
+        synchronized (this.writeLocks[stripes.next()]) {
+            return withWriteLocks(stripes, action);
+        }
+    }
+
+    /**
+     * Appends the writes of a request to the replicated log, as a single entry. The caller holds the write locks of
+     * their keys, so that the writes of a key are appended in the order of their versions.
+     * @param writes : writes, without a value for a delete.
+     * @return : result of every write, completed once they are acknowledged.
+     * @throws IllegalStateException : if the cluster does not have enough voting nodes for a quorum.
+     */
+    private CompletableFuture<List<Boolean>> proposeToCluster(final List<VersionedEntry> writes) {
+        final int quorumSize = this.clusterManager.getClusterQuorumSize();
+        final int votingNodeCount = this.clusterManager.getVotingNodes().size();
+        if (quorumSize > votingNodeCount) {
+            throw new IllegalStateException("quorum not met. quorum size: " + quorumSize
+               + ". voting nodes: " + votingNodeCount);
+        }
+        final ClusterMesh mesh = this.clusterMesh;
+        if (mesh != null) {
+            // the handover may have started since the request was routed.
+            writes.forEach(write -> getOwnerGroupId(mesh, write.getKey()));
+        }
+        final CompletableFuture<List<Boolean>> result = this.logReplicator.propose(writes);
+        for (final VersionedEntry write : writes) {
+            this.unappliedWrites.put(write.getKey(), write);
+        }
+        // the leader applied the writes once they are acknowledged, or they are never applied.
+        result.whenComplete((results, e) -> writes.forEach(write -> this.unappliedWrites.remove(write.getKey(),
+            write)));
+        return result;
+    }
+
+    /**
+     * Waits until a quorum of the voting nodes applied a write, for at most {@value #LOG_COMMIT_TIMEOUT_PROPERTY}
+     * milliseconds (5 seconds by default). A write which timed out stays in the log and may still be applied.
+     * The writes of the keys moving to another replica group of the mesh are copied to it before they are
+     * acknowledged.
+     * @param writes : writes of the entry.
+     * @return : result of every write on the leader.
+     * @throws IllegalStateException : if the write was not acknowledged in time, or could not be copied.
+     */
+    private List<Boolean> awaitAcknowledgement(final CompletableFuture<List<Boolean>> result,
+            final List<VersionedEntry> writes) {
+        try {
+            final List<Boolean> results = result.get(this.logCommitTimeoutMillis, TimeUnit.MILLISECONDS);
+            final ClusterMesh mesh = this.clusterMesh;
+            if (mesh != null) {
+                this.meshRebalancer.copyToNewOwners(mesh, this.groupId, writes);
+            }
+            return results;
+        } catch (final TimeoutException e) {
+            throw new IllegalStateException("quorum not met. write not acknowledged within "
+               + this.logCommitTimeoutMillis + " ms", e);
+        } catch (final ExecutionException e) {
+            throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for the quorum", e);
+        }
+    }
+
+    /**
+     * Applies a committed entry of the log to the local store.
+     * @return : result of every write of the entry.
+     */
+    private List<Boolean> applyLogEntry(final LogEntry entry) {
+        final List<Boolean> results = new ArrayList<>();
+        for (final VersionedEntry write : entry.getWrites()) {
+            results.add((write.getValue() == null) ? delete(write.getKey(), write.getVersion())
+                : putValue(write.getKey(), write.getValue(), write.getExpiresAtMillis(), write.getVersion()));
+        }
+        return results;
+    }
+
+    /**
+     * Appends a batch of entries of the leader to the local log, and applies the entries the leader committed. A
+     * leader which learns of a later term steps down.
+     * @param batch : batch of the leader.
+     * @return : reply to the leader.
+     */
+    public AppendResult appendEntries(final AppendEntries batch) {
+        final long receivedMillis = System.currentTimeMillis();
+        if (this.logReplicator.isLeading() && batch.getTerm() > this.replicatedLog.getCurrentTerm()) {
+            stepDown();
+        }
+        final AppendResult result;
+        try {
+            result = this.replicatedLog.append(batch, LOG_APPEND_WAIT_MILLIS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while appending entries", e);
+        }
+        if (false == result.isSuccess()) {
+            return result;
+        }
+        this.lastPingTimestampMillis = System.currentTimeMillis();
+        this.replicatedLog.applyCommitted(this::applyLogEntry);
+        if (this.replicatedLog.getAppliedIndex() >= batch.getLeaderCommitIndex()) {
+            this.leaderCaughtUpMillis = Math.max(this.leaderCaughtUpMillis, receivedMillis);
+        }
+        return new AppendResult(result.getTerm(), true, result.getLastIndex(), this.replicatedLog.getAppliedIndex());
+    }
+
+    /**
+     * @param fromIndex : index of the first entry to return.
+     * @return : last entries of the local log, for a node taking over the leadership.
+     */
+    public LogTail getLogTail(final long fromIndex) {
+        return new LogTail(this.replicatedLog.getCurrentTerm(), this.replicatedLog.getLeaderId(),
+            this.logReplicator.isLeading(), this.replicatedLog.getLastIndex(), this.replicatedLog.getLastTerm(),
+            this.replicatedLog.getEntries(fromIndex, Integer.MAX_VALUE));
+    }
+
+    public boolean deleteValueFromCluster(final String key) {
+        final List<ClusterNode> ownerGroupNodes = getOwnerGroupNodes(key);
+        if (ownerGroupNodes != null) {
+            return fromLeader(forwardToGroup(ownerGroupNodes, node -> this.dcdbSao.deleteValue(node, key)));
+        }
+        // Leader puts the value to cluster
+        if (this.isLeader) {
+            final List<VersionedEntry> writes;
+            final CompletableFuture<List<Boolean>> result;
+            synchronized (writeLock(key)) {
+                final long version = this.multiVersionKeyValueStore.nextVersion();
+                writes = Collections.singletonList(
+                    new VersionedEntry(key, null, version, ExpiringKeyValueStore.NO_EXPIRY));
+                result = proposeToCluster(writes);
+            }
+            return awaitAcknowledgement(result, writes).get(0);
+        } else {
+            // follower forwards the write to leader, along with the other writes it is forwarding.
+            return fromLeader(this.leaderForwarder.forward(KeyValueMutation.delete(key)));
+        }
+    }
+
+    /**
+     * Sets the key to a new value if it holds the expected one, in a single round trip to the leader: the leader
+     * compares the key and replicates the new value only. A compare and set on a version only matches the write
+     * which returned it, while one on a value matches any write of the value.
+     * @param expectedValue : value the key has to hold, null for a missing key. Not checked if a version is expected.
+     * @param expectedVersion : version the key has to hold, 0 for a missing key. Null to compare the value instead.
+     * @param value : new value of the key, null to delete it.
+     * @param ttlMillis : time to live of the new value, {@link ExpiringKeyValueStore#NO_EXPIRY} if it does not expire.
+     * @return : whether the write was applied, and the value of the key after it.
+     * @throws IllegalStateException : if the write could not be acknowledged by the cluster.
+     */
+    public CompareAndSetResult compareAndSetInCluster(final String key, final String expectedValue,
+            final Long expectedVersion, final String value, final long ttlMillis) {
+        final List<ClusterNode> ownerGroupNodes = getOwnerGroupNodes(key);
+        if (ownerGroupNodes != null) {
+            return fromLeader(forwardToGroup(ownerGroupNodes, node -> this.dcdbSao.compareAndSet(node, key,
+                expectedValue, expectedVersion, value, ttlMillis)));
+        }
+        if (false == this.isLeader) {
+            // follower just redirects the request to leader.
+            return fromLeader(this.dcdbSao.compareAndSet(this.getClusterLeader(null), key, expectedValue,
+                expectedVersion, value, ttlMillis));
+        }
+        final boolean[] applied = new boolean[1];
+        final VersionedEntry entry = updateInCluster(key, (currentEntry, version) -> {
+            final boolean matches = (expectedVersion != null)
+                ? expectedVersion == ((currentEntry == null) ? 0L : currentEntry.getVersion())
+                : Objects.equals(expectedValue, (currentEntry == null) ? null : currentEntry.getValue());
+            if (false == matches) {
+                return currentEntry;
+            }
+            applied[0] = true;
+            final long expiresAtMillis = (value == null || ttlMillis == ExpiringKeyValueStore.NO_EXPIRY)
+                ? ExpiringKeyValueStore.NO_EXPIRY : System.currentTimeMillis() + ttlMillis;
+            return new VersionedEntry(key, value, version, expiresAtMillis);
+        });
+        return new CompareAndSetResult(applied[0], toVersionedValue(entry));
+    }
+
+    /**
+     * Adds to the number held by the key, in a single round trip to the leader. A missing key counts as 0, and the
+     * key keeps its expiry deadline.
+     * @return : value of the key after the addition.
+     * @throws IllegalArgumentException : if the key does not hold a number, or the sum overflows.
+     * @throws IllegalStateException : if the write could not be acknowledged by the cluster.
+     */
+    public VersionedValue addToCluster(final String key, final long delta) {
+        final List<ClusterNode> ownerGroupNodes = getOwnerGroupNodes(key);
+        if (ownerGroupNodes != null) {
+            return fromLeader(forwardToGroup(ownerGroupNodes, node -> this.dcdbSao.addValue(node, key, delta)));
+        }
+        if (false == this.isLeader) {
+            // follower just redirects the request to leader.
+            return fromLeader(this.dcdbSao.addValue(this.getClusterLeader(null), key, delta));
+        }
+        return toVersionedValue(updateInCluster(key, (currentEntry, version) -> {
+            long sum = delta;
+            if (currentEntry != null) {
+                try {
+                    sum = Math.addExact(Long.parseLong(currentEntry.getValue()), delta);
+                } catch (final NumberFormatException | ArithmeticException e) {
+                    throw new IllegalArgumentException("value of key " + key + " cannot be added to: "
+                        + e.getMessage(), e);
+                }
+            }
+            return new VersionedEntry(key, String.valueOf(sum), version,
+                (currentEntry == null) ? ExpiringKeyValueStore.NO_EXPIRY : currentEntry.getExpiresAtMillis());
+        }));
+    }
+
+    /**
+     * Appends to the value of the key, in a single round trip to the leader. A missing key counts as empty, and the
+     * key keeps its expiry deadline.
+     * @return : value of the key after the append.
+     * @throws IllegalStateException : if the write could not be acknowledged by the cluster.
+     */
+    public VersionedValue appendToCluster(final String key, final String suffix) {
+        final List<ClusterNode> ownerGroupNodes = getOwnerGroupNodes(key);
+        if (ownerGroupNodes != null) {
+            return fromLeader(forwardToGroup(ownerGroupNodes, node -> this.dcdbSao.appendValue(node, key, suffix)));
+        }
+        if (false == this.isLeader) {
+            // follower just redirects the request to leader.
+            return fromLeader(this.dcdbSao.appendValue(this.getClusterLeader(null), key, suffix));
+        }
+        return toVersionedValue(updateInCluster(key, (currentEntry, version) -> (currentEntry == null)
+            ? new VersionedEntry(key, suffix, version, ExpiringKeyValueStore.NO_EXPIRY)
+            : new VersionedEntry(key, currentEntry.getValue() + suffix, version, currentEntry.getExpiresAtMillis())));
+    }
+
+    /**
+     * Updates the key on the leader with an entry computed from the current one, holding the write lock of the key,
+     * and replicates the resulting entry. The current entry includes the writes appended to the log before and not
+     * applied yet, so concurrent updates of a key do not wait for each other: they are committed in the order of the
+     * log, or not at all.
+     * @param update : computes the new entry from the current one, null if the key does not exist, and the version
+     * of the write. Returns the current entry to leave the key as it is.
+     * @return : entry of the key after the update, null if the key does not exist.
+     * @throws IllegalStateException : if the leadership could not be confirmed, or the write was not acknowledged.
+     */
+    private VersionedEntry updateInCluster(final String key,
+            final BiFunction<VersionedEntry, Long, VersionedEntry> update) {
+        // a leader which just took over may not have applied the writes of the previous one yet.
+        if (false == isLeadershipConfirmed()) {
+            throw new IllegalStateException("leadership of node " + this.currentNode.getNodeId()
+                + " could not be confirmed");
+        }
+        final VersionedEntry updatedEntry;
+        final CompletableFuture<List<Boolean>> result;
+        synchronized (writeLock(key)) {
+            final VersionedEntry currentEntry = getLatestEntry(key);
+            updatedEntry = update.apply(currentEntry, this.multiVersionKeyValueStore.nextVersion());
+            if (updatedEntry == currentEntry) {
+                return currentEntry;
+            }
+            result = proposeToCluster(Collections.singletonList(updatedEntry));
+        }
+        awaitAcknowledgement(result, Collections.singletonList(updatedEntry));
+        return (updatedEntry.getValue() == null) ? null : updatedEntry;
+    }
+
+    /**
+     * @return : latest entry of the key on the leader, including the writes not applied yet. Null if the key does
+     * not exist.
+     */
+    private VersionedEntry getLatestEntry(final String key) {
+        final VersionedEntry unappliedWrite = this.unappliedWrites.get(key);
+        if (unappliedWrite == null) {
+            return getVersionedEntry(key);
+        }
+        final boolean isExpired = unappliedWrite.getExpiresAtMillis() != ExpiringKeyValueStore.NO_EXPIRY
+            && unappliedWrite.getExpiresAtMillis() <= System.currentTimeMillis();
+        return (unappliedWrite.getValue() == null || isExpired) ? null : unappliedWrite;
+    }
+
+    /**
+     * Compares the local store with every other node of the cluster and repairs the entries which differ. A node
+     * which cannot be reached is repaired with the next run.
+     * @return : number of repaired entries.
+     */
+    public int repairReplicas() {
+        int repairedCount = 0;
+        for (final ClusterNode node : new ArrayList<>(this.clusterManager.getClusterNodes())) {
+            if (node.getNodeId() == this.currentNode.getNodeId()) {
+                continue;
+            }
+            try {
+                repairedCount += this.antiEntropyRepairer.repair(node);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return repairedCount;
+            } catch (final Exception e) {
+                // repaired with the next run. no-op
+            }
+        }
+        return repairedCount;
+    }
+
+    /**
+     * Replays the writes the node missed while it could not be reached.
+     * @return : number of writes applied by the node.
+     */
+    public int replayHints(final ClusterNode node) {
+        try {
+            return this.hintedHandoff.replay(node);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while replaying hints to node: " + node.getNodeId(), e);
+        }
+    }
+
+    /**
+     * Applies the writes this node missed, replayed by the leader. Each of them is skipped if the local entry is
+     * newer.
+     * @param hints : missed writes. A write without a value is a delete.
+     * @return : number of applied writes.
+     */
+    public int applyHints(final List<VersionedEntry> hints) {
+        int appliedCount = 0;
+        for (final VersionedEntry hint : hints) {
+            final boolean applied = (hint.getValue() == null)
+                ? this.multiVersionKeyValueStore.deleteIfOlder(hint.getKey(), hint.getVersion())
+                : this.multiVersionKeyValueStore.repair(hint);
+            if (applied) {
+                this.lastAppliedWritePosition.incrementAndGet();
+                appliedCount++;
+            }
+        }
+        return appliedCount;
+    }
+
+    /**
+     * @return : backlog and replay statistics of the hints kept for the other nodes.
+     */
+    public HintStats getHintStats() {
+        return this.hintedHandoff.getStats();
+    }
+
+    /**
+     * Compares the local store with the given node and repairs the entries which differ, e.g. to catch up a node
+     * which joined the cluster.
+     * @return : number of repaired entries.
+     */
+    public int repairNode(final ClusterNode node) {
+        try {
+            return this.antiEntropyRepairer.repair(node);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while repairing node: " + node.getNodeId(), e);
+        }
+    }
+
+    /**
+     * @param nodes : ids of merkle tree nodes.
+     * @return : hashes of the nodes of the merkle tree of the local store.
+     */
+    public long[] getMerkleTreeHashes(final int[] nodes) {
+        return this.multiVersionKeyValueStore.getMerkleTree().getHashes(nodes);
+    }
+
+    /**
+     * @param leaves : ids of merkle tree leaves.
+     * @return : entries of the local store in the leaves.
+     */
+    public List<VersionedEntry> getMerkleLeafEntries(final int[] leaves) {
+        return this.multiVersionKeyValueStore.getEntries(Arrays.stream(leaves).boxed().collect(Collectors.toSet()));
+    }
+
+    /**
+     * Applies the repairs sent by the leader. Each of them is skipped if the entry was written since the leader
+     * compared it.
+     * @param puts : entries to put, unless the local entry is newer.
+     * @param deletes : entries to delete, with the version they had when they were compared.
+     * @return : number of applied repairs.
+     */
+    public int repairValues(final List<VersionedEntry> puts, final List<VersionedEntry> deletes) {
+        int repairedCount = 0;
+        for (final VersionedEntry entry : puts) {
+            if (this.multiVersionKeyValueStore.repair(entry)) {
+                this.lastAppliedWritePosition.incrementAndGet();
+                repairedCount++;
+            }
+        }
+        for (final VersionedEntry entry : deletes) {
+            if (this.multiVersionKeyValueStore.repairDelete(entry.getKey(), entry.getVersion())) {
+                this.lastAppliedWritePosition.incrementAndGet();
+                repairedCount++;
+            }
+        }
+        return repairedCount;
+    }
+
+    public byte[] getBinaryValue(final String key) {
+        return this.binaryKeyValueStore.get(key);
+    }
+
+    public boolean putBinaryValue(final String key, final byte[] value) {
+        return putValue(BinaryKeyValueStore.toStoredKey(key), BinaryKeyValueStore.encode(value));
+    }
+
+    public boolean deleteBinaryValue(final String key) {
+        return delete(BinaryKeyValueStore.toStoredKey(key));
+    }
+
+    /**
+     * Reads a binary value from every voting node concurrently and returns the value held by a quorum of them, as
+     * soon as the quorum agrees. Nodes which cannot be read from are tolerated while the others can still make a
+     * quorum.
+     * @return : value, null if a quorum of the nodes does not hold the key.
+     * @throws IllegalStateException : if no value is held by a quorum of the nodes.
+     */
+    public byte[] getBinaryValueFromCluster(final String key) {
+        final List<ClusterNode> ownerGroupNodes = getOwnerGroupNodes(BinaryKeyValueStore.toStoredKey(key));
+        if (ownerGroupNodes != null) {
+            return forwardToGroup(ownerGroupNodes, node -> this.dcdbSao.getBinaryValue(node, key));
+        }
+        // byte buffers compare by content. a missing key counts as the null value.
+        final List<ClusterNode> votingNodes = this.clusterManager.getVotingNodes();
+        final ReadQuorum<ByteBuffer, ByteBuffer> readQuorum = new ReadQuorum<>(
+            this.clusterManager.getClusterQuorumSize(), votingNodes.size(), Function.identity());
+        final CompletableFuture<?>[] reads = readFromVotingNodes(votingNodes, readQuorum, node -> {
+            final byte[] value = this.dcdbSao.internalGetBinaryValue(node, key);
+            return (value == null) ? null : ByteBuffer.wrap(value);
+        });
+        final boolean quorumMet = awaitQuorum(readQuorum, key);
+        for (final CompletableFuture<?> read : reads) {
+            read.cancel(false);
+        }
+        if (false == quorumMet) {
+            throw new IllegalStateException("quorum not met for key: " + key);
+        }
+        final ByteBuffer value = readQuorum.getQuorumValue();
+        return (value == null) ? null : value.array();
+    }
+
+    /**
+     * Puts the binary value to the cluster. The write goes through the log like the writes of the string values.
+     */
+    public boolean putBinaryValueToCluster(final String key, final byte[] value) {
+        final String storedKey = BinaryKeyValueStore.toStoredKey(key);
+        final List<ClusterNode> ownerGroupNodes = getOwnerGroupNodes(storedKey);
+        if (ownerGroupNodes != null) {
+            return forwardToGroup(ownerGroupNodes, node -> this.dcdbSao.putBinaryValue(node, key, value));
+        }
+        if (this.isLeader) {
+            final List<VersionedEntry> writes;
+            final CompletableFuture<List<Boolean>> result;
+            synchronized (writeLock(storedKey)) {
+                writes = Collections.singletonList(new VersionedEntry(storedKey, BinaryKeyValueStore.encode(value),
+                    this.multiVersionKeyValueStore.nextVersion(), ExpiringKeyValueStore.NO_EXPIRY));
+                result = proposeToCluster(writes);
+            }
+            return awaitAcknowledgement(result, writes).get(0);
+        } else {
+            // follower just redirects the request to leader.
+            return this.dcdbSao.putBinaryValue(this.getClusterLeader(null), key, value);
+        }
+    }
+
+    /**
+     * Deletes the binary value from the cluster. The write goes through the log like the writes of the string values.
+     */
+    public boolean deleteBinaryValueFromCluster(final String key) {
+        final String storedKey = BinaryKeyValueStore.toStoredKey(key);
+        final List<ClusterNode> ownerGroupNodes = getOwnerGroupNodes(storedKey);
+        if (ownerGroupNodes != null) {
+            return forwardToGroup(ownerGroupNodes, node -> this.dcdbSao.deleteBinaryValue(node, key));
+        }
+        if (this.isLeader) {
+            final List<VersionedEntry> writes;
+            final CompletableFuture<List<Boolean>> result;
+            synchronized (writeLock(storedKey)) {
+                writes = Collections.singletonList(new VersionedEntry(storedKey, null,
+                    this.multiVersionKeyValueStore.nextVersion(), ExpiringKeyValueStore.NO_EXPIRY));
+                result = proposeToCluster(writes);
+            }
+            return awaitAcknowledgement(result, writes).get(0);
+        } else {
+            // follower just redirects the request to leader.
+            return this.dcdbSao.deleteBinaryValue(this.getClusterLeader(null), key);
+        }
+    }
+
+    private Object writeLock(final String key) {
+        return writeLocks[writeStripe(key)];
+    }
+
+    private static int writeStripe(final String key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % WRITE_LOCK_STRIPES;
     }
 
     public long getLastPingTimestampMillis() {
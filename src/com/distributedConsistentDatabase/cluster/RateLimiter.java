@@ -0,0 +1,51 @@
+package com.distributedConsistentDatabase.cluster;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket which paces background work, such as repairs, so that it does not compete with the requests served
+ * in the foreground. Permits are refilled at a fixed rate, and up to one second of unused permits can be saved up.
+ * @author abshukla
+ */
+public class RateLimiter {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final long permitsPerSecond;
+    private double availablePermits;
+    private long lastRefillNanos;
+
+    /**
+     * @param permitsPerSecond : rate at which permits are handed out.
+     */
+    public RateLimiter(final long permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond has to be positive");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.availablePermits = permitsPerSecond;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Blocks until the permits are available. A request for more permits than the bucket holds goes into debt, which
+     * delays the next requests instead.
+     * @param permits : number of permits to take.
+     * @throws InterruptedException : if the thread is interrupted while it waits.
+     */
+    public synchronized void acquire(final int permits) throws InterruptedException {
+        refill();
+        if (availablePermits < Math.min(permits, permitsPerSecond)) {
+            final double missingPermits = Math.min(permits, permitsPerSecond) - availablePermits;
+            TimeUnit.NANOSECONDS.sleep((long) (missingPermits * NANOS_PER_SECOND / permitsPerSecond));
+            refill();
+        }
+        availablePermits -= permits;
+    }
+
+    private void refill() {
+        final long nowNanos = System.nanoTime();
+        availablePermits = Math.min(permitsPerSecond,
+            availablePermits + (double) (nowNanos - lastRefillNanos) * permitsPerSecond / NANOS_PER_SECOND);
+        lastRefillNanos = nowNanos;
+    }
+}
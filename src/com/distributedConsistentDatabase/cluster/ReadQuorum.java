@@ -0,0 +1,136 @@
+package com.distributedConsistentDatabase.cluster;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import com.distributedConsistentDatabase.cluster.pojo.ClusterNode;
+
+/**
+ * Tallies the replies of the nodes a key is read from, so that the reader can return as soon as a quorum of them
+ * agree on a value, or as soon as no value can reach the quorum anymore. The replies are compared by the value they
+ * carry, e.g. by value and version, a missing key counting as the null value. A cluster holds few nodes, so the
+ * tally is kept in small lists.
+ * @param <R> : type of the replies.
+ * @param <V> : type of the values the replies are compared by.
+ * @author abshukla
+ */
+class ReadQuorum<R, V> {
+    private final int quorumSize;
+    private final Function<R, V> valueOf;
+    private int pendingCount;
+
+    // replies received so far.
+    private final List<ClusterNode> nodes;
+    private final List<R> replies;
+
+    // distinct values replied so far, and the number of nodes which replied with each.
+    private final List<V> values;
+    private final int[] counts;
+    private int maxCount;
+
+    private boolean quorumMet;
+    private V quorumValue;
+
+    /**
+     * @param quorumSize : number of agreeing nodes making a quorum.
+     * @param nodeCount : number of nodes the key is read from.
+     * @param valueOf : value a reply is compared by, only called for the replies which are not null.
+     */
+    ReadQuorum(final int quorumSize, final int nodeCount, final Function<R, V> valueOf) {
+        this.quorumSize = quorumSize;
+        this.valueOf = valueOf;
+        this.pendingCount = nodeCount;
+        this.nodes = new ArrayList<>(nodeCount);
+        this.replies = new ArrayList<>(nodeCount);
+        this.values = new ArrayList<>(nodeCount);
+        this.counts = new int[nodeCount];
+    }
+
+    /**
+     * Records the reply of a node.
+     * @param reply : reply of the node, null if it does not hold the key.
+     */
+    synchronized void reply(final ClusterNode node, final R reply) {
+        nodes.add(node);
+        replies.add(reply);
+
+        final V value = (reply == null) ? null : valueOf.apply(reply);
+        int index = 0;
+        while (index < values.size() && false == Objects.equals(values.get(index), value)) {
+            index++;
+        }
+        if (index == values.size()) {
+            values.add(value);
+        }
+        counts[index]++;
+        maxCount = Math.max(maxCount, counts[index]);
+        if (false == quorumMet && counts[index] >= quorumSize) {
+            quorumMet = true;
+            quorumValue = value;
+        }
+        replied();
+    }
+
+    /**
+     * Records a node which could not be read from. It does not fail the read as long as the other nodes can still
+     * make a quorum.
+     */
+    synchronized void failure() {
+        replied();
+    }
+
+    private void replied() {
+        pendingCount--;
+        if (isDecided()) {
+            notifyAll();
+        }
+    }
+
+    private boolean isDecided() {
+        return quorumMet || maxCount + pendingCount < quorumSize;
+    }
+
+    /**
+     * Blocks until a value reaches the quorum, no value can reach it anymore, or the timeout passes, so that a node
+     * which hangs does not hold the read.
+     * @return : true if the quorum is met.
+     */
+    synchronized boolean await(final long timeoutMillis) throws InterruptedException {
+        final long deadlineMillis = System.currentTimeMillis() + timeoutMillis;
+        long remainingMillis = timeoutMillis;
+        while (false == isDecided() && remainingMillis > 0) {
+            wait(remainingMillis);
+            remainingMillis = deadlineMillis - System.currentTimeMillis();
+        }
+        return quorumMet;
+    }
+
+    /**
+     * @return : value held by the quorum, null for a missing key.
+     */
+    synchronized V getQuorumValue() {
+        return quorumValue;
+    }
+
+    /**
+     * @return : true if the nodes replied with more than one value.
+     */
+    synchronized boolean hasDisagreement() {
+        return values.size() > 1;
+    }
+
+    /**
+     * @return : reply of every node, null if the node does not hold the key.
+     */
+    synchronized Map<ClusterNode, R> getReplies() {
+        final Map<ClusterNode, R> nodeReplies = new HashMap<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            nodeReplies.put(nodes.get(i), replies.get(i));
+        }
+        return nodeReplies;
+    }
+}
@@ -0,0 +1,274 @@
+package com.distributedConsistentDatabase.cluster.hint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+
+/**
+ * Bounded, on disk queue of the writes a single replica missed. A hint is a {@link VersionedEntry}; one without a
+ * value is a delete. Hints are appended to an active file. Replay renames the active file to a replay file and reads
+ * it in batches, so new hints keep being appended while it runs, and the replay file is removed once every batch
+ * was acknowledged.
+ * On disk layout: [int bodyLength][long crc32][body], where the body is [int keyLength][key][int valueLength][value]
+ * [long version][long expiresAtMillis] and a value length of -1 represents a delete. A torn record at the end of a
+ * file, left by a crash, is ignored.
+ * @author abshukla
+ */
+public class HintLog {
+    private static final String ACTIVE_SUFFIX = ".hints";
+    private static final String REPLAY_SUFFIX = ".hints.replaying";
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+    private static final int NO_VALUE = -1;
+
+    private final File activeFile;
+    private final File replayFile;
+    private final long maxHints;
+    private DataOutputStream activeOutput;
+    private long activeCount;
+    private long replayCount;
+    // position in the replay file of the first hint which was not acknowledged.
+    private long replayOffset;
+
+    /**
+     * Opens the hints of the replica, including the ones left over from before a restart.
+     * @param directory : directory holding the hint files.
+     * @param nodeId : id of the replica the hints are for.
+     * @param maxHints : maximum number of hints held. Further hints are rejected.
+     */
+    public HintLog(final File directory, final int nodeId, final long maxHints) {
+        this.activeFile = new File(directory, nodeId + ACTIVE_SUFFIX);
+        this.replayFile = new File(directory, nodeId + REPLAY_SUFFIX);
+        this.maxHints = maxHints;
+        this.activeCount = countHints(activeFile);
+        this.replayCount = countHints(replayFile);
+        this.replayOffset = 0L;
+    }
+
+    /**
+     * Appends a hint.
+     * @return : true if the hint was stored, false if the log is full.
+     */
+    public synchronized boolean append(final VersionedEntry hint) {
+        if (size() >= maxHints) {
+            return false;
+        }
+        try {
+            if (activeOutput == null) {
+                activeFile.getParentFile().mkdirs();
+                activeOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(activeFile, true)));
+            }
+            final ByteBuffer body = encode(hint);
+            final CRC32 checksum = new CRC32();
+            checksum.update(body.array(), 0, body.limit());
+            activeOutput.writeInt(body.limit());
+            activeOutput.writeLong(checksum.getValue());
+            activeOutput.write(body.array(), 0, body.limit());
+            activeOutput.flush();
+            activeCount++;
+            return true;
+        } catch (final IOException e) {
+            throw new IllegalStateException("unable to append hint to " + activeFile, e);
+        }
+    }
+
+    /**
+     * Reads the next hints to replay, without removing them.
+     * @param maxCount : maximum number of hints to read.
+     * @return : next hints, empty if there are none.
+     */
+    public synchronized HintBatch peek(final int maxCount) {
+        if (replayCount == 0) {
+            if (activeCount == 0) {
+                return new HintBatch(new ArrayList<>(), replayOffset);
+            }
+            rotate();
+        }
+        final List<VersionedEntry> hints = new ArrayList<>();
+        long offset = replayOffset;
+        try (FileInputStream fileInput = new FileInputStream(replayFile)) {
+            fileInput.getChannel().position(replayOffset);
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(fileInput));
+            while (hints.size() < maxCount && hints.size() < replayCount) {
+                final VersionedEntry hint = readHint(input);
+                if (hint == null) {
+                    break;
+                }
+                hints.add(hint);
+                offset += HEADER_SIZE + encodedLength(hint);
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException("unable to read hints from " + replayFile, e);
+        }
+        return new HintBatch(hints, offset);
+    }
+
+    /**
+     * Removes the hints of a batch returned by {@link #peek(int)}, once they were replayed.
+     */
+    public synchronized void acknowledge(final HintBatch batch) {
+        replayOffset = batch.getEndOffset();
+        replayCount -= batch.getHints().size();
+        if (replayCount <= 0) {
+            replayCount = 0;
+            replayOffset = 0L;
+            replayFile.delete();
+        }
+    }
+
+    /**
+     * @return : number of hints held.
+     */
+    public synchronized long size() {
+        return activeCount + replayCount;
+    }
+
+    /**
+     * Drops every hint, e.g. once the replica left the cluster.
+     */
+    public synchronized void clear() {
+        closeActiveOutput();
+        activeFile.delete();
+        replayFile.delete();
+        activeCount = 0;
+        replayCount = 0;
+        replayOffset = 0L;
+    }
+
+    private void rotate() {
+        closeActiveOutput();
+        if (false == activeFile.renameTo(replayFile)) {
+            throw new IllegalStateException("unable to rename " + activeFile + " to " + replayFile);
+        }
+        replayCount = activeCount;
+        replayOffset = 0L;
+        activeCount = 0;
+    }
+
+    private void closeActiveOutput() {
+        if (activeOutput == null) {
+            return;
+        }
+        try {
+            activeOutput.close();
+        } catch (final IOException e) {
+            // every hint was flushed when it was appended. no-op
+        }
+        activeOutput = null;
+    }
+
+    private static long countHints(final File file) {
+        if (false == file.isFile()) {
+            return 0L;
+        }
+        long count = 0;
+        try (InputStream fileInput = new FileInputStream(file)) {
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(fileInput));
+            while (readHint(input) != null) {
+                count++;
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException("unable to read hints from " + file, e);
+        }
+        return count;
+    }
+
+    /**
+     * @return : next hint, null at the end of the file or at a torn record.
+     */
+    private static VersionedEntry readHint(final DataInputStream input) throws IOException {
+        final byte[] body;
+        final long storedChecksum;
+        try {
+            final int bodyLength = input.readInt();
+            storedChecksum = input.readLong();
+            if (bodyLength < 0) {
+                return null;
+            }
+            body = new byte[bodyLength];
+            input.readFully(body);
+        } catch (final EOFException e) {
+            return null;
+        }
+        final CRC32 checksum = new CRC32();
+        checksum.update(body);
+        if (checksum.getValue() != storedChecksum) {
+            return null;
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(body);
+        final String key = readString(buffer);
+        final String value = readString(buffer);
+        return new VersionedEntry(key, value, buffer.getLong(), buffer.getLong());
+    }
+
+    private static ByteBuffer encode(final VersionedEntry hint) {
+        final byte[] keyBytes = hint.getKey().getBytes(StandardCharsets.UTF_8);
+        final byte[] valueBytes = (hint.getValue() == null) ? null : hint.getValue().getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer body = ByteBuffer.allocate(encodedLength(keyBytes, valueBytes));
+        body.putInt(keyBytes.length);
+        body.put(keyBytes);
+        if (valueBytes == null) {
+            body.putInt(NO_VALUE);
+        } else {
+            body.putInt(valueBytes.length);
+            body.put(valueBytes);
+        }
+        body.putLong(hint.getVersion());
+        body.putLong(hint.getExpiresAtMillis());
+        body.flip();
+        return body;
+    }
+
+    private static int encodedLength(final VersionedEntry hint) {
+        return encodedLength(hint.getKey().getBytes(StandardCharsets.UTF_8),
+            (hint.getValue() == null) ? null : hint.getValue().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int encodedLength(final byte[] keyBytes, final byte[] valueBytes) {
+        return 2 * Integer.BYTES + keyBytes.length + ((valueBytes == null) ? 0 : valueBytes.length) + 2 * Long.BYTES;
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length == NO_VALUE) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Hints read by {@link HintLog#peek(int)}, with the position in the replay file following them.
+     */
+    public static class HintBatch {
+        private final List<VersionedEntry> hints;
+        private final long endOffset;
+
+        private HintBatch(final List<VersionedEntry> hints, final long endOffset) {
+            this.hints = hints;
+            this.endOffset = endOffset;
+        }
+
+        public List<VersionedEntry> getHints() {
+            return hints;
+        }
+
+        private long getEndOffset() {
+            return endOffset;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.distributedConsistentDatabase.cluster.hint;
+
+import java.util.Map;
+
+/**
+ * Point in time statistics of the hinted handoff of a node.
+ * @author abshukla
+ */
+public class HintStats {
+    private final Map<Integer, Long> backlogByNode;
+    private final long hintedCount;
+    private final long droppedCount;
+    private final long replayedCount;
+    private final double lastReplayRatePerSecond;
+
+    public HintStats(final Map<Integer, Long> backlogByNode, final long hintedCount, final long droppedCount,
+            final long replayedCount, final double lastReplayRatePerSecond) {
+        this.backlogByNode = backlogByNode;
+        this.hintedCount = hintedCount;
+        this.droppedCount = droppedCount;
+        this.replayedCount = replayedCount;
+        this.lastReplayRatePerSecond = lastReplayRatePerSecond;
+    }
+
+    /**
+     * @return : number of hints waiting to be replayed, by id of the node they are for.
+     */
+    public Map<Integer, Long> getBacklogByNode() {
+        return backlogByNode;
+    }
+
+    /**
+     * @return : number of hints waiting to be replayed, over every node.
+     */
+    public long getBacklog() {
+        return backlogByNode.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    public long getHintedCount() {
+        return hintedCount;
+    }
+
+    /**
+     * @return : number of hints which were rejected because the queue of their node was full. Those writes are
+     *         left to the anti-entropy repair.
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    public long getReplayedCount() {
+        return replayedCount;
+    }
+
+    /**
+     * @return : hints replayed per second by the last replay, 0 before the first one.
+     */
+    public double getLastReplayRatePerSecond() {
+        return lastReplayRatePerSecond;
+    }
+}
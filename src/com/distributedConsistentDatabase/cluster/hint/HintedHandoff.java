@@ -0,0 +1,168 @@
+package com.distributedConsistentDatabase.cluster.hint;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.distributedConsistentDatabase.cluster.RateLimiter;
+import com.distributedConsistentDatabase.cluster.pojo.ClusterNode;
+import com.distributedConsistentDatabase.dataStore.MultiVersionKeyValueStore;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedValue;
+import com.distributedConsistentDatabase.sao.DistributedConsistentDatabaseSAO;
+
+/**
+ * Keeps the writes a replica missed, e.g. during a garbage collection pause or a restart, and replays them once it
+ * is reachable again, so that a short outage does not leave the replica to a full anti-entropy repair. Every replica
+ * has its own bounded {@link HintLog} on disk. Replays are sent in batches and paced by a {@link RateLimiter}.
+ * A hint is only replayed while it still is the latest write of its key on the local store: a newer write of the key
+ * was replicated or hinted itself, and replaying the older one could resurrect a deleted entry. The replica applies a
+ * hint unless it holds a newer version of the key.
+ * @author abshukla
+ */
+public class HintedHandoff {
+    private static final int HINTS_PER_REQUEST = 256;
+
+    private final MultiVersionKeyValueStore keyValueStore;
+    private final DistributedConsistentDatabaseSAO dcdbSao;
+    private final RateLimiter rateLimiter;
+    private final File directory;
+    private final long maxHintsPerNode;
+    private final Map<Integer, HintLog> hintLogs;
+    private final Map<Integer, Object> replayLocks;
+    private final AtomicLong hintedCount;
+    private final AtomicLong droppedCount;
+    private final AtomicLong replayedCount;
+    private volatile double lastReplayRatePerSecond;
+
+    /**
+     * @param keyValueStore : local store.
+     * @param dcdbSao : SAO to reach the replicas.
+     * @param rateLimiter : limiter taking a permit per replayed hint.
+     * @param directory : directory holding the hint files. Hints left in it by a previous run are replayed too.
+     * @param maxHintsPerNode : maximum number of hints held for a replica.
+     */
+    public HintedHandoff(final MultiVersionKeyValueStore keyValueStore, final DistributedConsistentDatabaseSAO dcdbSao,
+            final RateLimiter rateLimiter, final File directory, final long maxHintsPerNode) {
+        this.keyValueStore = keyValueStore;
+        this.dcdbSao = dcdbSao;
+        this.rateLimiter = rateLimiter;
+        this.directory = directory;
+        this.maxHintsPerNode = maxHintsPerNode;
+        this.hintLogs = new ConcurrentHashMap<>();
+        this.replayLocks = new ConcurrentHashMap<>();
+        this.hintedCount = new AtomicLong(0);
+        this.droppedCount = new AtomicLong(0);
+        this.replayedCount = new AtomicLong(0);
+        final File[] hintFiles = directory.listFiles();
+        if (hintFiles != null) {
+            for (final File hintFile : hintFiles) {
+                final String name = hintFile.getName();
+                if (name.matches("\\d+\\.hints(\\.replaying)?")) {
+                    hintLog(Integer.parseInt(name.substring(0, name.indexOf('.'))));
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores a write the replica missed.
+     * @param node : replica which missed the write.
+     * @param hint : written entry, without a value for a delete.
+     * @return : true if the hint was stored, false if the queue of the replica is full.
+     */
+    public boolean hint(final ClusterNode node, final VersionedEntry hint) {
+        if (hintLog(node.getNodeId()).append(hint)) {
+            hintedCount.incrementAndGet();
+            return true;
+        }
+        droppedCount.incrementAndGet();
+        return false;
+    }
+
+    public boolean hasHints(final ClusterNode node) {
+        final HintLog hintLog = hintLogs.get(node.getNodeId());
+        return hintLog != null && hintLog.size() > 0;
+    }
+
+    /**
+     * Replays the hints of the replica, batch by batch. A batch is removed once the replica acknowledged it. Replays
+     * to the same replica run one at a time.
+     * @param node : replica to replay the hints to.
+     * @return : number of hints applied by the replica.
+     * @throws InterruptedException : if the thread is interrupted while it waits for the rate limiter.
+     */
+    public int replay(final ClusterNode node) throws InterruptedException {
+        final HintLog hintLog = hintLogs.get(node.getNodeId());
+        if (hintLog == null) {
+            return 0;
+        }
+        // not the lock of the log, which would block the hints appended meanwhile.
+        synchronized (replayLocks.computeIfAbsent(node.getNodeId(), id -> new Object())) {
+            return replay(node, hintLog);
+        }
+    }
+
+    private int replay(final ClusterNode node, final HintLog hintLog) throws InterruptedException {
+        final long startNanos = System.nanoTime();
+        long sentCount = 0;
+        int appliedCount = 0;
+        HintLog.HintBatch batch;
+        while (false == (batch = hintLog.peek(HINTS_PER_REQUEST)).getHints().isEmpty()) {
+            final List<VersionedEntry> latestHints = new ArrayList<>();
+            for (final VersionedEntry hint : batch.getHints()) {
+                if (isLatestWrite(hint)) {
+                    latestHints.add(hint);
+                }
+            }
+            if (false == latestHints.isEmpty()) {
+                rateLimiter.acquire(latestHints.size());
+                appliedCount += dcdbSao.internalReplayHints(node, latestHints);
+            }
+            hintLog.acknowledge(batch);
+            sentCount += batch.getHints().size();
+            replayedCount.addAndGet(batch.getHints().size());
+        }
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        if (sentCount > 0) {
+            lastReplayRatePerSecond = (double) sentCount * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsedNanos, 1L);
+        }
+        return appliedCount;
+    }
+
+    /**
+     * Drops the hints of a replica which left the cluster. It receives the whole dataset when it joins again.
+     */
+    public void discard(final ClusterNode node) {
+        final HintLog hintLog = hintLogs.remove(node.getNodeId());
+        if (hintLog != null) {
+            hintLog.clear();
+        }
+    }
+
+    public HintStats getStats() {
+        final Map<Integer, Long> backlogByNode = new TreeMap<>();
+        for (final Map.Entry<Integer, HintLog> entry : hintLogs.entrySet()) {
+            backlogByNode.put(entry.getKey(), entry.getValue().size());
+        }
+        return new HintStats(backlogByNode, hintedCount.get(), droppedCount.get(), replayedCount.get(),
+            lastReplayRatePerSecond);
+    }
+
+    private boolean isLatestWrite(final VersionedEntry hint) {
+        final VersionedValue current = keyValueStore.getVersioned(hint.getKey());
+        if (hint.getValue() == null) {
+            return current == null || current.getVersion() < hint.getVersion();
+        }
+        return current != null && current.getVersion() == hint.getVersion();
+    }
+
+    private HintLog hintLog(final int nodeId) {
+        return hintLogs.computeIfAbsent(nodeId, id -> new HintLog(directory, id, maxHintsPerNode));
+    }
+}
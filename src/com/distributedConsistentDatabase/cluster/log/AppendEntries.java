@@ -0,0 +1,81 @@
+package com.distributedConsistentDatabase.cluster.log;
+
+import java.util.List;
+
+/**
+ * Batch of log entries the leader sends to a node, with the position they follow and the commit index of the
+ * leader.
+ * @author abshukla
+ */
+public class AppendEntries {
+    private final long term;
+    private final int leaderId;
+    private final long prevLogIndex;
+    private final long prevLogTerm;
+    private final long leaderCommitIndex;
+    private final boolean resetLog;
+    private final boolean pipelined;
+    private final List<LogEntry> entries;
+
+    /**
+     * @param prevLogIndex : index of the entry preceding the batch.
+     * @param prevLogTerm : term of the entry preceding the batch.
+     * @param resetLog : true if the leader no longer holds the entries the node misses. The node restarts its log
+     *        after prevLogIndex and receives the missed writes as hints.
+     * @param pipelined : true if the batch was sent while earlier batches to the node were in flight. A node which
+     *        misses the entries preceding the batch waits for them for a while.
+     * @param entries : entries of the batch, empty for a heartbeat.
+     */
+    public AppendEntries(final long term, final int leaderId, final long prevLogIndex, final long prevLogTerm,
+            final long leaderCommitIndex, final boolean resetLog, final boolean pipelined,
+            final List<LogEntry> entries) {
+        this.term = term;
+        this.leaderId = leaderId;
+        this.prevLogIndex = prevLogIndex;
+        this.prevLogTerm = prevLogTerm;
+        this.leaderCommitIndex = leaderCommitIndex;
+        this.resetLog = resetLog;
+        this.pipelined = pipelined;
+        this.entries = entries;
+    }
+
+    public long getTerm() {
+        return term;
+    }
+
+    public int getLeaderId() {
+        return leaderId;
+    }
+
+    public long getPrevLogIndex() {
+        return prevLogIndex;
+    }
+
+    public long getPrevLogTerm() {
+        return prevLogTerm;
+    }
+
+    public long getLeaderCommitIndex() {
+        return leaderCommitIndex;
+    }
+
+    public boolean isResetLog() {
+        return resetLog;
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * @return : the batch, marked as sent while earlier batches were in flight.
+     */
+    public AppendEntries pipelined() {
+        return new AppendEntries(term, leaderId, prevLogIndex, prevLogTerm, leaderCommitIndex, resetLog, true,
+            entries);
+    }
+
+    public List<LogEntry> getEntries() {
+        return entries;
+    }
+}
@@ -0,0 +1,42 @@
+package com.distributedConsistentDatabase.cluster.log;
+
+/**
+ * Reply of a node to a batch of log entries.
+ * @author abshukla
+ */
+public class AppendResult {
+    private final long term;
+    private final boolean success;
+    private final long lastIndex;
+    private final long appliedIndex;
+
+    /**
+     * @param term : current term of the node, higher than the one of the batch if its leader is stale.
+     * @param success : true if the node appended the batch.
+     * @param lastIndex : last entry of the log of the node. On a rejection, the last entry which may still match the
+     *        log of the leader.
+     * @param appliedIndex : last entry the node applied to its store.
+     */
+    public AppendResult(final long term, final boolean success, final long lastIndex, final long appliedIndex) {
+        this.term = term;
+        this.success = success;
+        this.lastIndex = lastIndex;
+        this.appliedIndex = appliedIndex;
+    }
+
+    public long getTerm() {
+        return term;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public long getLastIndex() {
+        return lastIndex;
+    }
+
+    public long getAppliedIndex() {
+        return appliedIndex;
+    }
+}
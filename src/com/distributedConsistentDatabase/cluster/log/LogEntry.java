@@ -0,0 +1,38 @@
+package com.distributedConsistentDatabase.cluster.log;
+
+import java.util.List;
+
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+
+/**
+ * Entry of the replicated log: the writes of a client request with the term of the leader which appended them and
+ * their position in the log. The writes of an entry are committed together and applied together.
+ * @author abshukla
+ */
+public class LogEntry {
+    private final long term;
+    private final long index;
+    private final List<VersionedEntry> writes;
+
+    /**
+     * @param writes : writes of the entry, without a value for a delete. Empty for the entry a leader appends when it
+     *        takes over, which commits the entries of the previous terms.
+     */
+    public LogEntry(final long term, final long index, final List<VersionedEntry> writes) {
+        this.term = term;
+        this.index = index;
+        this.writes = writes;
+    }
+
+    public long getTerm() {
+        return term;
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    public List<VersionedEntry> getWrites() {
+        return writes;
+    }
+}
@@ -0,0 +1,680 @@
+package com.distributedConsistentDatabase.cluster.log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.ToLongFunction;
+
+import com.distributedConsistentDatabase.cluster.ClusterManager;
+import com.distributedConsistentDatabase.cluster.hint.HintedHandoff;
+import com.distributedConsistentDatabase.cluster.pojo.ClusterNode;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+import com.distributedConsistentDatabase.sao.DistributedConsistentDatabaseSAO;
+
+/**
+ * Replicates the {@link ReplicatedLog} of the leader to the other nodes of the cluster. The writes of concurrent
+ * clients are appended to the log and sent to every node in batches, with several batches in flight per node, so the
+ * cost of a round trip is shared by many writes. An entry is committed once a quorum of the voting nodes appended
+ * it, and applied to the store of every node once it learns the commit. A write is acknowledged once a quorum of the
+ * voting nodes applied it, so a quorum read which follows it sees it. Learners receive the entries too, but do not
+ * count towards the quorum.
+ * A node which falls behind the head of the log, whose entries were dropped, receives the dropped writes as hints and
+ * restarts its log after them. A joining node, which receives the state of the cluster, starts its log after the
+ * entries the leader applied when the node joined.
+ * Every batch a voting node appends confirms the leadership of the term as of the time it was sent. The leader holds
+ * a lease for a while after the batches a quorum appended were sent, during which no other node takes over, so it can
+ * serve reads from its own store. Without the lease, reads wait for a round of batches a quorum appended; the reads
+ * arriving during a round share the next one.
+ * A new leader commits nothing while a previous leader may still hold its lease: unless the previous leaders told
+ * it they stepped down, it waits until the lease duration passed since a quorum of the voting nodes appended a batch
+ * of its term, after which none of them appends the batches of a previous leader anymore.
+ * @author abshukla
+ */
+public class LogReplicator {
+    private static final int MAX_BATCH_ENTRIES = 512;
+    private static final int MAX_INFLIGHT_BATCHES = 2;
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 500L;
+    private static final long RETRY_INTERVAL_MILLIS = 200L;
+
+    private final ReplicatedLog replicatedLog;
+    private final DistributedConsistentDatabaseSAO dcdbSao;
+    private final ClusterManager clusterManager;
+    private final ClusterNode currentNode;
+    private final ExecutorService executorService;
+    private final HintedHandoff hintedHandoff;
+    // applies a committed entry to the local store and returns the result of the write.
+    private final Function<LogEntry, List<Boolean>> applier;
+    // called with the term of another node when it is later than the one the current node leads.
+    private final LongConsumer stepDownListener;
+    private final long maxRetainedEntries;
+    private final long leaseDurationMillis;
+    private final Map<Integer, FollowerProgress> progressByNodeId;
+    // writes waiting for their acknowledgement, by index.
+    private final NavigableMap<Long, PendingWrite> pendingWrites;
+    // term led by the current node, 0 if it does not lead.
+    private volatile long term;
+    // index of the entry which opened the term, and the time it was opened.
+    private volatile long termStartIndex;
+    private volatile long termStartMillis;
+    // true once no previous leader holds its lease anymore, so that the entries of the term can be committed.
+    private volatile boolean isPreviousLeaseExpired;
+    private long acknowledgedIndex;
+    // numbers the batches in the order they are sent.
+    private final AtomicLong sentBatchCount;
+    // round of batches confirming the leadership for the reads waiting on it, and the reads waiting for the next one.
+    private ReadRound inflightRead;
+    private ReadRound pendingRead;
+
+    /**
+     * @param replicatedLog : log of the current node.
+     * @param dcdbSao : SAO to reach the other nodes.
+     * @param clusterManager : membership of the cluster.
+     * @param currentNode : node of the leader.
+     * @param executorService : executor sending the batches.
+     * @param hintedHandoff : hints of the writes dropped from the log before a node appended them.
+     * @param applier : applies a committed entry to the local store and returns the result of every write.
+     * @param stepDownListener : called with the term of another node when it is later than the led one.
+     * @param maxRetainedEntries : number of entries the log holds for the nodes which fell behind.
+     * @param leaseDurationMillis : time the leadership is held after the batches a quorum appended were sent, 0 to
+     * confirm it for every read. Shorter than the time the other nodes wait for the leader before taking over.
+     */
+    public LogReplicator(final ReplicatedLog replicatedLog, final DistributedConsistentDatabaseSAO dcdbSao,
+            final ClusterManager clusterManager, final ClusterNode currentNode, final ExecutorService executorService,
+            final HintedHandoff hintedHandoff, final Function<LogEntry, List<Boolean>> applier,
+            final LongConsumer stepDownListener, final long maxRetainedEntries, final long leaseDurationMillis) {
+        this.replicatedLog = replicatedLog;
+        this.dcdbSao = dcdbSao;
+        this.clusterManager = clusterManager;
+        this.currentNode = currentNode;
+        this.executorService = executorService;
+        this.hintedHandoff = hintedHandoff;
+        this.applier = applier;
+        this.stepDownListener = stepDownListener;
+        this.maxRetainedEntries = maxRetainedEntries;
+        this.leaseDurationMillis = leaseDurationMillis;
+        this.progressByNodeId = new ConcurrentHashMap<>();
+        this.pendingWrites = new ConcurrentSkipListMap<>();
+        this.term = 0;
+        this.termStartIndex = 0;
+        this.acknowledgedIndex = 0;
+        this.sentBatchCount = new AtomicLong();
+    }
+
+    /**
+     * Takes over the leadership of the cluster. The log is caught up with the most up to date voting node first, so
+     * that the entries it committed are kept, and the term is opened with an entry which commits them. The tails of
+     * a majority of the voting nodes, the current node included, are needed: any majority holds a node of every
+     * quorum which committed an entry.
+     * @throws IllegalStateException : if the current node does not reach a majority of the voting nodes. No term is
+     * opened.
+     */
+    public void lead() {
+        long latestTerm = this.replicatedLog.getCurrentTerm();
+        final long commitIndex = this.replicatedLog.getCommitIndex();
+        final List<ClusterNode> votingNodes = this.clusterManager.getVotingNodes();
+        // leaders the nodes followed, and the ones of them which told they stepped down.
+        final Set<Integer> previousLeaderIds = new HashSet<>();
+        final Set<Integer> steppedDownLeaderIds = new HashSet<>();
+        previousLeaderIds.add(this.replicatedLog.getLeaderId());
+        LogTail latestTail = null;
+        int tailCount = 1;
+        for (final ClusterNode node : votingNodes) {
+            if (node.getNodeId() == this.currentNode.getNodeId()) {
+                continue;
+            }
+            try {
+                final LogTail tail = this.dcdbSao.internalGetLogTail(node, commitIndex + 1);
+                tailCount++;
+                previousLeaderIds.add(tail.getLeaderId());
+                if (false == tail.isLeading()) {
+                    steppedDownLeaderIds.add(node.getNodeId());
+                }
+                latestTerm = Math.max(latestTerm, tail.getTerm());
+                if (latestTail == null || tail.getLastTerm() > latestTail.getLastTerm()
+                    || (tail.getLastTerm() == latestTail.getLastTerm()
+                        && tail.getLastIndex() > latestTail.getLastIndex())) {
+                    latestTail = tail;
+                }
+            } catch (final Exception e) {
+                // unreachable node. it catches up from the new leader.
+            }
+        }
+        final int majoritySize = votingNodes.size() / 2 + 1;
+        if (tailCount < majoritySize) {
+            throw new IllegalStateException("node " + this.currentNode.getNodeId() + " reached " + tailCount
+                + " out of " + votingNodes.size() + " voting nodes, a majority of " + majoritySize + " is needed");
+        }
+        if (latestTail != null && (latestTail.getLastTerm() > this.replicatedLog.getLastTerm()
+            || (latestTail.getLastTerm() == this.replicatedLog.getLastTerm()
+                && latestTail.getLastIndex() > this.replicatedLog.getLastIndex()))) {
+            this.replicatedLog.replaceAfter(commitIndex, latestTail.getEntries());
+        }
+
+        previousLeaderIds.remove(ReplicatedLog.NO_LEADER);
+        previousLeaderIds.remove(this.currentNode.getNodeId());
+        previousLeaderIds.removeAll(steppedDownLeaderIds);
+
+        synchronized (this) {
+            final long newTerm = latestTerm + 1;
+            this.replicatedLog.startTerm(newTerm, this.currentNode.getNodeId());
+            this.progressByNodeId.clear();
+            this.acknowledgedIndex = this.replicatedLog.getAppliedIndex();
+            this.termStartMillis = System.currentTimeMillis();
+            this.isPreviousLeaseExpired = previousLeaderIds.isEmpty() || this.leaseDurationMillis <= 0;
+            this.term = newTerm;
+            this.termStartIndex = this.replicatedLog.append(newTerm, Collections.emptyList()).getIndex();
+        }
+        replicate();
+    }
+
+    /**
+     * Stops leading the cluster. Writes waiting for their acknowledgement fail.
+     */
+    public void stepDown() {
+        final List<PendingWrite> failedWrites;
+        final List<ReadRound> failedReads = new ArrayList<>();
+        synchronized (this) {
+            this.term = 0;
+            this.progressByNodeId.clear();
+            failedWrites = new ArrayList<>(this.pendingWrites.values());
+            this.pendingWrites.clear();
+            for (final ReadRound round : new ReadRound[] {this.inflightRead, this.pendingRead}) {
+                if (round != null) {
+                    failedReads.add(round);
+                }
+            }
+            this.inflightRead = null;
+            this.pendingRead = null;
+        }
+        for (final PendingWrite pendingWrite : failedWrites) {
+            pendingWrite.future.completeExceptionally(
+                new IllegalStateException("leadership lost before the write was acknowledged"));
+        }
+        for (final ReadRound round : failedReads) {
+            round.future.completeExceptionally(
+                new IllegalStateException("leadership lost before the read was confirmed"));
+        }
+    }
+
+    public boolean isLeading() {
+        return this.term != 0;
+    }
+
+    /**
+     * @return : true if the current node leads the cluster and holds the lease of its term, so that its store holds
+     * every acknowledged write and no other node acknowledges writes.
+     */
+    public boolean hasLease() {
+        final long leaderTerm = this.term;
+        if (leaderTerm == 0 || this.leaseDurationMillis <= 0
+            || this.replicatedLog.getAppliedIndex() < this.termStartIndex) {
+            return false;
+        }
+        final long leaseExpiryMillis = quorumAppended(progress -> progress.appendedSentMillis) + this.leaseDurationMillis;
+        return System.currentTimeMillis() < leaseExpiryMillis && this.term == leaderTerm;
+    }
+
+    /**
+     * Confirms the leadership of the current node for a read, with the next round of batches a quorum of the voting
+     * nodes replies to.
+     * @return : index of the log the store has to apply before the read, completed once the leadership is confirmed.
+     * @throws IllegalStateException : if the current node does not lead the cluster.
+     */
+    public CompletableFuture<Long> readIndex() {
+        final ReadRound round;
+        synchronized (this) {
+            if (this.term == 0) {
+                throw new IllegalStateException("node " + this.currentNode.getNodeId() + " does not lead the cluster");
+            }
+            if (this.inflightRead != null) {
+                if (this.pendingRead == null) {
+                    this.pendingRead = new ReadRound();
+                }
+                return this.pendingRead.future;
+            }
+            round = new ReadRound();
+            startRead(round);
+        }
+        replicate();
+        return round.future;
+    }
+
+    /**
+     * Starts a round of batches confirming the leadership, as of the current commit index. Guarded by this.
+     */
+    private void startRead(final ReadRound round) {
+        round.readIndex = Math.max(this.replicatedLog.getCommitIndex(), this.termStartIndex);
+        round.lastSentBatch = this.sentBatchCount.get();
+        this.inflightRead = round;
+        // a heartbeat is due for every node.
+        for (final FollowerProgress progress : this.progressByNodeId.values()) {
+            synchronized (progress) {
+                progress.lastSentMillis = 0;
+            }
+        }
+    }
+
+    /**
+     * Completes the reads of the round a quorum of the voting nodes appended, and starts the next round.
+     */
+    private void confirmReads() {
+        final ReadRound confirmedRound;
+        final boolean isNextRoundStarted;
+        synchronized (this) {
+            if (this.inflightRead == null
+                || quorumAppended(progress -> progress.appendedSentBatch) <= this.inflightRead.lastSentBatch) {
+                return;
+            }
+            confirmedRound = this.inflightRead;
+            this.inflightRead = null;
+            isNextRoundStarted = this.pendingRead != null;
+            if (isNextRoundStarted) {
+                startRead(this.pendingRead);
+                this.pendingRead = null;
+            }
+        }
+        confirmedRound.future.complete(confirmedRound.readIndex);
+        if (isNextRoundStarted) {
+            replicate();
+        }
+    }
+
+    /**
+     * @param appended : number, or send time, of the latest batch a node appended.
+     * @return : latest batch a quorum of the voting nodes appended, the current node holding all of them.
+     */
+    private long quorumAppended(final ToLongFunction<FollowerProgress> appended) {
+        final List<ClusterNode> votingNodes = this.clusterManager.getVotingNodes();
+        final int quorumSize = this.clusterManager.getClusterQuorumSize();
+        if (votingNodes.size() < quorumSize) {
+            return 0;
+        }
+        final long[] appendedBatches = new long[votingNodes.size()];
+        for (int i = 0; i < appendedBatches.length; i++) {
+            final ClusterNode node = votingNodes.get(i);
+            if (node.getNodeId() == this.currentNode.getNodeId()) {
+                appendedBatches[i] = Long.MAX_VALUE;
+            } else {
+                final FollowerProgress progress = progress(node);
+                synchronized (progress) {
+                    appendedBatches[i] = appended.applyAsLong(progress);
+                }
+            }
+        }
+        Arrays.sort(appendedBatches);
+        return appendedBatches[appendedBatches.length - quorumSize];
+    }
+
+    /**
+     * Appends the writes of a request to the log, as a single entry, and replicates it.
+     * @param writes : writes, without a value for a delete.
+     * @return : result of every write on the leader, completed once a quorum of the voting nodes applied them.
+     * @throws IllegalStateException : if the current node does not lead the cluster.
+     */
+    public CompletableFuture<List<Boolean>> propose(final List<VersionedEntry> writes) {
+        final PendingWrite pendingWrite = new PendingWrite();
+        synchronized (this) {
+            if (this.term == 0) {
+                throw new IllegalStateException("node " + this.currentNode.getNodeId() + " does not lead the cluster");
+            }
+            final LogEntry entry = this.replicatedLog.append(this.term, writes);
+            this.pendingWrites.put(entry.getIndex(), pendingWrite);
+        }
+        replicate();
+        return pendingWrite.future;
+    }
+
+    /**
+     * Sends the pending entries to every node, and a heartbeat to the nodes which did not hear from the leader for a
+     * while. Drops the entries every node appended, and the entries over the retained ones, from the head of the log.
+     */
+    public void replicate() {
+        if (this.term == 0) {
+            return;
+        }
+        final List<ClusterNode> nodes = this.clusterManager.getClusterNodes();
+        for (final ClusterNode node : nodes) {
+            if (node.getNodeId() != this.currentNode.getNodeId()) {
+                replicate(progress(node));
+            }
+        }
+        // single node clusters commit on their own.
+        advanceCommitIndex();
+    }
+
+    /**
+     * Drops the entries every node appended, and the entries over the retained ones, from the head of the log. The
+     * dropped entries a node did not append yet are hinted for it.
+     */
+    public void compact() {
+        if (this.term == 0) {
+            return;
+        }
+        final List<ClusterNode> nodes = this.clusterManager.getClusterNodes();
+        this.progressByNodeId.keySet().removeIf(nodeId -> nodes.stream().noneMatch(node -> node.getNodeId() == nodeId));
+        long compactIndex = this.replicatedLog.getAppliedIndex();
+        for (final FollowerProgress progress : this.progressByNodeId.values()) {
+            synchronized (progress) {
+                compactIndex = Math.min(compactIndex, progress.matchIndex);
+            }
+        }
+        compactIndex = Math.max(compactIndex, this.replicatedLog.getLastIndex() - this.maxRetainedEntries);
+        final List<LogEntry> droppedEntries = this.replicatedLog.compact(compactIndex);
+        for (final FollowerProgress progress : this.progressByNodeId.values()) {
+            final long matchIndex;
+            synchronized (progress) {
+                matchIndex = progress.matchIndex;
+            }
+            for (final LogEntry entry : droppedEntries) {
+                if (entry.getIndex() > matchIndex) {
+                    for (final VersionedEntry write : entry.getWrites()) {
+                        this.hintedHandoff.hint(progress.node, write);
+                    }
+                }
+            }
+        }
+    }
+
+    private FollowerProgress progress(final ClusterNode node) {
+        return this.progressByNodeId.computeIfAbsent(node.getNodeId(),
+            nodeId -> new FollowerProgress(node, this.replicatedLog.getLastIndex() + 1,
+                this.clusterManager.isLearner(node) ? this.replicatedLog.getAppliedIndex() + 1 : 0));
+    }
+
+    /**
+     * Sends the next batches to a node, as long as it has fewer batches in flight than allowed.
+     */
+    private void replicate(final FollowerProgress progress) {
+        while (true) {
+            final AppendEntries batch;
+            final long epoch;
+            final long sentMillis;
+            final long sentBatch;
+            synchronized (progress) {
+                final long leaderTerm = this.term;
+                final long nowMillis = System.currentTimeMillis();
+                // a single batch probes the log of the node until it is known to match.
+                final int maxInflightBatches = progress.isMatching ? MAX_INFLIGHT_BATCHES : 1;
+                if (leaderTerm == 0 || progress.inflightBatches >= maxInflightBatches
+                    || nowMillis < progress.retryAtMillis) {
+                    return;
+                }
+                final boolean hasEntries = progress.nextIndex <= this.replicatedLog.getLastIndex();
+                // the batches in flight carry the commit to the node once they complete.
+                final boolean hasCommit = progress.sentCommitIndex < this.replicatedLog.getCommitIndex()
+                    && progress.inflightBatches == 0;
+                final boolean isHeartbeatDue = nowMillis - progress.lastSentMillis >= HEARTBEAT_INTERVAL_MILLIS;
+                if (false == hasEntries && false == hasCommit && false == isHeartbeatDue) {
+                    return;
+                }
+                final AppendEntries nextBatch = this.replicatedLog.getBatch(leaderTerm,
+                    this.currentNode.getNodeId(), progress.nextIndex, MAX_BATCH_ENTRIES);
+                if (nextBatch == null) {
+                    // the node misses entries which were dropped. they were hinted for it.
+                    batch = this.replicatedLog.getResetBatch(leaderTerm, this.currentNode.getNodeId(),
+                        this.replicatedLog.getFirstIndex(), MAX_BATCH_ENTRIES);
+                } else if (progress.matchIndex == 0 && progress.joinIndex > 0) {
+                    // the state of the cluster is transferred to a joining node, it follows the entries applied since.
+                    batch = this.replicatedLog.getResetBatch(leaderTerm, this.currentNode.getNodeId(),
+                        progress.joinIndex, MAX_BATCH_ENTRIES);
+                } else {
+                    batch = (progress.inflightBatches > 0) ? nextBatch.pipelined() : nextBatch;
+                }
+                progress.nextIndex = batch.getPrevLogIndex() + batch.getEntries().size() + 1;
+                progress.sentCommitIndex = batch.getLeaderCommitIndex();
+                progress.lastSentMillis = nowMillis;
+                progress.inflightBatches++;
+                epoch = progress.epoch;
+                sentMillis = nowMillis;
+                sentBatch = this.sentBatchCount.incrementAndGet();
+            }
+            try {
+                this.executorService.execute(() -> send(progress, batch, epoch, sentMillis, sentBatch));
+            } catch (final RejectedExecutionException e) {
+                // the node is shut down, the batch is not sent.
+                synchronized (progress) {
+                    progress.inflightBatches--;
+                }
+                return;
+            }
+            if (batch.getEntries().isEmpty()) {
+                return;
+            }
+        }
+    }
+
+    private void send(final FollowerProgress progress, final AppendEntries batch, final long epoch,
+            final long sentMillis, final long sentBatch) {
+        AppendResult result = null;
+        try {
+            result = this.dcdbSao.internalAppendEntries(progress.node, batch);
+        } catch (final Exception e) {
+            // retried after a while. no-op
+        }
+        if (result != null && result.getTerm() > batch.getTerm()) {
+            synchronized (progress) {
+                progress.inflightBatches--;
+            }
+            if (batch.getTerm() == this.term) {
+                this.stepDownListener.accept(result.getTerm());
+            }
+            return;
+        }
+
+        synchronized (progress) {
+            progress.inflightBatches--;
+            if (result != null && result.isSuccess()) {
+                if (progress.termAppendedMillis == 0) {
+                    progress.termAppendedMillis = System.currentTimeMillis();
+                }
+                // the node followed the term when it appended the batch.
+                progress.appendedSentMillis = Math.max(progress.appendedSentMillis, sentMillis);
+                progress.appendedSentBatch = Math.max(progress.appendedSentBatch, sentBatch);
+            }
+            if (result == null) {
+                // the batches in flight fail as well. the entries are sent again from the last appended one.
+                if (epoch == progress.epoch) {
+                    progress.epoch++;
+                    progress.isMatching = false;
+                    progress.nextIndex = progress.matchIndex + 1;
+                    progress.retryAtMillis = System.currentTimeMillis() + RETRY_INTERVAL_MILLIS;
+                }
+            } else if (result.isSuccess()) {
+                progress.isMatching = progress.isMatching || epoch == progress.epoch;
+                progress.matchIndex = Math.max(progress.matchIndex, result.getLastIndex());
+                progress.appliedIndex = Math.max(progress.appliedIndex, result.getAppliedIndex());
+            } else if (epoch == progress.epoch) {
+                progress.epoch++;
+                progress.isMatching = false;
+                progress.nextIndex = Math.max(progress.matchIndex, Math.min(result.getLastIndex(),
+                    batch.getPrevLogIndex() - 1)) + 1;
+                progress.appliedIndex = Math.max(progress.appliedIndex, result.getAppliedIndex());
+            }
+        }
+        if (result != null && result.isSuccess()) {
+            advanceCommitIndex();
+            confirmReads();
+        }
+        replicate(progress);
+    }
+
+    /**
+     * Commits the entries a quorum of the voting nodes appended, applies them, and acknowledges the writes a quorum
+     * of the voting nodes applied.
+     */
+    private void advanceCommitIndex() {
+        final long leaderTerm = this.term;
+        if (leaderTerm == 0) {
+            return;
+        }
+        final List<ClusterNode> votingNodes = this.clusterManager.getVotingNodes();
+        final int quorumSize = this.clusterManager.getClusterQuorumSize();
+        if (votingNodes.size() < quorumSize) {
+            return;
+        }
+        final long[] matchIndexes = new long[votingNodes.size()];
+        for (int i = 0; i < matchIndexes.length; i++) {
+            final ClusterNode node = votingNodes.get(i);
+            if (node.getNodeId() == this.currentNode.getNodeId()) {
+                matchIndexes[i] = this.replicatedLog.getLastIndex();
+            } else {
+                final FollowerProgress progress = progress(node);
+                synchronized (progress) {
+                    matchIndexes[i] = progress.matchIndex;
+                }
+            }
+        }
+        Arrays.sort(matchIndexes);
+        final long quorumIndex = matchIndexes[matchIndexes.length - quorumSize];
+        // entries of the previous terms are committed by the entries of the current one.
+        if (isPreviousLeaseExpired(votingNodes, quorumSize) && this.replicatedLog.termAt(quorumIndex) == leaderTerm
+            && this.replicatedLog.commit(quorumIndex)) {
+            this.replicatedLog.applyCommitted(entry -> {
+                final List<Boolean> result = this.applier.apply(entry);
+                final PendingWrite pendingWrite = this.pendingWrites.get(entry.getIndex());
+                if (pendingWrite != null) {
+                    pendingWrite.result = result;
+                }
+            });
+            // the followers learn the commit with the next batch.
+            for (final FollowerProgress progress : this.progressByNodeId.values()) {
+                replicate(progress);
+            }
+        }
+        acknowledge(votingNodes, quorumSize);
+    }
+
+    /**
+     * The nodes of a quorum which appended a batch of the term no longer append the batches of a previous leader, and
+     * any quorum a previous leader counts its lease with holds one of them. So the lease of a previous leader expired
+     * once the lease duration passed since a quorum appended a batch of the term.
+     * @return : true if no previous leader holds its lease anymore.
+     */
+    private boolean isPreviousLeaseExpired(final List<ClusterNode> votingNodes, final int quorumSize) {
+        if (this.isPreviousLeaseExpired) {
+            return true;
+        }
+        final long[] termAppendedMillis = new long[votingNodes.size()];
+        for (int i = 0; i < termAppendedMillis.length; i++) {
+            final ClusterNode node = votingNodes.get(i);
+            if (node.getNodeId() == this.currentNode.getNodeId()) {
+                termAppendedMillis[i] = this.termStartMillis;
+            } else {
+                final FollowerProgress progress = progress(node);
+                synchronized (progress) {
+                    termAppendedMillis[i] = (progress.termAppendedMillis == 0) ? Long.MAX_VALUE
+                        : progress.termAppendedMillis;
+                }
+            }
+        }
+        Arrays.sort(termAppendedMillis);
+        final long quorumAppendedMillis = termAppendedMillis[quorumSize - 1];
+        if (quorumAppendedMillis == Long.MAX_VALUE
+            || System.currentTimeMillis() < quorumAppendedMillis + this.leaseDurationMillis) {
+            return false;
+        }
+        this.isPreviousLeaseExpired = true;
+        return true;
+    }
+
+    private void acknowledge(final List<ClusterNode> votingNodes, final int quorumSize) {
+        final long[] appliedIndexes = new long[votingNodes.size()];
+        for (int i = 0; i < appliedIndexes.length; i++) {
+            final ClusterNode node = votingNodes.get(i);
+            if (node.getNodeId() == this.currentNode.getNodeId()) {
+                appliedIndexes[i] = this.replicatedLog.getAppliedIndex();
+            } else {
+                final FollowerProgress progress = progress(node);
+                synchronized (progress) {
+                    appliedIndexes[i] = progress.appliedIndex;
+                }
+            }
+        }
+        Arrays.sort(appliedIndexes);
+        // the result of a write is known once the leader applied it.
+        final long quorumAppliedIndex = Math.min(appliedIndexes[appliedIndexes.length - quorumSize],
+            this.replicatedLog.getAppliedIndex());
+        final List<PendingWrite> acknowledgedWrites;
+        synchronized (this) {
+            if (quorumAppliedIndex <= this.acknowledgedIndex) {
+                return;
+            }
+            this.acknowledgedIndex = quorumAppliedIndex;
+            final NavigableMap<Long, PendingWrite> headWrites = this.pendingWrites.headMap(quorumAppliedIndex, true);
+            acknowledgedWrites = new ArrayList<>(headWrites.values());
+            headWrites.clear();
+        }
+        for (final PendingWrite pendingWrite : acknowledgedWrites) {
+            pendingWrite.future.complete(pendingWrite.result);
+        }
+    }
+
+    /**
+     * Replication state of a node, guarded by itself.
+     */
+    private static class FollowerProgress {
+        private final ClusterNode node;
+        // next entry to send.
+        private long nextIndex;
+        // last entry the node is known to have appended.
+        private long matchIndex;
+        // last entry the node is known to have applied.
+        private long appliedIndex;
+        // commit index sent with the last batch.
+        private long sentCommitIndex;
+        private long lastSentMillis;
+        // time the latest batch the node appended was sent, and its number.
+        private long appendedSentMillis;
+        // time the first batch of the term the node appended was acknowledged, 0 if none.
+        private long termAppendedMillis;
+        private long appendedSentBatch;
+        private long retryAtMillis;
+        private int inflightBatches;
+        // true once the log of the node is known to match the one of the leader, so that batches can be pipelined.
+        private boolean isMatching;
+        // incremented whenever the batches in flight are void, so that their replies do not rewind the node again.
+        private long epoch;
+        // first entry a joining node follows, the state of the cluster transferred to it holds the ones before. 0 for
+        // the other nodes.
+        private final long joinIndex;
+
+        private FollowerProgress(final ClusterNode node, final long nextIndex, final long joinIndex) {
+            this.node = node;
+            this.nextIndex = nextIndex;
+            this.joinIndex = joinIndex;
+        }
+    }
+
+    /**
+     * Reads waiting for the leadership to be confirmed.
+     */
+    private static class ReadRound {
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+        // commit index when the round started.
+        private long readIndex;
+        // last batch sent before the round started, the round is confirmed by the batches sent after it.
+        private long lastSentBatch;
+    }
+
+    /**
+     * Write waiting for its acknowledgement.
+     */
+    private static class PendingWrite {
+        private final CompletableFuture<List<Boolean>> future = new CompletableFuture<>();
+        // result of every write on the leader, set once they are applied.
+        private volatile List<Boolean> result;
+    }
+}
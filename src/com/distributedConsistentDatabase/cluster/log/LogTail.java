@@ -0,0 +1,58 @@
+package com.distributedConsistentDatabase.cluster.log;
+
+import java.util.List;
+
+/**
+ * Last entries of the log of a node, which a new leader reads to catch up before it takes over.
+ * @author abshukla
+ */
+public class LogTail {
+    private final long term;
+    private final int leaderId;
+    private final boolean leading;
+    private final long lastIndex;
+    private final long lastTerm;
+    private final List<LogEntry> entries;
+
+    /**
+     * @param term : current term of the node.
+     * @param leaderId : leader of the current term, {@link ReplicatedLog#NO_LEADER} if it is not known.
+     * @param leading : true if the node leads the cluster, so that it may hold the lease of its term.
+     * @param lastIndex : index of the last entry of the log.
+     * @param lastTerm : term of the last entry of the log.
+     * @param entries : entries from the requested index on, empty if the node no longer holds it.
+     */
+    public LogTail(final long term, final int leaderId, final boolean leading, final long lastIndex,
+            final long lastTerm, final List<LogEntry> entries) {
+        this.term = term;
+        this.leaderId = leaderId;
+        this.leading = leading;
+        this.lastIndex = lastIndex;
+        this.lastTerm = lastTerm;
+        this.entries = entries;
+    }
+
+    public long getTerm() {
+        return term;
+    }
+
+    public int getLeaderId() {
+        return leaderId;
+    }
+
+    public boolean isLeading() {
+        return leading;
+    }
+
+    public long getLastIndex() {
+        return lastIndex;
+    }
+
+    public long getLastTerm() {
+        return lastTerm;
+    }
+
+    public List<LogEntry> getEntries() {
+        return entries;
+    }
+}
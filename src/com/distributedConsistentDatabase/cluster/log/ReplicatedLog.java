@@ -0,0 +1,371 @@
+package com.distributedConsistentDatabase.cluster.log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+
+/**
+ * Log of the writes of the cluster, in the order the leader appended them, held in memory by every node. Every entry
+ * carries the term of the leader which appended it. A node accepts a batch of entries only from the leader of its
+ * current term or of a later one, and only if the entry preceding the batch matches its own log, so the logs of
+ * the nodes agree on every entry up to the last matching one. Entries are applied to the store once the leader
+ * committed them, in the order of the log.
+ * Applied entries are dropped from the head of the log once they are no longer needed, the log then starts after
+ * the last dropped entry.
+ * @author abshukla
+ */
+public class ReplicatedLog {
+    public static final int NO_LEADER = -1;
+
+    private long currentTerm;
+    // leader of the current term, the only node the batches of the term are accepted from.
+    private int leaderId;
+    private final List<LogEntry> entries;
+    // index and term of the entry preceding the first entry held.
+    private long baseIndex;
+    private long baseTerm;
+    private long commitIndex;
+    private volatile long appliedIndex;
+    // serializes the application of the committed entries, which happens outside of the lock of the log.
+    private final Object applyLock;
+
+    public ReplicatedLog() {
+        this.currentTerm = 0;
+        this.leaderId = NO_LEADER;
+        this.entries = new ArrayList<>();
+        this.baseIndex = 0;
+        this.baseTerm = 0;
+        this.commitIndex = 0;
+        this.appliedIndex = 0;
+        this.applyLock = new Object();
+    }
+
+    public synchronized long getCurrentTerm() {
+        return currentTerm;
+    }
+
+    /**
+     * @return : leader of the current term, {@link #NO_LEADER} if it is not known.
+     */
+    public synchronized int getLeaderId() {
+        return leaderId;
+    }
+
+    public synchronized long getLastIndex() {
+        return baseIndex + entries.size();
+    }
+
+    public synchronized long getLastTerm() {
+        return entries.isEmpty() ? baseTerm : entries.get(entries.size() - 1).getTerm();
+    }
+
+    /**
+     * @return : index of the first entry held by the log.
+     */
+    public synchronized long getFirstIndex() {
+        return baseIndex + 1;
+    }
+
+    public synchronized long getCommitIndex() {
+        return commitIndex;
+    }
+
+    public long getAppliedIndex() {
+        return appliedIndex;
+    }
+
+    /**
+     * @return : term of the entry, or -1 if the log does not hold it.
+     */
+    public synchronized long termAt(final long index) {
+        if (index == baseIndex) {
+            return baseTerm;
+        }
+        if (index < baseIndex || index > baseIndex + entries.size()) {
+            return -1;
+        }
+        return entries.get((int) (index - baseIndex - 1)).getTerm();
+    }
+
+    /**
+     * Restarts an empty log after the entries a snapshot of the store holds. They count as committed and applied.
+     * @param index : index of the last entry the snapshot holds.
+     * @param term : term of the entry.
+     */
+    public synchronized void restore(final long index, final long term) {
+        if (false == entries.isEmpty() || index < baseIndex) {
+            throw new IllegalStateException("log at " + getLastIndex() + " cannot be restored at " + index);
+        }
+        currentTerm = Math.max(currentTerm, term);
+        baseIndex = index;
+        baseTerm = term;
+        commitIndex = index;
+        appliedIndex = index;
+    }
+
+    /**
+     * Takes over the leadership of a term on the current node.
+     * @param term : term of the leadership, later than the current one.
+     * @param nodeId : id of the current node.
+     * @throws IllegalStateException : if the term is not later than the current one.
+     */
+    public synchronized void startTerm(final long term, final int nodeId) {
+        if (term <= currentTerm) {
+            throw new IllegalStateException("term " + term + " is not later than the current term " + currentTerm);
+        }
+        this.currentTerm = term;
+        this.leaderId = nodeId;
+        notifyAll();
+    }
+
+    /**
+     * Appends the writes of a request as the leader of the term.
+     * @param writes : writes of the entry, empty for the entry which opens the term.
+     * @return : appended entry.
+     * @throws IllegalStateException : if the term is no longer the current one.
+     */
+    public synchronized LogEntry append(final long term, final List<VersionedEntry> writes) {
+        if (term != currentTerm) {
+            throw new IllegalStateException("term " + term + " is no longer the current term " + currentTerm);
+        }
+        final LogEntry entry = new LogEntry(term, getLastIndex() + 1, writes);
+        entries.add(entry);
+        return entry;
+    }
+
+    /**
+     * Builds the next batch for a node, as the leader of the term.
+     * @param fromIndex : index of the first entry of the batch.
+     * @param maxEntries : maximum number of entries of the batch.
+     * @return : batch, or null if the log no longer holds the entry preceding the batch.
+     */
+    public synchronized AppendEntries getBatch(final long term, final int leaderId, final long fromIndex,
+            final int maxEntries) {
+        final long prevLogIndex = fromIndex - 1;
+        if (prevLogIndex < baseIndex) {
+            return null;
+        }
+        final int from = (int) (prevLogIndex - baseIndex);
+        final int to = (int) Math.min(entries.size(), (long) from + maxEntries);
+        final List<LogEntry> batch = (from >= to) ? Collections.emptyList()
+            : new ArrayList<>(entries.subList(from, to));
+        return new AppendEntries(term, leaderId, prevLogIndex, termAt(prevLogIndex), commitIndex, false, false,
+            batch);
+    }
+
+    /**
+     * Builds a batch which restarts the log of a node after an applied entry, for a node which receives the writes up
+     * to the entry otherwise: a node missing entries which were already dropped, or a node the state of the cluster
+     * is transferred to.
+     * @param fromIndex : index of the first entry of the batch, at most one after the applied index.
+     */
+    public synchronized AppendEntries getResetBatch(final long term, final int leaderId, final long fromIndex,
+            final int maxEntries) {
+        final AppendEntries batch = getBatch(term, leaderId, fromIndex, maxEntries);
+        return new AppendEntries(term, leaderId, batch.getPrevLogIndex(), batch.getPrevLogTerm(),
+            batch.getLeaderCommitIndex(), true, false, batch.getEntries());
+    }
+
+    /**
+     * Appends a batch of the leader to the log of a follower. Pipelined batches may arrive out of order, so a
+     * pipelined batch which follows entries not received yet waits for them for a while.
+     * @param batch : batch of the leader.
+     * @param maxWaitMillis : maximum time to wait for the entries preceding the batch.
+     * @return : reply to the leader. The applied index is the one before the batch.
+     * @throws IllegalStateException : if an entry of the batch conflicts with a committed one.
+     */
+    public synchronized AppendResult append(final AppendEntries batch, final long maxWaitMillis)
+            throws InterruptedException {
+        final long term = batch.getTerm();
+        if (term < currentTerm || (term == currentTerm && leaderId != NO_LEADER && leaderId != batch.getLeaderId())) {
+            return new AppendResult(currentTerm, false, getLastIndex(), appliedIndex);
+        }
+        if (term > currentTerm || leaderId == NO_LEADER) {
+            currentTerm = term;
+            leaderId = batch.getLeaderId();
+            notifyAll();
+        }
+
+        final long prevLogIndex = batch.getPrevLogIndex();
+        if (batch.isResetLog() && prevLogIndex > getLastIndex()) {
+            // the missed entries arrive as hints or with the state. the entries up to the batch count as applied.
+            entries.clear();
+            baseIndex = prevLogIndex;
+            baseTerm = batch.getPrevLogTerm();
+            commitIndex = Math.max(commitIndex, prevLogIndex);
+            appliedIndex = Math.max(appliedIndex, prevLogIndex);
+        }
+        final long deadlineMillis = System.currentTimeMillis() + (batch.isPipelined() ? maxWaitMillis : 0L);
+        while (prevLogIndex > getLastIndex() && term == currentTerm) {
+            final long remainingMillis = deadlineMillis - System.currentTimeMillis();
+            if (remainingMillis <= 0) {
+                break;
+            }
+            wait(remainingMillis);
+        }
+        if (term != currentTerm) {
+            return new AppendResult(currentTerm, false, getLastIndex(), appliedIndex);
+        }
+        if (prevLogIndex > getLastIndex()) {
+            return new AppendResult(currentTerm, false, getLastIndex(), appliedIndex);
+        }
+        // entries up to the base index were applied, so they match the log of the leader.
+        if (prevLogIndex > baseIndex && termAt(prevLogIndex) != batch.getPrevLogTerm()) {
+            // every entry of the conflicting term is suspect.
+            final long conflictTerm = termAt(prevLogIndex);
+            long matchIndex = prevLogIndex - 1;
+            while (matchIndex > Math.max(baseIndex, commitIndex) && termAt(matchIndex) == conflictTerm) {
+                matchIndex--;
+            }
+            return new AppendResult(currentTerm, false, matchIndex, appliedIndex);
+        }
+
+        for (final LogEntry entry : batch.getEntries()) {
+            final long index = entry.getIndex();
+            if (index <= baseIndex) {
+                continue;
+            }
+            if (index <= getLastIndex()) {
+                if (termAt(index) == entry.getTerm()) {
+                    continue;
+                }
+                checkNotCommitted(entry);
+                entries.subList((int) (index - baseIndex - 1), entries.size()).clear();
+            }
+            entries.add(entry);
+        }
+        notifyAll();
+        final long lastNewIndex = prevLogIndex + batch.getEntries().size();
+        if (batch.getLeaderCommitIndex() > commitIndex) {
+            commitIndex = Math.max(commitIndex, Math.min(batch.getLeaderCommitIndex(), lastNewIndex));
+        }
+        return new AppendResult(currentTerm, true, lastNewIndex, appliedIndex);
+    }
+
+    /**
+     * Replaces the entries after the index with the ones of a more up to date node, for a leader catching up before
+     * it takes over. Committed entries are kept.
+     * @param entries : entries of the other node, following the index.
+     * @throws IllegalStateException : if an entry of the other node conflicts with a committed one.
+     */
+    public synchronized void replaceAfter(final long index, final List<LogEntry> otherEntries) {
+        for (final LogEntry entry : otherEntries) {
+            if (entry.getIndex() <= baseIndex || entry.getIndex() <= index) {
+                continue;
+            }
+            if (entry.getIndex() <= getLastIndex()) {
+                if (termAt(entry.getIndex()) == entry.getTerm()) {
+                    continue;
+                }
+                checkNotCommitted(entry);
+                entries.subList((int) (entry.getIndex() - baseIndex - 1), entries.size()).clear();
+            }
+            if (entry.getIndex() != getLastIndex() + 1) {
+                return;
+            }
+            entries.add(entry);
+        }
+    }
+
+    /**
+     * Committed entries never conflict with the log of a leader, which holds every one of them. A conflict means the
+     * log of the leader lost committed entries, so the entry is refused rather than skipped.
+     * @throws IllegalStateException : if the entry conflicts with a committed one.
+     */
+    private void checkNotCommitted(final LogEntry entry) {
+        if (entry.getIndex() <= commitIndex) {
+            throw new IllegalStateException("entry " + entry.getIndex() + " of term " + entry.getTerm()
+                + " conflicts with the committed entry of term " + termAt(entry.getIndex()));
+        }
+    }
+
+    /**
+     * @return : entries from the index on, at most maxEntries of them. Empty if the log no longer holds the index.
+     */
+    public synchronized List<LogEntry> getEntries(final long fromIndex, final int maxEntries) {
+        if (fromIndex <= baseIndex || fromIndex > getLastIndex()) {
+            return Collections.emptyList();
+        }
+        final int from = (int) (fromIndex - baseIndex - 1);
+        return new ArrayList<>(entries.subList(from, (int) Math.min(entries.size(), (long) from + maxEntries)));
+    }
+
+    /**
+     * Commits the entries up to the index, as the leader of the term.
+     * @return : true if the commit index moved.
+     */
+    public synchronized boolean commit(final long index) {
+        if (index <= commitIndex || index > getLastIndex()) {
+            return false;
+        }
+        commitIndex = index;
+        return true;
+    }
+
+    /**
+     * Applies the committed entries which were not applied yet, in the order of the log.
+     * @param applier : applies an entry to the store.
+     * @return : number of applied entries.
+     */
+    public int applyCommitted(final Consumer<LogEntry> applier) {
+        synchronized (applyLock) {
+            final List<LogEntry> committedEntries;
+            synchronized (this) {
+                committedEntries = getEntries(appliedIndex + 1, (int) Math.min(Integer.MAX_VALUE,
+                    commitIndex - appliedIndex));
+            }
+            for (final LogEntry entry : committedEntries) {
+                applier.accept(entry);
+                appliedIndex = entry.getIndex();
+            }
+            applyLock.notifyAll();
+            return committedEntries.size();
+        }
+    }
+
+    /**
+     * Waits until the entries up to the index were applied.
+     * @param maxWaitMillis : maximum time to wait.
+     * @return : true if the entries were applied in time.
+     */
+    public boolean awaitApplied(final long index, final long maxWaitMillis) throws InterruptedException {
+        final long deadlineMillis = System.currentTimeMillis() + maxWaitMillis;
+        synchronized (applyLock) {
+            while (appliedIndex < index) {
+                final long remainingMillis = deadlineMillis - System.currentTimeMillis();
+                if (remainingMillis <= 0) {
+                    return false;
+                }
+                applyLock.wait(remainingMillis);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Drops the entries up to the index from the head of the log. Entries which were not applied are kept.
+     * @return : dropped entries.
+     */
+    public synchronized List<LogEntry> compact(final long index) {
+        final long compactIndex = Math.min(index, appliedIndex);
+        if (compactIndex <= baseIndex) {
+            return Collections.emptyList();
+        }
+        final List<LogEntry> headEntries = entries.subList(0, (int) (compactIndex - baseIndex));
+        final List<LogEntry> droppedEntries = new ArrayList<>(headEntries);
+        baseTerm = termAt(compactIndex);
+        headEntries.clear();
+        baseIndex = compactIndex;
+        return droppedEntries;
+    }
+
+    /**
+     * @return : number of entries held by the log.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+}
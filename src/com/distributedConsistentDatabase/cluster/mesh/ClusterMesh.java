@@ -0,0 +1,217 @@
+package com.distributedConsistentDatabase.cluster.mesh;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.distributedConsistentDatabase.cluster.pojo.ClusterNode;
+
+/**
+ * Collection of replica groups which partition the keyspace between them. Every group is a cluster of its own, with
+ * its own leader, log and quorum, and holds only the keys the {@link HashRing} of the mesh assigns to it. Every node
+ * keeps the view of the whole mesh, so any node can send a request to a node of the group owning its key.
+ * The nodes of a group are kept in the order of their ids, so the leader of the group, which has the minimum id, is
+ * the first one while it is up.
+ * The first group of the mesh owns the whole keyspace. The groups which join later own no key until the mesh is
+ * rebalanced: a migration to a target ring streams the keys whose owner changes to their new groups, the groups
+ * handing keys over then stop serving them, and the completion of the migration swaps the ring of the mesh for the
+ * target one.
+ * @author abshukla
+ */
+public class ClusterMesh {
+    public static final int DEFAULT_VIRTUAL_NODES_PER_GROUP = 128;
+
+    private final int virtualNodesPerGroup;
+    // nodes of every group, by group id.
+    private final Map<Integer, List<ClusterNode>> groups;
+    // ring of the groups owning the keys.
+    private volatile HashRing hashRing;
+    // ring the keys are migrated to, null if the mesh is not being rebalanced.
+    private volatile HashRing targetRing;
+    // whether the keys which change owner are being handed over, and are not served by their current owners.
+    private volatile boolean handingOver;
+
+    public ClusterMesh() {
+        this(DEFAULT_VIRTUAL_NODES_PER_GROUP);
+    }
+
+    /**
+     * @param virtualNodesPerGroup : number of virtual nodes of every group on the hash ring.
+     */
+    public ClusterMesh(final int virtualNodesPerGroup) {
+        this(virtualNodesPerGroup, Collections.emptyMap(), Collections.emptySet(), null);
+    }
+
+    /**
+     * Constructor of the copy of a mesh, e.g. the view of the mesh of another node.
+     * @param groups : nodes of every group, by group id.
+     * @param ownerGroupIds : ids of the groups owning the keys.
+     * @param targetGroupIds : ids of the groups the keys are migrated to, null if the mesh is not being rebalanced.
+     */
+    public ClusterMesh(final int virtualNodesPerGroup, final Map<Integer, List<ClusterNode>> groups,
+            final Collection<Integer> ownerGroupIds, final Collection<Integer> targetGroupIds) {
+        this.virtualNodesPerGroup = virtualNodesPerGroup;
+        this.hashRing = new HashRing(ownerGroupIds, virtualNodesPerGroup);
+        this.groups = new TreeMap<>();
+        for (final Map.Entry<Integer, List<ClusterNode>> group : groups.entrySet()) {
+            final List<ClusterNode> groupNodes = new ArrayList<>(group.getValue());
+            groupNodes.sort(Comparator.comparing(ClusterNode::getNodeId));
+            this.groups.put(group.getKey(), Collections.unmodifiableList(groupNodes));
+        }
+        this.targetRing = (targetGroupIds == null) ? null : new HashRing(targetGroupIds, virtualNodesPerGroup);
+    }
+
+    /**
+     * Adds a node to a group of the mesh. The first group of the mesh takes over the whole keyspace, the other
+     * groups own no key until the mesh is rebalanced.
+     */
+    public synchronized void addNode(final int groupId, final ClusterNode node) {
+        final List<ClusterNode> groupNodes = new ArrayList<>(groups.getOrDefault(groupId, Collections.emptyList()));
+        if (groupNodes.contains(node)) {
+            return;
+        }
+        groupNodes.add(node);
+        groupNodes.sort(Comparator.comparing(ClusterNode::getNodeId));
+        if (groups.put(groupId, Collections.unmodifiableList(groupNodes)) == null && groups.size() == 1
+                && hashRing.isEmpty()) {
+            this.hashRing = new HashRing(Collections.singleton(groupId), virtualNodesPerGroup);
+        }
+    }
+
+    /**
+     * @return : id of the group owning the key.
+     * @throws IllegalStateException : if the mesh does not hold any group.
+     */
+    public int getGroupId(final String key) {
+        return hashRing.getGroupId(key);
+    }
+
+    /**
+     * @return : id of the group owning the key once the running migration completes, the group owning the key if
+     * the mesh is not being rebalanced.
+     * @throws IllegalStateException : if the mesh does not hold any group.
+     */
+    public int getTargetGroupId(final String key) {
+        final HashRing ring = this.targetRing;
+        return (ring == null) ? hashRing.getGroupId(key) : ring.getGroupId(key);
+    }
+
+    /**
+     * @return : nodes of the group by node id, empty if the mesh does not hold the group.
+     */
+    public synchronized List<ClusterNode> getGroupNodes(final int groupId) {
+        return groups.getOrDefault(groupId, Collections.emptyList());
+    }
+
+    /**
+     * @return : nodes of every group of the mesh, by group id.
+     */
+    public synchronized Map<Integer, List<ClusterNode>> getGroups() {
+        return new TreeMap<>(groups);
+    }
+
+    /**
+     * @return : copy of the mesh, which does not see the later changes of the mesh.
+     */
+    public synchronized ClusterMesh copy() {
+        final HashRing ring = this.targetRing;
+        return new ClusterMesh(virtualNodesPerGroup, groups, hashRing.getGroupIds(),
+            (ring == null) ? null : ring.getGroupIds());
+    }
+
+    public HashRing getHashRing() {
+        return hashRing;
+    }
+
+    /**
+     * @return : ring the keys are migrated to, null if the mesh is not being rebalanced.
+     */
+    public HashRing getTargetRing() {
+        return targetRing;
+    }
+
+    public boolean isMigrating() {
+        return targetRing != null;
+    }
+
+    /**
+     * @return : true if the key changes owner and is being handed over to its new group.
+     */
+    public boolean isHandingOver(final String key) {
+        final HashRing ring = this.targetRing;
+        return handingOver && ring != null && ring.getGroupId(key) != hashRing.getGroupId(key);
+    }
+
+    public int getVirtualNodesPerGroup() {
+        return virtualNodesPerGroup;
+    }
+
+    /**
+     * Starts the migration of the keys to a ring of the given groups. Starting the running migration again has no
+     * effect.
+     * @throws IllegalArgumentException : if the mesh does not hold one of the groups.
+     * @throws IllegalStateException : if a migration to other groups is running.
+     */
+    public synchronized void startMigration(final Collection<Integer> targetGroupIds) {
+        final Set<Integer> groupIds = validate(targetGroupIds);
+        if (targetRing != null && false == targetRing.getGroupIds().equals(groupIds)) {
+            throw new IllegalStateException("the mesh is already being rebalanced to groups "
+                + targetRing.getGroupIds());
+        }
+        if (targetRing == null) {
+            this.targetRing = new HashRing(groupIds, virtualNodesPerGroup);
+        }
+    }
+
+    /**
+     * Stops serving the keys which change owner, once they were streamed to their new groups, until the migration
+     * completes or is aborted.
+     * @throws IllegalStateException : if the mesh is not being rebalanced.
+     */
+    public synchronized void startHandover() {
+        if (targetRing == null) {
+            throw new IllegalStateException("the mesh is not being rebalanced");
+        }
+        this.handingOver = true;
+    }
+
+    /**
+     * Hands the keys over to the groups of the migration, in a single swap of the ring. A node which did not take
+     * part in the migration takes the new ring as well.
+     * @throws IllegalArgumentException : if the mesh does not hold one of the groups.
+     */
+    public synchronized void completeMigration(final Collection<Integer> targetGroupIds) {
+        final Set<Integer> groupIds = validate(targetGroupIds);
+        this.hashRing = (targetRing != null && targetRing.getGroupIds().equals(groupIds)) ? targetRing
+            : new HashRing(groupIds, virtualNodesPerGroup);
+        this.targetRing = null;
+        this.handingOver = false;
+    }
+
+    /**
+     * Drops the running migration, the keys stay with the groups owning them.
+     */
+    public synchronized void abortMigration() {
+        this.targetRing = null;
+        this.handingOver = false;
+    }
+
+    private Set<Integer> validate(final Collection<Integer> targetGroupIds) {
+        if (targetGroupIds == null || targetGroupIds.isEmpty()) {
+            throw new IllegalArgumentException("the keys have to be migrated to at least one replica group");
+        }
+        final Set<Integer> groupIds = new TreeSet<>(targetGroupIds);
+        for (final int groupId : groupIds) {
+            if (false == groups.containsKey(groupId)) {
+                throw new IllegalArgumentException("the mesh does not hold replica group " + groupId);
+            }
+        }
+        return groupIds;
+    }
+}
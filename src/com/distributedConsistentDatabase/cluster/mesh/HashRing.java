@@ -0,0 +1,100 @@
+package com.distributedConsistentDatabase.cluster.mesh;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Consistent hash ring of the replica groups of a mesh. Every group places a number of virtual nodes on a ring of 64
+ * bit hashes, and owns the arcs of the ring which end at its virtual nodes: a key belongs to the group of the first
+ * virtual node at or after the hash of the key, wrapping around. The virtual nodes spread the keyspace evenly across
+ * the groups, and adding or removing a group only moves the keys of the arcs it gains or loses.
+ * The ring is immutable, a change of the groups builds a new ring.
+ * @author abshukla
+ */
+public class HashRing {
+    // group of every virtual node, by the position of the virtual node on the ring.
+    private final NavigableMap<Long, Integer> virtualNodes;
+    private final Set<Integer> groupIds;
+
+    /**
+     * @param groupIds : ids of the replica groups.
+     * @param virtualNodesPerGroup : number of virtual nodes of every group.
+     */
+    public HashRing(final Collection<Integer> groupIds, final int virtualNodesPerGroup) {
+        if (virtualNodesPerGroup <= 0) {
+            throw new IllegalArgumentException("virtualNodesPerGroup has to be positive: " + virtualNodesPerGroup);
+        }
+        final NavigableMap<Long, Integer> ring = new TreeMap<>();
+        for (final int groupId : groupIds) {
+            for (int i = 0; i < virtualNodesPerGroup; i++) {
+                // the lower group id keeps the position in the unlikely case of a collision, on every node alike.
+                ring.merge(hash(groupId + "#" + i), groupId, Math::min);
+            }
+        }
+        this.virtualNodes = Collections.unmodifiableNavigableMap(ring);
+        this.groupIds = Collections.unmodifiableSet(new TreeSet<>(groupIds));
+    }
+
+    /**
+     * @return : id of the group owning the key.
+     * @throws IllegalStateException : if the ring does not hold any group.
+     */
+    public int getGroupId(final String key) {
+        return getGroupId(hash(key));
+    }
+
+    /**
+     * @param keyHash : hash of the key (see {@link #hash(String)}).
+     * @return : id of the group owning the hash.
+     * @throws IllegalStateException : if the ring does not hold any group.
+     */
+    public int getGroupId(final long keyHash) {
+        if (virtualNodes.isEmpty()) {
+            throw new IllegalStateException("the hash ring does not hold any replica group");
+        }
+        final Map.Entry<Long, Integer> virtualNode = virtualNodes.ceilingEntry(keyHash);
+        return (virtualNode == null) ? virtualNodes.firstEntry().getValue() : virtualNode.getValue();
+    }
+
+    /**
+     * @return : group of every virtual node, by its position on the ring.
+     */
+    public NavigableMap<Long, Integer> getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    /**
+     * @return : ids of the replica groups on the ring, in ascending order.
+     */
+    public Set<Integer> getGroupIds() {
+        return groupIds;
+    }
+
+    public boolean isEmpty() {
+        return virtualNodes.isEmpty();
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the UTF-8 key bytes followed by a final avalanche mix, so that close keys and virtual
+     * node names land far apart on the ring.
+     */
+    public static long hash(final String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (final byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= (hash >>> 33);
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= (hash >>> 33);
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= (hash >>> 33);
+        return hash;
+    }
+}
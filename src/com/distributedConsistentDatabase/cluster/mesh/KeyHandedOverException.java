@@ -0,0 +1,14 @@
+package com.distributedConsistentDatabase.cluster.mesh;
+
+/**
+ * Refusal of a request for a key which the replica group of the node is handing over to another group. The request
+ * was not applied, and can be retried once the new group took the key over.
+ * @author abshukla
+ */
+public class KeyHandedOverException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public KeyHandedOverException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,234 @@
+package com.distributedConsistentDatabase.cluster.mesh;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import com.distributedConsistentDatabase.cluster.pojo.ClusterNode;
+import com.distributedConsistentDatabase.dataStore.MultiVersionKeyValueStore;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+import com.distributedConsistentDatabase.sao.DistributedConsistentDatabaseSAO;
+
+/**
+ * Coordinates the rebalances of the mesh run from the current node, one at a time, and moves the keys of the local
+ * store which change owner: it copies the writes of the moving keys to their new groups, and drops the keys the
+ * group of the current node no longer owns once a rebalance completed or was aborted.
+ * @author abshukla
+ */
+public class MeshRebalancer {
+    private static final int FLIP_ATTEMPTS = 3;
+    private static final long FLIP_RETRY_INTERVAL_MILLIS = 200L;
+
+    private final MultiVersionKeyValueStore keyValueStore;
+    private final DistributedConsistentDatabaseSAO dcdbSao;
+    private volatile RebalanceProgress progress;
+
+    /**
+     * @param keyValueStore : local store.
+     * @param dcdbSao : SAO to reach the nodes of the mesh.
+     */
+    public MeshRebalancer(final MultiVersionKeyValueStore keyValueStore,
+            final DistributedConsistentDatabaseSAO dcdbSao) {
+        this.keyValueStore = keyValueStore;
+        this.dcdbSao = dcdbSao;
+        this.progress = RebalanceProgress.idle();
+    }
+
+    /**
+     * Moves the keys to a ring of the given replica groups, e.g. to hand keys over to groups which joined the mesh.
+     * Only the keys whose owner changes move: every node starts copying the writes of those keys to their new groups,
+     * the leader of every group handing over keys streams them to the new groups, group by group, and every node
+     * then takes the new ring, the nodes of the groups taking over keys first, so a request never goes back and
+     * forth between a node which took the new ring and one which did not. A rebalance which fails is aborted on
+     * every node, the keys then stay with the groups owning them. A node which does not take the new ring once the
+     * keys moved is retried, and reported in the progress if it still did not take it. Running the rebalance again
+     * hands it the new ring.
+     * @param mesh : mesh of the current node.
+     * @param targetGroupIds : groups owning the keys once the rebalance completes.
+     * @return : progress of the completed rebalance.
+     * @throws IllegalArgumentException : if the mesh does not hold one of the groups.
+     * @throws IllegalStateException : if another rebalance is running, the rebalance failed, or some nodes did not
+     * take the new ring.
+     */
+    public synchronized RebalanceProgress rebalance(final ClusterMesh mesh, final List<Integer> targetGroupIds) {
+        // a rebalance to other groups which already started is not aborted.
+        mesh.startMigration(targetGroupIds);
+        final List<Integer> groupIds = new ArrayList<>(mesh.getTargetRing().getGroupIds());
+        final MigrationPlan plan = MigrationPlan.between(mesh.getHashRing(), mesh.getTargetRing());
+        progress = new RebalanceProgress(RebalanceProgress.State.STREAMING, groupIds, plan.getMoves().size(), 0,
+            plan.getMovedShare(), 0, 0, Collections.emptyList(), null);
+        final Map<Integer, List<ClusterNode>> groups = mesh.getGroups();
+        try {
+            for (final Entry<Integer, List<ClusterNode>> group : groups.entrySet()) {
+                for (final ClusterNode node : group.getValue()) {
+                    // the other nodes do not take writes of the keys which move.
+                    if (false == dcdbSao.startMeshMigration(node, groupIds)
+                            && plan.getSourceGroupIds().contains(group.getKey())) {
+                        throw new IllegalStateException("migration could not be started on node "
+                            + node.getNodeId() + " of replica group " + group.getKey());
+                    }
+                }
+            }
+            for (final int sourceGroupId : plan.getSourceGroupIds()) {
+                final MigrationResult result = migrate(groups.get(sourceGroupId));
+                progress = progress.withMigrated(plan.getMoves(sourceGroupId).size(), result);
+            }
+            progress = progress.withState(RebalanceProgress.State.FLIPPING, null);
+            for (final int sourceGroupId : plan.getSourceGroupIds()) {
+                for (final ClusterNode node : groups.get(sourceGroupId)) {
+                    if (false == dcdbSao.handOverMeshKeys(node)) {
+                        throw new IllegalStateException("keys could not be handed over by node "
+                            + node.getNodeId() + " of replica group " + sourceGroupId);
+                    }
+                }
+            }
+        } catch (final RuntimeException e) {
+            groups.values().forEach(groupNodes -> groupNodes.forEach(node -> {
+                try {
+                    dcdbSao.abortMeshMigration(node);
+                } catch (final Exception abortException) {
+                    // the node is down, it takes the view of the mesh again when it is bootstrapped.
+                }
+            }));
+            progress = progress.withState(RebalanceProgress.State.FAILED, e.getMessage());
+            throw new IllegalStateException("rebalance of the mesh failed: " + e.getMessage(), e);
+        }
+        // the keys moved, the nodes which do not take the new ring are not rolled back.
+        final List<Integer> pendingNodeIds = new ArrayList<>();
+        for (final ClusterNode node : getFlipOrder(groups, plan)) {
+            if (false == completeMigration(node, groupIds)) {
+                pendingNodeIds.add(node.getNodeId());
+            }
+        }
+        if (false == pendingNodeIds.isEmpty()) {
+            progress = progress.withPendingNodes(pendingNodeIds, "nodes " + pendingNodeIds
+                + " did not take the new ring, the rebalance has to be run again once they can be reached");
+            throw new IllegalStateException("rebalance of the mesh is incomplete: " + progress.getError());
+        }
+        progress = progress.withState(RebalanceProgress.State.COMPLETED, null);
+        return progress;
+    }
+
+    /**
+     * @return : progress of the last rebalance coordinated by the current node.
+     */
+    public RebalanceProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * Deletes the keys which the group neither owns nor takes over. Every node of the group drops the same keys,
+     * outside of the log.
+     * @param mesh : mesh of the current node.
+     * @param groupId : group of the local store.
+     */
+    public void dropForeignKeys(final ClusterMesh mesh, final int groupId) {
+        final List<String> foreignKeys = new ArrayList<>();
+        keyValueStore.forEachEntry(entry -> {
+            if (mesh.getGroupId(entry.getKey()) != groupId && mesh.getTargetGroupId(entry.getKey()) != groupId) {
+                foreignKeys.add(entry.getKey());
+            }
+        });
+        foreignKeys.forEach(keyValueStore::delete);
+    }
+
+    /**
+     * Copies acknowledged writes to the replica groups taking over their keys, which do not receive the log of the
+     * group. A write of a key which did not move yet is streamed with the key.
+     * @param mesh : mesh of the current node.
+     * @param groupId : group the writes were made in.
+     * @param writes : acknowledged writes.
+     * @throws IllegalStateException : if a node of a group taking over a key could not take the write.
+     */
+    public void copyToNewOwners(final ClusterMesh mesh, final int groupId, final List<VersionedEntry> writes) {
+        final Map<Integer, List<VersionedEntry>> writesByGroup = new TreeMap<>();
+        for (final VersionedEntry write : writes) {
+            // a write which was proposed before the ring was swapped is copied as well.
+            final int targetGroupId = mesh.getTargetGroupId(write.getKey());
+            if (targetGroupId != groupId) {
+                writesByGroup.computeIfAbsent(targetGroupId, id -> new ArrayList<>()).add(write);
+            }
+        }
+        for (final Entry<Integer, List<VersionedEntry>> groupWrites : writesByGroup.entrySet()) {
+            for (final ClusterNode node : mesh.getGroupNodes(groupWrites.getKey())) {
+                try {
+                    dcdbSao.internalReplayHints(node, groupWrites.getValue());
+                } catch (final Exception e) {
+                    throw new IllegalStateException("write could not be copied to node " + node.getNodeId()
+                        + " of replica group " + groupWrites.getKey() + ", which takes over its key", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Has a group stream the keys it hands over. The nodes of the group are tried in the order of their ids, so the
+     * leader of the group streams them, unless it is down.
+     * @throws IllegalStateException : if the keys could not be streamed, or no node of the group could be reached.
+     */
+    private MigrationResult migrate(final List<ClusterNode> groupNodes) {
+        final IllegalStateException failure = new IllegalStateException("no node of the replica group can be reached");
+        for (final ClusterNode node : groupNodes) {
+            try {
+                return dcdbSao.migrateMeshKeys(node);
+            } catch (final IllegalStateException | IllegalArgumentException e) {
+                throw e;
+            } catch (final Exception e) {
+                failure.addSuppressed(e);
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * Has a node take the new ring, retrying a few times as the node may be busy or restarting.
+     * @return : true if the node took the new ring, false otherwise.
+     */
+    private boolean completeMigration(final ClusterNode node, final List<Integer> groupIds) {
+        for (int attempt = 0; attempt < FLIP_ATTEMPTS; attempt++) {
+            if (attempt > 0) {
+                try {
+                    Thread.sleep(FLIP_RETRY_INTERVAL_MILLIS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            try {
+                if (dcdbSao.completeMeshMigration(node, groupIds)) {
+                    return true;
+                }
+            } catch (final Exception e) {
+                // the node cannot be reached, it is tried again.
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return : nodes of the mesh in the order they take the new ring. The groups taking keys over take it first, the
+     * groups handing them over do not serve them meanwhile.
+     */
+    private static List<ClusterNode> getFlipOrder(final Map<Integer, List<ClusterNode>> groups,
+            final MigrationPlan plan) {
+        final Set<Integer> gainingGroupIds = plan.getMoves().stream().map(RangeMove::getTargetGroupId)
+            .collect(Collectors.toSet());
+        final List<ClusterNode> flipOrder = new ArrayList<>();
+        groups.forEach((groupId, groupNodes) -> {
+            if (gainingGroupIds.contains(groupId)) {
+                flipOrder.addAll(groupNodes);
+            }
+        });
+        groups.forEach((groupId, groupNodes) -> {
+            if (false == gainingGroupIds.contains(groupId)) {
+                flipOrder.addAll(groupNodes);
+            }
+        });
+        return flipOrder;
+    }
+}
@@ -0,0 +1,111 @@
+package com.distributedConsistentDatabase.cluster.mesh;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Arcs of the hash ring whose keys change owner between two rings of a mesh. The positions of the virtual nodes of
+ * both rings cut the ring into arcs which both rings assign to a single group each, and only the arcs assigned to
+ * different groups move, so the plan moves no key which keeps its owner. Adjacent arcs moving between the same
+ * groups are merged into a single move.
+ * @author abshukla
+ */
+public class MigrationPlan {
+    // moves by the end of their arc.
+    private final NavigableMap<Long, RangeMove> moves;
+
+    private MigrationPlan(final NavigableMap<Long, RangeMove> moves) {
+        this.moves = Collections.unmodifiableNavigableMap(moves);
+    }
+
+    /**
+     * @param currentRing : ring of the groups owning the keys.
+     * @param targetRing : ring of the groups the keys move to.
+     * @return : moves turning the current ring into the target one, none if the current ring is empty as it does
+     * not hold any key.
+     */
+    public static MigrationPlan between(final HashRing currentRing, final HashRing targetRing) {
+        final NavigableMap<Long, RangeMove> moves = new TreeMap<>();
+        if (currentRing.isEmpty() || targetRing.isEmpty()) {
+            return new MigrationPlan(moves);
+        }
+        final Set<Long> positionSet = new TreeSet<>(currentRing.getVirtualNodes().keySet());
+        positionSet.addAll(targetRing.getVirtualNodes().keySet());
+        final List<Long> positions = new ArrayList<>(positionSet);
+        RangeMove previousMove = null;
+        for (int i = 0; i < positions.size(); i++) {
+            // the first arc starts after the last position, wrapping around.
+            final long start = positions.get((i == 0) ? positions.size() - 1 : i - 1);
+            final long end = positions.get(i);
+            final int sourceGroupId = currentRing.getGroupId(end);
+            final int targetGroupId = targetRing.getGroupId(end);
+            if (sourceGroupId == targetGroupId) {
+                previousMove = null;
+                continue;
+            }
+            if (previousMove != null && previousMove.getSourceGroupId() == sourceGroupId
+                    && previousMove.getTargetGroupId() == targetGroupId) {
+                moves.remove(previousMove.getEndHashInclusive());
+                previousMove = new RangeMove(previousMove.getStartHashExclusive(), end, sourceGroupId, targetGroupId);
+            } else {
+                previousMove = new RangeMove(start, end, sourceGroupId, targetGroupId);
+            }
+            moves.put(end, previousMove);
+        }
+        return new MigrationPlan(moves);
+    }
+
+    /**
+     * @return : move of the arc holding the hash, null if its key does not move.
+     */
+    public RangeMove getMove(final long keyHash) {
+        if (moves.isEmpty()) {
+            return null;
+        }
+        // an arc wrapping around the ring ends first.
+        final Map.Entry<Long, RangeMove> move = moves.ceilingEntry(keyHash);
+        final RangeMove candidate = (move == null) ? moves.firstEntry().getValue() : move.getValue();
+        return candidate.contains(keyHash) ? candidate : null;
+    }
+
+    /**
+     * @return : every move, in the order of their arcs on the ring.
+     */
+    public List<RangeMove> getMoves() {
+        return new ArrayList<>(moves.values());
+    }
+
+    /**
+     * @return : moves of the keys of the group, in the order of their arcs on the ring.
+     */
+    public List<RangeMove> getMoves(final int sourceGroupId) {
+        return moves.values().stream().filter(move -> move.getSourceGroupId() == sourceGroupId)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @return : ids of the groups losing keys, in ascending order.
+     */
+    public Set<Integer> getSourceGroupIds() {
+        return moves.values().stream().map(RangeMove::getSourceGroupId)
+            .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    /**
+     * @return : share of the ring whose keys move, between 0 and 1.
+     */
+    public double getMovedShare() {
+        return moves.values().stream().mapToDouble(RangeMove::getShare).sum();
+    }
+
+    public boolean isEmpty() {
+        return moves.isEmpty();
+    }
+}
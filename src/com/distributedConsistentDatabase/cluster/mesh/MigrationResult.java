@@ -0,0 +1,29 @@
+package com.distributedConsistentDatabase.cluster.mesh;
+
+/**
+ * Amount of data a replica group streamed to the groups taking over its keys.
+ * @author abshukla
+ */
+public class MigrationResult {
+    private final long movedEntries;
+    private final long movedBytes;
+
+    public MigrationResult(final long movedEntries, final long movedBytes) {
+        this.movedEntries = movedEntries;
+        this.movedBytes = movedBytes;
+    }
+
+    /**
+     * @return : number of entries sent, counting the ones sent again because they were written while streamed.
+     */
+    public long getMovedEntries() {
+        return movedEntries;
+    }
+
+    /**
+     * @return : size of the keys and values sent, in bytes.
+     */
+    public long getMovedBytes() {
+        return movedBytes;
+    }
+}
@@ -0,0 +1,110 @@
+package com.distributedConsistentDatabase.cluster.mesh;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import com.distributedConsistentDatabase.cluster.RateLimiter;
+import com.distributedConsistentDatabase.cluster.pojo.ClusterNode;
+import com.distributedConsistentDatabase.dataStore.MultiVersionKeyValueStore;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+import com.distributedConsistentDatabase.sao.DistributedConsistentDatabaseSAO;
+
+/**
+ * Streams the keys a replica group hands over to the groups taking them over, in batches sent to every node of the
+ * new group, which applies every entry unless it holds a newer version of it. The batches are paced by a
+ * {@link RateLimiter} taking a permit per byte of the keys and values, so that the migration does not compete with
+ * the requests served in the foreground.
+ * The writes made while the keys are streamed are copied to the new group once acknowledged, but a batch may carry
+ * an entry which was written, or deleted, after it was read. Every entry of a batch is checked again once the batch
+ * was sent, and sent again until it did not change in between, so the copy of a deleted entry is never left behind.
+ * @author abshukla
+ */
+public class RangeMigrator {
+    private static final int ENTRIES_PER_REQUEST = 512;
+
+    private final MultiVersionKeyValueStore keyValueStore;
+    private final DistributedConsistentDatabaseSAO dcdbSao;
+    private final RateLimiter rateLimiter;
+
+    /**
+     * @param keyValueStore : local store.
+     * @param dcdbSao : SAO to reach the nodes of the new groups.
+     * @param rateLimiter : limiter taking a permit per byte sent.
+     */
+    public RangeMigrator(final MultiVersionKeyValueStore keyValueStore, final DistributedConsistentDatabaseSAO dcdbSao,
+            final RateLimiter rateLimiter) {
+        this.keyValueStore = keyValueStore;
+        this.dcdbSao = dcdbSao;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Streams the keys of the moves of the group to their new groups.
+     * @param mesh : mesh holding the nodes of the new groups.
+     * @param plan : moves of the migration.
+     * @param sourceGroupId : group of the local store.
+     * @param changedEntry : entry to send again once an entry was sent, null if the entry did not change since it was
+     * read. A deleted entry is sent again as a delete, without a value.
+     * @return : amount of data sent.
+     * @throws InterruptedException : if the thread is interrupted while it waits for the rate limiter.
+     * @throws IllegalStateException : if a node of a new group could not take a batch.
+     */
+    public MigrationResult migrate(final ClusterMesh mesh, final MigrationPlan plan, final int sourceGroupId,
+            final UnaryOperator<VersionedEntry> changedEntry) throws InterruptedException {
+        final Map<Integer, List<VersionedEntry>> entriesByTarget = new TreeMap<>();
+        keyValueStore.forEachEntry(entry -> {
+            final RangeMove move = plan.getMove(HashRing.hash(entry.getKey()));
+            if (move != null && move.getSourceGroupId() == sourceGroupId) {
+                entriesByTarget.computeIfAbsent(move.getTargetGroupId(), groupId -> new ArrayList<>()).add(entry);
+            }
+        });
+        long movedEntries = 0;
+        long movedBytes = 0;
+        for (final Map.Entry<Integer, List<VersionedEntry>> target : entriesByTarget.entrySet()) {
+            final List<ClusterNode> targetNodes = mesh.getGroupNodes(target.getKey());
+            final List<VersionedEntry> entries = target.getValue();
+            for (int i = 0; i < entries.size(); i += ENTRIES_PER_REQUEST) {
+                List<VersionedEntry> batch = entries.subList(i, Math.min(i + ENTRIES_PER_REQUEST, entries.size()));
+                while (false == batch.isEmpty()) {
+                    final long batchBytes = sizeOf(batch);
+                    rateLimiter.acquire((int) Math.min(batchBytes, Integer.MAX_VALUE));
+                    send(target.getKey(), targetNodes, batch);
+                    movedEntries += batch.size();
+                    movedBytes += batchBytes;
+                    batch = batch.stream().map(changedEntry).filter(Objects::nonNull).collect(Collectors.toList());
+                }
+            }
+        }
+        return new MigrationResult(movedEntries, movedBytes);
+    }
+
+    private void send(final int targetGroupId, final List<ClusterNode> targetNodes,
+            final List<VersionedEntry> batch) {
+        // the entries bypass the log of the new group, every one of its nodes has to apply them.
+        for (final ClusterNode node : targetNodes) {
+            try {
+                dcdbSao.internalReplayHints(node, batch);
+            } catch (final Exception e) {
+                throw new IllegalStateException("node " + node.getNodeId() + " of replica group " + targetGroupId
+                    + " could not take the migrated entries", e);
+            }
+        }
+    }
+
+    private static long sizeOf(final List<VersionedEntry> entries) {
+        long size = 0;
+        for (final VersionedEntry entry : entries) {
+            size += entry.getKey().getBytes(StandardCharsets.UTF_8).length;
+            if (entry.getValue() != null) {
+                size += entry.getValue().getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        return size;
+    }
+}
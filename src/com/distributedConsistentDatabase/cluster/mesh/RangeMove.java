@@ -0,0 +1,65 @@
+package com.distributedConsistentDatabase.cluster.mesh;
+
+/**
+ * Arc of the hash ring whose keys move from one replica group to another. The arc runs from its start, excluded, to
+ * its end, included, and wraps around the end of the ring if its start is not before its end.
+ * @author abshukla
+ */
+public class RangeMove {
+    private final long startHashExclusive;
+    private final long endHashInclusive;
+    private final int sourceGroupId;
+    private final int targetGroupId;
+
+    public RangeMove(final long startHashExclusive, final long endHashInclusive, final int sourceGroupId,
+            final int targetGroupId) {
+        this.startHashExclusive = startHashExclusive;
+        this.endHashInclusive = endHashInclusive;
+        this.sourceGroupId = sourceGroupId;
+        this.targetGroupId = targetGroupId;
+    }
+
+    /**
+     * @param keyHash : hash of the key (see {@link HashRing#hash(String)}).
+     * @return : true if the hash lies on the arc.
+     */
+    public boolean contains(final long keyHash) {
+        if (startHashExclusive < endHashInclusive) {
+            return keyHash > startHashExclusive && keyHash <= endHashInclusive;
+        }
+        return keyHash > startHashExclusive || keyHash <= endHashInclusive;
+    }
+
+    /**
+     * @return : share of the ring the arc covers, between 0 and 1.
+     */
+    public double getShare() {
+        // the length of an arc which wraps around the ring overflows to its unsigned length.
+        final long length = endHashInclusive - startHashExclusive;
+        if (length == 0) {
+            return 1.0;
+        }
+        return ((length >= 0) ? length : (length >>> 1) * 2.0 + (length & 1)) / Math.pow(2, 64);
+    }
+
+    public long getStartHashExclusive() {
+        return startHashExclusive;
+    }
+
+    public long getEndHashInclusive() {
+        return endHashInclusive;
+    }
+
+    public int getSourceGroupId() {
+        return sourceGroupId;
+    }
+
+    public int getTargetGroupId() {
+        return targetGroupId;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + startHashExclusive + ", " + endHashInclusive + "] " + sourceGroupId + " -> " + targetGroupId;
+    }
+}
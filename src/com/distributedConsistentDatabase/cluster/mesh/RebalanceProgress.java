@@ -0,0 +1,133 @@
+package com.distributedConsistentDatabase.cluster.mesh;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Point in time progress of a rebalance of the mesh, as seen by the node coordinating it.
+ * @author abshukla
+ */
+public class RebalanceProgress {
+    /**
+     * Stage of a rebalance.
+     */
+    public enum State {
+        // no rebalance was run by the node.
+        IDLE,
+        // the keys are streamed to their new groups, and the writes are copied to them as well.
+        STREAMING,
+        // the new groups are taking over the keys.
+        FLIPPING,
+        COMPLETED,
+        // the keys moved, but some nodes did not take the new ring. running the rebalance again completes it.
+        INCOMPLETE,
+        // the rebalance was aborted, the keys stay with the groups owning them.
+        FAILED
+    }
+
+    private final State state;
+    private final List<Integer> targetGroupIds;
+    private final int plannedRanges;
+    private final int completedRanges;
+    private final double movedShare;
+    private final long movedEntries;
+    private final long movedBytes;
+    private final List<Integer> pendingNodeIds;
+    private final String error;
+
+    public RebalanceProgress(final State state, final List<Integer> targetGroupIds, final int plannedRanges,
+            final int completedRanges, final double movedShare, final long movedEntries, final long movedBytes,
+            final List<Integer> pendingNodeIds, final String error) {
+        this.state = state;
+        this.targetGroupIds = targetGroupIds;
+        this.plannedRanges = plannedRanges;
+        this.completedRanges = completedRanges;
+        this.movedShare = movedShare;
+        this.movedEntries = movedEntries;
+        this.movedBytes = movedBytes;
+        this.pendingNodeIds = pendingNodeIds;
+        this.error = error;
+    }
+
+    public static RebalanceProgress idle() {
+        return new RebalanceProgress(State.IDLE, null, 0, 0, 0, 0, 0, Collections.emptyList(), null);
+    }
+
+    /**
+     * @return : progress in the given state, with the same counts.
+     */
+    public RebalanceProgress withState(final State newState, final String newError) {
+        return new RebalanceProgress(newState, targetGroupIds, plannedRanges, completedRanges, movedShare,
+            movedEntries, movedBytes, pendingNodeIds, newError);
+    }
+
+    /**
+     * @return : progress of a rebalance which moved the keys, but which the given nodes did not take part in.
+     */
+    public RebalanceProgress withPendingNodes(final List<Integer> nodeIds, final String newError) {
+        return new RebalanceProgress(State.INCOMPLETE, targetGroupIds, plannedRanges, completedRanges, movedShare,
+            movedEntries, movedBytes, nodeIds, newError);
+    }
+
+    /**
+     * @return : progress once a replica group streamed its ranges.
+     */
+    public RebalanceProgress withMigrated(final int ranges, final MigrationResult result) {
+        return new RebalanceProgress(state, targetGroupIds, plannedRanges, completedRanges + ranges, movedShare,
+            movedEntries + result.getMovedEntries(), movedBytes + result.getMovedBytes(), pendingNodeIds, error);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return : ids of the groups the keys are moved to, null before the first rebalance.
+     */
+    public List<Integer> getTargetGroupIds() {
+        return targetGroupIds;
+    }
+
+    /**
+     * @return : number of arcs of the ring whose keys change owner.
+     */
+    public int getPlannedRanges() {
+        return plannedRanges;
+    }
+
+    /**
+     * @return : number of arcs of the ring whose keys were streamed to their new owner.
+     */
+    public int getCompletedRanges() {
+        return completedRanges;
+    }
+
+    /**
+     * @return : share of the ring whose keys change owner, between 0 and 1.
+     */
+    public double getMovedShare() {
+        return movedShare;
+    }
+
+    public long getMovedEntries() {
+        return movedEntries;
+    }
+
+    public long getMovedBytes() {
+        return movedBytes;
+    }
+
+    /**
+     * @return : ids of the nodes which did not take the new ring, empty unless the rebalance is incomplete.
+     */
+    public List<Integer> getPendingNodeIds() {
+        return pendingNodeIds;
+    }
+
+    /**
+     * @return : reason of the failure of the rebalance, null unless it failed or is incomplete.
+     */
+    public String getError() {
+        return error;
+    }
+}
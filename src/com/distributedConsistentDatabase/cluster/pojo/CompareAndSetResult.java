@@ -0,0 +1,30 @@
+package com.distributedConsistentDatabase.cluster.pojo;
+
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedValue;
+
+/**
+ * Outcome of a compare and set: whether the write was applied, and the value of the key after it.
+ * @author abshukla
+ */
+public class CompareAndSetResult {
+    private final boolean applied;
+    private final VersionedValue value;
+
+    /**
+     * @param applied : true if the key held the expected value, and the write was applied.
+     * @param value : value of the key once the write was applied, or the value which did not match. Null if the key
+     * does not exist.
+     */
+    public CompareAndSetResult(final boolean applied, final VersionedValue value) {
+        this.applied = applied;
+        this.value = value;
+    }
+
+    public boolean isApplied() {
+        return applied;
+    }
+
+    public VersionedValue getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,47 @@
+package com.distributedConsistentDatabase.cluster.pojo;
+
+import com.distributedConsistentDatabase.dataStore.ExpiringKeyValueStore;
+
+/**
+ * Mutation of a key in a batch of writes: a put, or a delete if it does not carry a value.
+ * @author abshukla
+ */
+public class KeyValueMutation {
+    private final String key;
+    private final String value;
+    private final long ttlMillis;
+
+    /**
+     * @param value : value to put, null to delete the key.
+     * @param ttlMillis : time to live of the entry, {@link ExpiringKeyValueStore#NO_EXPIRY} if it does not expire.
+     */
+    public KeyValueMutation(final String key, final String value, final long ttlMillis) {
+        this.key = key;
+        this.value = value;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public static KeyValueMutation put(final String key, final String value) {
+        return new KeyValueMutation(key, value, ExpiringKeyValueStore.NO_EXPIRY);
+    }
+
+    public static KeyValueMutation delete(final String key) {
+        return new KeyValueMutation(key, null, ExpiringKeyValueStore.NO_EXPIRY);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public boolean isDelete() {
+        return value == null;
+    }
+}
@@ -0,0 +1,53 @@
+package com.distributedConsistentDatabase.cluster.pojo;
+
+/**
+ * Consistency requested by a read. A linearizable read observes every write acknowledged before it started. The
+ * relaxed levels let a node serve the read from its own store: a bounded staleness read observes every write
+ * acknowledged more than the bound before it, and a session read observes the writes which returned the session
+ * token, and the ones acknowledged before them.
+ * @author abshukla
+ */
+public class ReadConsistency {
+    public static final ReadConsistency LINEARIZABLE = new ReadConsistency(Level.LINEARIZABLE, 0L);
+
+    public enum Level {
+        LINEARIZABLE,
+        BOUNDED_STALENESS,
+        SESSION
+    }
+
+    private final Level level;
+    // maximum staleness in milliseconds, or session token.
+    private final long bound;
+
+    private ReadConsistency(final Level level, final long bound) {
+        this.level = level;
+        this.bound = bound;
+    }
+
+    /**
+     * @param maxStalenessMillis : maximum age of the writes the read may miss.
+     */
+    public static ReadConsistency boundedStaleness(final long maxStalenessMillis) {
+        return new ReadConsistency(Level.BOUNDED_STALENESS, maxStalenessMillis);
+    }
+
+    /**
+     * @param sessionToken : highest session token returned by the writes of the session.
+     */
+    public static ReadConsistency session(final long sessionToken) {
+        return new ReadConsistency(Level.SESSION, sessionToken);
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public long getMaxStalenessMillis() {
+        return bound;
+    }
+
+    public long getSessionToken() {
+        return bound;
+    }
+}
@@ -0,0 +1,27 @@
+package com.distributedConsistentDatabase.cluster.pojo;
+
+/**
+ * Result of a write acknowledged by the cluster, along with the session token of the node which acknowledged it.
+ * @author abshukla
+ */
+public class WriteResult<T> {
+    private final T result;
+    private final long sessionToken;
+
+    /**
+     * @param result : result of the write.
+     * @param sessionToken : position in the replicated log which covers the write, 0 if it is not known.
+     */
+    public WriteResult(final T result, final long sessionToken) {
+        this.result = result;
+        this.sessionToken = sessionToken;
+    }
+
+    public T getResult() {
+        return result;
+    }
+
+    public long getSessionToken() {
+        return sessionToken;
+    }
+}
@@ -0,0 +1,121 @@
+package com.distributedConsistentDatabase.dataStore;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import com.distributedConsistentDatabase.dataStore.scan.KeyRange;
+
+/**
+ * Namespace of the binary values, kept in the multi-version store next to the string values, under keys of a range of
+ * their own: the key of a binary value is stored with the {@link #KEY_RANGE_START} prefix, which string keys must not
+ * start with. The values are stored Base64 encoded, as the stores hold strings, so the binary values are versioned
+ * and kept by the configured store like the string values, and their writes are logged, snapshotted, transferred,
+ * repaired and hinted with them. The arrays returned by {@link #get} are decoded for every read.
+ * @author abshukla
+ */
+public class BinaryKeyValueStore implements KeyValueStore<String, byte[]> {
+    // inclusive lower bound and exclusive upper bound of the stored keys of the binary values.
+    public static final String KEY_RANGE_START = "\u0001";
+    public static final String KEY_RANGE_END = KeyRange.prefixEnd(KEY_RANGE_START);
+
+    private final MultiVersionKeyValueStore keyValueStore;
+
+    /**
+     * @param keyValueStore : store holding the string values as well.
+     */
+    public BinaryKeyValueStore(final MultiVersionKeyValueStore keyValueStore) {
+        this.keyValueStore = keyValueStore;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] get(final String key) {
+        final String storedValue = keyValueStore.get(toStoredKey(key));
+        return (storedValue == null) ? null : decode(storedValue);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The write gets a new version from the local clock.
+     */
+    @Override
+    public boolean put(final String key, final byte[] value) {
+        return keyValueStore.put(toStoredKey(key), encode(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     * The delete gets a new version from the local clock.
+     */
+    @Override
+    public boolean delete(final String key) {
+        return keyValueStore.delete(toStoredKey(key));
+    }
+
+    /**
+     * {@inheritDoc}
+     * Deletes the binary values only, the string values are kept.
+     */
+    @Override
+    public void clear() {
+        final List<String> storedKeys = new ArrayList<>();
+        keyValueStore.forEach((storedKey, storedValue) -> {
+            if (isStoredKey(storedKey)) {
+                storedKeys.add(storedKey);
+            }
+        });
+        storedKeys.forEach(keyValueStore::delete);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEach(final BiConsumer<? super String, ? super byte[]> action) {
+        keyValueStore.forEach((storedKey, storedValue) -> {
+            if (isStoredKey(storedKey)) {
+                action.accept(storedKey.substring(KEY_RANGE_START.length()), decode(storedValue));
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void scan(final String fromKey, final String toKey, final int limit,
+            final BiConsumer<? super String, ? super byte[]> action) {
+        keyValueStore.scan((fromKey == null) ? KEY_RANGE_START : toStoredKey(fromKey),
+            (toKey == null) ? KEY_RANGE_END : toStoredKey(toKey), limit, (storedKey, storedValue) ->
+                action.accept(storedKey.substring(KEY_RANGE_START.length()), decode(storedValue)));
+    }
+
+    /**
+     * @return : key under which the binary value of the key is stored.
+     */
+    public static String toStoredKey(final String key) {
+        return KEY_RANGE_START + key;
+    }
+
+    /**
+     * @return : true if the stored key is the one of a binary value.
+     */
+    public static boolean isStoredKey(final String storedKey) {
+        return storedKey.startsWith(KEY_RANGE_START);
+    }
+
+    /**
+     * @return : binary value as it is stored.
+     */
+    public static String encode(final byte[] value) {
+        return Base64.getEncoder().encodeToString(value);
+    }
+
+    private static byte[] decode(final String storedValue) {
+        return Base64.getDecoder().decode(storedValue);
+    }
+}
@@ -0,0 +1,467 @@
+package com.distributedConsistentDatabase.dataStore;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+import com.distributedConsistentDatabase.dataStore.cache.CacheStats;
+import com.distributedConsistentDatabase.dataStore.cache.FrequencySketch;
+import com.distributedConsistentDatabase.dataStore.cache.ReadBuffer;
+import com.distributedConsistentDatabase.dataStore.scan.KeyRange;
+
+/**
+ * In memory key value store with a hard budget on the estimated bytes of its entries, for cache style data. Once
+ * the budget is exceeded, entries are evicted with the W-TinyLFU policy: new entries go to a small window LRU, and
+ * an entry leaving the window is only admitted into the main space if a {@link FrequencySketch} estimates it to be
+ * more popular than the entry it would evict from there. The main space is a segmented LRU, where entries read
+ * again while on probation are promoted to a protected segment.
+ * Entries live in a concurrent hash map. Reads are recorded in a lossy {@link ReadBuffer} and writes in a write
+ * buffer, and both are replayed against the policy by whichever thread gets the policy lock with a tryLock, so the
+ * cost of the eviction is amortized over the writes and no reader or writer waits on a global lock. Only a writer
+ * which finds too many pending writes waits for the lock, which bounds how far the budget can be overshot.
+ * @author abshukla
+ */
+public class BoundedKeyValueStore implements KeyValueStore<String, String> {
+    public static final long DEFAULT_MAXIMUM_WEIGHT_BYTES = 256L * 1024 * 1024;
+    // object headers, references and fields of the map entry, the node and both strings.
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+    private static final double WINDOW_SHARE = 0.01;
+    private static final double PROTECTED_SHARE = 0.80;
+    private static final int MAX_PENDING_WRITES = 1024;
+
+    private final ConcurrentHashMap<String, Node> data;
+    private final long maximumWeight;
+    private final long maximumWindowWeight;
+    private final long maximumProtectedWeight;
+    private final ReentrantLock evictionLock;
+    private final ReadBuffer<Node> readBuffer;
+    private final Queue<Runnable> writeBuffer;
+    private final AtomicInteger pendingWrites;
+    private final LongAdder hitCount;
+    private final LongAdder missCount;
+    // guarded by the eviction lock.
+    private final FrequencySketch frequencySketch;
+    private final AccessOrderDeque window;
+    private final AccessOrderDeque probation;
+    private final AccessOrderDeque protectedSegment;
+    private long windowWeight;
+    private long mainWeight;
+    private long protectedWeight;
+    private volatile long weightedSize;
+    private volatile long evictionCount;
+    private volatile long evictionWeight;
+
+    public BoundedKeyValueStore() {
+        this(DEFAULT_MAXIMUM_WEIGHT_BYTES);
+    }
+
+    /**
+     * @param maximumWeightBytes : budget for the estimated bytes of all the entries.
+     */
+    public BoundedKeyValueStore(final long maximumWeightBytes) {
+        this.data = new ConcurrentHashMap<>();
+        this.maximumWeight = maximumWeightBytes;
+        this.maximumWindowWeight = Math.max(1, (long) (maximumWeightBytes * WINDOW_SHARE));
+        this.maximumProtectedWeight = (long) ((maximumWeightBytes - maximumWindowWeight) * PROTECTED_SHARE);
+        this.evictionLock = new ReentrantLock();
+        this.readBuffer = new ReadBuffer<>();
+        this.writeBuffer = new ConcurrentLinkedQueue<>();
+        this.pendingWrites = new AtomicInteger();
+        this.hitCount = new LongAdder();
+        this.missCount = new LongAdder();
+        this.frequencySketch = new FrequencySketch();
+        this.window = new AccessOrderDeque();
+        this.probation = new AccessOrderDeque();
+        this.protectedSegment = new AccessOrderDeque();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String get(final String key) {
+        final Node node = data.get(key);
+        if (node == null) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        afterRead(node);
+        return node.value;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The entry may be evicted right away if the policy does not admit it.
+     */
+    @Override
+    public boolean put(final String key, final String value) {
+        final int weight = weigh(key, value);
+        while (true) {
+            final Node prior = data.get(key);
+            if (prior == null) {
+                final Node node = new Node(key, value, weight);
+                if (data.putIfAbsent(key, node) == null) {
+                    afterWrite(() -> onAdd(node));
+                    return true;
+                }
+                continue;
+            }
+            synchronized (prior) {
+                if (false == prior.isAlive) {
+                    // removed concurrently. retry against the map.
+                    continue;
+                }
+                if (value.equals(prior.value)) {
+                    afterRead(prior);
+                    return false;
+                }
+                prior.value = value;
+                prior.weight = weight;
+            }
+            afterWrite(() -> onUpdate(prior));
+            return true;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean delete(final String key) {
+        final Node node = data.remove(key);
+        if (node == null) {
+            return false;
+        }
+        synchronized (node) {
+            node.isAlive = false;
+        }
+        afterWrite(() -> onRemove(node));
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        evictionLock.lock();
+        try {
+            runMaintenance();
+            for (final String key : data.keySet()) {
+                final Node node = data.remove(key);
+                if (node != null) {
+                    synchronized (node) {
+                        node.isAlive = false;
+                    }
+                    onRemove(node);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEach(final BiConsumer<? super String, ? super String> action) {
+        data.forEach((key, node) -> action.accept(key, node.value));
+    }
+
+    /**
+     * {@inheritDoc}
+     * The store is not ordered, so the scan visits every entry. See {@link KeyRange#scanUnordered}.
+     */
+    @Override
+    public void scan(final String fromKey, final String toKey, final int limit,
+            final BiConsumer<? super String, ? super String> action) {
+        KeyRange.scanUnordered(this, fromKey, toKey, limit, action);
+    }
+
+    /**
+     * @return : hit ratio, evictions and weighted size of the store.
+     */
+    public CacheStats getStats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount, evictionWeight, weightedSize,
+            maximumWeight);
+    }
+
+    /**
+     * Replays the pending reads and writes and evicts down to the budget.
+     */
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            runMaintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void afterRead(final Node node) {
+        if (false == readBuffer.offer(node) && evictionLock.tryLock()) {
+            try {
+                runMaintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void afterWrite(final Runnable task) {
+        writeBuffer.add(task);
+        if (pendingWrites.incrementAndGet() > MAX_PENDING_WRITES) {
+            // the policy falls behind the writers. apply back pressure to keep the budget.
+            evictionLock.lock();
+        } else if (false == evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            runMaintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Requires the eviction lock.
+     */
+    private void runMaintenance() {
+        readBuffer.drainTo(this::onAccess);
+        Runnable task;
+        while ((task = writeBuffer.poll()) != null) {
+            pendingWrites.decrementAndGet();
+            task.run();
+        }
+        evictEntries();
+    }
+
+    private void onAdd(final Node node) {
+        synchronized (node) {
+            if (false == node.isAlive) {
+                // removed before its addition was replayed.
+                return;
+            }
+            node.policyWeight = node.weight;
+        }
+        weightedSize += node.policyWeight;
+        windowWeight += node.policyWeight;
+        node.queue = window;
+        window.addLast(node);
+        if (data.size() > frequencySketch.getWidth()) {
+            frequencySketch.ensureCapacity(2L * data.size());
+        }
+        frequencySketch.increment(node.key.hashCode());
+    }
+
+    private void onUpdate(final Node node) {
+        final int newWeight;
+        synchronized (node) {
+            if (false == node.isAlive || node.queue == null) {
+                return;
+            }
+            newWeight = node.weight;
+        }
+        final int weightDifference = newWeight - node.policyWeight;
+        node.policyWeight = newWeight;
+        weightedSize += weightDifference;
+        if (node.queue == window) {
+            windowWeight += weightDifference;
+        } else {
+            mainWeight += weightDifference;
+            if (node.queue == protectedSegment) {
+                protectedWeight += weightDifference;
+            }
+        }
+        onAccess(node);
+    }
+
+    private void onRemove(final Node node) {
+        if (node.queue == null) {
+            return;
+        }
+        unlink(node);
+    }
+
+    /**
+     * Moves the entry to the most recently used end of its segment, promoting it out of probation.
+     */
+    private void onAccess(final Node node) {
+        if (node.queue == null) {
+            // not yet added, or already removed.
+            return;
+        }
+        frequencySketch.increment(node.key.hashCode());
+        if (node.queue == probation) {
+            probation.remove(node);
+            node.queue = protectedSegment;
+            protectedSegment.addLast(node);
+            protectedWeight += node.policyWeight;
+            while (protectedWeight > maximumProtectedWeight && protectedSegment.peekFirst() != node) {
+                final Node demoted = protectedSegment.pollFirst();
+                protectedWeight -= demoted.policyWeight;
+                demoted.queue = probation;
+                probation.addLast(demoted);
+            }
+        } else {
+            node.queue.moveToBack(node);
+        }
+    }
+
+    /**
+     * Moves the overflow of the window into the main space through the admission filter, then evicts until the
+     * store is within its budget.
+     */
+    private void evictEntries() {
+        while (windowWeight > maximumWindowWeight) {
+            final Node candidate = window.pollFirst();
+            windowWeight -= candidate.policyWeight;
+            candidate.queue = null;
+            admit(candidate);
+        }
+        while (weightedSize > maximumWeight) {
+            Node victim = probation.peekFirst();
+            if (victim == null) {
+                victim = protectedSegment.peekFirst();
+            }
+            if (victim == null) {
+                victim = window.peekFirst();
+            }
+            evict(victim);
+        }
+    }
+
+    /**
+     * Admits the candidate into probation if it is more popular than every entry it would push out of the main
+     * space. Otherwise the candidate itself is evicted.
+     */
+    private void admit(final Node candidate) {
+        final long maximumMainWeight = maximumWeight - maximumWindowWeight;
+        final int candidateFrequency = frequencySketch.frequency(candidate.key.hashCode());
+        while (mainWeight + candidate.policyWeight > maximumMainWeight) {
+            Node victim = probation.peekFirst();
+            if (victim == null) {
+                victim = protectedSegment.peekFirst();
+            }
+            if (victim == null || candidateFrequency <= frequencySketch.frequency(victim.key.hashCode())) {
+                evict(candidate);
+                return;
+            }
+            evict(victim);
+        }
+        candidate.queue = probation;
+        probation.addLast(candidate);
+        mainWeight += candidate.policyWeight;
+    }
+
+    private void evict(final Node node) {
+        data.remove(node.key, node);
+        synchronized (node) {
+            node.isAlive = false;
+        }
+        if (node.queue != null) {
+            unlink(node);
+        } else {
+            weightedSize -= node.policyWeight;
+        }
+        evictionCount++;
+        evictionWeight += node.policyWeight;
+    }
+
+    private void unlink(final Node node) {
+        node.queue.remove(node);
+        if (node.queue == window) {
+            windowWeight -= node.policyWeight;
+        } else {
+            mainWeight -= node.policyWeight;
+            if (node.queue == protectedSegment) {
+                protectedWeight -= node.policyWeight;
+            }
+        }
+        weightedSize -= node.policyWeight;
+        node.queue = null;
+    }
+
+    private static int weigh(final String key, final String value) {
+        return ENTRY_OVERHEAD_BYTES + 2 * (key.length() + value.length());
+    }
+
+    private static class Node {
+        private final String key;
+        // guarded by the node monitor.
+        private volatile String value;
+        private int weight;
+        private boolean isAlive;
+        // guarded by the eviction lock.
+        private int policyWeight;
+        private AccessOrderDeque queue;
+        private Node previous;
+        private Node next;
+
+        Node(final String key, final String value, final int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.isAlive = true;
+        }
+    }
+
+    /**
+     * Intrusive doubly linked list of nodes, least recently used first.
+     */
+    private static class AccessOrderDeque {
+        private Node first;
+        private Node last;
+
+        Node peekFirst() {
+            return first;
+        }
+
+        Node pollFirst() {
+            final Node node = first;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+        void addLast(final Node node) {
+            node.previous = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        }
+
+        void remove(final Node node) {
+            if (node.previous == null) {
+                first = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.previous = null;
+            node.next = null;
+        }
+
+        void moveToBack(final Node node) {
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.distributedConsistentDatabase.dataStore;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.function.BiConsumer;
+
+import com.distributedConsistentDatabase.dataStore.expiry.ExpiringKey;
+import com.distributedConsistentDatabase.dataStore.expiry.HierarchicalTimingWheel;
+import com.distributedConsistentDatabase.dataStore.scan.KeyRange;
+
+/**
+ * Key value store decorator which adds an optional expiry deadline to the entries. The deadline is stored with the
+ * value in the underlying store, so it survives restarts and snapshots of persistent stores. An entry is invisible
+ * as soon as its deadline has passed, but it is only removed when {@link #expire(String, long)} is called for it, so
+ * the removal can be decided in one place and replicated. Deadlines are tracked by a
+ * {@link HierarchicalTimingWheel}, which hands out the keys due for removal through {@link #pollExpired(long, int)}.
+ * Values are stored as they are unless they carry a deadline (or start with one of the marker characters), so
+ * existing data stays readable.
+ * @author abshukla
+ */
+public class ExpiringKeyValueStore implements KeyValueStore<String, String> {
+    public static final long NO_EXPIRY = 0L;
+    private static final char PLAIN_MARKER = '\u0000';
+    private static final char EXPIRY_MARKER = '\u0001';
+    private static final char EXPIRY_SEPARATOR = ':';
+    private static final int LOCK_STRIPES = 64;
+
+    private final KeyValueStore<String, String> keyValueStore;
+    private final Object[] keyLocks;
+    // guards the timing wheel and the pending expired keys.
+    private final Object wheelLock;
+    private final Queue<ExpiringKey> pendingExpiredKeys;
+    private HierarchicalTimingWheel timingWheel;
+
+    /**
+     * Wraps the store and starts tracking the deadlines already stored in it.
+     * @param keyValueStore : underlying store.
+     */
+    public ExpiringKeyValueStore(final KeyValueStore<String, String> keyValueStore) {
+        this.keyValueStore = keyValueStore;
+        this.keyLocks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            keyLocks[i] = new Object();
+        }
+        this.wheelLock = new Object();
+        this.pendingExpiredKeys = new ArrayDeque<>();
+        rebuildTimingWheel();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return : value, or null if the key does not exist or has expired.
+     */
+    @Override
+    public String get(final String key) {
+        final String storedValue = keyValueStore.get(key);
+        if (storedValue == null || isExpired(expiresAtMillis(storedValue), System.currentTimeMillis())) {
+            return null;
+        }
+        return value(storedValue);
+    }
+
+    /**
+     * Reads an entry whether or not it has expired, for decorators which resolve its visibility themselves.
+     * @param key : key to look up.
+     * @return : value and expiry deadline of the entry, null if the key does not exist.
+     */
+    Entry<String, Long> getIncludingExpired(final String key) {
+        final String storedValue = keyValueStore.get(key);
+        if (storedValue == null) {
+            return null;
+        }
+        return new SimpleImmutableEntry<>(value(storedValue), expiresAtMillis(storedValue));
+    }
+
+    /**
+     * Visits every entry whether or not it has expired, for decorators which resolve its visibility themselves.
+     * @param action : action to perform on the key and on the value and expiry deadline of every entry.
+     */
+    void forEachIncludingExpired(final BiConsumer<? super String, ? super Entry<String, Long>> action) {
+        keyValueStore.forEach((key, storedValue) -> action.accept(key,
+            new SimpleImmutableEntry<>(value(storedValue), expiresAtMillis(storedValue))));
+    }
+
+    /**
+     * {@inheritDoc}
+     * The entry does not expire.
+     */
+    @Override
+    public boolean put(final String key, final String value) {
+        return put(key, value, NO_EXPIRY);
+    }
+
+    /**
+     * Puts the entry with an expiry deadline.
+     * @param key : key to put.
+     * @param value : value to put.
+     * @param expiresAtMillis : epoch millis at which the entry expires, {@link #NO_EXPIRY} if it does not.
+     * @return : true if the entry changed, false otherwise.
+     */
+    public boolean put(final String key, final String value, final long expiresAtMillis) {
+        final boolean result;
+        synchronized (keyLock(key)) {
+            result = keyValueStore.put(key, encode(value, expiresAtMillis));
+        }
+        if (expiresAtMillis != NO_EXPIRY) {
+            track(new ExpiringKey(key, expiresAtMillis));
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return : true if a visible entry was deleted.
+     */
+    @Override
+    public boolean delete(final String key) {
+        synchronized (keyLock(key)) {
+            final String storedValue = keyValueStore.get(key);
+            if (storedValue == null) {
+                return false;
+            }
+            keyValueStore.delete(key);
+            return false == isExpired(expiresAtMillis(storedValue), System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        synchronized (wheelLock) {
+            keyValueStore.clear();
+            timingWheel = new HierarchicalTimingWheel(System.currentTimeMillis());
+            pendingExpiredKeys.clear();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Expired entries are skipped.
+     */
+    @Override
+    public void forEach(final BiConsumer<? super String, ? super String> action) {
+        final long nowMillis = System.currentTimeMillis();
+        keyValueStore.forEach((key, storedValue) -> {
+            if (false == isExpired(expiresAtMillis(storedValue), nowMillis)) {
+                action.accept(key, value(storedValue));
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * Expired entries are skipped without counting towards the limit, so the underlying store is scanned again after
+     * the last key it returned until the limit is reached or the range is exhausted.
+     */
+    @Override
+    public void scan(final String fromKey, final String toKey, final int limit,
+            final BiConsumer<? super String, ? super String> action) {
+        final long nowMillis = System.currentTimeMillis();
+        final ScanProgress progress = new ScanProgress();
+        String nextFromKey = fromKey;
+        int remaining = limit;
+        while (remaining > 0) {
+            final int pageLimit = remaining;
+            progress.scannedCount = 0;
+            progress.visibleCount = 0;
+            keyValueStore.scan(nextFromKey, toKey, pageLimit, (key, storedValue) -> {
+                progress.scannedCount++;
+                progress.lastKey = key;
+                if (false == isExpired(expiresAtMillis(storedValue), nowMillis)) {
+                    progress.visibleCount++;
+                    action.accept(key, value(storedValue));
+                }
+            });
+            remaining -= progress.visibleCount;
+            if (progress.scannedCount < pageLimit) {
+                return;
+            }
+            nextFromKey = KeyRange.successor(progress.lastKey);
+        }
+    }
+
+    /**
+     * Removes the entry if it still carries the given deadline. An entry which was written again in the meantime is
+     * left alone.
+     * @param key : key to remove.
+     * @param expiresAtMillis : deadline with which the key expired.
+     * @return : true if the entry was removed.
+     */
+    public boolean expire(final String key, final long expiresAtMillis) {
+        synchronized (keyLock(key)) {
+            final String storedValue = keyValueStore.get(key);
+            if (storedValue == null || expiresAtMillis(storedValue) != expiresAtMillis) {
+                return false;
+            }
+            return keyValueStore.delete(key);
+        }
+    }
+
+    /**
+     * Advances the timing wheel and returns the keys whose deadline has passed and which still carry it.
+     * @param nowMillis : current time.
+     * @param maxKeys : maximum number of keys to return. The remaining keys are returned by the next calls.
+     * @return : expired keys, with their deadline.
+     */
+    public List<ExpiringKey> pollExpired(final long nowMillis, final int maxKeys) {
+        final List<ExpiringKey> candidates = new ArrayList<>();
+        synchronized (wheelLock) {
+            final List<ExpiringKey> firedKeys = new ArrayList<>();
+            timingWheel.advance(nowMillis, firedKeys);
+            pendingExpiredKeys.addAll(firedKeys);
+            while (candidates.size() < maxKeys && false == pendingExpiredKeys.isEmpty()) {
+                candidates.add(pendingExpiredKeys.poll());
+            }
+        }
+        final List<ExpiringKey> expiredKeys = new ArrayList<>();
+        for (final ExpiringKey candidate : candidates) {
+            final String storedValue = keyValueStore.get(candidate.getKey());
+            // keys which were deleted or written again since the deadline was added are stale.
+            if (storedValue != null && expiresAtMillis(storedValue) == candidate.getExpiresAtMillis()) {
+                expiredKeys.add(candidate);
+            }
+        }
+        return expiredKeys;
+    }
+
+    /**
+     * Rebuilds the timing wheel from the deadlines in the underlying store, e.g. after entries were loaded into it
+     * directly or after deadlines were dropped by {@link #pollExpired(long, int)} without expiring the keys.
+     */
+    public void rebuildTimingWheel() {
+        final long nowMillis = System.currentTimeMillis();
+        final HierarchicalTimingWheel rebuiltTimingWheel = new HierarchicalTimingWheel(nowMillis);
+        final List<ExpiringKey> expiredKeys = new ArrayList<>();
+        keyValueStore.forEach((key, storedValue) -> {
+            final long expiresAtMillis = expiresAtMillis(storedValue);
+            if (expiresAtMillis != NO_EXPIRY) {
+                final ExpiringKey expiringKey = new ExpiringKey(key, expiresAtMillis);
+                if (false == rebuiltTimingWheel.add(expiringKey)) {
+                    expiredKeys.add(expiringKey);
+                }
+            }
+        });
+        synchronized (wheelLock) {
+            timingWheel = rebuiltTimingWheel;
+            pendingExpiredKeys.clear();
+            pendingExpiredKeys.addAll(expiredKeys);
+        }
+    }
+
+    /**
+     * @return : number of deadlines tracked by the timing wheel, including the stale ones.
+     */
+    public long getTrackedDeadlineCount() {
+        synchronized (wheelLock) {
+            return timingWheel.size() + pendingExpiredKeys.size();
+        }
+    }
+
+    private void track(final ExpiringKey expiringKey) {
+        synchronized (wheelLock) {
+            if (false == timingWheel.add(expiringKey)) {
+                pendingExpiredKeys.add(expiringKey);
+            }
+        }
+    }
+
+    static boolean isExpired(final long expiresAtMillis, final long nowMillis) {
+        return expiresAtMillis != NO_EXPIRY && expiresAtMillis <= nowMillis;
+    }
+
+    private static String encode(final String value, final long expiresAtMillis) {
+        if (expiresAtMillis != NO_EXPIRY) {
+            return EXPIRY_MARKER + Long.toString(expiresAtMillis) + EXPIRY_SEPARATOR + value;
+        }
+        if (false == value.isEmpty() && (value.charAt(0) == PLAIN_MARKER || value.charAt(0) == EXPIRY_MARKER)) {
+            return PLAIN_MARKER + value;
+        }
+        return value;
+    }
+
+    private static long expiresAtMillis(final String storedValue) {
+        if (storedValue.isEmpty() || storedValue.charAt(0) != EXPIRY_MARKER) {
+            return NO_EXPIRY;
+        }
+        return Long.parseLong(storedValue.substring(1, storedValue.indexOf(EXPIRY_SEPARATOR)));
+    }
+
+    private static String value(final String storedValue) {
+        if (storedValue.isEmpty()) {
+            return storedValue;
+        }
+        switch (storedValue.charAt(0)) {
+        case EXPIRY_MARKER:
+            return storedValue.substring(storedValue.indexOf(EXPIRY_SEPARATOR) + 1);
+        case PLAIN_MARKER:
+            return storedValue.substring(1);
+        default:
+            return storedValue;
+        }
+    }
+
+    private Object keyLock(final String key) {
+        return keyLocks[(key.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
+    }
+
+    private static class ScanProgress {
+        private int scannedCount;
+        private int visibleCount;
+        private String lastKey;
+    }
+}
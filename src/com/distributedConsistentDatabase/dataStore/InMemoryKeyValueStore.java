@@ -2,6 +2,9 @@ package com.distributedConsistentDatabase.dataStore;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+import com.distributedConsistentDatabase.dataStore.scan.KeyRange;
 
 /**
  * In memory key value store implementation. Class allows only a single instance to be created.
@@ -64,4 +67,22 @@ public class InMemoryKeyValueStore implements KeyValueStore<String, String> {
     public void clear() {
         inMemoryStore.clear();
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEach(final BiConsumer<? super String, ? super String> action) {
+        inMemoryStore.forEach(action);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The store is not ordered, so the scan visits every entry. See {@link KeyRange#scanUnordered}.
+     */
+    @Override
+    public void scan(final String fromKey, final String toKey, final int limit,
+            final BiConsumer<? super String, ? super String> action) {
+        KeyRange.scanUnordered(this, fromKey, toKey, limit, action);
+    }
 }
@@ -1,5 +1,7 @@
 package com.distributedConsistentDatabase.dataStore;
 
+import java.util.function.BiConsumer;
+
 /**
  * Interface for the key-value store. The interface supports extension for any key type and value type.
  * Individual implementations to provide additional constraints on the key and value space.
@@ -37,4 +39,21 @@ public interface KeyValueStore<K, V> {
      * Clears all the entries.
      */
     public void clear();
+
+    /**
+     * Visits every entry of the store without blocking writers. The iteration is weakly consistent: it reflects
+     * every write completed before it started, and may or may not reflect writes made while it runs.
+     * @param action : action to perform on every key and value.
+     */
+    public void forEach(final BiConsumer<? super K, ? super V> action);
+
+    /**
+     * Visits the entries with fromKey <= key < toKey in ascending key order, and stops after limit entries. Like
+     * {@link #forEach}, the scan is weakly consistent and does not block writers.
+     * @param fromKey : inclusive lower bound, null to start from the first key.
+     * @param toKey : exclusive upper bound, null to scan up to the last key.
+     * @param limit : maximum number of entries to visit.
+     * @param action : action to perform on every key and value.
+     */
+    public void scan(final K fromKey, final K toKey, final int limit, final BiConsumer<? super K, ? super V> action);
 }
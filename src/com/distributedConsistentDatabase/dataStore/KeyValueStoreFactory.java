@@ -1,7 +1,64 @@
 package com.distributedConsistentDatabase.dataStore;
 
+import java.io.File;
+
+/**
+ * Factory for the key value store of a node. The store type is picked from the {@value #STORE_TYPE_PROPERTY}
+ * system property (see {@link KeyValueStoreType}) and persistent stores keep their files under the
+ * {@value #DATA_DIRECTORY_PROPERTY} directory. The off heap store is bounded by
+ * {@value #OFF_HEAP_MAX_MEMORY_PROPERTY} bytes and the bounded cache by {@value #BOUNDED_CACHE_MAX_WEIGHT_PROPERTY}
+ * bytes. Snapshots of the store are kept in the data directory as well.
+ * @author abshukla
+ */
 public class KeyValueStoreFactory {
+    public static final String STORE_TYPE_PROPERTY = "dcdb.keyValueStore.type";
+    public static final String DATA_DIRECTORY_PROPERTY = "dcdb.dataDirectory";
+    public static final String OFF_HEAP_MAX_MEMORY_PROPERTY = "dcdb.offHeap.maxMemoryBytes";
+    public static final String BOUNDED_CACHE_MAX_WEIGHT_PROPERTY = "dcdb.boundedCache.maxWeightBytes";
+    private static final String DEFAULT_DATA_DIRECTORY = "dcdb-data";
+    private static final String WRITE_AHEAD_LOG_DIRECTORY = "wal";
+    private static final String LSM_TREE_DIRECTORY = "lsm";
+    private static final String SNAPSHOT_DIRECTORY = "snapshot";
+    private static final String SNAPSHOT_FILE = "keyValueStore.snapshot";
+    private static final String HINT_DIRECTORY = "hints";
+
     public static KeyValueStore<String, String> getKeyValueStore() {
-        return InMemoryKeyValueStore.getInstance();
+        return getKeyValueStore(getStoreType());
+    }
+
+    public static KeyValueStoreType getStoreType() {
+        return KeyValueStoreType.fromName(System.getProperty(STORE_TYPE_PROPERTY));
+    }
+
+    public static KeyValueStore<String, String> getKeyValueStore(final KeyValueStoreType storeType) {
+        switch (storeType) {
+        case WRITE_AHEAD_LOG:
+            return new WriteAheadLogKeyValueStore(new File(getDataDirectory(), WRITE_AHEAD_LOG_DIRECTORY));
+        case LSM_TREE:
+            return new LsmKeyValueStore(new File(getDataDirectory(), LSM_TREE_DIRECTORY));
+        case OFF_HEAP:
+            return new OffHeapKeyValueStore(
+                Long.getLong(OFF_HEAP_MAX_MEMORY_PROPERTY, OffHeapKeyValueStore.DEFAULT_MAX_MEMORY_BYTES));
+        case ORDERED:
+            return new OrderedKeyValueStore();
+        case BOUNDED_CACHE:
+            return new BoundedKeyValueStore(
+                Long.getLong(BOUNDED_CACHE_MAX_WEIGHT_PROPERTY, BoundedKeyValueStore.DEFAULT_MAXIMUM_WEIGHT_BYTES));
+        case IN_MEMORY:
+        default:
+            return InMemoryKeyValueStore.getInstance();
+        }
+    }
+
+    public static File getDataDirectory() {
+        return new File(System.getProperty(DATA_DIRECTORY_PROPERTY, DEFAULT_DATA_DIRECTORY));
+    }
+
+    public static File getSnapshotFile() {
+        return new File(new File(getDataDirectory(), SNAPSHOT_DIRECTORY), SNAPSHOT_FILE);
+    }
+
+    public static File getHintDirectory() {
+        return new File(getDataDirectory(), HINT_DIRECTORY);
     }
 }
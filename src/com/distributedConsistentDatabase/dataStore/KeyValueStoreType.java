@@ -0,0 +1,46 @@
+package com.distributedConsistentDatabase.dataStore;
+
+/**
+ * Types of key value stores which can back a node. The type is selected through the
+ * {@link KeyValueStoreFactory#STORE_TYPE_PROPERTY} system property.
+ * @author abshukla
+ */
+public enum KeyValueStoreType {
+    /** Volatile store. Data is lost on restart. */
+    IN_MEMORY(false),
+    /** In memory store made durable by a write ahead log with group commit. */
+    WRITE_AHEAD_LOG(true),
+    /** Log structured merge tree for datasets larger than the heap. */
+    LSM_TREE(true),
+    /** Store keeping the entries in off heap slabs, with a memory limit. */
+    OFF_HEAP(false),
+    /** Volatile store keeping the keys sorted, for efficient range and prefix scans. */
+    ORDERED(false),
+    /** In memory cache with a byte budget, evicting entries with the W-TinyLFU policy. */
+    BOUNDED_CACHE(false);
+
+    private final boolean isPersistent;
+
+    private KeyValueStoreType(final boolean isPersistent) {
+        this.isPersistent = isPersistent;
+    }
+
+    /**
+     * @return : true if the store keeps its data across restarts by itself.
+     */
+    public boolean isPersistent() {
+        return isPersistent;
+    }
+
+    /**
+     * Resolves the store type from its name, ignoring case. Defaults to {@link #IN_MEMORY} when no name is provided.
+     * @param name : name of the store type.
+     * @return : store type
+     */
+    public static KeyValueStoreType fromName(final String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return IN_MEMORY;
+        }
+        return valueOf(name.trim().toUpperCase());
+    }
+}
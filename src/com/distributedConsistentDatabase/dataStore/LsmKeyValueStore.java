@@ -0,0 +1,734 @@
+package com.distributedConsistentDatabase.dataStore;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+import com.distributedConsistentDatabase.dataStore.lsm.BloomFilter;
+import com.distributedConsistentDatabase.dataStore.lsm.Levels;
+import com.distributedConsistentDatabase.dataStore.lsm.MemTable;
+import com.distributedConsistentDatabase.dataStore.lsm.MergingIterator;
+import com.distributedConsistentDatabase.dataStore.lsm.SSTable;
+import com.distributedConsistentDatabase.dataStore.lsm.SSTableWriter;
+import com.distributedConsistentDatabase.dataStore.scan.KeyRange;
+import com.distributedConsistentDatabase.dataStore.wal.LogRecord;
+import com.distributedConsistentDatabase.dataStore.wal.WriteAheadLog;
+
+/**
+ * Log structured merge tree key value store for datasets larger than the heap. Writes go to the write ahead log and
+ * to a concurrent memtable. Full memtables are flushed in the background to immutable level 0 SSTables, and a
+ * leveled compaction merges them into deeper levels whose tables never overlap. Every disk write is sequential.
+ * A point lookup checks the memtables, then at most one data block per level 0 table and one per deeper level,
+ * and bloom filters skip most of those reads.
+ * @author abshukla
+ */
+public class LsmKeyValueStore implements KeyValueStore<String, String>, Closeable {
+    public static final long DEFAULT_MEMTABLE_SIZE_BYTES = 4L * 1024 * 1024;
+    private static final long TARGET_TABLE_SIZE_BYTES = 2L * 1024 * 1024;
+    private static final int LEVEL0_COMPACTION_TRIGGER = 4;
+    private static final long LEVEL1_MAX_BYTES = 10L * 1024 * 1024;
+    private static final int LEVEL_SIZE_MULTIPLIER = 10;
+    private static final long RETIRED_TABLE_GRACE_MILLIS = 30000L;
+    private static final long FLUSH_RETRY_DELAY_MILLIS = 1000L;
+    private static final long COMPACTION_RETRY_DELAY_MILLIS = 1000L;
+    private static final int LOCK_STRIPES = 64;
+    private static final String MANIFEST_FILE = "MANIFEST";
+    private static final String TABLE_FILE_SUFFIX = ".sst";
+    private static final String WRITE_AHEAD_LOG_DIRECTORY = "wal";
+
+    private final File directory;
+    private final File manifestFile;
+    private final long memTableSizeBytes;
+    private final Object[] keyLocks;
+    // writers hold the read lock. switching memtables and clearing hold the write lock.
+    private final ReadWriteLock memTableLock;
+    // guards changes of the levels and the manifest.
+    private final Object levelsLock;
+    private final AtomicLong nextFileNumber;
+    private final String[] compactionPointers;
+    // single thread: flushes and compactions run one at a time and in order.
+    private final ScheduledThreadPoolExecutor backgroundExecutor;
+    private final Set<SSTable> retiredTables;
+    // retired tables are not closed while an iteration may still be reading them.
+    private final AtomicInteger activeIterations;
+    private final WriteAheadLog writeAheadLog;
+    private volatile MemTable activeMemTable;
+    private volatile List<MemTable> immutableMemTables;
+    private volatile Levels levels;
+    // failure of the last flush, null if it succeeded. the failed memtable is flushed again before any newer one.
+    private volatile IOException flushFailure;
+    // only accessed by the background thread.
+    private boolean flushRetryScheduled;
+    // failure of the last compaction, null if it succeeded. the tables of a failed compaction are left as they are.
+    private volatile IOException compactionFailure;
+    // only accessed by the background thread.
+    private boolean compactionRetryScheduled;
+
+    /**
+     * Creates the store with the default memtable size.
+     * @param directory : directory for the tables, the manifest and the write ahead log.
+     */
+    public LsmKeyValueStore(final File directory) {
+        this(directory, DEFAULT_MEMTABLE_SIZE_BYTES);
+    }
+
+    /**
+     * Opens the store, loading the tables referenced by the manifest and replaying the write ahead log into the
+     * memtable.
+     * @param directory : directory for the tables, the manifest and the write ahead log.
+     * @param memTableSizeBytes : estimated memtable size at which it is flushed to disk.
+     */
+    public LsmKeyValueStore(final File directory, final long memTableSizeBytes) {
+        this.directory = directory;
+        this.manifestFile = new File(directory, MANIFEST_FILE);
+        this.memTableSizeBytes = memTableSizeBytes;
+        this.keyLocks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            keyLocks[i] = new Object();
+        }
+        this.memTableLock = new ReentrantReadWriteLock();
+        this.levelsLock = new Object();
+        this.compactionPointers = new String[Levels.MAX_LEVELS];
+        this.backgroundExecutor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "lsm-background-" + directory.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.backgroundExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.retiredTables = ConcurrentHashMap.newKeySet();
+        this.activeIterations = new AtomicInteger(0);
+        this.immutableMemTables = Collections.emptyList();
+        this.activeMemTable = new MemTable();
+
+        if (false == directory.isDirectory() && false == directory.mkdirs()) {
+            throw new IllegalStateException("unable to create lsm directory: " + directory);
+        }
+        final long[] persistedNextFileNumber = new long[] {0};
+        try {
+            final Map<Long, File> tableFiles = listTableFiles();
+            this.levels = manifestFile.exists()
+                ? Levels.readManifest(manifestFile, tableFiles, persistedNextFileNumber) : Levels.empty();
+            long maxFileNumber = -1;
+            for (final Entry<Long, File> tableFile : tableFiles.entrySet()) {
+                maxFileNumber = Math.max(maxFileNumber, tableFile.getKey());
+            }
+            this.nextFileNumber = new AtomicLong(Math.max(persistedNextFileNumber[0], maxFileNumber + 1));
+            deleteUnreferencedTables(tableFiles);
+        } catch (final IOException e) {
+            throw new IllegalStateException("unable to open lsm store: " + directory, e);
+        }
+
+        this.writeAheadLog = new WriteAheadLog(new File(directory, WRITE_AHEAD_LOG_DIRECTORY),
+            WriteAheadLog.DEFAULT_SEGMENT_SIZE_BYTES, WriteAheadLog.DEFAULT_GROUP_COMMIT_WINDOW_MICROS, this::replay);
+        switchMemTableIfFull();
+        backgroundExecutor.execute(this::compact);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String get(final String key) {
+        final String value = lookup(key);
+        return SSTable.isTombstone(value) ? null : value;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The write is blind: only the active memtable is checked for the same value, so a put may report a change for a
+     * value which is already flushed. The stores layered above read the key anyway.
+     */
+    @Override
+    public boolean put(final String key, final String value) {
+        final CompletableFuture<Void> submission;
+        memTableLock.readLock().lock();
+        try {
+            synchronized (keyLock(key)) {
+                if (value.equals(activeMemTable.get(key))) {
+                    return false;
+                }
+                submission = writeAheadLog.submit(LogRecord.put(key, value));
+                activeMemTable.put(key, value);
+            }
+        } finally {
+            memTableLock.readLock().unlock();
+        }
+        WriteAheadLog.awaitDurable(submission);
+        switchMemTableIfFull();
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The delete is blind: it writes a tombstone unless the active memtable already holds one, so it may report the
+     * delete of a key which does not exist.
+     */
+    @Override
+    public boolean delete(final String key) {
+        final CompletableFuture<Void> submission;
+        memTableLock.readLock().lock();
+        try {
+            synchronized (keyLock(key)) {
+                if (SSTable.isTombstone(activeMemTable.get(key))) {
+                    return false;
+                }
+                submission = writeAheadLog.submit(LogRecord.delete(key));
+                activeMemTable.delete(key);
+            }
+        } finally {
+            memTableLock.readLock().unlock();
+        }
+        WriteAheadLog.awaitDurable(submission);
+        switchMemTableIfFull();
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        final CompletableFuture<Void> submission;
+        memTableLock.writeLock().lock();
+        try {
+            synchronized (levelsLock) {
+                final List<SSTable> retiredTables = levels.getAllTables();
+                levels = Levels.empty();
+                writeManifest();
+                retire(retiredTables);
+                immutableMemTables = Collections.emptyList();
+            }
+            activeMemTable = new MemTable();
+            submission = writeAheadLog.submit(LogRecord.clear());
+        } finally {
+            memTableLock.writeLock().unlock();
+        }
+        WriteAheadLog.awaitDurable(submission);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Merges the memtables and every level like a lookup would. The iteration keeps the view of the tables it
+     * started with, so flushes and compactions carry on underneath it.
+     */
+    @Override
+    public void forEach(final BiConsumer<? super String, ? super String> action) {
+        scan(null, null, Integer.MAX_VALUE, action);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Every source seeks to fromKey, using the block index of the tables, and the merge stops at toKey, so only the
+     * blocks overlapping the range are read.
+     */
+    @Override
+    public void scan(final String fromKey, final String toKey, final int limit,
+            final BiConsumer<? super String, ? super String> action) {
+        if (limit <= 0 || KeyRange.isEmpty(fromKey, toKey)) {
+            return;
+        }
+        activeIterations.incrementAndGet();
+        try {
+            // newest source first, so the merge keeps the latest value of every key.
+            final List<Iterator<Entry<String, String>>> iterators = new ArrayList<>();
+            iterators.add(activeMemTable.iterator(fromKey));
+            for (final MemTable memTable : immutableMemTables) {
+                iterators.add(memTable.iterator(fromKey));
+            }
+            final Levels currentLevels = levels;
+            for (final SSTable table : currentLevels.getLevel(0)) {
+                iterators.add(table.iterator(fromKey));
+            }
+            for (int level = 1; level < Levels.MAX_LEVELS; level++) {
+                iterators.add(levelIterator(currentLevels.getLevel(level), fromKey));
+            }
+            final Iterator<Entry<String, String>> entries = new MergingIterator(iterators);
+            int visited = 0;
+            while (visited < limit && entries.hasNext()) {
+                final Entry<String, String> entry = entries.next();
+                if (KeyRange.isBeyond(toKey, entry.getKey())) {
+                    return;
+                }
+                if (false == SSTable.isTombstone(entry.getValue())
+                    && (fromKey == null || fromKey.compareTo(entry.getKey()) <= 0)) {
+                    action.accept(entry.getKey(), entry.getValue());
+                    visited++;
+                }
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException("unable to iterate lsm store: " + directory, e);
+        } finally {
+            activeIterations.decrementAndGet();
+        }
+    }
+
+    /**
+     * Switches the active memtable and waits until every memtable has been flushed and compactions have settled.
+     * @throws IllegalStateException : if a memtable could not be flushed. It stays readable and in the log, and its
+     * flush is retried in the background.
+     */
+    public void flush() {
+        memTableLock.writeLock().lock();
+        try {
+            switchMemTable();
+        } finally {
+            memTableLock.writeLock().unlock();
+        }
+        try {
+            // flushes the memtables left by a failed flush as well.
+            backgroundExecutor.submit(this::flushMemTables).get();
+        } catch (final Exception e) {
+            throw new IllegalStateException("unable to flush lsm store: " + directory, e);
+        }
+        final IOException failure = flushFailure;
+        if (failure != null) {
+            throw new IllegalStateException("unable to flush lsm store: " + directory, failure);
+        }
+    }
+
+    /**
+     * @return : number of tables in every level, level 0 first.
+     */
+    public List<Integer> getTableCountPerLevel() {
+        final Levels currentLevels = levels;
+        final List<Integer> tableCounts = new ArrayList<>();
+        for (int level = 0; level < Levels.MAX_LEVELS; level++) {
+            tableCounts.add(currentLevels.getLevel(level).size());
+        }
+        return tableCounts;
+    }
+
+    /**
+     * @return : failure of the last compaction, null if it succeeded. A failed compaction is retried in the
+     * background, the reads and writes carry on meanwhile.
+     */
+    public IOException getCompactionFailure() {
+        return compactionFailure;
+    }
+
+    /**
+     * Stops the background work and closes the log and the tables. Unflushed writes stay in the log and are
+     * replayed on the next open.
+     */
+    @Override
+    public void close() {
+        backgroundExecutor.shutdown();
+        try {
+            backgroundExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeAheadLog.close();
+        for (final SSTable table : levels.getAllTables()) {
+            closeQuietly(table);
+        }
+        for (final SSTable table : retiredTables) {
+            closeQuietly(table);
+        }
+    }
+
+    private String lookup(final String key) {
+        // memtables first, then levels: a flush publishes its table before it drops the memtable.
+        String value = activeMemTable.get(key);
+        if (value != null) {
+            return value;
+        }
+        for (final MemTable memTable : immutableMemTables) {
+            value = memTable.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+
+        final Levels currentLevels = levels;
+        final long keyHash = BloomFilter.hash(key);
+        try {
+            for (final SSTable table : currentLevels.getLevel(0)) {
+                value = table.get(key, keyHash);
+                if (value != null) {
+                    return value;
+                }
+            }
+            for (int level = 1; level < Levels.MAX_LEVELS; level++) {
+                final SSTable table = currentLevels.findTable(level, key);
+                if (table != null) {
+                    value = table.get(key, keyHash);
+                    if (value != null) {
+                        return value;
+                    }
+                }
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException("unable to read key: " + key, e);
+        }
+        return null;
+    }
+
+    private void switchMemTableIfFull() {
+        if (activeMemTable.getEstimatedSizeBytes() < memTableSizeBytes) {
+            return;
+        }
+        memTableLock.writeLock().lock();
+        try {
+            if (activeMemTable.getEstimatedSizeBytes() >= memTableSizeBytes) {
+                switchMemTable();
+            }
+        } finally {
+            memTableLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Makes the active memtable immutable and schedules its flush. Requires the memtable write lock.
+     */
+    private void switchMemTable() {
+        final MemTable fullMemTable = activeMemTable;
+        if (fullMemTable.isEmpty()) {
+            return;
+        }
+        // every write logged from now on belongs to the new memtable.
+        fullMemTable.setFirstNewerLogSegment(writeAheadLog.rotate());
+        synchronized (levelsLock) {
+            final List<MemTable> newImmutableMemTables = new ArrayList<>();
+            newImmutableMemTables.add(fullMemTable);
+            newImmutableMemTables.addAll(immutableMemTables);
+            immutableMemTables = Collections.unmodifiableList(newImmutableMemTables);
+        }
+        activeMemTable = new MemTable();
+        backgroundExecutor.execute(this::flushMemTables);
+    }
+
+    /**
+     * Flushes the immutable memtables oldest first, then compacts. A memtable which fails to flush stays readable
+     * and in the log, and is flushed again after {@value #FLUSH_RETRY_DELAY_MILLIS} milliseconds, before any newer
+     * one: the log of a memtable is only truncated once every older memtable was flushed. Runs on the background
+     * thread.
+     */
+    private void flushMemTables() {
+        List<MemTable> memTables = immutableMemTables;
+        while (false == memTables.isEmpty()) {
+            try {
+                flushMemTable(memTables.get(memTables.size() - 1));
+                flushFailure = null;
+            } catch (final IOException e) {
+                flushFailure = e;
+                if (false == flushRetryScheduled) {
+                    flushRetryScheduled = true;
+                    backgroundExecutor.schedule(() -> {
+                        flushRetryScheduled = false;
+                        flushMemTables();
+                    }, FLUSH_RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+            memTables = immutableMemTables;
+        }
+        compact();
+    }
+
+    private void flushMemTable(final MemTable memTable) throws IOException {
+        final List<SSTable> flushedTables = writeTables(memTable.iterator(), false, Long.MAX_VALUE);
+        synchronized (levelsLock) {
+            if (false == immutableMemTables.contains(memTable)) {
+                // cleared while the flush was running.
+                retire(flushedTables);
+                return;
+            }
+            for (final SSTable table : flushedTables) {
+                levels = levels.withFlushedTable(table);
+            }
+            writeManifest();
+            final List<MemTable> newImmutableMemTables = new ArrayList<>(immutableMemTables);
+            newImmutableMemTables.remove(memTable);
+            immutableMemTables = Collections.unmodifiableList(newImmutableMemTables);
+        }
+        // every older memtable was flushed, so the log before the writes of the next memtable is no longer needed.
+        writeAheadLog.truncateBefore(memTable.getFirstNewerLogSegment());
+    }
+
+    /**
+     * Compacts until every level is within its budget. A compaction which fails is retried after
+     * {@value #COMPACTION_RETRY_DELAY_MILLIS} milliseconds. Runs on the background thread.
+     */
+    private void compact() {
+        try {
+            while (compactOnce()) {
+                // keep compacting until every level is within its budget.
+            }
+            compactionFailure = null;
+        } catch (final IOException e) {
+            compactionFailure = e;
+            if (false == compactionRetryScheduled) {
+                compactionRetryScheduled = true;
+                backgroundExecutor.schedule(() -> {
+                    compactionRetryScheduled = false;
+                    compact();
+                }, COMPACTION_RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Runs a single compaction step if any level is over its budget.
+     * @return : true if a compaction ran.
+     */
+    private boolean compactOnce() throws IOException {
+        final Levels currentLevels = levels;
+        if (currentLevels.getLevel(0).size() >= LEVEL0_COMPACTION_TRIGGER) {
+            compactLevel(currentLevels, 0, currentLevels.getLevel(0));
+            return true;
+        }
+        long levelMaxBytes = LEVEL1_MAX_BYTES;
+        for (int level = 1; level < Levels.MAX_LEVELS - 1; level++) {
+            if (currentLevels.getLevelSizeBytes(level) > levelMaxBytes) {
+                compactLevel(currentLevels, level, Collections.singletonList(pickTable(currentLevels, level)));
+                return true;
+            }
+            levelMaxBytes *= LEVEL_SIZE_MULTIPLIER;
+        }
+        return false;
+    }
+
+    /**
+     * Picks the tables in round robin order of their keys so that the whole key space of a level gets compacted.
+     */
+    private SSTable pickTable(final Levels currentLevels, final int level) {
+        final List<SSTable> levelTables = currentLevels.getLevel(level);
+        SSTable pickedTable = levelTables.get(0);
+        if (compactionPointers[level] != null) {
+            for (final SSTable table : levelTables) {
+                if (table.getMinKey().compareTo(compactionPointers[level]) > 0) {
+                    pickedTable = table;
+                    break;
+                }
+            }
+        }
+        compactionPointers[level] = pickedTable.getMaxKey();
+        return pickedTable;
+    }
+
+    /**
+     * Merges the input tables of a level with the overlapping tables of the next level into new tables of the
+     * next level.
+     */
+    private void compactLevel(final Levels currentLevels, final int level, final List<SSTable> inputTables)
+            throws IOException {
+        final int outputLevel = level + 1;
+        String minKey = null;
+        String maxKey = null;
+        for (final SSTable table : inputTables) {
+            minKey = (minKey == null || table.getMinKey().compareTo(minKey) < 0) ? table.getMinKey() : minKey;
+            maxKey = (maxKey == null || table.getMaxKey().compareTo(maxKey) > 0) ? table.getMaxKey() : maxKey;
+        }
+
+        final List<SSTable> mergedTables = new ArrayList<>(inputTables);
+        for (final SSTable table : currentLevels.getLevel(outputLevel)) {
+            if (table.overlaps(minKey, maxKey)) {
+                mergedTables.add(table);
+            }
+        }
+        // input tables are ordered newest first, and the input level is always newer than the output level.
+        final List<Iterator<Entry<String, String>>> iterators = new ArrayList<>();
+        for (final SSTable table : mergedTables) {
+            iterators.add(table.iterator());
+        }
+        boolean isBottomLevel = true;
+        for (int deeperLevel = outputLevel + 1; deeperLevel < Levels.MAX_LEVELS; deeperLevel++) {
+            isBottomLevel &= currentLevels.getLevel(deeperLevel).isEmpty();
+        }
+        final List<SSTable> outputTables =
+            writeTables(new MergingIterator(iterators), isBottomLevel, TARGET_TABLE_SIZE_BYTES);
+
+        synchronized (levelsLock) {
+            if (false == levels.containsAll(mergedTables)) {
+                // cleared while the compaction was running.
+                retire(outputTables);
+                return;
+            }
+            levels = levels.withCompaction(mergedTables, outputLevel, outputTables);
+            writeManifest();
+            retire(mergedTables);
+        }
+    }
+
+    /**
+     * Writes the sorted entries into new tables, each closed once it reaches the target size.
+     * @param dropTombstones : true if no older data can exist below the output, so tombstones can be discarded.
+     */
+    private List<SSTable> writeTables(final Iterator<Entry<String, String>> entries, final boolean dropTombstones,
+            final long targetTableSizeBytes) throws IOException {
+        final List<SSTable> tables = new ArrayList<>();
+        SSTableWriter writer = null;
+        long fileNumber = -1;
+        while (entries.hasNext()) {
+            final Entry<String, String> entry = entries.next();
+            if (dropTombstones && SSTable.isTombstone(entry.getValue())) {
+                continue;
+            }
+            if (writer == null) {
+                fileNumber = nextFileNumber.getAndIncrement();
+                writer = new SSTableWriter(tableFile(fileNumber));
+            }
+            writer.add(entry.getKey(), entry.getValue());
+            if (writer.getEstimatedSize() >= targetTableSizeBytes) {
+                writer.finish();
+                tables.add(SSTable.open(writer.getFile(), fileNumber));
+                writer = null;
+            }
+        }
+        if (writer != null) {
+            writer.finish();
+            tables.add(SSTable.open(writer.getFile(), fileNumber));
+        }
+        return tables;
+    }
+
+    /**
+     * Deletes the files of tables which are no longer referenced. Readers which picked up an older view of the
+     * levels may still be reading them, so the handles are only closed after a grace period.
+     */
+    private void retire(final List<SSTable> tables) {
+        for (final SSTable table : tables) {
+            table.getFile().delete();
+        }
+        retiredTables.addAll(tables);
+        scheduleClose(tables);
+    }
+
+    private void scheduleClose(final List<SSTable> tables) {
+        backgroundExecutor.schedule(() -> {
+            if (activeIterations.get() > 0) {
+                scheduleClose(tables);
+                return;
+            }
+            for (final SSTable table : tables) {
+                closeQuietly(table);
+                retiredTables.remove(table);
+            }
+        }, RETIRED_TABLE_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Iterates over the tables of a sorted level one after the other, opening each table only when it is reached.
+     * Tables which end before fromKey are skipped.
+     */
+    private static Iterator<Entry<String, String>> levelIterator(final List<SSTable> levelTables,
+            final String fromKey) {
+        int firstTable = 0;
+        while (fromKey != null && firstTable < levelTables.size()
+            && levelTables.get(firstTable).getMaxKey().compareTo(fromKey) < 0) {
+            firstTable++;
+        }
+        final int startTable = firstTable;
+        return new Iterator<Entry<String, String>>() {
+            private int nextTable = startTable;
+            private Iterator<Entry<String, String>> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (false == current.hasNext() && nextTable < levelTables.size()) {
+                    final SSTable table = levelTables.get(nextTable++);
+                    try {
+                        current = table.iterator(fromKey);
+                    } catch (final IOException e) {
+                        throw new IllegalStateException("unable to read sstable: " + table.getFile(), e);
+                    }
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public Entry<String, String> next() {
+                if (false == hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    private void writeManifest() {
+        try {
+            levels.writeManifest(manifestFile, nextFileNumber.get());
+        } catch (final IOException e) {
+            throw new IllegalStateException("unable to write lsm manifest: " + manifestFile, e);
+        }
+    }
+
+    private void replay(final LogRecord record) {
+        switch (record.getType()) {
+        case PUT:
+            activeMemTable.put(record.getKey(), record.getValue());
+            break;
+        case DELETE:
+            activeMemTable.delete(record.getKey());
+            break;
+        case CLEAR:
+            activeMemTable.clear();
+            break;
+        default:
+            throw new IllegalStateException("unknown log record type: " + record.getType());
+        }
+    }
+
+    private Map<Long, File> listTableFiles() {
+        final Map<Long, File> tableFiles = new HashMap<>();
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                if (file.getName().endsWith(TABLE_FILE_SUFFIX)) {
+                    tableFiles.put(Long.valueOf(file.getName().substring(0,
+                        file.getName().length() - TABLE_FILE_SUFFIX.length())), file);
+                }
+            }
+        }
+        return tableFiles;
+    }
+
+    /**
+     * Removes tables left behind by a flush or compaction which crashed before updating the manifest.
+     */
+    private void deleteUnreferencedTables(final Map<Long, File> tableFiles) {
+        final Map<Long, File> unreferencedFiles = new HashMap<>(tableFiles);
+        for (final SSTable table : levels.getAllTables()) {
+            unreferencedFiles.remove(table.getFileNumber());
+        }
+        for (final File file : unreferencedFiles.values()) {
+            file.delete();
+        }
+    }
+
+    private File tableFile(final long fileNumber) {
+        return new File(directory, String.format("%012d%s", fileNumber, TABLE_FILE_SUFFIX));
+    }
+
+    private Object keyLock(final String key) {
+        return keyLocks[(key.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
+    }
+
+    private static void closeQuietly(final SSTable table) {
+        try {
+            table.close();
+        } catch (final IOException e) {
+            // no-op
+        }
+    }
+}
@@ -0,0 +1,567 @@
+package com.distributedConsistentDatabase.dataStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import com.distributedConsistentDatabase.dataStore.merkle.MerkleTree;
+import com.distributedConsistentDatabase.dataStore.mvcc.HybridLogicalClock;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedValue;
+
+/**
+ * Key value store decorator which versions every write. The version of the current value of a key is stored with the
+ * value in the underlying store, and the values a key had before are kept in memory, newest first, for as long as a
+ * {@link Snapshot} may still need them. A snapshot reads every key as of the latest version applied when it was
+ * opened, without any lock, while writes carry on. Prior versions older than the oldest open snapshot (the low
+ * watermark) are reclaimed when the key is written again, and by {@link #collectGarbage()} for the other keys.
+ * Versions are handed out by a {@link HybridLogicalClock}, or come from the leader for replicated writes. Time to
+ * live is resolved against the current time, also for the prior versions read through a snapshot.
+ * A {@link MerkleTree} over the stored entries, versions and deadlines included, is updated with every write, so
+ * replicas can find the entries on which they differ without comparing all of them. The keys of every leaf of the
+ * tree are kept next to it, so the entries of the leaves which differ are read without scanning the store.
+ * @author abshukla
+ */
+public class MultiVersionKeyValueStore implements KeyValueStore<String, String> {
+    public static final long NO_VERSION = 0L;
+    private static final char VERSION_MARKER = '\u0002';
+    private static final char VERSION_SEPARATOR = ':';
+    private static final int VERSION_RADIX = 36;
+    private static final int LOCK_STRIPES = 64;
+
+    private final ExpiringKeyValueStore keyValueStore;
+    private final Object[] keyLocks;
+    private final HybridLogicalClock clock;
+    // values the keys had before their current value, newest first. written under the key locks.
+    private final ConcurrentHashMap<String, PriorVersion> priorVersions;
+    private final AtomicLong latestVersion;
+    // versions of the open snapshots with the number of snapshots open at each of them.
+    private final TreeMap<Long, Integer> openSnapshots;
+    private final MerkleTree merkleTree;
+    // keys of the stored entries by leaf of the merkle tree, expired entries included. written under the key locks.
+    private final ConcurrentHashMap<Integer, Set<String>> leafKeys;
+
+    /**
+     * Wraps the store and builds the merkle tree of the entries already stored in it.
+     * @param keyValueStore : underlying store.
+     */
+    public MultiVersionKeyValueStore(final ExpiringKeyValueStore keyValueStore) {
+        this.keyValueStore = keyValueStore;
+        this.keyLocks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            keyLocks[i] = new Object();
+        }
+        this.clock = new HybridLogicalClock();
+        this.priorVersions = new ConcurrentHashMap<>();
+        this.latestVersion = new AtomicLong(NO_VERSION);
+        this.openSnapshots = new TreeMap<>();
+        this.merkleTree = new MerkleTree();
+        this.leafKeys = new ConcurrentHashMap<>();
+        rebuild();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String get(final String key) {
+        final VersionedValue versionedValue = getVersioned(key);
+        return (versionedValue == null) ? null : versionedValue.getValue();
+    }
+
+    /**
+     * @param key : key to look up.
+     * @return : latest value of the key with its version, null if the key does not exist or has expired.
+     */
+    public VersionedValue getVersioned(final String key) {
+        return decode(keyValueStore.get(key));
+    }
+
+    /**
+     * @param key : key to look up.
+     * @return : latest entry of the key with its version and expiry deadline, null if the key does not exist or has
+     *         expired.
+     */
+    public VersionedEntry getEntry(final String key) {
+        final Entry<String, Long> current = keyValueStore.getIncludingExpired(key);
+        if (current == null || ExpiringKeyValueStore.isExpired(current.getValue(), System.currentTimeMillis())) {
+            return null;
+        }
+        final VersionedValue versionedValue = decode(current.getKey());
+        return new VersionedEntry(key, versionedValue.getValue(), versionedValue.getVersion(), current.getValue());
+    }
+
+    /**
+     * {@inheritDoc}
+     * The write gets a new version from the local clock and the entry does not expire.
+     */
+    @Override
+    public boolean put(final String key, final String value) {
+        return put(key, value, ExpiringKeyValueStore.NO_EXPIRY, nextVersion());
+    }
+
+    /**
+     * Puts the entry with the given version.
+     * @param expiresAtMillis : expiry deadline, {@link ExpiringKeyValueStore#NO_EXPIRY} if the entry does not expire.
+     * @param version : version of the write.
+     * @return : true if the visible value changed, false otherwise.
+     */
+    public boolean put(final String key, final String value, final long expiresAtMillis, final long version) {
+        synchronized (keyLock(key)) {
+            final String visibleValue = get(key);
+            final Entry<String, Long> current = keyValueStore.getIncludingExpired(key);
+            retireCurrentVersion(key, current);
+            final String storedValue = encode(value, version);
+            keyValueStore.put(key, storedValue, expiresAtMillis);
+            merkleTree.update(key, entryHash(key, current), MerkleTree.entryHash(key, storedValue, expiresAtMillis));
+            addLeafKey(key);
+            applied(version);
+            trimPriorVersions(key, version);
+            return false == value.equals(visibleValue);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The delete gets a new version from the local clock.
+     */
+    @Override
+    public boolean delete(final String key) {
+        return delete(key, nextVersion());
+    }
+
+    /**
+     * Deletes the entry with the given version.
+     * @param version : version of the delete.
+     * @return : true if a visible entry was deleted.
+     */
+    public boolean delete(final String key, final long version) {
+        synchronized (keyLock(key)) {
+            final Entry<String, Long> current = keyValueStore.getIncludingExpired(key);
+            if (retireCurrentVersion(key, current)) {
+                pushPriorVersion(key, null, ExpiringKeyValueStore.NO_EXPIRY, version);
+            }
+            final boolean result = keyValueStore.delete(key);
+            merkleTree.update(key, entryHash(key, current), MerkleTree.NO_ENTRY);
+            removeLeafKey(key);
+            applied(version);
+            trimPriorVersions(key, NO_VERSION);
+            return result;
+        }
+    }
+
+    /**
+     * Removes the expired entry if it still carries the given deadline, see
+     * {@link ExpiringKeyValueStore#expire(String, long)}.
+     * @param version : version of the removal.
+     * @return : true if the entry was removed.
+     */
+    public boolean expire(final String key, final long expiresAtMillis, final long version) {
+        synchronized (keyLock(key)) {
+            final Entry<String, Long> current = keyValueStore.getIncludingExpired(key);
+            if (current == null || current.getValue() != expiresAtMillis) {
+                return false;
+            }
+            retireCurrentVersion(key, current);
+            pushPriorVersion(key, null, ExpiringKeyValueStore.NO_EXPIRY, version);
+            final boolean result = keyValueStore.expire(key, expiresAtMillis);
+            merkleTree.update(key, entryHash(key, current), MerkleTree.NO_ENTRY);
+            removeLeafKey(key);
+            applied(version);
+            trimPriorVersions(key, NO_VERSION);
+            return result;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Open snapshots are not isolated from a clear.
+     */
+    @Override
+    public void clear() {
+        keyValueStore.clear();
+        priorVersions.clear();
+        merkleTree.clear();
+        leafKeys.clear();
+    }
+
+    /**
+     * Puts an entry copied from another replica, unless the local entry was put by a newer write.
+     * @return : true if the entry was put.
+     */
+    public boolean repair(final VersionedEntry entry) {
+        synchronized (keyLock(entry.getKey())) {
+            final VersionedValue current = decode(valueIncludingExpired(entry.getKey()));
+            if (current != null && current.getVersion() > entry.getVersion()) {
+                return false;
+            }
+            put(entry.getKey(), entry.getValue(), entry.getExpiresAtMillis(), entry.getVersion());
+            return true;
+        }
+    }
+
+    /**
+     * Deletes an entry which another replica found to be deleted, unless it was written again since it was compared.
+     * @param key : key to delete.
+     * @param comparedVersion : version of the local entry when it was compared.
+     * @return : true if the entry was deleted.
+     */
+    public boolean repairDelete(final String key, final long comparedVersion) {
+        synchronized (keyLock(key)) {
+            final VersionedValue current = decode(valueIncludingExpired(key));
+            if (current == null || current.getVersion() != comparedVersion) {
+                return false;
+            }
+            delete(key, nextVersion());
+            return true;
+        }
+    }
+
+    /**
+     * @return : entries held in the leaves of the merkle tree, expired entries included.
+     */
+    public List<VersionedEntry> getEntries(final Set<Integer> leaves) {
+        final List<VersionedEntry> entries = new ArrayList<>();
+        for (final int leaf : leaves) {
+            final Set<String> keys = leafKeys.get(leaf);
+            if (keys == null) {
+                continue;
+            }
+            for (final String key : keys) {
+                final Entry<String, Long> entry = keyValueStore.getIncludingExpired(key);
+                if (entry == null) {
+                    // the entry was evicted by the underlying store, e.g. a bounded cache.
+                    synchronized (keyLock(key)) {
+                        if (keyValueStore.getIncludingExpired(key) == null) {
+                            keys.remove(key);
+                        }
+                    }
+                    continue;
+                }
+                final VersionedValue versionedValue = decode(entry.getKey());
+                entries.add(new VersionedEntry(key, versionedValue.getValue(), versionedValue.getVersion(),
+                    entry.getValue()));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Deletes the entry unless it was written with a newer version, e.g. to apply a delete which reaches the store
+     * late.
+     * @param key : key to delete.
+     * @param version : version of the delete.
+     * @return : true if the entry was deleted.
+     */
+    public boolean deleteIfOlder(final String key, final long version) {
+        synchronized (keyLock(key)) {
+            final VersionedValue current = decode(valueIncludingExpired(key));
+            if (current == null || current.getVersion() >= version) {
+                return false;
+            }
+            delete(key, version);
+            return true;
+        }
+    }
+
+    /**
+     * Visits every entry with its version and expiry deadline, expired entries included, e.g. to copy the store to
+     * another replica with {@link #repair(VersionedEntry)}.
+     * @param action : action to perform on every entry.
+     */
+    public void forEachEntry(final Consumer<? super VersionedEntry> action) {
+        keyValueStore.forEachIncludingExpired((key, entry) -> {
+            final VersionedValue versionedValue = decode(entry.getKey());
+            action.accept(new VersionedEntry(key, versionedValue.getValue(), versionedValue.getVersion(),
+                entry.getValue()));
+        });
+    }
+
+    public MerkleTree getMerkleTree() {
+        return merkleTree;
+    }
+
+    /**
+     * Rebuilds the merkle tree and the latest version from the entries in the underlying store, e.g. after entries
+     * were loaded into it directly. Must not run concurrently with writes.
+     */
+    public void rebuild() {
+        merkleTree.clear();
+        leafKeys.clear();
+        keyValueStore.forEachIncludingExpired((key, entry) -> {
+            merkleTree.update(key, MerkleTree.NO_ENTRY, MerkleTree.entryHash(key, entry.getKey(), entry.getValue()));
+            addLeafKey(key);
+            applied(decode(entry.getKey()).getVersion());
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEach(final BiConsumer<? super String, ? super String> action) {
+        keyValueStore.forEach((key, storedValue) -> action.accept(key, value(storedValue)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void scan(final String fromKey, final String toKey, final int limit,
+            final BiConsumer<? super String, ? super String> action) {
+        keyValueStore.scan(fromKey, toKey, limit, (key, storedValue) -> action.accept(key, value(storedValue)));
+    }
+
+    /**
+     * @return : new version for a write originating on this node.
+     */
+    public long nextVersion() {
+        return clock.tick();
+    }
+
+    /**
+     * @return : largest version applied to the store.
+     */
+    public long getLatestVersion() {
+        return latestVersion.get();
+    }
+
+    /**
+     * Opens a snapshot at the latest applied version. Writes applied concurrently with the opening may or may not be
+     * part of it. The snapshot holds back the garbage collection of prior versions until it is closed.
+     * @return : open snapshot.
+     */
+    public Snapshot openSnapshot() {
+        synchronized (openSnapshots) {
+            final long version = latestVersion.get();
+            openSnapshots.merge(version, 1, Integer::sum);
+            return new Snapshot(version);
+        }
+    }
+
+    /**
+     * Reclaims the prior versions which no open snapshot can read anymore.
+     */
+    public void collectGarbage() {
+        for (final String key : priorVersions.keySet()) {
+            synchronized (keyLock(key)) {
+                final VersionedValue current = decode(valueIncludingExpired(key));
+                trimPriorVersions(key, (current == null) ? NO_VERSION : current.getVersion());
+            }
+        }
+    }
+
+    /**
+     * @return : number of prior versions kept in memory.
+     */
+    public long getPriorVersionCount() {
+        long count = 0;
+        for (final PriorVersion head : priorVersions.values()) {
+            for (PriorVersion priorVersion = head; priorVersion != null; priorVersion = priorVersion.older) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return : oldest version an open snapshot may read, the latest version if no snapshot is open.
+     */
+    private long getLowWatermark() {
+        synchronized (openSnapshots) {
+            return openSnapshots.isEmpty() ? latestVersion.get() : openSnapshots.firstKey();
+        }
+    }
+
+    private void closeSnapshot(final long version) {
+        synchronized (openSnapshots) {
+            openSnapshots.computeIfPresent(version, (openVersion, count) -> (count == 1) ? null : count - 1);
+        }
+    }
+
+    private void applied(final long version) {
+        clock.observe(version);
+        latestVersion.accumulateAndGet(version, Math::max);
+    }
+
+    /**
+     * Keeps the current value of the key as a prior version before it is overwritten. Requires the key lock.
+     * @param current : current value and expiry deadline of the key, null if it has none.
+     * @return : true if the key had a value.
+     */
+    private boolean retireCurrentVersion(final String key, final Entry<String, Long> current) {
+        if (current == null) {
+            return false;
+        }
+        final VersionedValue currentValue = decode(current.getKey());
+        pushPriorVersion(key, currentValue.getValue(), current.getValue(), currentValue.getVersion());
+        return true;
+    }
+
+    private void pushPriorVersion(final String key, final String value, final long expiresAtMillis,
+            final long version) {
+        // published before the underlying store changes, so a snapshot never misses the value it needs.
+        priorVersions.put(key, new PriorVersion(value, expiresAtMillis, version, priorVersions.get(key)));
+    }
+
+    /**
+     * Drops the prior versions of the key which no open snapshot can read. A snapshot at or after the low watermark
+     * reads the newest version at or before its own, so the prior versions after the watermark and the newest one
+     * at or before it are kept, unless the current value already is at or before the watermark. Requires the key
+     * lock.
+     * @param currentVersion : version of the current value, {@link #NO_VERSION} if the key has none.
+     */
+    private void trimPriorVersions(final String key, final long currentVersion) {
+        final PriorVersion head = priorVersions.get(key);
+        if (head == null) {
+            return;
+        }
+        final long lowWatermark = getLowWatermark();
+        if (currentVersion != NO_VERSION && currentVersion <= lowWatermark) {
+            priorVersions.remove(key);
+            return;
+        }
+        PriorVersion newestKept = null;
+        PriorVersion priorVersion = head;
+        while (priorVersion != null && priorVersion.version > lowWatermark) {
+            newestKept = priorVersion;
+            priorVersion = priorVersion.older;
+        }
+        if (priorVersion == null) {
+            return;
+        }
+        if (priorVersion.value == null) {
+            // a delete at or before the watermark reads like a key which never existed.
+            if (newestKept == null) {
+                priorVersions.remove(key);
+            } else {
+                newestKept.older = null;
+            }
+        } else {
+            priorVersion.older = null;
+        }
+    }
+
+    private void addLeafKey(final String key) {
+        leafKeys.computeIfAbsent(merkleTree.leafOf(key), leaf -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+
+    private void removeLeafKey(final String key) {
+        final Set<String> keys = leafKeys.get(merkleTree.leafOf(key));
+        if (keys != null) {
+            keys.remove(key);
+        }
+    }
+
+    private static long entryHash(final String key, final Entry<String, Long> entry) {
+        return (entry == null) ? MerkleTree.NO_ENTRY : MerkleTree.entryHash(key, entry.getKey(), entry.getValue());
+    }
+
+    private String valueIncludingExpired(final String key) {
+        final Entry<String, Long> current = keyValueStore.getIncludingExpired(key);
+        return (current == null) ? null : current.getKey();
+    }
+
+    private static String encode(final String value, final long version) {
+        return VERSION_MARKER + Long.toString(version, VERSION_RADIX) + VERSION_SEPARATOR + value;
+    }
+
+    /**
+     * Values written before the store was versioned have no version marker and read as {@link #NO_VERSION}.
+     */
+    private static VersionedValue decode(final String storedValue) {
+        if (storedValue == null) {
+            return null;
+        }
+        if (storedValue.isEmpty() || storedValue.charAt(0) != VERSION_MARKER) {
+            return new VersionedValue(storedValue, NO_VERSION);
+        }
+        final int separator = storedValue.indexOf(VERSION_SEPARATOR);
+        return new VersionedValue(storedValue.substring(separator + 1),
+            Long.parseLong(storedValue.substring(1, separator), VERSION_RADIX));
+    }
+
+    private static String value(final String storedValue) {
+        return decode(storedValue).getValue();
+    }
+
+    private Object keyLock(final String key) {
+        return keyLocks[(key.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
+    }
+
+    /**
+     * Consistent, read only view of the store as of a version. Closing it lets the prior versions it needs be
+     * reclaimed.
+     */
+    public class Snapshot implements AutoCloseable {
+        private final long version;
+
+        private Snapshot(final long version) {
+            this.version = version;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public String get(final String key) {
+            final VersionedValue versionedValue = getVersioned(key);
+            return (versionedValue == null) ? null : versionedValue.getValue();
+        }
+
+        /**
+         * @return : newest value of the key at or before the snapshot version, null if the key did not exist then
+         *         or has expired since.
+         */
+        public VersionedValue getVersioned(final String key) {
+            final long nowMillis = System.currentTimeMillis();
+            final Entry<String, Long> current = keyValueStore.getIncludingExpired(key);
+            if (current != null) {
+                final VersionedValue currentValue = decode(current.getKey());
+                if (currentValue.getVersion() <= version) {
+                    return ExpiringKeyValueStore.isExpired(current.getValue(), nowMillis) ? null : currentValue;
+                }
+            }
+            for (PriorVersion priorVersion = priorVersions.get(key); priorVersion != null;
+                    priorVersion = priorVersion.older) {
+                if (priorVersion.version <= version) {
+                    if (priorVersion.value == null || ExpiringKeyValueStore.isExpired(priorVersion.expiresAtMillis,
+                        nowMillis)) {
+                        return null;
+                    }
+                    return new VersionedValue(priorVersion.value, priorVersion.version);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void close() {
+            closeSnapshot(version);
+        }
+    }
+
+    /**
+     * Value a key had before it was overwritten or deleted. A null value marks a delete.
+     */
+    private static class PriorVersion {
+        private final String value;
+        private final long expiresAtMillis;
+        private final long version;
+        // cut by the garbage collection once no snapshot can reach the older versions.
+        private volatile PriorVersion older;
+
+        PriorVersion(final String value, final long expiresAtMillis, final long version, final PriorVersion older) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+            this.version = version;
+            this.older = older;
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package com.distributedConsistentDatabase.dataStore;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+import com.distributedConsistentDatabase.dataStore.offHeap.SlabAllocator;
+import com.distributedConsistentDatabase.dataStore.scan.KeyRange;
+
+/**
+ * Key value store which keeps keys and values outside of the java heap, so the size of the dataset does not affect
+ * garbage collection pauses. Entries are UTF-8 encoded into chunks of a {@link SlabAllocator} with an explicit
+ * memory limit. The index is a hand rolled open addressing hash table (linear probing, backward shift deletion)
+ * which also lives in direct buffers: every slot holds the chunk address and the key hash. The key space is split
+ * into segments with their own index and read write lock, so writers of different segments do not contend.
+ * @author abshukla
+ */
+public class OffHeapKeyValueStore implements KeyValueStore<String, String> {
+    public static final long DEFAULT_MAX_MEMORY_BYTES = 1024L * 1024 * 1024;
+    private static final int SEGMENTS = 16;
+    private static final int INITIAL_SEGMENT_CAPACITY = 1024;
+    private static final double MAX_LOAD_FACTOR = 0.75;
+    private static final int SLOT_SIZE_BYTES = 16;
+    private static final int ENTRY_HEADER_BYTES = 8;
+    private static final int ITERATION_BATCH_SLOTS = 1024;
+    private static final int MAX_ITERATION_RESTARTS = 4;
+
+    private final SlabAllocator allocator;
+    private final Segment[] segments;
+
+    public OffHeapKeyValueStore() {
+        this(DEFAULT_MAX_MEMORY_BYTES);
+    }
+
+    /**
+     * @param maxMemoryBytes : limit of the off heap memory used for the entries. Puts beyond the limit fail.
+     */
+    public OffHeapKeyValueStore(final long maxMemoryBytes) {
+        this.allocator = new SlabAllocator(SlabAllocator.DEFAULT_SLAB_SIZE_BYTES, maxMemoryBytes);
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String get(final String key) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final int hash = hash(keyBytes);
+        final Segment segment = segment(hash);
+        segment.lock.readLock().lock();
+        try {
+            final int slot = segment.find(keyBytes, hash);
+            if (slot < 0) {
+                return null;
+            }
+            final long address = segment.address(slot);
+            final ByteBuffer slab = allocator.slab(address);
+            final int offset = SlabAllocator.offset(address);
+            return readString(slab, offset + ENTRY_HEADER_BYTES + slab.getInt(offset),
+                slab.getInt(offset + Integer.BYTES));
+        } finally {
+            segment.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalStateException : if the memory limit is reached.
+     */
+    @Override
+    public boolean put(final String key, final String value) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        final int hash = hash(keyBytes);
+        final int entrySize = ENTRY_HEADER_BYTES + keyBytes.length + valueBytes.length;
+        final Segment segment = segment(hash);
+        segment.lock.writeLock().lock();
+        try {
+            final int slot = segment.find(keyBytes, hash);
+            if (slot >= 0) {
+                final long oldAddress = segment.address(slot);
+                final int oldEntrySize = entrySize(oldAddress);
+                if (oldEntrySize == entrySize && valueEquals(oldAddress, keyBytes.length, valueBytes)) {
+                    return false;
+                }
+                if (allocator.isSameSizeClass(oldEntrySize, entrySize)) {
+                    writeEntry(oldAddress, keyBytes, valueBytes);
+                } else {
+                    final long newAddress = allocate(entrySize);
+                    writeEntry(newAddress, keyBytes, valueBytes);
+                    segment.setSlot(slot, newAddress, hash);
+                    free(oldAddress, oldEntrySize);
+                }
+                return true;
+            }
+
+            final long address = allocate(entrySize);
+            writeEntry(address, keyBytes, valueBytes);
+            segment.insert(address, hash);
+            return true;
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean delete(final String key) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final int hash = hash(keyBytes);
+        final Segment segment = segment(hash);
+        segment.lock.writeLock().lock();
+        try {
+            final int slot = segment.find(keyBytes, hash);
+            if (slot < 0) {
+                return false;
+            }
+            final long address = segment.address(slot);
+            segment.remove(slot);
+            free(address, entrySize(address));
+            return true;
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        for (final Segment segment : segments) {
+            segment.lock.writeLock().lock();
+        }
+        try {
+            synchronized (allocator) {
+                allocator.reset();
+            }
+            for (final Segment segment : segments) {
+                segment.reset();
+            }
+        } finally {
+            for (final Segment segment : segments) {
+                segment.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Every segment is scanned in batches of slots, and the entries of a batch are decoded under the read lock of
+     * the segment but handed to the action after it is released. If entries change slots between two batches
+     * (deletes shifting entries back, or a resize) the scan of the segment restarts, so some entries may be visited
+     * twice, with their latest value last. A segment with too many restarts is scanned under its read lock.
+     */
+    @Override
+    public void forEach(final BiConsumer<? super String, ? super String> action) {
+        for (final Segment segment : segments) {
+            segment.forEach(action);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The store is not ordered, so the scan visits every entry. See {@link KeyRange#scanUnordered}.
+     */
+    @Override
+    public void scan(final String fromKey, final String toKey, final int limit,
+            final BiConsumer<? super String, ? super String> action) {
+        KeyRange.scanUnordered(this, fromKey, toKey, limit, action);
+    }
+
+    /**
+     * @return : number of entries in the store.
+     */
+    public long size() {
+        long size = 0;
+        for (final Segment segment : segments) {
+            segment.lock.readLock().lock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.lock.readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return : off heap bytes held by live entries, including the chunk rounding.
+     */
+    public long getUsedMemoryBytes() {
+        synchronized (allocator) {
+            return allocator.getUsedBytes();
+        }
+    }
+
+    /**
+     * @return : off heap bytes reserved by the slabs, bounded by the memory limit.
+     */
+    public long getReservedMemoryBytes() {
+        synchronized (allocator) {
+            return allocator.getReservedBytes();
+        }
+    }
+
+    private long allocate(final int entrySize) {
+        synchronized (allocator) {
+            return allocator.allocate(entrySize);
+        }
+    }
+
+    private void free(final long address, final int entrySize) {
+        synchronized (allocator) {
+            allocator.free(address, entrySize);
+        }
+    }
+
+    private void writeEntry(final long address, final byte[] keyBytes, final byte[] valueBytes) {
+        final ByteBuffer view = allocator.slab(address).duplicate();
+        view.position(SlabAllocator.offset(address));
+        view.putInt(keyBytes.length);
+        view.putInt(valueBytes.length);
+        view.put(keyBytes);
+        view.put(valueBytes);
+    }
+
+    private int entrySize(final long address) {
+        final ByteBuffer slab = allocator.slab(address);
+        final int offset = SlabAllocator.offset(address);
+        return ENTRY_HEADER_BYTES + slab.getInt(offset) + slab.getInt(offset + Integer.BYTES);
+    }
+
+    private boolean keyEquals(final long address, final byte[] keyBytes) {
+        final ByteBuffer slab = allocator.slab(address);
+        final int offset = SlabAllocator.offset(address);
+        if (slab.getInt(offset) != keyBytes.length) {
+            return false;
+        }
+        return bytesEqual(slab, offset + ENTRY_HEADER_BYTES, keyBytes);
+    }
+
+    private boolean valueEquals(final long address, final int keyLength, final byte[] valueBytes) {
+        return bytesEqual(allocator.slab(address), SlabAllocator.offset(address) + ENTRY_HEADER_BYTES + keyLength,
+            valueBytes);
+    }
+
+    private Entry<String, String> readEntry(final long address) {
+        final ByteBuffer slab = allocator.slab(address);
+        final int offset = SlabAllocator.offset(address);
+        final int keyLength = slab.getInt(offset);
+        final int valueLength = slab.getInt(offset + Integer.BYTES);
+        return new SimpleImmutableEntry<>(readString(slab, offset + ENTRY_HEADER_BYTES, keyLength),
+            readString(slab, offset + ENTRY_HEADER_BYTES + keyLength, valueLength));
+    }
+
+    private static String readString(final ByteBuffer slab, final int offset, final int length) {
+        final byte[] bytes = new byte[length];
+        final ByteBuffer view = slab.duplicate();
+        view.position(offset);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean bytesEqual(final ByteBuffer slab, final int offset, final byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (slab.get(offset + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(final byte[] keyBytes) {
+        int hash = 0x811c9dc5;
+        for (final byte b : keyBytes) {
+            hash ^= b;
+            hash *= 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private Segment segment(final int hash) {
+        return segments[(hash >>> 28) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Open addressing index of a segment. Slot layout: [long address + 1, 0 for empty][long hash].
+     */
+    private class Segment {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private ByteBuffer table;
+        private int capacity;
+        private int size;
+        // changes whenever entries move to other slots, which invalidates the cursor of a running iteration.
+        private long layoutVersion;
+
+        Segment() {
+            reset();
+        }
+
+        void reset() {
+            capacity = INITIAL_SEGMENT_CAPACITY;
+            table = ByteBuffer.allocateDirect(capacity * SLOT_SIZE_BYTES);
+            size = 0;
+            layoutVersion++;
+        }
+
+        void forEach(final BiConsumer<? super String, ? super String> action) {
+            final List<Entry<String, String>> batch = new ArrayList<>();
+            int slot = 0;
+            int restarts = 0;
+            long expectedLayoutVersion = -1;
+            boolean isScanComplete = false;
+            while (false == isScanComplete) {
+                batch.clear();
+                lock.readLock().lock();
+                try {
+                    if (expectedLayoutVersion >= 0 && layoutVersion != expectedLayoutVersion) {
+                        slot = 0;
+                        restarts++;
+                    }
+                    expectedLayoutVersion = layoutVersion;
+                    if (restarts > MAX_ITERATION_RESTARTS) {
+                        for (; slot < capacity; slot++) {
+                            if (false == isEmpty(slot)) {
+                                final Entry<String, String> entry = readEntry(address(slot));
+                                action.accept(entry.getKey(), entry.getValue());
+                            }
+                        }
+                    }
+                    final int batchEnd = Math.min(slot + ITERATION_BATCH_SLOTS, capacity);
+                    for (; slot < batchEnd; slot++) {
+                        if (false == isEmpty(slot)) {
+                            batch.add(readEntry(address(slot)));
+                        }
+                    }
+                    isScanComplete = slot >= capacity;
+                } finally {
+                    lock.readLock().unlock();
+                }
+                for (final Entry<String, String> entry : batch) {
+                    action.accept(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        long address(final int slot) {
+            return table.getLong(slot * SLOT_SIZE_BYTES) - 1;
+        }
+
+        int slotHash(final int slot) {
+            return (int) table.getLong(slot * SLOT_SIZE_BYTES + Long.BYTES);
+        }
+
+        boolean isEmpty(final int slot) {
+            return table.getLong(slot * SLOT_SIZE_BYTES) == 0;
+        }
+
+        void setSlot(final int slot, final long address, final int hash) {
+            table.putLong(slot * SLOT_SIZE_BYTES, address + 1);
+            table.putLong(slot * SLOT_SIZE_BYTES + Long.BYTES, hash);
+        }
+
+        void clearSlot(final int slot) {
+            table.putLong(slot * SLOT_SIZE_BYTES, 0);
+        }
+
+        int find(final byte[] keyBytes, final int hash) {
+            int slot = hash & (capacity - 1);
+            while (false == isEmpty(slot)) {
+                if (slotHash(slot) == hash && keyEquals(address(slot), keyBytes)) {
+                    return slot;
+                }
+                slot = (slot + 1) & (capacity - 1);
+            }
+            return -1;
+        }
+
+        void insert(final long address, final int hash) {
+            if (size + 1 > capacity * MAX_LOAD_FACTOR) {
+                resize();
+            }
+            int slot = hash & (capacity - 1);
+            while (false == isEmpty(slot)) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            setSlot(slot, address, hash);
+            size++;
+        }
+
+        /**
+         * Removes the slot and shifts back the following entries of the probe sequence, so no tombstones are needed.
+         */
+        void remove(final int removedSlot) {
+            int hole = removedSlot;
+            int slot = (hole + 1) & (capacity - 1);
+            while (false == isEmpty(slot)) {
+                final int home = slotHash(slot) & (capacity - 1);
+                // move the entry into the hole if its home slot is not between the hole and its current slot.
+                final boolean canMove = (hole <= slot) ? (home <= hole || home > slot) : (home <= hole && home > slot);
+                if (canMove) {
+                    setSlot(hole, address(slot), slotHash(slot));
+                    hole = slot;
+                    layoutVersion++;
+                }
+                slot = (slot + 1) & (capacity - 1);
+            }
+            clearSlot(hole);
+            size--;
+        }
+
+        private void resize() {
+            final ByteBuffer oldTable = table;
+            final int oldCapacity = capacity;
+            capacity = oldCapacity * 2;
+            table = ByteBuffer.allocateDirect(capacity * SLOT_SIZE_BYTES);
+            layoutVersion++;
+            for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+                final long storedAddress = oldTable.getLong(oldSlot * SLOT_SIZE_BYTES);
+                if (storedAddress != 0) {
+                    final int hash = (int) oldTable.getLong(oldSlot * SLOT_SIZE_BYTES + Long.BYTES);
+                    int slot = hash & (capacity - 1);
+                    while (false == isEmpty(slot)) {
+                        slot = (slot + 1) & (capacity - 1);
+                    }
+                    setSlot(slot, storedAddress - 1, hash);
+                }
+            }
+        }
+    }
+}
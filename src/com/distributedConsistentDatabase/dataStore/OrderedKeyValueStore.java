@@ -0,0 +1,84 @@
+package com.distributedConsistentDatabase.dataStore;
+
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiConsumer;
+
+import com.distributedConsistentDatabase.dataStore.scan.KeyRange;
+
+/**
+ * In memory key value store which keeps its keys sorted in a concurrent skip list, so that range and prefix scans
+ * only visit the keys they return. Point operations cost O(log n) instead of the O(1) of the hash based store.
+ * @author abshukla
+ */
+public class OrderedKeyValueStore implements KeyValueStore<String, String> {
+    private final ConcurrentNavigableMap<String, String> entries;
+
+    public OrderedKeyValueStore() {
+        this.entries = new ConcurrentSkipListMap<>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String get(final String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean put(final String key, final String value) {
+        return false == value.equals(entries.put(key, value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean delete(final String key) {
+        return entries.remove(key) != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEach(final BiConsumer<? super String, ? super String> action) {
+        entries.forEach(action);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void scan(final String fromKey, final String toKey, final int limit,
+            final BiConsumer<? super String, ? super String> action) {
+        if (limit <= 0 || KeyRange.isEmpty(fromKey, toKey)) {
+            return;
+        }
+        NavigableMap<String, String> range = (fromKey == null) ? entries : entries.tailMap(fromKey, true);
+        if (toKey != null) {
+            range = range.headMap(toKey, false);
+        }
+        int visited = 0;
+        for (final Entry<String, String> entry : range.entrySet()) {
+            action.accept(entry.getKey(), entry.getValue());
+            if (++visited == limit) {
+                return;
+            }
+        }
+    }
+}
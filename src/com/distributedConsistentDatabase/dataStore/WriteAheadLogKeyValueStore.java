@@ -0,0 +1,230 @@
+package com.distributedConsistentDatabase.dataStore;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+import com.distributedConsistentDatabase.dataStore.scan.KeyRange;
+import com.distributedConsistentDatabase.dataStore.wal.LogRecord;
+import com.distributedConsistentDatabase.dataStore.wal.WriteAheadLog;
+
+/**
+ * Durable key value store. Entries are served from memory and every mutation is persisted to a write ahead log
+ * before the call returns, so the store survives a restart. Concurrent mutations share fsyncs through the group
+ * commit of the log. Mutations of the same key are serialized on a lock stripe so that the log order always matches
+ * the order in which they were applied in memory.
+ * Once enough segments pile up, a background checkpoint rewrites the live entries into fresh segments and truncates
+ * the older ones, without blocking writers.
+ * @author abshukla
+ */
+public class WriteAheadLogKeyValueStore implements KeyValueStore<String, String>, Closeable {
+    private static final int LOCK_STRIPES = 64;
+    private static final int DEFAULT_SEGMENTS_BETWEEN_CHECKPOINTS = 8;
+
+    private final Map<String, String> inMemoryStore;
+    private final Object[] keyLocks;
+    // mutations hold the read lock. clear holds the write lock to order itself against every key.
+    private final ReadWriteLock clearLock;
+    private final WriteAheadLog writeAheadLog;
+    private final int segmentsBetweenCheckpoints;
+    private final ExecutorService checkpointExecutor;
+    private final AtomicBoolean isCheckpointRunning;
+    private volatile int segmentCountAfterCheckpoint;
+
+    /**
+     * Creates the store with the default segment size and group commit window.
+     * @param directory : directory for the log segments.
+     */
+    public WriteAheadLogKeyValueStore(final File directory) {
+        this(directory, WriteAheadLog.DEFAULT_SEGMENT_SIZE_BYTES, WriteAheadLog.DEFAULT_GROUP_COMMIT_WINDOW_MICROS,
+            DEFAULT_SEGMENTS_BETWEEN_CHECKPOINTS);
+    }
+
+    /**
+     * Creates the store and replays the existing log from the directory.
+     * @param directory : directory for the log segments.
+     * @param segmentSizeBytes : size after which a log segment is rotated.
+     * @param groupCommitWindowMicros : group commit window of the log.
+     * @param segmentsBetweenCheckpoints : number of new segments which trigger a checkpoint and truncation.
+     */
+    public WriteAheadLogKeyValueStore(final File directory, final long segmentSizeBytes,
+            final long groupCommitWindowMicros, final int segmentsBetweenCheckpoints) {
+        this.inMemoryStore = new ConcurrentHashMap<>();
+        this.keyLocks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            keyLocks[i] = new Object();
+        }
+        this.clearLock = new ReentrantReadWriteLock();
+        this.segmentsBetweenCheckpoints = segmentsBetweenCheckpoints;
+        this.isCheckpointRunning = new AtomicBoolean(false);
+        this.checkpointExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "wal-checkpoint-" + directory.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writeAheadLog = new WriteAheadLog(directory, segmentSizeBytes, groupCommitWindowMicros, this::apply);
+        this.segmentCountAfterCheckpoint = writeAheadLog.getSegmentCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String get(final String key) {
+        return inMemoryStore.get(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean put(final String key, final String value) {
+        final String previousValue;
+        final CompletableFuture<Void> submission;
+        clearLock.readLock().lock();
+        try {
+            synchronized (keyLock(key)) {
+                previousValue = inMemoryStore.put(key, value);
+                submission = writeAheadLog.submit(LogRecord.put(key, value));
+            }
+        } finally {
+            clearLock.readLock().unlock();
+        }
+        awaitDurable(submission);
+        return false == value.equals(previousValue);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean delete(final String key) {
+        final String previousValue;
+        final CompletableFuture<Void> submission;
+        clearLock.readLock().lock();
+        try {
+            synchronized (keyLock(key)) {
+                previousValue = inMemoryStore.remove(key);
+                if (previousValue == null) {
+                    return false;
+                }
+                submission = writeAheadLog.submit(LogRecord.delete(key));
+            }
+        } finally {
+            clearLock.readLock().unlock();
+        }
+        awaitDurable(submission);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        final CompletableFuture<Void> submission;
+        clearLock.writeLock().lock();
+        try {
+            inMemoryStore.clear();
+            submission = writeAheadLog.submit(LogRecord.clear());
+        } finally {
+            clearLock.writeLock().unlock();
+        }
+        awaitDurable(submission);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEach(final BiConsumer<? super String, ? super String> action) {
+        inMemoryStore.forEach(action);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The store is not ordered, so the scan visits every entry. See {@link KeyRange#scanUnordered}.
+     */
+    @Override
+    public void scan(final String fromKey, final String toKey, final int limit,
+            final BiConsumer<? super String, ? super String> action) {
+        KeyRange.scanUnordered(this, fromKey, toKey, limit, action);
+    }
+
+    /**
+     * Rewrites all the live entries to new log segments and truncates the older segments. Writers keep running
+     * while the checkpoint is taken: each entry is re-logged under its key lock, so any later mutation of the key is
+     * logged after the checkpointed copy.
+     */
+    public void checkpoint() {
+        final long firstCheckpointSegment = writeAheadLog.rotate();
+        CompletableFuture<Void> lastSubmission = CompletableFuture.completedFuture(null);
+        clearLock.readLock().lock();
+        try {
+            for (final String key : inMemoryStore.keySet()) {
+                synchronized (keyLock(key)) {
+                    final String value = inMemoryStore.get(key);
+                    if (value != null) {
+                        lastSubmission = writeAheadLog.submit(LogRecord.put(key, value));
+                    }
+                }
+            }
+        } finally {
+            clearLock.readLock().unlock();
+        }
+        WriteAheadLog.awaitDurable(lastSubmission);
+        writeAheadLog.truncateBefore(firstCheckpointSegment);
+        segmentCountAfterCheckpoint = writeAheadLog.getSegmentCount();
+    }
+
+    /**
+     * Flushes pending mutations and closes the underlying log.
+     */
+    @Override
+    public void close() {
+        checkpointExecutor.shutdown();
+        writeAheadLog.close();
+    }
+
+    private void awaitDurable(final CompletableFuture<Void> submission) {
+        WriteAheadLog.awaitDurable(submission);
+        if (writeAheadLog.getSegmentCount() - segmentCountAfterCheckpoint >= segmentsBetweenCheckpoints
+            && isCheckpointRunning.compareAndSet(false, true)) {
+            checkpointExecutor.execute(() -> {
+                try {
+                    checkpoint();
+                } finally {
+                    isCheckpointRunning.set(false);
+                }
+            });
+        }
+    }
+
+    private void apply(final LogRecord record) {
+        switch (record.getType()) {
+        case PUT:
+            inMemoryStore.put(record.getKey(), record.getValue());
+            break;
+        case DELETE:
+            inMemoryStore.remove(record.getKey());
+            break;
+        case CLEAR:
+            inMemoryStore.clear();
+            break;
+        default:
+            throw new IllegalStateException("unknown log record type: " + record.getType());
+        }
+    }
+
+    private Object keyLock(final String key) {
+        return keyLocks[(key.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
+    }
+}
@@ -0,0 +1,56 @@
+package com.distributedConsistentDatabase.dataStore.cache;
+
+/**
+ * Point in time statistics of a bounded key value store.
+ * @author abshukla
+ */
+public class CacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long evictionWeightBytes;
+    private final long weightedSizeBytes;
+    private final long maximumWeightBytes;
+
+    public CacheStats(final long hitCount, final long missCount, final long evictionCount,
+            final long evictionWeightBytes, final long weightedSizeBytes, final long maximumWeightBytes) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.evictionWeightBytes = evictionWeightBytes;
+        this.weightedSizeBytes = weightedSizeBytes;
+        this.maximumWeightBytes = maximumWeightBytes;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return : share of the reads which found their key, 1 if there were no reads.
+     */
+    public double getHitRatio() {
+        final long requestCount = hitCount + missCount;
+        return (requestCount == 0) ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getEvictionWeightBytes() {
+        return evictionWeightBytes;
+    }
+
+    public long getWeightedSizeBytes() {
+        return weightedSizeBytes;
+    }
+
+    public long getMaximumWeightBytes() {
+        return maximumWeightBytes;
+    }
+}
@@ -0,0 +1,114 @@
+package com.distributedConsistentDatabase.dataStore.cache;
+
+/**
+ * Count-min sketch estimating how often keys were seen recently, with 4 bit counters packed into longs. Every key
+ * maps to one counter in each of four rows; its frequency is the minimum of those counters. Once the number of
+ * increments reaches ten times the width of the sketch, all counters are halved, so that the frequencies age and
+ * the sketch follows changes of the popular keys. Costs 8 bytes per tracked entry.
+ * The class is not thread safe.
+ * @author abshukla
+ */
+public class FrequencySketch {
+    private static final long[] SEEDS = new long[] {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MAX_FREQUENCY = 15;
+    private static final int MINIMUM_WIDTH = 64;
+    private static final int MAXIMUM_WIDTH = 1 << 30;
+
+    private long[] table;
+    private int sampleSize;
+    private int size;
+
+    public FrequencySketch() {
+        ensureCapacity(MINIMUM_WIDTH);
+    }
+
+    /**
+     * Widens the sketch for the expected number of entries. Widening forgets the collected frequencies.
+     * @param expectedEntries : number of entries to track.
+     */
+    public void ensureCapacity(final long expectedEntries) {
+        final int width = (int) Math.min(Math.max(expectedEntries, MINIMUM_WIDTH), MAXIMUM_WIDTH);
+        if (table != null && table.length >= width) {
+            return;
+        }
+        table = new long[Integer.highestOneBit(width - 1) << 1];
+        sampleSize = (int) Math.min(10L * table.length, Integer.MAX_VALUE);
+        size = 0;
+    }
+
+    /**
+     * @return : width of the sketch.
+     */
+    public int getWidth() {
+        return table.length;
+    }
+
+    /**
+     * @param hashCode : hash code of the key.
+     * @return : estimated recent frequency of the key, at most 15.
+     */
+    public int frequency(final int hashCode) {
+        final int hash = spread(hashCode);
+        final int start = (hash & 3) << 2;
+        int frequency = MAX_FREQUENCY;
+        for (int row = 0; row < SEEDS.length; row++) {
+            final int index = indexOf(hash, row);
+            final int count = (int) ((table[index] >>> ((start + row) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Counts an occurrence of the key.
+     * @param hashCode : hash code of the key.
+     */
+    public void increment(final int hashCode) {
+        final int hash = spread(hashCode);
+        final int start = (hash & 3) << 2;
+        boolean isAdded = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            isAdded |= incrementAt(indexOf(hash, row), start + row);
+        }
+        if (isAdded && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(final int index, final int counter) {
+        final int offset = counter << 2;
+        final long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Halves every counter.
+     */
+    private void reset() {
+        int oddCount = 0;
+        for (int i = 0; i < table.length; i++) {
+            oddCount += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size - (oddCount >>> 2)) >>> 1;
+    }
+
+    private int indexOf(final int hash, final int row) {
+        long index = (hash + SEEDS[row]) * SEEDS[row];
+        index += index >>> 32;
+        return ((int) index) & (table.length - 1);
+    }
+
+    private static int spread(final int hashCode) {
+        int hash = ((hashCode >>> 16) ^ hashCode) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
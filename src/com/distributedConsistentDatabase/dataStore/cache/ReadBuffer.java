@@ -0,0 +1,72 @@
+package com.distributedConsistentDatabase.dataStore.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Lossy buffer recording reads, so that readers never wait for the lock of the eviction policy. Readers are spread
+ * over striped ring buffers by thread. A full ring drops the read, which only makes the policy slightly less
+ * accurate, and asks the caller to drain. Draining must be done by a single thread at a time.
+ * @param <E> : type of the recorded elements.
+ * @author abshukla
+ */
+public class ReadBuffer<E> {
+    private static final int RING_SIZE = 64;
+    private static final int RING_MASK = RING_SIZE - 1;
+
+    private final Ring<E>[] rings;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ReadBuffer() {
+        final int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+        this.rings = new Ring[stripes];
+        for (int i = 0; i < stripes; i++) {
+            rings[i] = new Ring<>();
+        }
+    }
+
+    /**
+     * Records the element unless the ring of the current thread is full.
+     * @return : false if the ring is full and should be drained.
+     */
+    public boolean offer(final E element) {
+        final long threadId = Thread.currentThread().getId();
+        final Ring<E> ring = rings[(int) ((threadId ^ (threadId >>> 16)) * 0x9e3779b9L >>> 16) & (rings.length - 1)];
+        final long tail = ring.writeCounter.get();
+        if (tail - ring.readCounter >= RING_SIZE) {
+            return false;
+        }
+        if (ring.writeCounter.compareAndSet(tail, tail + 1)) {
+            ring.buffer.lazySet((int) (tail & RING_MASK), element);
+        }
+        return true;
+    }
+
+    /**
+     * Hands every recorded element to the consumer.
+     */
+    public void drainTo(final Consumer<E> consumer) {
+        for (final Ring<E> ring : rings) {
+            long head = ring.readCounter;
+            final long tail = ring.writeCounter.get();
+            for (; head < tail; head++) {
+                final int index = (int) (head & RING_MASK);
+                final E element = ring.buffer.get(index);
+                if (element == null) {
+                    // claimed but not yet published by its writer.
+                    break;
+                }
+                ring.buffer.lazySet(index, null);
+                consumer.accept(element);
+            }
+            ring.readCounter = head;
+        }
+    }
+
+    private static class Ring<E> {
+        private final AtomicLong writeCounter = new AtomicLong();
+        private final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<>(RING_SIZE);
+        private volatile long readCounter;
+    }
+}
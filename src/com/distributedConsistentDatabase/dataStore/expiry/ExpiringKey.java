@@ -0,0 +1,23 @@
+package com.distributedConsistentDatabase.dataStore.expiry;
+
+/**
+ * Key together with the deadline at which it expires.
+ * @author abshukla
+ */
+public class ExpiringKey {
+    private final String key;
+    private final long expiresAtMillis;
+
+    public ExpiringKey(final String key, final long expiresAtMillis) {
+        this.key = key;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+}
@@ -0,0 +1,134 @@
+package com.distributedConsistentDatabase.dataStore.expiry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel for key deadlines. Every level is a ring of buckets, each bucket covering one tick of
+ * the level, and every level ticks as slowly as a full rotation of the level below it. A deadline is added to the
+ * lowest level whose rotation reaches it, and when a coarser bucket comes up it is cascaded into the finer levels.
+ * Adding a deadline and advancing by a tick cost O(1), however many deadlines are tracked.
+ * Deadlines are never removed: callers check whether a fired key still carries the same deadline.
+ * The class is not thread safe.
+ * @author abshukla
+ */
+public class HierarchicalTimingWheel {
+    public static final long DEFAULT_TICK_MILLIS = 100L;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final int wheelSize;
+    private final List<Level> levels;
+    private long size;
+
+    public HierarchicalTimingWheel(final long startMillis) {
+        this(DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE, startMillis);
+    }
+
+    /**
+     * @param tickMillis : resolution of the lowest level.
+     * @param wheelSize : number of buckets of every level.
+     * @param startMillis : current time.
+     */
+    public HierarchicalTimingWheel(final long tickMillis, final int wheelSize, final long startMillis) {
+        this.wheelSize = wheelSize;
+        this.levels = new ArrayList<>();
+        this.levels.add(new Level(tickMillis, startMillis));
+    }
+
+    /**
+     * Adds a deadline.
+     * @return : false if the deadline has already passed, in which case it is not tracked.
+     */
+    public boolean add(final ExpiringKey expiringKey) {
+        final long expiresAtMillis = expiringKey.getExpiresAtMillis();
+        if (expiresAtMillis < levels.get(0).currentMillis) {
+            return false;
+        }
+        for (int level = 0; ; level++) {
+            if (level == levels.size()) {
+                final Level lowerLevel = levels.get(level - 1);
+                levels.add(new Level(lowerLevel.intervalMillis, lowerLevel.currentMillis));
+            }
+            final Level currentLevel = levels.get(level);
+            if (expiresAtMillis < currentLevel.currentMillis + currentLevel.intervalMillis) {
+                currentLevel.bucket(expiresAtMillis).add(expiringKey);
+                size++;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Advances the wheel and collects every deadline whose tick has fully passed.
+     * @param nowMillis : current time.
+     * @param expiredKeys : receives the expired keys.
+     */
+    public void advance(final long nowMillis, final List<ExpiringKey> expiredKeys) {
+        final Level lowestLevel = levels.get(0);
+        while (nowMillis >= lowestLevel.currentMillis + lowestLevel.tickMillis) {
+            final List<ExpiringKey> bucket = lowestLevel.drain(lowestLevel.currentMillis);
+            size -= bucket.size();
+            expiredKeys.addAll(bucket);
+            lowestLevel.currentMillis += lowestLevel.tickMillis;
+            cascade();
+        }
+    }
+
+    /**
+     * @return : number of tracked deadlines.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Moves the bucket which a coarser level reaches into the finer levels, whenever the level below completes a
+     * tick of the coarser level.
+     */
+    private void cascade() {
+        for (int level = 1; level < levels.size(); level++) {
+            final Level currentLevel = levels.get(level);
+            if (levels.get(level - 1).currentMillis < currentLevel.currentMillis + currentLevel.tickMillis) {
+                return;
+            }
+            currentLevel.currentMillis += currentLevel.tickMillis;
+            final List<ExpiringKey> bucket = currentLevel.drain(currentLevel.currentMillis);
+            size -= bucket.size();
+            for (final ExpiringKey expiringKey : bucket) {
+                add(expiringKey);
+            }
+        }
+    }
+
+    private class Level {
+        private final long tickMillis;
+        private final long intervalMillis;
+        private final List<List<ExpiringKey>> buckets;
+        // start of the current tick. the bucket of the current tick is still pending.
+        private long currentMillis;
+
+        Level(final long tickMillis, final long startMillis) {
+            this.tickMillis = tickMillis;
+            this.intervalMillis = tickMillis * wheelSize;
+            this.currentMillis = startMillis - (startMillis % tickMillis);
+            this.buckets = new ArrayList<>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                buckets.add(new ArrayList<>());
+            }
+        }
+
+        List<ExpiringKey> bucket(final long expiresAtMillis) {
+            return buckets.get((int) ((expiresAtMillis / tickMillis) % wheelSize));
+        }
+
+        List<ExpiringKey> drain(final long tickStartMillis) {
+            final int index = (int) ((tickStartMillis / tickMillis) % wheelSize);
+            final List<ExpiringKey> bucket = buckets.get(index);
+            if (bucket.isEmpty()) {
+                return bucket;
+            }
+            buckets.set(index, new ArrayList<>());
+            return bucket;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.distributedConsistentDatabase.dataStore.lsm;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Immutable bloom filter over the keys of an SSTable. Bit positions are derived from a single 64 bit hash by double
+ * hashing, so building and probing the filter hash each key only once.
+ * @author abshukla
+ */
+public class BloomFilter {
+    private static final int BITS_PER_KEY = 10;
+    private static final int HASH_FUNCTIONS = 7;
+
+    private final long[] bits;
+    private final int hashFunctions;
+
+    private BloomFilter(final long[] bits, final int hashFunctions) {
+        this.bits = bits;
+        this.hashFunctions = hashFunctions;
+    }
+
+    /**
+     * Builds the filter from the key hashes (see {@link #hash(String)}).
+     * @param keyHashes : hashes of the keys to add.
+     * @param keyCount : number of valid entries in keyHashes.
+     * @return : bloom filter
+     */
+    public static BloomFilter build(final long[] keyHashes, final int keyCount) {
+        final long bitCount = Math.max(64L, (long) keyCount * BITS_PER_KEY);
+        final BloomFilter filter = new BloomFilter(new long[(int) ((bitCount + 63) / 64)], HASH_FUNCTIONS);
+        for (int i = 0; i < keyCount; i++) {
+            filter.add(keyHashes[i]);
+        }
+        return filter;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the UTF-8 key bytes followed by a final avalanche mix.
+     */
+    public static long hash(final String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (final byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= (hash >>> 33);
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= (hash >>> 33);
+        return hash;
+    }
+
+    /**
+     * @param hash : hash of the key to probe (see {@link #hash(String)}).
+     * @return : false if the key is definitely absent, true if it may be present.
+     */
+    public boolean mightContain(final long hash) {
+        final long bitCount = (long) bits.length * 64;
+        final int h1 = (int) hash;
+        final int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashFunctions; i++) {
+            final long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void writeTo(final DataOutput output) throws IOException {
+        output.writeInt(hashFunctions);
+        output.writeInt(bits.length);
+        for (final long word : bits) {
+            output.writeLong(word);
+        }
+    }
+
+    public static BloomFilter readFrom(final DataInput input) throws IOException {
+        final int hashFunctions = input.readInt();
+        final long[] bits = new long[input.readInt()];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = input.readLong();
+        }
+        return new BloomFilter(bits, hashFunctions);
+    }
+
+    private void add(final long hash) {
+        final long bitCount = (long) bits.length * 64;
+        final int h1 = (int) hash;
+        final int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashFunctions; i++) {
+            final long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+            bits[(int) (bit >>> 6)] |= (1L << bit);
+        }
+    }
+}
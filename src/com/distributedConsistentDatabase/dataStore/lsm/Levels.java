@@ -0,0 +1,190 @@
+package com.distributedConsistentDatabase.dataStore.lsm;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable view of the SSTables of every level. Level 0 holds the flushed memtables, newest first, and its tables
+ * may overlap. Every deeper level holds tables with disjoint key ranges sorted by key. Changes produce a new
+ * instance, so readers can keep using the instance they picked up without any locking.
+ * @author abshukla
+ */
+public class Levels {
+    public static final int MAX_LEVELS = 7;
+    private static final String NEXT_FILE_NUMBER_PREFIX = "nextFileNumber=";
+
+    private final List<List<SSTable>> tables;
+
+    private Levels(final List<List<SSTable>> tables) {
+        this.tables = tables;
+    }
+
+    public static Levels empty() {
+        final List<List<SSTable>> tables = new ArrayList<>();
+        for (int level = 0; level < MAX_LEVELS; level++) {
+            tables.add(Collections.<SSTable>emptyList());
+        }
+        return new Levels(tables);
+    }
+
+    public List<SSTable> getLevel(final int level) {
+        return tables.get(level);
+    }
+
+    public long getLevelSizeBytes(final int level) {
+        long size = 0;
+        for (final SSTable table : tables.get(level)) {
+            size += table.getSizeBytes();
+        }
+        return size;
+    }
+
+    public List<SSTable> getAllTables() {
+        final List<SSTable> allTables = new ArrayList<>();
+        for (final List<SSTable> level : tables) {
+            allTables.addAll(level);
+        }
+        return allTables;
+    }
+
+    /**
+     * Finds the only table of a sorted level (level >= 1) which may hold the key.
+     * @return : table, or null if no table covers the key.
+     */
+    public SSTable findTable(final int level, final String key) {
+        final List<SSTable> levelTables = tables.get(level);
+        int low = 0;
+        int high = levelTables.size() - 1;
+        // first table whose max key is >= key
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (levelTables.get(mid).getMaxKey().compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (levelTables.isEmpty()) {
+            return null;
+        }
+        final SSTable table = levelTables.get(low);
+        return (table.getMinKey().compareTo(key) <= 0 && table.getMaxKey().compareTo(key) >= 0) ? table : null;
+    }
+
+    public boolean containsAll(final Collection<SSTable> candidates) {
+        final Set<SSTable> present = Collections.newSetFromMap(new IdentityHashMap<SSTable, Boolean>());
+        present.addAll(getAllTables());
+        return present.containsAll(candidates);
+    }
+
+    /**
+     * @return : new instance with the flushed table added as the newest level 0 table.
+     */
+    public Levels withFlushedTable(final SSTable table) {
+        final List<List<SSTable>> newTables = new ArrayList<>(tables);
+        final List<SSTable> level0 = new ArrayList<>();
+        level0.add(table);
+        level0.addAll(tables.get(0));
+        newTables.set(0, Collections.unmodifiableList(level0));
+        return new Levels(newTables);
+    }
+
+    /**
+     * @return : new instance where the removed tables are dropped from every level and the added tables are placed
+     * in the output level.
+     */
+    public Levels withCompaction(final Collection<SSTable> removed, final int outputLevel,
+            final Collection<SSTable> added) {
+        final Set<SSTable> removedSet = Collections.newSetFromMap(new IdentityHashMap<SSTable, Boolean>());
+        removedSet.addAll(removed);
+        final List<List<SSTable>> newTables = new ArrayList<>();
+        for (int level = 0; level < MAX_LEVELS; level++) {
+            final List<SSTable> levelTables = new ArrayList<>();
+            for (final SSTable table : tables.get(level)) {
+                if (false == removedSet.contains(table)) {
+                    levelTables.add(table);
+                }
+            }
+            if (level == outputLevel) {
+                levelTables.addAll(added);
+                levelTables.sort(Comparator.comparing(SSTable::getMinKey));
+            }
+            newTables.add(Collections.unmodifiableList(levelTables));
+        }
+        return new Levels(newTables);
+    }
+
+    /**
+     * Atomically replaces the manifest with the tables of this instance.
+     */
+    public void writeManifest(final File manifestFile, final long nextFileNumber) throws IOException {
+        final File temporaryFile = new File(manifestFile.getPath() + ".tmp");
+        try (FileOutputStream fileOutput = new FileOutputStream(temporaryFile);
+                Writer writer = new OutputStreamWriter(fileOutput, StandardCharsets.UTF_8)) {
+            writer.write(NEXT_FILE_NUMBER_PREFIX + nextFileNumber + "\n");
+            for (int level = 0; level < MAX_LEVELS; level++) {
+                for (final SSTable table : tables.get(level)) {
+                    writer.write(level + " " + table.getFileNumber() + "\n");
+                }
+            }
+            writer.flush();
+            fileOutput.getFD().sync();
+        }
+        Files.move(temporaryFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the manifest and opens every table it references.
+     * @param manifestFile : manifest to read.
+     * @param tableFiles : map from file number to table file.
+     * @param nextFileNumber : single element array receiving the persisted next file number.
+     */
+    public static Levels readManifest(final File manifestFile, final Map<Long, File> tableFiles,
+            final long[] nextFileNumber) throws IOException {
+        final List<List<SSTable>> tables = new ArrayList<>();
+        for (int level = 0; level < MAX_LEVELS; level++) {
+            tables.add(new ArrayList<>());
+        }
+        try (BufferedReader reader = Files.newBufferedReader(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(NEXT_FILE_NUMBER_PREFIX)) {
+                    nextFileNumber[0] = Long.parseLong(line.substring(NEXT_FILE_NUMBER_PREFIX.length()));
+                } else if (false == line.isEmpty()) {
+                    final String[] parts = line.split(" ");
+                    final long fileNumber = Long.parseLong(parts[1]);
+                    final File tableFile = tableFiles.get(fileNumber);
+                    if (tableFile == null) {
+                        throw new IOException("sstable referenced by the manifest is missing: " + fileNumber);
+                    }
+                    tables.get(Integer.parseInt(parts[0])).add(SSTable.open(tableFile, fileNumber));
+                }
+            }
+        }
+        tables.get(0).sort(Comparator.comparing(SSTable::getFileNumber).reversed());
+        for (int level = 1; level < MAX_LEVELS; level++) {
+            tables.get(level).sort(Comparator.comparing(SSTable::getMinKey));
+        }
+        final List<List<SSTable>> immutableTables = new ArrayList<>();
+        for (final List<SSTable> level : tables) {
+            immutableTables.add(Collections.unmodifiableList(level));
+        }
+        return new Levels(immutableTables);
+    }
+}
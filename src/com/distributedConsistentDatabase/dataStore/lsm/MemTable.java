@@ -0,0 +1,82 @@
+package com.distributedConsistentDatabase.dataStore.lsm;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent, sorted in-memory table receiving the writes before they are flushed to an SSTable. Deleted keys are
+ * kept as {@link SSTable#TOMBSTONE} so that they shadow older values on disk.
+ * @author abshukla
+ */
+public class MemTable {
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+    private final ConcurrentNavigableMap<String, String> entries;
+    private final AtomicLong estimatedSizeBytes;
+    private volatile long firstNewerLogSegment;
+
+    public MemTable() {
+        this.entries = new ConcurrentSkipListMap<>();
+        this.estimatedSizeBytes = new AtomicLong();
+        this.firstNewerLogSegment = -1;
+    }
+
+    /**
+     * @return : value, {@link SSTable#TOMBSTONE} if the key was deleted, null if the key was not written.
+     */
+    public String get(final String key) {
+        return entries.get(key);
+    }
+
+    public void put(final String key, final String value) {
+        entries.put(key, value);
+        estimatedSizeBytes.addAndGet(ENTRY_OVERHEAD_BYTES + 2L * (key.length() + value.length()));
+    }
+
+    public void delete(final String key) {
+        put(key, SSTable.TOMBSTONE);
+    }
+
+    public void clear() {
+        entries.clear();
+        estimatedSizeBytes.set(0);
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public long getEstimatedSizeBytes() {
+        return estimatedSizeBytes.get();
+    }
+
+    /**
+     * Sorted iteration over the entries, tombstones included.
+     */
+    public Iterator<Entry<String, String>> iterator() {
+        return entries.entrySet().iterator();
+    }
+
+    /**
+     * Sorted iteration over the entries with a key at or after fromKey, tombstones included.
+     * @param fromKey : first key to visit, null to start from the first entry.
+     */
+    public Iterator<Entry<String, String>> iterator(final String fromKey) {
+        return (fromKey == null) ? iterator() : entries.tailMap(fromKey, true).entrySet().iterator();
+    }
+
+    /**
+     * @return : first write ahead log segment which only holds writes newer than this table. Segments before it can
+     * be truncated once this table is flushed.
+     */
+    public long getFirstNewerLogSegment() {
+        return firstNewerLogSegment;
+    }
+
+    public void setFirstNewerLogSegment(final long firstNewerLogSegment) {
+        this.firstNewerLogSegment = firstNewerLogSegment;
+    }
+}
@@ -0,0 +1,76 @@
+package com.distributedConsistentDatabase.dataStore.lsm;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Merges several sorted iterators into a single sorted iterator without duplicates. When the same key appears in
+ * more than one source, the entry of the source with the lowest index (the newest one) wins.
+ * @author abshukla
+ */
+public class MergingIterator implements Iterator<Entry<String, String>> {
+    private final PriorityQueue<Source> sources;
+
+    /**
+     * @param iterators : sorted iterators, newest first.
+     */
+    public MergingIterator(final List<Iterator<Entry<String, String>>> iterators) {
+        this.sources = new PriorityQueue<>(Math.max(1, iterators.size()));
+        for (int i = 0; i < iterators.size(); i++) {
+            final Source source = new Source(iterators.get(i), i);
+            if (source.advance()) {
+                sources.add(source);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return false == sources.isEmpty();
+    }
+
+    @Override
+    public Entry<String, String> next() {
+        final Source newest = sources.poll();
+        if (newest == null) {
+            throw new NoSuchElementException();
+        }
+        final Entry<String, String> result = newest.current;
+        // drop the shadowed versions of the same key from the older sources.
+        while (false == sources.isEmpty() && sources.peek().current.getKey().equals(result.getKey())) {
+            final Source shadowed = sources.poll();
+            if (shadowed.advance()) {
+                sources.add(shadowed);
+            }
+        }
+        if (newest.advance()) {
+            sources.add(newest);
+        }
+        return result;
+    }
+
+    private static class Source implements Comparable<Source> {
+        private final Iterator<Entry<String, String>> iterator;
+        private final int priority;
+        private Entry<String, String> current;
+
+        Source(final Iterator<Entry<String, String>> iterator, final int priority) {
+            this.iterator = iterator;
+            this.priority = priority;
+        }
+
+        boolean advance() {
+            current = iterator.hasNext() ? iterator.next() : null;
+            return current != null;
+        }
+
+        @Override
+        public int compareTo(final Source other) {
+            final int keyComparison = current.getKey().compareTo(other.current.getKey());
+            return (keyComparison != 0) ? keyComparison : Integer.compare(priority, other.priority);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.distributedConsistentDatabase.dataStore.lsm;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable sorted table on disk. The block index and the bloom filter are held in memory, so a point lookup reads
+ * at most a single data block, and none at all when the bloom filter rules the key out.
+ * Layout: [data blocks][index][bloom filter][footer] where the footer is
+ * [long indexOffset][long bloomOffset][long entryCount][int magic].
+ * @author abshukla
+ */
+public class SSTable implements Closeable {
+    /** Marker value for deleted keys. Compared by identity. */
+    public static final String TOMBSTONE = new String("__tombstone__");
+    static final int MAGIC = 0x5354424c;
+    private static final int FOOTER_SIZE = Long.BYTES * 3 + Integer.BYTES;
+
+    private final File file;
+    private final long fileNumber;
+    private final FileChannel channel;
+    private final String[] blockFirstKeys;
+    private final long[] blockOffsets;
+    private final int[] blockLengths;
+    private final String lastKey;
+    private final BloomFilter bloomFilter;
+    private final long entryCount;
+    private final long dataSize;
+    private final long fileSize;
+
+    private SSTable(final File file, final long fileNumber, final FileChannel channel, final String[] blockFirstKeys,
+            final long[] blockOffsets, final int[] blockLengths, final String lastKey, final BloomFilter bloomFilter,
+            final long entryCount, final long dataSize, final long fileSize) {
+        this.file = file;
+        this.fileNumber = fileNumber;
+        this.channel = channel;
+        this.blockFirstKeys = blockFirstKeys;
+        this.blockOffsets = blockOffsets;
+        this.blockLengths = blockLengths;
+        this.lastKey = lastKey;
+        this.bloomFilter = bloomFilter;
+        this.entryCount = entryCount;
+        this.dataSize = dataSize;
+        this.fileSize = fileSize;
+    }
+
+    public static boolean isTombstone(final String value) {
+        return value == TOMBSTONE;
+    }
+
+    /**
+     * Opens the table and loads its index and bloom filter.
+     * @param file : table file.
+     * @param fileNumber : number of the table, larger numbers are newer.
+     * @return : opened table.
+     */
+    public static SSTable open(final File file, final long fileNumber) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            final long fileSize = channel.size();
+            final ByteBuffer footer = readFully(channel, fileSize - FOOTER_SIZE, FOOTER_SIZE);
+            final long indexOffset = footer.getLong();
+            footer.getLong(); // bloom offset. the bloom filter directly follows the index.
+            final long entryCount = footer.getLong();
+            if (footer.getInt() != MAGIC) {
+                throw new IOException("not an sstable: " + file);
+            }
+
+            final ByteBuffer metadata = readFully(channel, indexOffset, (int) (fileSize - FOOTER_SIZE - indexOffset));
+            final DataInputStream input = new DataInputStream(
+                new ByteArrayInputStream(metadata.array(), 0, metadata.limit()));
+            final int blockCount = input.readInt();
+            final String[] blockFirstKeys = new String[blockCount];
+            final long[] blockOffsets = new long[blockCount];
+            final int[] blockLengths = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                blockFirstKeys[i] = readString(input, input.readInt());
+                blockOffsets[i] = input.readLong();
+                blockLengths[i] = input.readInt();
+            }
+            final String lastKey = readString(input, input.readInt());
+            final BloomFilter bloomFilter = BloomFilter.readFrom(input);
+            return new SSTable(file, fileNumber, channel, blockFirstKeys, blockOffsets, blockLengths, lastKey,
+                bloomFilter, entryCount, indexOffset, fileSize);
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Point lookup.
+     * @param key : key to look up.
+     * @param keyHash : {@link BloomFilter#hash(String)} of the key.
+     * @return : value, {@link #TOMBSTONE} if the key was deleted, null if the table knows nothing about the key.
+     */
+    public String get(final String key, final long keyHash) throws IOException {
+        if (blockFirstKeys.length == 0 || key.compareTo(blockFirstKeys[0]) < 0 || key.compareTo(lastKey) > 0
+            || false == bloomFilter.mightContain(keyHash)) {
+            return null;
+        }
+
+        final int blockIndex = blockFor(key);
+        final ByteBuffer block = readFully(channel, blockOffsets[blockIndex], blockLengths[blockIndex]);
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        while (block.hasRemaining()) {
+            final int entryKeyLength = block.getInt();
+            final int keyPosition = block.position();
+            block.position(keyPosition + entryKeyLength);
+            final int valueLength = block.getInt();
+            if (entryKeyLength == keyBytes.length && equalsRange(block.array(), keyPosition, keyBytes)) {
+                if (valueLength < 0) {
+                    return TOMBSTONE;
+                }
+                return new String(block.array(), block.position(), valueLength, StandardCharsets.UTF_8);
+            }
+            block.position(block.position() + Math.max(valueLength, 0));
+        }
+        return null;
+    }
+
+    /**
+     * Iterates over all the entries in key order, tombstones included. Reads the data blocks sequentially through
+     * the open handle, so a table whose file was already deleted by a compaction can still be iterated.
+     */
+    public Iterator<Entry<String, String>> iterator() throws IOException {
+        return iterator(0L);
+    }
+
+    /**
+     * Iterates in key order from the data block which may hold fromKey, tombstones included. Entries before fromKey
+     * within that block are still returned.
+     * @param fromKey : key to seek to, null to start from the first entry.
+     */
+    public Iterator<Entry<String, String>> iterator(final String fromKey) throws IOException {
+        if (fromKey == null || blockFirstKeys.length == 0) {
+            return iterator(0L);
+        }
+        return iterator(blockOffsets[blockFor(fromKey)]);
+    }
+
+    private Iterator<Entry<String, String>> iterator(final long startPosition) throws IOException {
+        final InputStream stream = new BufferedInputStream(new ChannelInputStream(channel, startPosition), 1 << 16);
+        final DataInputStream input = new DataInputStream(stream);
+        return new Iterator<Entry<String, String>>() {
+            private long position = startPosition;
+
+            @Override
+            public boolean hasNext() {
+                if (position < dataSize) {
+                    return true;
+                }
+                try {
+                    input.close();
+                } catch (final IOException e) {
+                    // no-op
+                }
+                return false;
+            }
+
+            @Override
+            public Entry<String, String> next() {
+                if (false == hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    final int keyLength = input.readInt();
+                    final String key = readString(input, keyLength);
+                    final int valueLength = input.readInt();
+                    final String value = (valueLength < 0) ? TOMBSTONE : readString(input, valueLength);
+                    position += Integer.BYTES * 2 + keyLength + Math.max(valueLength, 0);
+                    return new SimpleImmutableEntry<>(key, value);
+                } catch (final IOException e) {
+                    throw new IllegalStateException("unable to read sstable: " + file, e);
+                }
+            }
+        };
+    }
+
+    public boolean overlaps(final String minKey, final String maxKey) {
+        return blockFirstKeys.length > 0 && getMinKey().compareTo(maxKey) <= 0 && lastKey.compareTo(minKey) >= 0;
+    }
+
+    public String getMinKey() {
+        return blockFirstKeys.length == 0 ? "" : blockFirstKeys[0];
+    }
+
+    public String getMaxKey() {
+        return lastKey;
+    }
+
+    public long getFileNumber() {
+        return fileNumber;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    public long getSizeBytes() {
+        return fileSize;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @return : last block whose first key is <= key, the first block if there is none.
+     */
+    private int blockFor(final String key) {
+        int low = 0;
+        int high = blockFirstKeys.length - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (blockFirstKeys[mid].compareTo(key) <= 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private static boolean equalsRange(final byte[] array, final int offset, final byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (array[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String readString(final DataInputStream input, final int length) throws IOException {
+        final byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Input stream over positional reads of a shared channel. It never moves the position of the channel, and
+     * closing it leaves the channel open.
+     */
+    private static class ChannelInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+
+        ChannelInputStream(final FileChannel channel, final long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] singleByte = new byte[1];
+            return (read(singleByte, 0, 1) < 0) ? -1 : (singleByte[0] & 0xff);
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+            final int read = channel.read(ByteBuffer.wrap(bytes, offset, length), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+
+    private static ByteBuffer readFully(final FileChannel channel, final long position, final int length)
+            throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("unexpected end of sstable");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,141 @@
+package com.distributedConsistentDatabase.dataStore.lsm;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes an immutable, sorted SSTable file sequentially. Entries have to be added in ascending key order. The file
+ * holds the data blocks followed by the block index, the bloom filter and a fixed size footer (see {@link SSTable}).
+ * @author abshukla
+ */
+public class SSTableWriter implements Closeable {
+    static final int BLOCK_SIZE_BYTES = 4096;
+
+    private final File file;
+    private final FileOutputStream fileOutput;
+    private final DataOutputStream output;
+    private final ByteArrayOutputStream blockBuffer;
+    private final DataOutputStream blockOutput;
+    private final List<String> blockFirstKeys;
+    private final List<long[]> blockPositions;
+    private long[] keyHashes;
+    private int entryCount;
+    private long offset;
+    private String firstKeyOfBlock;
+    private String lastKey;
+
+    public SSTableWriter(final File file) throws IOException {
+        this.file = file;
+        this.fileOutput = new FileOutputStream(file);
+        this.output = new DataOutputStream(new BufferedOutputStream(fileOutput, 1 << 16));
+        this.blockBuffer = new ByteArrayOutputStream(BLOCK_SIZE_BYTES * 2);
+        this.blockOutput = new DataOutputStream(blockBuffer);
+        this.blockFirstKeys = new ArrayList<>();
+        this.blockPositions = new ArrayList<>();
+        this.keyHashes = new long[1024];
+    }
+
+    /**
+     * Appends an entry. Keys must be strictly increasing.
+     * @param key : key
+     * @param value : value, or {@link SSTable#TOMBSTONE} for deleted keys.
+     */
+    public void add(final String key, final String value) throws IOException {
+        if (lastKey != null && lastKey.compareTo(key) >= 0) {
+            throw new IllegalStateException("keys must be added in ascending order: " + key + " after " + lastKey);
+        }
+        if (firstKeyOfBlock == null) {
+            firstKeyOfBlock = key;
+        }
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        blockOutput.writeInt(keyBytes.length);
+        blockOutput.write(keyBytes);
+        if (SSTable.isTombstone(value)) {
+            blockOutput.writeInt(-1);
+        } else {
+            final byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+            blockOutput.writeInt(valueBytes.length);
+            blockOutput.write(valueBytes);
+        }
+
+        if (entryCount == keyHashes.length) {
+            keyHashes = Arrays.copyOf(keyHashes, entryCount * 2);
+        }
+        keyHashes[entryCount++] = BloomFilter.hash(key);
+        lastKey = key;
+        if (blockBuffer.size() >= BLOCK_SIZE_BYTES) {
+            flushBlock();
+        }
+    }
+
+    /**
+     * @return : bytes written to the file so far (data blocks only).
+     */
+    public long getEstimatedSize() {
+        return offset + blockBuffer.size();
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Writes the index, bloom filter and footer and syncs the file to disk.
+     */
+    public void finish() throws IOException {
+        flushBlock();
+        final long indexOffset = offset;
+        output.writeInt(blockFirstKeys.size());
+        for (int i = 0; i < blockFirstKeys.size(); i++) {
+            final byte[] keyBytes = blockFirstKeys.get(i).getBytes(StandardCharsets.UTF_8);
+            output.writeInt(keyBytes.length);
+            output.write(keyBytes);
+            output.writeLong(blockPositions.get(i)[0]);
+            output.writeInt((int) blockPositions.get(i)[1]);
+        }
+        final byte[] lastKeyBytes = (lastKey == null ? "" : lastKey).getBytes(StandardCharsets.UTF_8);
+        output.writeInt(lastKeyBytes.length);
+        output.write(lastKeyBytes);
+        // tables are bounded to a few megabytes, so the int counter of the stream cannot overflow.
+        final long bloomOffset = output.size();
+
+        BloomFilter.build(keyHashes, entryCount).writeTo(output);
+        output.writeLong(indexOffset);
+        output.writeLong(bloomOffset);
+        output.writeLong(entryCount);
+        output.writeInt(SSTable.MAGIC);
+        output.flush();
+        fileOutput.getFD().sync();
+        close();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockBuffer.size() == 0) {
+            return;
+        }
+        blockFirstKeys.add(firstKeyOfBlock);
+        blockPositions.add(new long[] {offset, blockBuffer.size()});
+        blockBuffer.writeTo(output);
+        offset += blockBuffer.size();
+        blockBuffer.reset();
+        firstKeyOfBlock = null;
+    }
+}
@@ -0,0 +1,155 @@
+package com.distributedConsistentDatabase.dataStore.merkle;
+
+import java.util.Arrays;
+
+/**
+ * Merkle tree over the hash ranges of a key value store, updated in place on every write. The hash space of the keys
+ * is split into a fixed number of leaf ranges. The hash of a leaf is the XOR of the hashes of its entries, so a write
+ * replaces the hash of the old entry with the one of the new entry without visiting the other entries of the leaf,
+ * and the hashes on the path to the root are recomputed. Two stores holding the same entries have the same tree, and
+ * comparing trees from the root down finds the leaf ranges which differ in a number of steps proportional to the
+ * divergence. The nodes are numbered as a binary heap: the root is 1, and the children of node n are 2n and 2n + 1.
+ * @author abshukla
+ */
+public class MerkleTree {
+    public static final int ROOT = 1;
+    public static final long NO_ENTRY = 0L;
+    public static final int DEFAULT_DEPTH = 10;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int depth;
+    private final int leafCount;
+    // hashes of the nodes, indexed by node id. the hash of an empty range is 0.
+    private final long[] hashes;
+
+    public MerkleTree() {
+        this(DEFAULT_DEPTH);
+    }
+
+    /**
+     * @param depth : number of levels below the root. The tree has 2^depth leaves.
+     */
+    public MerkleTree(final int depth) {
+        if (depth < 1 || depth > 20) {
+            throw new IllegalArgumentException("depth has to be between 1 and 20");
+        }
+        this.depth = depth;
+        this.leafCount = 1 << depth;
+        this.hashes = new long[2 * leafCount];
+    }
+
+    /**
+     * Replaces the hash of an entry in its leaf.
+     * @param key : key of the entry.
+     * @param oldEntryHash : hash of the entry before the write, {@link #NO_ENTRY} if the key did not exist.
+     * @param newEntryHash : hash of the entry after the write, {@link #NO_ENTRY} if the key was removed.
+     */
+    public synchronized void update(final String key, final long oldEntryHash, final long newEntryHash) {
+        if (oldEntryHash == newEntryHash) {
+            return;
+        }
+        int node = leafOf(key);
+        hashes[node] ^= oldEntryHash ^ newEntryHash;
+        while (node > ROOT) {
+            node >>>= 1;
+            hashes[node] = combine(hashes[2 * node], hashes[2 * node + 1]);
+        }
+    }
+
+    /**
+     * @return : hash of the node.
+     */
+    public synchronized long getHash(final int node) {
+        checkNode(node);
+        return hashes[node];
+    }
+
+    /**
+     * @return : hashes of the nodes, in the order of the node ids.
+     */
+    public synchronized long[] getHashes(final int[] nodes) {
+        final long[] nodeHashes = new long[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            checkNode(nodes[i]);
+            nodeHashes[i] = hashes[nodes[i]];
+        }
+        return nodeHashes;
+    }
+
+    /**
+     * Resets the tree to the one of an empty store.
+     */
+    public synchronized void clear() {
+        Arrays.fill(hashes, 0L);
+    }
+
+    /**
+     * @return : id of the leaf holding the key.
+     */
+    public int leafOf(final String key) {
+        return leafCount + (int) (hashKey(key) >>> (Long.SIZE - depth));
+    }
+
+    public boolean isLeaf(final int node) {
+        return node >= leafCount;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Hash of an entry, as it is stored on every replica. It is never {@link #NO_ENTRY}.
+     * @param key : key of the entry.
+     * @param storedValue : value as it is stored, including its version.
+     * @param expiresAtMillis : expiry deadline of the entry.
+     */
+    public static long entryHash(final String key, final String storedValue, final long expiresAtMillis) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = fnv(hash, key);
+        // separates the key from the value, so that moving characters between them changes the hash.
+        hash = (hash ^ key.length()) * FNV_PRIME;
+        hash = fnv(hash, storedValue);
+        hash = mix(hash ^ mix(expiresAtMillis));
+        return (hash == NO_ENTRY) ? 1L : hash;
+    }
+
+    private void checkNode(final int node) {
+        if (node < ROOT || node >= hashes.length) {
+            throw new IllegalArgumentException("no such node: " + node);
+        }
+    }
+
+    private static long hashKey(final String key) {
+        return mix(fnv(FNV_OFFSET_BASIS, key));
+    }
+
+    private static long combine(final long leftHash, final long rightHash) {
+        if (leftHash == 0L && rightHash == 0L) {
+            return 0L;
+        }
+        return mix(leftHash + 0x9e3779b97f4a7c15L * mix(rightHash));
+    }
+
+    private static long fnv(final long seed, final String value) {
+        long hash = seed;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Finalizer of murmur3, spreading every input bit over the whole hash.
+     */
+    private static long mix(final long value) {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,37 @@
+package com.distributedConsistentDatabase.dataStore.mvcc;
+
+/**
+ * Hybrid logical clock handing out write versions. A version holds the wall clock milliseconds in its high bits and
+ * a logical counter in its low {@value #LOGICAL_BITS} bits. Versions only grow, even when the wall clock goes back,
+ * and a node observing the versions of another node never hands out a smaller one, so a newly elected leader keeps
+ * ordering its writes after the ones of the previous leader.
+ * @author abshukla
+ */
+public class HybridLogicalClock {
+    public static final int LOGICAL_BITS = 16;
+
+    private long lastVersion;
+
+    /**
+     * @return : new version, larger than every version handed out or observed before.
+     */
+    public synchronized long tick() {
+        lastVersion = Math.max(lastVersion + 1, System.currentTimeMillis() << LOGICAL_BITS);
+        return lastVersion;
+    }
+
+    /**
+     * Moves the clock past a version created by another node.
+     * @param version : observed version.
+     */
+    public synchronized void observe(final long version) {
+        lastVersion = Math.max(lastVersion, version);
+    }
+
+    /**
+     * @return : wall clock milliseconds at which the version was created.
+     */
+    public static long toMillis(final long version) {
+        return version >>> LOGICAL_BITS;
+    }
+}
@@ -0,0 +1,36 @@
+package com.distributedConsistentDatabase.dataStore.mvcc;
+
+/**
+ * Entry of a versioned store as it is held by a replica, with the version of the write which put it and its expiry
+ * deadline. Expired entries which were not removed yet are entries as well.
+ * @author abshukla
+ */
+public class VersionedEntry {
+    private final String key;
+    private final String value;
+    private final long version;
+    private final long expiresAtMillis;
+
+    public VersionedEntry(final String key, final String value, final long version, final long expiresAtMillis) {
+        this.key = key;
+        this.value = value;
+        this.version = version;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+}
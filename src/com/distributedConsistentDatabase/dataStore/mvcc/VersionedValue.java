@@ -0,0 +1,43 @@
+package com.distributedConsistentDatabase.dataStore.mvcc;
+
+import java.util.Objects;
+
+/**
+ * Value of an entry with the version of the write which created it. Two versioned values are equal if they hold the
+ * same value with the same version, that is if they were put by the same write.
+ * @author abshukla
+ */
+public class VersionedValue {
+    private final String value;
+    private final long version;
+
+    public VersionedValue(final String value, final long version) {
+        this.value = value;
+        this.version = version;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (false == other instanceof VersionedValue) {
+            return false;
+        }
+        final VersionedValue otherValue = (VersionedValue) other;
+        return this.version == otherValue.version && Objects.equals(this.value, otherValue.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(value, version);
+    }
+}
@@ -0,0 +1,166 @@
+package com.distributedConsistentDatabase.dataStore.offHeap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Allocates chunks of off-heap memory out of fixed size direct buffers (slabs). Every slab is dedicated to one size
+ * class and carved into equally sized chunks. Freed chunks are pushed onto an intrusive free list of their size
+ * class (the address of the next free chunk is stored in the chunk itself), so the allocator does not keep any heap
+ * structure per chunk. New slabs are only allocated while the memory limit allows it.
+ * Addresses encode the slab index in the high 32 bits and the offset in the slab in the low 32 bits.
+ * Allocation and release are not thread safe. Slabs may be read concurrently with an allocation.
+ * @author abshukla
+ */
+public class SlabAllocator {
+    public static final int DEFAULT_SLAB_SIZE_BYTES = 1024 * 1024;
+    private static final int MIN_CHUNK_SIZE_BYTES = 64;
+    private static final double SIZE_CLASS_GROWTH_FACTOR = 1.25;
+    private static final long NO_ADDRESS = -1L;
+
+    private final int slabSizeBytes;
+    private final long maxMemoryBytes;
+    private final int[] chunkSizes;
+    private final long[] freeListHeads;
+    private final int[] currentSlabs;
+    private final int[] nextChunkOffsets;
+    // fixed size so that readers may look up slabs while another thread adds one.
+    private final ByteBuffer[] slabs;
+    private int slabCount;
+    private long usedBytes;
+
+    /**
+     * @param slabSizeBytes : size of each slab, which is also the largest chunk that can be allocated.
+     * @param maxMemoryBytes : limit on the total size of the slabs.
+     */
+    public SlabAllocator(final int slabSizeBytes, final long maxMemoryBytes) {
+        this.slabSizeBytes = slabSizeBytes;
+        this.maxMemoryBytes = maxMemoryBytes;
+        final List<Integer> sizes = new ArrayList<>();
+        int size = MIN_CHUNK_SIZE_BYTES;
+        while (size < slabSizeBytes) {
+            sizes.add(size);
+            // keep chunks 8 byte aligned
+            size = Math.max(size + 8, ((int) (size * SIZE_CLASS_GROWTH_FACTOR) + 7) & ~7);
+        }
+        sizes.add(slabSizeBytes);
+        this.chunkSizes = new int[sizes.size()];
+        for (int i = 0; i < chunkSizes.length; i++) {
+            chunkSizes[i] = sizes.get(i);
+        }
+        this.freeListHeads = new long[chunkSizes.length];
+        this.currentSlabs = new int[chunkSizes.length];
+        this.nextChunkOffsets = new int[chunkSizes.length];
+        for (int sizeClass = 0; sizeClass < chunkSizes.length; sizeClass++) {
+            freeListHeads[sizeClass] = NO_ADDRESS;
+            currentSlabs[sizeClass] = -1;
+        }
+        this.slabs = new ByteBuffer[(int) Math.max(1, maxMemoryBytes / slabSizeBytes)];
+    }
+
+    /**
+     * Allocates a chunk which can hold the requested number of bytes.
+     * @param sizeBytes : bytes required.
+     * @return : address of the chunk.
+     * @throws IllegalArgumentException : if the size is larger than a slab.
+     * @throws IllegalStateException : if the memory limit is reached.
+     */
+    public long allocate(final int sizeBytes) {
+        final int sizeClass = sizeClass(sizeBytes);
+        final long freeChunk = freeListHeads[sizeClass];
+        if (freeChunk != NO_ADDRESS) {
+            freeListHeads[sizeClass] = slab(freeChunk).getLong(offset(freeChunk));
+            usedBytes += chunkSizes[sizeClass];
+            return freeChunk;
+        }
+
+        if (currentSlabs[sizeClass] < 0 || nextChunkOffsets[sizeClass] + chunkSizes[sizeClass] > slabSizeBytes) {
+            if (slabCount == slabs.length) {
+                throw new IllegalStateException("off heap memory limit reached: " + maxMemoryBytes + " bytes");
+            }
+            slabs[slabCount] = ByteBuffer.allocateDirect(slabSizeBytes);
+            currentSlabs[sizeClass] = slabCount++;
+            nextChunkOffsets[sizeClass] = 0;
+        }
+        final long address = ((long) currentSlabs[sizeClass] << 32) | nextChunkOffsets[sizeClass];
+        nextChunkOffsets[sizeClass] += chunkSizes[sizeClass];
+        usedBytes += chunkSizes[sizeClass];
+        return address;
+    }
+
+    /**
+     * Returns the chunk to the free list of its size class.
+     * @param address : address returned by {@link #allocate(int)}.
+     * @param sizeBytes : size which was requested when allocating the chunk.
+     */
+    public void free(final long address, final int sizeBytes) {
+        final int sizeClass = sizeClass(sizeBytes);
+        slab(address).putLong(offset(address), freeListHeads[sizeClass]);
+        freeListHeads[sizeClass] = address;
+        usedBytes -= chunkSizes[sizeClass];
+    }
+
+    /**
+     * @return : true if a chunk allocated for the first size can be reused for the second one.
+     */
+    public boolean isSameSizeClass(final int firstSizeBytes, final int secondSizeBytes) {
+        return sizeClass(firstSizeBytes) == sizeClass(secondSizeBytes);
+    }
+
+    /**
+     * Drops every slab. All the previously returned addresses become invalid.
+     */
+    public void reset() {
+        for (int i = 0; i < slabCount; i++) {
+            slabs[i] = null;
+        }
+        slabCount = 0;
+        usedBytes = 0;
+        for (int sizeClass = 0; sizeClass < chunkSizes.length; sizeClass++) {
+            freeListHeads[sizeClass] = NO_ADDRESS;
+            currentSlabs[sizeClass] = -1;
+            nextChunkOffsets[sizeClass] = 0;
+        }
+    }
+
+    public ByteBuffer slab(final long address) {
+        return slabs[(int) (address >>> 32)];
+    }
+
+    public static int offset(final long address) {
+        return (int) address;
+    }
+
+    /**
+     * @return : bytes of the chunks currently handed out.
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return : bytes reserved by the slabs.
+     */
+    public long getReservedBytes() {
+        return (long) slabCount * slabSizeBytes;
+    }
+
+    private int sizeClass(final int sizeBytes) {
+        if (sizeBytes > slabSizeBytes) {
+            throw new IllegalArgumentException("entry of " + sizeBytes + " bytes is larger than the slab size "
+                + slabSizeBytes);
+        }
+        int low = 0;
+        int high = chunkSizes.length - 1;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (chunkSizes[mid] < sizeBytes) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
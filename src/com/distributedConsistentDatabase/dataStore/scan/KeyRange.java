@@ -0,0 +1,91 @@
+package com.distributedConsistentDatabase.dataStore.scan;
+
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+import com.distributedConsistentDatabase.dataStore.KeyValueStore;
+
+/**
+ * Helpers for the key ranges of {@link KeyValueStore#scan}. A range holds the keys with fromKey <= key < toKey in
+ * the natural order of strings, where a null bound leaves that side of the range open.
+ * @author abshukla
+ */
+public final class KeyRange {
+
+    private KeyRange() {
+    }
+
+    /**
+     * @return : true if the key is within the range.
+     */
+    public static boolean contains(final String fromKey, final String toKey, final String key) {
+        return (fromKey == null || fromKey.compareTo(key) <= 0) && false == isBeyond(toKey, key);
+    }
+
+    /**
+     * @return : true if the key sorts at or after the exclusive upper bound.
+     */
+    public static boolean isBeyond(final String toKey, final String key) {
+        return toKey != null && key.compareTo(toKey) >= 0;
+    }
+
+    /**
+     * @return : true if no key can be within the range.
+     */
+    public static boolean isEmpty(final String fromKey, final String toKey) {
+        return fromKey != null && toKey != null && fromKey.compareTo(toKey) >= 0;
+    }
+
+    /**
+     * @return : smallest key which sorts after the given key.
+     */
+    public static String successor(final String key) {
+        return key + '\u0000';
+    }
+
+    /**
+     * Exclusive upper bound of the keys starting with the prefix, so that a prefix scan is the range
+     * [prefix, prefixEnd(prefix)).
+     * @param prefix : key prefix.
+     * @return : upper bound, null if the range is open ended.
+     */
+    public static String prefixEnd(final String prefix) {
+        for (int i = prefix.length() - 1; i >= 0; i--) {
+            final char character = prefix.charAt(i);
+            if (character != Character.MAX_VALUE) {
+                return prefix.substring(0, i) + (char) (character + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Scan for stores without a key order. Every entry is visited, and the first keys of the range are kept in a
+     * sorted map bounded by the limit, so the memory held does not grow with the store.
+     * @param keyValueStore : store to scan.
+     * @param fromKey : inclusive lower bound, null for no bound.
+     * @param toKey : exclusive upper bound, null for no bound.
+     * @param limit : maximum number of entries to visit.
+     * @param action : action to perform on the entries, in key order.
+     */
+    public static <V> void scanUnordered(final KeyValueStore<String, V> keyValueStore, final String fromKey,
+            final String toKey, final int limit, final BiConsumer<? super String, ? super V> action) {
+        if (limit <= 0 || isEmpty(fromKey, toKey)) {
+            return;
+        }
+        final TreeMap<String, V> firstEntries = new TreeMap<>();
+        keyValueStore.forEach((key, value) -> {
+            if (contains(fromKey, toKey, key)
+                && (firstEntries.size() < limit || key.compareTo(firstEntries.lastKey()) < 0)) {
+                firstEntries.put(key, value);
+                if (firstEntries.size() > limit) {
+                    firstEntries.pollLastEntry();
+                }
+            }
+        });
+        for (final Entry<String, V> entry : firstEntries.entrySet()) {
+            action.accept(entry.getKey(), entry.getValue());
+        }
+    }
+}
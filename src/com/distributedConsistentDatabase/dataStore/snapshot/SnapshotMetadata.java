@@ -0,0 +1,65 @@
+package com.distributedConsistentDatabase.dataStore.snapshot;
+
+/**
+ * Description of a snapshot file, as written or as loaded.
+ * @author abshukla
+ */
+public class SnapshotMetadata {
+    private final long lastAppliedWritePosition;
+    private final long logIndex;
+    private final long logTerm;
+    private final long createdAtMillis;
+    private final long entryCount;
+    private final long checksum;
+    private final long sizeBytes;
+
+    public SnapshotMetadata(final long lastAppliedWritePosition, final long logIndex, final long logTerm,
+            final long createdAtMillis, final long entryCount, final long checksum, final long sizeBytes) {
+        this.lastAppliedWritePosition = lastAppliedWritePosition;
+        this.logIndex = logIndex;
+        this.logTerm = logTerm;
+        this.createdAtMillis = createdAtMillis;
+        this.entryCount = entryCount;
+        this.checksum = checksum;
+        this.sizeBytes = sizeBytes;
+    }
+
+    /**
+     * @return : position of the last write which is guaranteed to be part of the snapshot. Later writes have to be
+     * fetched separately.
+     */
+    public long getLastAppliedWritePosition() {
+        return lastAppliedWritePosition;
+    }
+
+    /**
+     * @return : index of the last entry of the replicated log which is guaranteed to be part of the snapshot, 0 if
+     * none.
+     */
+    public long getLogIndex() {
+        return logIndex;
+    }
+
+    /**
+     * @return : term of the entry at the log index.
+     */
+    public long getLogTerm() {
+        return logTerm;
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    public long getChecksum() {
+        return checksum;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+}
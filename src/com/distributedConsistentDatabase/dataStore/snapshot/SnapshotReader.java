@@ -0,0 +1,162 @@
+package com.distributedConsistentDatabase.dataStore.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import com.distributedConsistentDatabase.dataStore.KeyValueStore;
+
+/**
+ * Loads a snapshot written by {@link SnapshotWriter} into a key value store. The file is read through memory mapped
+ * windows, so the entries are decoded straight from the page cache without any read system calls or intermediate
+ * copies. The checksum is verified while the entries are loaded. A corrupt snapshot clears the store again and fails
+ * the load.
+ * @author abshukla
+ */
+public class SnapshotReader {
+    // a single mapping is limited to 2 GB. larger snapshots are read through consecutive windows.
+    private static final long DEFAULT_WINDOW_SIZE_BYTES = 256L * 1024 * 1024;
+
+    /**
+     * Loads the snapshot into the store, which is expected to be empty.
+     * @param snapshotFile : snapshot to load.
+     * @param keyValueStore : store receiving the entries.
+     * @return : metadata of the loaded snapshot.
+     */
+    public static SnapshotMetadata load(final File snapshotFile, final KeyValueStore<String, String> keyValueStore) {
+        return load(snapshotFile, keyValueStore, DEFAULT_WINDOW_SIZE_BYTES);
+    }
+
+    static SnapshotMetadata load(final File snapshotFile, final KeyValueStore<String, String> keyValueStore,
+            final long windowSizeBytes) {
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            if (fileSize < SnapshotWriter.HEADER_SIZE + SnapshotWriter.TRAILER_SIZE) {
+                throw new IOException("snapshot is truncated");
+            }
+            final MappedInput input = new MappedInput(channel, fileSize - Long.BYTES, windowSizeBytes);
+            if (input.getInt() != SnapshotWriter.MAGIC) {
+                throw new IOException("not a snapshot");
+            }
+            final int version = input.getInt();
+            if (version != SnapshotWriter.FORMAT_VERSION && version != SnapshotWriter.FORMAT_VERSION_WITHOUT_LOG) {
+                throw new IOException("unsupported snapshot version: " + version);
+            }
+            final long lastAppliedWritePosition = input.getLong();
+            final boolean hasLog = (version != SnapshotWriter.FORMAT_VERSION_WITHOUT_LOG);
+            final long logIndex = hasLog ? input.getLong() : 0L;
+            final long logTerm = hasLog ? input.getLong() : 0L;
+            final long createdAtMillis = input.getLong();
+
+            long entryCount = 0;
+            try {
+                int keyLength;
+                while ((keyLength = input.getInt()) != SnapshotWriter.END_OF_ENTRIES) {
+                    final String key = input.getString(keyLength);
+                    final String value = input.getString(input.getInt());
+                    keyValueStore.put(key, value);
+                    entryCount++;
+                }
+                final long expectedEntryCount = input.getLong();
+                final long checksum = input.finishChecksum();
+                final ByteBuffer storedChecksum = ByteBuffer.allocate(Long.BYTES);
+                while (storedChecksum.hasRemaining()) {
+                    if (channel.read(storedChecksum, fileSize - Long.BYTES + storedChecksum.position()) < 0) {
+                        throw new IOException("snapshot is truncated");
+                    }
+                }
+                storedChecksum.flip();
+                if (storedChecksum.getLong() != checksum || expectedEntryCount != entryCount) {
+                    throw new IOException("snapshot checksum mismatch");
+                }
+                return new SnapshotMetadata(lastAppliedWritePosition, logIndex, logTerm, createdAtMillis, entryCount,
+                    checksum, fileSize);
+            } catch (final IOException | RuntimeException e) {
+                keyValueStore.clear();
+                throw e;
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException("unable to load snapshot: " + snapshotFile, e);
+        }
+    }
+
+    /**
+     * Sequential reader over memory mapped windows of the checksummed part of the file.
+     */
+    private static class MappedInput {
+        private final FileChannel channel;
+        private final long limit;
+        private final long windowSizeBytes;
+        private final CRC32 checksum;
+        private ByteBuffer window;
+        private long windowStart;
+
+        MappedInput(final FileChannel channel, final long limit, final long windowSizeBytes) {
+            this.channel = channel;
+            this.limit = limit;
+            this.windowSizeBytes = windowSizeBytes;
+            this.checksum = new CRC32();
+        }
+
+        int getInt() throws IOException {
+            require(Integer.BYTES);
+            return window.getInt();
+        }
+
+        long getLong() throws IOException {
+            require(Long.BYTES);
+            return window.getLong();
+        }
+
+        String getString(final int length) throws IOException {
+            if (length < 0) {
+                throw new IOException("snapshot is corrupt");
+            }
+            require(length);
+            final byte[] bytes = new byte[length];
+            window.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return : checksum of every byte read so far.
+         */
+        long finishChecksum() {
+            updateChecksum();
+            return checksum.getValue();
+        }
+
+        /**
+         * Maps the next window if the current one holds fewer than the required bytes.
+         */
+        private void require(final int length) throws IOException {
+            if (window != null && window.remaining() >= length) {
+                return;
+            }
+            final long position = (window == null) ? 0 : windowStart + window.position();
+            if (position + length > limit) {
+                throw new IOException("snapshot is truncated");
+            }
+            updateChecksum();
+            windowStart = position;
+            window = channel.map(MapMode.READ_ONLY, position,
+                Math.min(Math.max(windowSizeBytes, length), limit - position));
+        }
+
+        private void updateChecksum() {
+            if (window != null) {
+                final ByteBuffer consumed = window.duplicate();
+                consumed.flip();
+                checksum.update(consumed);
+                // the consumed bytes are now part of the checksum.
+                windowStart += window.position();
+                window = window.slice();
+            }
+        }
+    }
+}
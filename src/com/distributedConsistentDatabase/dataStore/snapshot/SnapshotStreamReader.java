@@ -0,0 +1,77 @@
+package com.distributedConsistentDatabase.dataStore.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+
+/**
+ * Reads the frames written by {@link SnapshotStreamWriter}. One frame is held in memory at a time, and its checksum
+ * is verified before any of its entries is handed out.
+ * @author abshukla
+ */
+public class SnapshotStreamReader {
+    private static final int BUFFER_SIZE_BYTES = 1 << 20;
+
+    /**
+     * Reads the stream up to its end.
+     * @param input : stream of frames.
+     * @param action : action to perform on every entry.
+     * @return : number of read entries.
+     * @throws IllegalStateException : if the stream is truncated or corrupt. The entries of the frames read before
+     *         were handed out already.
+     */
+    public static long read(final InputStream input, final Consumer<VersionedEntry> action) {
+        final DataInputStream dataInput = new DataInputStream(new BufferedInputStream(input, BUFFER_SIZE_BYTES));
+        long entryCount = 0;
+        byte[] frame = new byte[SnapshotStreamWriter.FRAME_SIZE_BYTES * 2];
+        try {
+            int frameEntryCount;
+            while ((frameEntryCount = dataInput.readInt()) != SnapshotStreamWriter.END_OF_FRAMES) {
+                final int payloadLength = dataInput.readInt();
+                if (frameEntryCount < 0 || payloadLength < 0) {
+                    throw new IOException("snapshot stream is corrupt");
+                }
+                if (payloadLength > frame.length) {
+                    frame = new byte[payloadLength];
+                }
+                dataInput.readFully(frame, 0, payloadLength);
+                final CRC32 checksum = new CRC32();
+                checksum.update(frame, 0, payloadLength);
+                if (dataInput.readLong() != checksum.getValue()) {
+                    throw new IOException("snapshot stream checksum mismatch");
+                }
+                final DataInputStream frameInput = new DataInputStream(new ByteArrayInputStream(frame, 0,
+                    payloadLength));
+                for (int i = 0; i < frameEntryCount; i++) {
+                    final String key = readString(frameInput);
+                    final String value = readString(frameInput);
+                    action.accept(new VersionedEntry(key, value, frameInput.readLong(), frameInput.readLong()));
+                }
+                entryCount += frameEntryCount;
+            }
+            if (dataInput.readLong() != entryCount) {
+                throw new IOException("snapshot stream entry count mismatch");
+            }
+            return entryCount;
+        } catch (final IOException e) {
+            throw new IllegalStateException("unable to read snapshot stream", e);
+        }
+    }
+
+    private static String readString(final DataInputStream input) throws IOException {
+        final int length = input.readInt();
+        if (length < 0) {
+            throw new IOException("snapshot stream is corrupt");
+        }
+        final byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
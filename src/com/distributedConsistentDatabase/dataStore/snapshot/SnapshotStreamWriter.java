@@ -0,0 +1,81 @@
+package com.distributedConsistentDatabase.dataStore.snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+
+/**
+ * Writes the entries of a store to a stream as chunked binary frames, e.g. to transfer the dataset of a node to a
+ * node joining the cluster. Entries are buffered into frames of about {@value #FRAME_SIZE_BYTES} bytes, so the
+ * memory held does not grow with the dataset and the frames fill the network buffers.
+ * Frame: [int entryCount][int payloadLength][payload][long crc32 of the payload], where the payload holds
+ * [int keyLength][key][int valueLength][value][long version][long expiresAtMillis] for every entry.
+ * The stream ends with a frame of no entries: [int 0][long total entry count].
+ * @author abshukla
+ */
+public class SnapshotStreamWriter {
+    static final int FRAME_SIZE_BYTES = 64 * 1024;
+    static final int END_OF_FRAMES = 0;
+
+    private final DataOutputStream output;
+    private final ByteArrayOutputStream frameBuffer;
+    private final DataOutputStream frameOutput;
+    private int frameEntryCount;
+    private long entryCount;
+
+    /**
+     * @param output : stream receiving the frames. It is flushed, but not closed, by {@link #finish()}.
+     */
+    public SnapshotStreamWriter(final OutputStream output) {
+        this.output = new DataOutputStream(output);
+        this.frameBuffer = new ByteArrayOutputStream(FRAME_SIZE_BYTES + 1024);
+        this.frameOutput = new DataOutputStream(frameBuffer);
+    }
+
+    public void write(final VersionedEntry entry) throws IOException {
+        writeBytes(entry.getKey().getBytes(StandardCharsets.UTF_8));
+        writeBytes(entry.getValue().getBytes(StandardCharsets.UTF_8));
+        frameOutput.writeLong(entry.getVersion());
+        frameOutput.writeLong(entry.getExpiresAtMillis());
+        frameEntryCount++;
+        entryCount++;
+        if (frameBuffer.size() >= FRAME_SIZE_BYTES) {
+            writeFrame();
+        }
+    }
+
+    /**
+     * Writes the last frame and the end of the stream.
+     * @return : number of written entries.
+     */
+    public long finish() throws IOException {
+        if (frameEntryCount > 0) {
+            writeFrame();
+        }
+        output.writeInt(END_OF_FRAMES);
+        output.writeLong(entryCount);
+        output.flush();
+        return entryCount;
+    }
+
+    private void writeFrame() throws IOException {
+        final CRC32 checksum = new CRC32();
+        checksum.update(frameBuffer.toByteArray(), 0, frameBuffer.size());
+        output.writeInt(frameEntryCount);
+        output.writeInt(frameBuffer.size());
+        frameBuffer.writeTo(output);
+        output.writeLong(checksum.getValue());
+        frameBuffer.reset();
+        frameEntryCount = 0;
+    }
+
+    private void writeBytes(final byte[] bytes) throws IOException {
+        frameOutput.writeInt(bytes.length);
+        frameOutput.write(bytes);
+    }
+}
@@ -0,0 +1,102 @@
+package com.distributedConsistentDatabase.dataStore.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import com.distributedConsistentDatabase.dataStore.KeyValueStore;
+
+/**
+ * Writes a fuzzy snapshot of a key value store. The entries are streamed through the weakly consistent
+ * {@link KeyValueStore#forEach} iteration, so writers keep running while the snapshot is taken: every write applied
+ * before the snapshot started is part of it, and concurrent writes may or may not be. The snapshot is written to a
+ * temporary file which atomically replaces the previous snapshot once it is synced.
+ * Layout: [int magic][int version][long lastAppliedWritePosition][long logIndex][long logTerm][long createdAtMillis]
+ * [int keyLength][key][int valueLength][value]...[int -1][long entryCount][long crc32 of everything before it].
+ * @author abshukla
+ */
+public class SnapshotWriter {
+    static final int MAGIC = 0x44434442;
+    // version 1 snapshots carry no log index and term.
+    static final int FORMAT_VERSION_WITHOUT_LOG = 1;
+    static final int FORMAT_VERSION = 2;
+    static final int END_OF_ENTRIES = -1;
+    // header of a version 1 snapshot, the shortest one.
+    static final int HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES * 2;
+    static final int TRAILER_SIZE = Integer.BYTES + Long.BYTES * 2;
+    private static final int BUFFER_SIZE_BYTES = 1 << 20;
+
+    /**
+     * Writes the snapshot of the store.
+     * @param keyValueStore : store to snapshot.
+     * @param lastAppliedWritePosition : position of the last write applied to the store before the snapshot started.
+     * @param logIndex : index of the last entry of the replicated log applied to the store before the snapshot
+     * started, 0 if none.
+     * @param logTerm : term of the entry at the log index.
+     * @param snapshotFile : file which is replaced by the new snapshot.
+     * @return : metadata of the written snapshot.
+     */
+    public static SnapshotMetadata write(final KeyValueStore<String, String> keyValueStore,
+            final long lastAppliedWritePosition, final long logIndex, final long logTerm, final File snapshotFile) {
+        final File parentDirectory = snapshotFile.getAbsoluteFile().getParentFile();
+        if (false == parentDirectory.isDirectory() && false == parentDirectory.mkdirs()) {
+            throw new IllegalStateException("unable to create snapshot directory: " + parentDirectory);
+        }
+        final File temporaryFile = new File(snapshotFile.getPath() + ".tmp");
+        final long createdAtMillis = System.currentTimeMillis();
+        final CRC32 checksum = new CRC32();
+        final long[] entryCount = new long[] {0};
+        try (FileOutputStream fileOutput = new FileOutputStream(temporaryFile)) {
+            final BufferedOutputStream bufferedOutput = new BufferedOutputStream(fileOutput, BUFFER_SIZE_BYTES);
+            final DataOutputStream output = new DataOutputStream(new CheckedOutputStream(bufferedOutput, checksum));
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeLong(lastAppliedWritePosition);
+            output.writeLong(logIndex);
+            output.writeLong(logTerm);
+            output.writeLong(createdAtMillis);
+            keyValueStore.forEach((key, value) -> {
+                try {
+                    writeBytes(output, key.getBytes(StandardCharsets.UTF_8));
+                    writeBytes(output, value.getBytes(StandardCharsets.UTF_8));
+                    entryCount[0]++;
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            output.writeInt(END_OF_ENTRIES);
+            output.writeLong(entryCount[0]);
+            output.flush();
+            // the checksum itself is written past the checked stream.
+            new DataOutputStream(bufferedOutput).writeLong(checksum.getValue());
+            bufferedOutput.flush();
+            fileOutput.getFD().sync();
+        } catch (final IOException | UncheckedIOException e) {
+            temporaryFile.delete();
+            throw new IllegalStateException("unable to write snapshot: " + snapshotFile, e);
+        }
+
+        try {
+            Files.move(temporaryFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            temporaryFile.delete();
+            throw new IllegalStateException("unable to publish snapshot: " + snapshotFile, e);
+        }
+        return new SnapshotMetadata(lastAppliedWritePosition, logIndex, logTerm, createdAtMillis, entryCount[0],
+            checksum.getValue(), snapshotFile.length());
+    }
+
+    private static void writeBytes(final DataOutputStream output, final byte[] bytes) throws IOException {
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+}
@@ -0,0 +1,104 @@
+package com.distributedConsistentDatabase.dataStore.wal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single mutation persisted in the write ahead log. Records are immutable and know how to serialize themselves.
+ * On disk layout: [int bodyLength][long crc32][byte type][int keyLength][key][int valueLength][value]. A value
+ * length of -1 represents a null value (deletes and clears).
+ * @author abshukla
+ */
+public class LogRecord {
+    static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+    public enum Type {
+        PUT((byte) 1),
+        DELETE((byte) 2),
+        CLEAR((byte) 3);
+
+        private final byte code;
+
+        Type(final byte code) {
+            this.code = code;
+        }
+
+        static Type fromCode(final byte code) {
+            for (final Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            throw new IllegalStateException("unknown log record type: " + code);
+        }
+    }
+
+    private final Type type;
+    private final String key;
+    private final String value;
+
+    private LogRecord(final Type type, final String key, final String value) {
+        this.type = type;
+        this.key = key;
+        this.value = value;
+    }
+
+    public static LogRecord put(final String key, final String value) {
+        return new LogRecord(Type.PUT, key, value);
+    }
+
+    public static LogRecord delete(final String key) {
+        return new LogRecord(Type.DELETE, key, null);
+    }
+
+    public static LogRecord clear() {
+        return new LogRecord(Type.CLEAR, "", null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Serializes the record body (everything after the header) into a new buffer, ready to be read.
+     */
+    ByteBuffer encodeBody() {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final byte[] valueBytes = (value == null) ? null : value.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer body = ByteBuffer.allocate(1 + Integer.BYTES + keyBytes.length + Integer.BYTES
+            + (valueBytes == null ? 0 : valueBytes.length));
+        body.put(type.code);
+        body.putInt(keyBytes.length);
+        body.put(keyBytes);
+        if (valueBytes == null) {
+            body.putInt(-1);
+        } else {
+            body.putInt(valueBytes.length);
+            body.put(valueBytes);
+        }
+        body.flip();
+        return body;
+    }
+
+    static LogRecord decodeBody(final ByteBuffer body) {
+        final Type type = Type.fromCode(body.get());
+        final byte[] keyBytes = new byte[body.getInt()];
+        body.get(keyBytes);
+        final int valueLength = body.getInt();
+        String value = null;
+        if (valueLength >= 0) {
+            final byte[] valueBytes = new byte[valueLength];
+            body.get(valueBytes);
+            value = new String(valueBytes, StandardCharsets.UTF_8);
+        }
+        return new LogRecord(type, new String(keyBytes, StandardCharsets.UTF_8), value);
+    }
+}
@@ -0,0 +1,343 @@
+package com.distributedConsistentDatabase.dataStore.wal;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append only, segmented write ahead log. Writers submit records from any thread; a single committer thread drains
+ * everything submitted during a group commit window, writes it with one gathering write and makes it durable with
+ * one fsync. The order in which records are submitted is the order in which they are persisted and replayed.
+ * Segments are rotated once they grow beyond the configured size and older segments can be truncated by the owner
+ * once their contents have been checkpointed elsewhere.
+ * @author abshukla
+ */
+public class WriteAheadLog implements Closeable {
+    public static final long DEFAULT_SEGMENT_SIZE_BYTES = 64L * 1024 * 1024;
+    public static final long DEFAULT_GROUP_COMMIT_WINDOW_MICROS = 1000L;
+    private static final String SEGMENT_FILE_PREFIX = "wal-";
+    private static final String SEGMENT_FILE_SUFFIX = ".log";
+
+    private final File directory;
+    private final long segmentSizeBytes;
+    private final long groupCommitWindowNanos;
+    private final NavigableSet<Long> segmentIds;
+    private final Object pendingLock = new Object();
+    private final ReentrantLock channelLock = new ReentrantLock();
+    private final Thread committerThread;
+    private List<PendingWrite> pendingWrites;
+    private FileChannel activeChannel;
+    private volatile long activeSegmentId;
+    private long activeSegmentSize;
+    private volatile boolean isClosed;
+
+    /**
+     * Opens (or creates) the log in the given directory and replays every valid record to the consumer, oldest
+     * first. A torn record at the tail of the newest segment (crash in the middle of a write) is truncated away.
+     * @param directory : directory holding the segment files.
+     * @param segmentSizeBytes : size after which the active segment is rotated.
+     * @param groupCommitWindowMicros : time the committer waits for more writers to join a batch before syncing.
+     * @param replayConsumer : consumer receiving the persisted records in order.
+     */
+    public WriteAheadLog(final File directory, final long segmentSizeBytes, final long groupCommitWindowMicros,
+            final Consumer<LogRecord> replayConsumer) {
+        this.directory = directory;
+        this.segmentSizeBytes = segmentSizeBytes;
+        this.groupCommitWindowNanos = TimeUnit.MICROSECONDS.toNanos(groupCommitWindowMicros);
+        this.segmentIds = new ConcurrentSkipListSet<>();
+        this.pendingWrites = new ArrayList<>();
+
+        if (false == directory.isDirectory() && false == directory.mkdirs()) {
+            throw new IllegalStateException("unable to create write ahead log directory: " + directory);
+        }
+        final File[] segmentFiles = directory.listFiles();
+        if (segmentFiles != null) {
+            for (final File segmentFile : segmentFiles) {
+                final String name = segmentFile.getName();
+                if (name.startsWith(SEGMENT_FILE_PREFIX) && name.endsWith(SEGMENT_FILE_SUFFIX)) {
+                    segmentIds.add(Long.valueOf(
+                        name.substring(SEGMENT_FILE_PREFIX.length(), name.length() - SEGMENT_FILE_SUFFIX.length())));
+                }
+            }
+        }
+
+        try {
+            for (final long segmentId : segmentIds) {
+                final long validLength = replaySegment(segmentId, replayConsumer);
+                if (validLength < segmentFile(segmentId).length()) {
+                    if (segmentId != segmentIds.last()) {
+                        throw new IllegalStateException("corrupted write ahead log segment: " + segmentFile(segmentId));
+                    }
+                    try (FileChannel channel = FileChannel.open(segmentFile(segmentId).toPath(), StandardOpenOption.WRITE)) {
+                        channel.truncate(validLength);
+                    }
+                }
+            }
+            openSegment(segmentIds.isEmpty() ? 0 : segmentIds.last());
+        } catch (final IOException e) {
+            throw new IllegalStateException("unable to open write ahead log: " + directory, e);
+        }
+
+        this.committerThread = new Thread(this::runCommitter, "wal-committer-" + directory.getName());
+        this.committerThread.setDaemon(true);
+        this.committerThread.start();
+    }
+
+    /**
+     * Queues the record to be persisted with the next group commit. The record is ordered after every record
+     * submitted before this call returns.
+     * @param record : record to persist.
+     * @return : future completed once the record is durable on disk.
+     */
+    public CompletableFuture<Void> submit(final LogRecord record) {
+        final ByteBuffer body = record.encodeBody();
+        final CRC32 crc = new CRC32();
+        crc.update(body.array(), 0, body.limit());
+        final ByteBuffer entry = ByteBuffer.allocate(LogRecord.HEADER_SIZE + body.limit());
+        entry.putInt(body.limit());
+        entry.putLong(crc.getValue());
+        entry.put(body);
+        entry.flip();
+
+        final PendingWrite pendingWrite = new PendingWrite(entry);
+        synchronized (pendingLock) {
+            if (isClosed) {
+                throw new IllegalStateException("write ahead log is closed: " + directory);
+            }
+            pendingWrites.add(pendingWrite);
+            pendingLock.notifyAll();
+        }
+        return pendingWrite.future;
+    }
+
+    /**
+     * Persists the record and blocks until it is durable.
+     * @param record : record to persist.
+     */
+    public void append(final LogRecord record) {
+        awaitDurable(submit(record));
+    }
+
+    /**
+     * Blocks until the given submission is durable, surfacing IO failures as {@link IllegalStateException}.
+     * @param submission : future returned by {@link #submit(LogRecord)}
+     */
+    public static void awaitDurable(final CompletableFuture<Void> submission) {
+        try {
+            submission.join();
+        } catch (final CompletionException e) {
+            throw new IllegalStateException("write ahead log append failed", e.getCause());
+        }
+    }
+
+    /**
+     * Closes the active segment and starts a new one. Every record submitted after this method returns is
+     * persisted in the new segment or a later one.
+     * @return : id of the new active segment.
+     */
+    public long rotate() {
+        channelLock.lock();
+        try {
+            rotateLocked();
+            return activeSegmentId;
+        } catch (final IOException e) {
+            throw new IllegalStateException("unable to rotate write ahead log: " + directory, e);
+        } finally {
+            channelLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes every segment older than the provided segment id. The active segment is never deleted.
+     * @param segmentId : oldest segment id to retain.
+     * @return : number of deleted segments.
+     */
+    public int truncateBefore(final long segmentId) {
+        int deletedSegments = 0;
+        for (final Long oldSegmentId : new ArrayList<>(segmentIds.headSet(segmentId, false))) {
+            if (oldSegmentId == activeSegmentId) {
+                continue;
+            }
+            if (segmentFile(oldSegmentId).delete()) {
+                segmentIds.remove(oldSegmentId);
+                deletedSegments++;
+            }
+        }
+        return deletedSegments;
+    }
+
+    public int getSegmentCount() {
+        return segmentIds.size();
+    }
+
+    /**
+     * Stops the committer after draining all submitted records and closes the active segment.
+     */
+    @Override
+    public void close() {
+        synchronized (pendingLock) {
+            isClosed = true;
+            pendingLock.notifyAll();
+        }
+        try {
+            committerThread.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channelLock.lock();
+        try {
+            activeChannel.close();
+        } catch (final IOException e) {
+            // no-op. everything has been forced already.
+        } finally {
+            channelLock.unlock();
+        }
+    }
+
+    private void runCommitter() {
+        while (true) {
+            synchronized (pendingLock) {
+                while (pendingWrites.isEmpty() && false == isClosed) {
+                    try {
+                        pendingLock.wait();
+                    } catch (final InterruptedException e) {
+                        // no-op. the loop re-checks the state.
+                    }
+                }
+                if (pendingWrites.isEmpty()) {
+                    return;
+                }
+            }
+
+            if (groupCommitWindowNanos > 0 && false == isClosed) {
+                // let concurrent writers join this group before paying for the fsync.
+                LockSupport.parkNanos(groupCommitWindowNanos);
+            }
+
+            final List<PendingWrite> batch;
+            synchronized (pendingLock) {
+                batch = pendingWrites;
+                pendingWrites = new ArrayList<>();
+            }
+            commit(batch);
+        }
+    }
+
+    private void commit(final List<PendingWrite> batch) {
+        final ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+        long batchSize = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = batch.get(i).entry;
+            batchSize += buffers[i].remaining();
+        }
+
+        IOException failure = null;
+        channelLock.lock();
+        try {
+            long written = 0;
+            while (written < batchSize) {
+                written += activeChannel.write(buffers);
+            }
+            activeChannel.force(false);
+            activeSegmentSize += batchSize;
+            if (activeSegmentSize >= segmentSizeBytes) {
+                rotateLocked();
+            }
+        } catch (final IOException e) {
+            failure = e;
+        } finally {
+            channelLock.unlock();
+        }
+
+        for (final PendingWrite pendingWrite : batch) {
+            if (failure == null) {
+                pendingWrite.future.complete(null);
+            } else {
+                pendingWrite.future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private void rotateLocked() throws IOException {
+        activeChannel.force(true);
+        activeChannel.close();
+        openSegment(activeSegmentId + 1);
+    }
+
+    private void openSegment(final long segmentId) throws IOException {
+        activeChannel = FileChannel.open(segmentFile(segmentId).toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeSegmentId = segmentId;
+        activeSegmentSize = activeChannel.size();
+        segmentIds.add(segmentId);
+    }
+
+    /**
+     * Replays a single segment.
+     * @return : length of the valid prefix of the segment.
+     */
+    private long replaySegment(final long segmentId, final Consumer<LogRecord> replayConsumer) throws IOException {
+        final long segmentLength = segmentFile(segmentId).length();
+        long validLength = 0;
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(segmentFile(segmentId)), 1 << 16))) {
+            final CRC32 crc = new CRC32();
+            while (true) {
+                final int bodyLength;
+                final long checksum;
+                final byte[] body;
+                try {
+                    bodyLength = input.readInt();
+                    checksum = input.readLong();
+                    if (bodyLength <= 0 || bodyLength > segmentLength - validLength - LogRecord.HEADER_SIZE) {
+                        return validLength;
+                    }
+                    body = new byte[bodyLength];
+                    input.readFully(body);
+                } catch (final EOFException e) {
+                    return validLength;
+                }
+
+                crc.reset();
+                crc.update(body, 0, bodyLength);
+                if (crc.getValue() != checksum) {
+                    return validLength;
+                }
+                replayConsumer.accept(LogRecord.decodeBody(ByteBuffer.wrap(body)));
+                validLength += LogRecord.HEADER_SIZE + bodyLength;
+            }
+        }
+    }
+
+    private File segmentFile(final long segmentId) {
+        return new File(directory, String.format("%s%020d%s", SEGMENT_FILE_PREFIX, segmentId, SEGMENT_FILE_SUFFIX));
+    }
+
+    private static class PendingWrite {
+        private final ByteBuffer entry;
+        private final CompletableFuture<Void> future;
+
+        PendingWrite(final ByteBuffer entry) {
+            this.entry = entry;
+            this.future = new CompletableFuture<>();
+        }
+    }
+}
@@ -1,22 +1,67 @@
 package com.distributedConsistentDatabase.requestHandler;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+import javax.servlet.ServletContext;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PUT;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 import com.distributedConsistentDatabase.cluster.NodeManager;
+import com.distributedConsistentDatabase.cluster.log.AppendEntries;
+import com.distributedConsistentDatabase.cluster.log.AppendResult;
+import com.distributedConsistentDatabase.cluster.log.LogTail;
+import com.distributedConsistentDatabase.cluster.mesh.ClusterMesh;
+import com.distributedConsistentDatabase.cluster.mesh.KeyHandedOverException;
+import com.distributedConsistentDatabase.cluster.mesh.MigrationResult;
 import com.distributedConsistentDatabase.cluster.pojo.ClusterNode;
+import com.distributedConsistentDatabase.cluster.pojo.CompareAndSetResult;
+import com.distributedConsistentDatabase.cluster.pojo.KeyValueMutation;
+import com.distributedConsistentDatabase.cluster.pojo.ReadConsistency;
+import com.distributedConsistentDatabase.dataStore.BinaryKeyValueStore;
+import com.distributedConsistentDatabase.dataStore.ExpiringKeyValueStore;
+import com.distributedConsistentDatabase.dataStore.cache.CacheStats;
+import com.distributedConsistentDatabase.dataStore.expiry.ExpiringKey;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedValue;
+import com.distributedConsistentDatabase.dataStore.scan.KeyRange;
+import com.distributedConsistentDatabase.requestHandler.pojo.AntiEntropyRepairRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.AppendEntriesRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.AppendEntriesResponse;
 import com.distributedConsistentDatabase.requestHandler.pojo.BootstrapRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.ClusterMeshResponse;
+import com.distributedConsistentDatabase.requestHandler.pojo.ExpireKeysRequest;
 import com.distributedConsistentDatabase.requestHandler.pojo.GetClusterResponse;
+import com.distributedConsistentDatabase.requestHandler.pojo.HintReplayRequest;
 import com.distributedConsistentDatabase.requestHandler.pojo.JoinClusterRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueBatchRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueBatchResponse;
+import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueDetails;
+import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueEntriesResponse;
+import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueGetRequest;
 import com.distributedConsistentDatabase.requestHandler.pojo.KeyValuePutRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueUpdateRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueUpdateResponse;
+import com.distributedConsistentDatabase.requestHandler.pojo.LogEntriesResponse;
+import com.distributedConsistentDatabase.requestHandler.pojo.MeshMigrationRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.MeshMigrationResponse;
+import com.distributedConsistentDatabase.requestHandler.pojo.MerkleLeafEntriesResponse;
+import com.distributedConsistentDatabase.requestHandler.pojo.MerkleTreeNodesRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.MerkleTreeNodesResponse;
+import com.distributedConsistentDatabase.requestHandler.pojo.ReplicaGroupDetails;
 import com.distributedConsistentDatabase.sao.DistributedConsistentDatabaseSAO;
 import com.distributedConsistentDatabase.sao.JerseyClientBuilder;
 import com.sun.jersey.spi.resource.Singleton;
@@ -29,6 +74,13 @@ import com.sun.jersey.spi.resource.Singleton;
 @Path("/")
 @Singleton
 public class DistributedConsistentDatabaseService {
+    private static final int DEFAULT_SCAN_LIMIT = 100;
+    private static final int MAX_SCAN_LIMIT = 1000;
+    private static final int MAX_BATCH_MUTATIONS = 1000;
+    private static final String RESERVED_KEY_MESSAGE = "key cannot start with \\u0001, which is reserved for the keys "
+        + "of the binary values";
+    private static final int MAX_GET_KEYS = 1000;
+
     private NodeManager nodeManager;
 
     public DistributedConsistentDatabaseService() {
@@ -36,6 +88,17 @@ public class DistributedConsistentDatabaseService {
             new DistributedConsistentDatabaseSAO(JerseyClientBuilder.getClient()));
     }
 
+    /**
+     * Constructor used by the servlet container, which takes the node manager created by
+     * {@link NodeManagerContextListener}, so that it is shut down when the application stops.
+     */
+    public DistributedConsistentDatabaseService(@Context final ServletContext servletContext) {
+        final NodeManager contextNodeManager =
+            (NodeManager) servletContext.getAttribute(NodeManagerContextListener.NODE_MANAGER_ATTRIBUTE);
+        nodeManager = (contextNodeManager != null) ? contextNodeManager
+            : new NodeManager(new DistributedConsistentDatabaseSAO(JerseyClientBuilder.getClient()));
+    }
+
     @GET
     @Path("/test")
     @Produces(MediaType.APPLICATION_JSON)
@@ -48,34 +111,253 @@ public class DistributedConsistentDatabaseService {
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public Response putValue(final KeyValuePutRequest putRequest) {
+        final KeyValueDetails details = putRequest.getRequest();
+        if (isReservedKey(details.getKey())) {
+            return Response.status(Status.BAD_REQUEST).entity(RESERVED_KEY_MESSAGE).build();
+        }
+        if (details.getTtlMillis() != null && details.getTtlMillis() <= 0) {
+            return Response.status(Status.BAD_REQUEST).entity("ttlMillis has to be positive").build();
+        }
         try {
-            final boolean result =
-                nodeManager.putValueToCluster(putRequest.getRequest().getKey(), putRequest.getRequest().getValue());
-            return Response.status(Status.OK).entity(result ? "TRUE" : "FALSE").build();
+            final boolean result = (details.getTtlMillis() == null)
+                ? nodeManager.putValueToCluster(details.getKey(), details.getValue())
+                : nodeManager.putValueToCluster(details.getKey(), details.getValue(), details.getTtlMillis());
+            return Response.status(Status.OK).entity(result ? "TRUE" : "FALSE")
+                .header(DistributedConsistentDatabaseSAO.SESSION_TOKEN_HEADER, nodeManager.getSessionToken()).build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
+        }
+    }
+
+    /**
+     * Applies a batch of puts and deletes of distinct keys to the cluster together, with a single replication round.
+     * A mutation without a value deletes its key. Returns the result of every mutation, in order.
+     */
+    @POST
+    @Path("/keyValuePairs/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response writeValues(final KeyValueBatchRequest batchRequest) {
+        final List<KeyValueDetails> mutationDetails = batchRequest.getMutations();
+        if (mutationDetails == null || mutationDetails.isEmpty() || mutationDetails.size() > MAX_BATCH_MUTATIONS) {
+            return Response.status(Status.BAD_REQUEST)
+                .entity("mutations has to hold between 1 and " + MAX_BATCH_MUTATIONS + " entries").build();
+        }
+        final List<KeyValueMutation> mutations = new ArrayList<>();
+        for (final KeyValueDetails details : mutationDetails) {
+            if (details.getKey() == null) {
+                return Response.status(Status.BAD_REQUEST).entity("key is required").build();
+            }
+            if (isReservedKey(details.getKey())) {
+                return Response.status(Status.BAD_REQUEST).entity(RESERVED_KEY_MESSAGE).build();
+            }
+            if (details.getTtlMillis() != null && details.getTtlMillis() <= 0) {
+                return Response.status(Status.BAD_REQUEST).entity("ttlMillis has to be positive").build();
+            }
+            mutations.add(new KeyValueMutation(details.getKey(), details.getValue(),
+                (details.getTtlMillis() == null) ? ExpiringKeyValueStore.NO_EXPIRY : details.getTtlMillis()));
+        }
+        try {
+            final KeyValueBatchResponse response = new KeyValueBatchResponse();
+            response.setResults(nodeManager.writeValuesToCluster(mutations));
+            return Response.status(Status.OK).entity(response)
+                .header(DistributedConsistentDatabaseSAO.SESSION_TOKEN_HEADER, nodeManager.getSessionToken()).build();
+        } catch (final IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
+        } catch (final KeyHandedOverException e) {
+            // the batch was not applied, unlike a batch which timed out waiting for its quorum.
+            return Response.status(Status.CONFLICT).entity(e.getMessage()).build();
         } catch (final Exception e) {
             return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
         }
     }
 
+    /**
+     * Gets the value of the key, linearizable by default. A read with the BOUNDED_STALENESS consistency and a
+     * maxStalenessMillis, or with the SESSION consistency and the sessionToken returned by the writes of the session,
+     * may be served by the node receiving it from its own store.
+     */
     @GET
     @Path("/keyValuePair/{param}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getValue(@PathParam("param") String key) {
+    public Response getValue(@PathParam("param") String key, @QueryParam("consistency") final String consistency,
+            @QueryParam("maxStalenessMillis") final Long maxStalenessMillis,
+            @QueryParam("sessionToken") final Long sessionToken) {
+        final ReadConsistency readConsistency;
+        try {
+            readConsistency = toReadConsistency(consistency, maxStalenessMillis, sessionToken);
+        } catch (final IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
         try {
-            final String value = nodeManager.getValueFromCluster(key);
-            return Response.status(Status.OK).entity(value).build();
+            return versionedValueResponse(nodeManager.getVersionedValueFromCluster(key, readConsistency));
         } catch (final Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR).entity(null).build();
         }
     }
 
+    /**
+     * Sets the key to a new value if it holds the expected value, or the expected version if one is set, without a
+     * read by the client. A request without a value deletes the key. Returns whether the write was applied, and the
+     * value of the key after it.
+     */
+    @POST
+    @Path("/keyValuePair/compareAndSet")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response compareAndSet(final KeyValueUpdateRequest updateRequest) {
+        if (updateRequest.getKey() == null) {
+            return Response.status(Status.BAD_REQUEST).entity("key is required").build();
+        }
+        if (isReservedKey(updateRequest.getKey())) {
+            return Response.status(Status.BAD_REQUEST).entity(RESERVED_KEY_MESSAGE).build();
+        }
+        if (updateRequest.getTtlMillis() != null && updateRequest.getTtlMillis() <= 0) {
+            return Response.status(Status.BAD_REQUEST).entity("ttlMillis has to be positive").build();
+        }
+        final long ttlMillis = (updateRequest.getTtlMillis() == null) ? ExpiringKeyValueStore.NO_EXPIRY
+            : updateRequest.getTtlMillis();
+        try {
+            final CompareAndSetResult result = nodeManager.compareAndSetInCluster(updateRequest.getKey(),
+                updateRequest.getExpectedValue(), updateRequest.getExpectedVersion(), updateRequest.getValue(),
+                ttlMillis);
+            return updateResponse(result.isApplied(), result.getValue());
+        } catch (final IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
+        }
+    }
+
+    /**
+     * Adds the delta to the number held by the key, a missing key counting as 0. Returns the value after the addition.
+     */
+    @POST
+    @Path("/keyValuePair/add")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response addValue(final KeyValueUpdateRequest updateRequest) {
+        if (updateRequest.getKey() == null || updateRequest.getDelta() == null) {
+            return Response.status(Status.BAD_REQUEST).entity("key and delta are required").build();
+        }
+        if (isReservedKey(updateRequest.getKey())) {
+            return Response.status(Status.BAD_REQUEST).entity(RESERVED_KEY_MESSAGE).build();
+        }
+        try {
+            return updateResponse(null, nodeManager.addToCluster(updateRequest.getKey(), updateRequest.getDelta()));
+        } catch (final IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
+        }
+    }
+
+    /**
+     * Appends the value to the one held by the key, a missing key counting as empty. Returns the value after the
+     * append.
+     */
+    @POST
+    @Path("/keyValuePair/append")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response appendValue(final KeyValueUpdateRequest updateRequest) {
+        if (updateRequest.getKey() == null || updateRequest.getValue() == null) {
+            return Response.status(Status.BAD_REQUEST).entity("key and value are required").build();
+        }
+        if (isReservedKey(updateRequest.getKey())) {
+            return Response.status(Status.BAD_REQUEST).entity(RESERVED_KEY_MESSAGE).build();
+        }
+        try {
+            return updateResponse(null, nodeManager.appendToCluster(updateRequest.getKey(), updateRequest.getValue()));
+        } catch (final IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
+        }
+    }
+
+    /**
+     * @param applied : whether a compare and set was applied, null for the other updates.
+     * @param value : value of the key after the update, null if the key does not exist.
+     */
+    private Response updateResponse(final Boolean applied, final VersionedValue value) {
+        final KeyValueUpdateResponse response = new KeyValueUpdateResponse();
+        response.setApplied(applied);
+        if (value != null) {
+            response.setValue(value.getValue());
+            response.setVersion(value.getVersion());
+        }
+        return Response.status(Status.OK).entity(response)
+            .header(DistributedConsistentDatabaseSAO.SESSION_TOKEN_HEADER, nodeManager.getSessionToken()).build();
+    }
+
+    /**
+     * Reads several keys from the cluster with a single read of every node, and streams their values back in the
+     * order of the keys.
+     */
+    @POST
+    @Path("/keyValuePairs/get")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getValues(final KeyValueGetRequest getRequest) {
+        final List<String> keys = getRequest.getKeys();
+        if (keys == null || keys.isEmpty() || keys.size() > MAX_GET_KEYS) {
+            return Response.status(Status.BAD_REQUEST).entity("keys has to hold between 1 and " + MAX_GET_KEYS
+                + " entries").build();
+        }
+        if (keys.contains(null)) {
+            return Response.status(Status.BAD_REQUEST).entity("key is required").build();
+        }
+        try {
+            return Response.status(Status.OK)
+                .entity(new KeyValueMultiGetOutput(keys, nodeManager.getVersionedValuesFromCluster(keys))).build();
+        } catch (final Exception e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR).entity(null).build();
+        }
+    }
+
+    /**
+     * Streams a page of the entries in a key range, or of the keys starting with a prefix, in key order. The next
+     * page is requested with the cursor returned at the end of the page, along with the same range or prefix.
+     */
+    @GET
+    @Path("/keyValuePairs")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response scanValues(@QueryParam("from") final String fromKey, @QueryParam("to") final String toKey,
+            @QueryParam("prefix") final String prefix, @QueryParam("limit") final Integer limit,
+            @QueryParam("cursor") final String cursor) {
+        final int pageLimit = (limit == null) ? DEFAULT_SCAN_LIMIT : limit;
+        if (pageLimit <= 0 || pageLimit > MAX_SCAN_LIMIT) {
+            return Response.status(Status.BAD_REQUEST).entity("limit has to be between 1 and " + MAX_SCAN_LIMIT)
+                .build();
+        }
+        if (prefix != null && (fromKey != null || toKey != null)) {
+            return Response.status(Status.BAD_REQUEST).entity("prefix cannot be combined with from and to").build();
+        }
+        String pageFromKey = (prefix == null) ? fromKey : prefix;
+        final String pageToKey = (prefix == null) ? toKey : KeyRange.prefixEnd(prefix);
+        if (cursor != null) {
+            try {
+                pageFromKey = KeyValueScanOutput.decodeCursor(cursor);
+            } catch (final IllegalArgumentException e) {
+                return Response.status(Status.BAD_REQUEST).entity("invalid cursor").build();
+            }
+        }
+        return Response.status(Status.OK)
+            .entity(new KeyValueScanOutput(nodeManager, pageFromKey, pageToKey, pageLimit)).build();
+    }
+
     @DELETE
     @Path("keyValuePair/{key}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response deleteValue(@PathParam("param") String key) {
+    public Response deleteValue(@PathParam("key") String key) {
+        if (isReservedKey(key)) {
+            return Response.status(Status.BAD_REQUEST).entity(RESERVED_KEY_MESSAGE).build();
+        }
         try {
             final boolean deleteResponse = nodeManager.deleteValueFromCluster(key);
-            return Response.status(Status.OK).entity(deleteResponse ? "TRUE" : "FALSE").build();
+            return Response.status(Status.OK).entity(deleteResponse ? "TRUE" : "FALSE")
+                .header(DistributedConsistentDatabaseSAO.SESSION_TOKEN_HEADER, nodeManager.getSessionToken()).build();
         } catch (final Exception e) {
             return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
         }
@@ -86,9 +368,20 @@ public class DistributedConsistentDatabaseService {
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public Response internalPutValue(final KeyValuePutRequest putRequest) {
+        final KeyValueDetails details = putRequest.getRequest();
         try {
-            final boolean internalPutResponse =
-                nodeManager.putValue(putRequest.getRequest().getKey(), putRequest.getRequest().getValue());
+            final boolean internalPutResponse;
+            if (details.getVersion() != null) {
+                final long expiresAtMillis = (details.getExpiresAtMillis() == null)
+                    ? ExpiringKeyValueStore.NO_EXPIRY : details.getExpiresAtMillis();
+                internalPutResponse = nodeManager.putValue(details.getKey(), details.getValue(), expiresAtMillis,
+                    details.getVersion());
+            } else if (details.getExpiresAtMillis() == null) {
+                internalPutResponse = nodeManager.putValue(details.getKey(), details.getValue());
+            } else {
+                internalPutResponse = nodeManager.putValue(details.getKey(), details.getValue(),
+                    details.getExpiresAtMillis());
+            }
             return Response.status(Status.OK).entity(internalPutResponse ? "TRUE" : "FALSE").build();
         } catch (final Exception e) {
             return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
@@ -98,20 +391,267 @@ public class DistributedConsistentDatabaseService {
     @DELETE
     @Path("internal/keyValuePair/{key}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response internalDeleteValue(@PathParam("param") String key) {
+    public Response internalDeleteValue(@PathParam("key") String key, @QueryParam("version") final Long version) {
         try {
-            final boolean internalDeleteResponse = nodeManager.delete(key);
+            final boolean internalDeleteResponse = (version == null)
+                ? nodeManager.delete(key) : nodeManager.delete(key, version);
             return Response.status(Status.OK).entity(internalDeleteResponse ? "TRUE" : "FALSE").build();
         } catch (final Exception e) {
             return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
         }
     }
 
+    @POST
+    @Path("internal/keyValuePairs/expire")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response internalExpireValues(final ExpireKeysRequest expireRequest) {
+        // the removals are versioned by the leader only.
+        if (expireRequest.getVersion() == null) {
+            return Response.status(Status.BAD_REQUEST).entity("version is required").build();
+        }
+        try {
+            final List<ExpiringKey> expiredKeys = new ArrayList<>();
+            for (final KeyValueDetails details : expireRequest.getKeys()) {
+                expiredKeys.add(new ExpiringKey(details.getKey(), details.getExpiresAtMillis()));
+            }
+            final int removedCount = nodeManager.expireValues(expiredKeys, expireRequest.getVersion());
+            return Response.status(Status.OK).entity(String.valueOf(removedCount)).build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
+        }
+    }
+
+    @POST
+    @Path("internal/antiEntropy/treeNodes")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getMerkleTreeHashes(final MerkleTreeNodesRequest treeNodesRequest) {
+        try {
+            final List<Long> hashes = new ArrayList<>();
+            for (final long hash : nodeManager.getMerkleTreeHashes(toArray(treeNodesRequest.getNodes()))) {
+                hashes.add(hash);
+            }
+            final MerkleTreeNodesResponse response = new MerkleTreeNodesResponse();
+            response.setHashes(hashes);
+            return Response.status(Status.OK).entity(response).build();
+        } catch (final IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+    }
+
+    @POST
+    @Path("internal/antiEntropy/leafEntries")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getMerkleLeafEntries(final MerkleTreeNodesRequest leavesRequest) {
+        final MerkleLeafEntriesResponse response = new MerkleLeafEntriesResponse();
+        response.setEntries(toKeyValueDetails(nodeManager.getMerkleLeafEntries(toArray(leavesRequest.getNodes()))));
+        return Response.status(Status.OK).entity(response).build();
+    }
+
+    @POST
+    @Path("internal/antiEntropy/repair")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response repairValues(final AntiEntropyRepairRequest repairRequest) {
+        try {
+            final List<VersionedEntry> puts = new ArrayList<>();
+            for (final KeyValueDetails details : repairRequest.getPuts()) {
+                puts.add(new VersionedEntry(details.getKey(), details.getValue(), details.getVersion(),
+                    (details.getExpiresAtMillis() == null) ? ExpiringKeyValueStore.NO_EXPIRY
+                        : details.getExpiresAtMillis()));
+            }
+            final List<VersionedEntry> deletes = new ArrayList<>();
+            for (final KeyValueDetails details : repairRequest.getDeletes()) {
+                deletes.add(new VersionedEntry(details.getKey(), null, details.getVersion(),
+                    ExpiringKeyValueStore.NO_EXPIRY));
+            }
+            return Response.status(Status.OK).entity(String.valueOf(nodeManager.repairValues(puts, deletes)))
+                .build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
+        }
+    }
+
+    @POST
+    @Path("internal/hints/replay")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response replayHints(final HintReplayRequest replayRequest) {
+        try {
+            final List<VersionedEntry> hints = new ArrayList<>();
+            for (final KeyValueDetails details : replayRequest.getHints()) {
+                hints.add(new VersionedEntry(details.getKey(), details.getValue(), details.getVersion(),
+                    (details.getExpiresAtMillis() == null) ? ExpiringKeyValueStore.NO_EXPIRY
+                        : details.getExpiresAtMillis()));
+            }
+            return Response.status(Status.OK).entity(String.valueOf(nodeManager.applyHints(hints))).build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
+        }
+    }
+
+    @GET
+    @Path("internal/hints/stats")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getHintStats() {
+        return Response.status(Status.OK).entity(nodeManager.getHintStats()).build();
+    }
+
+    @POST
+    @Path("internal/log/appendEntries")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response appendEntries(final AppendEntriesRequest appendRequest) {
+        try {
+            final AppendResult result = nodeManager.appendEntries(new AppendEntries(appendRequest.getTerm(),
+                appendRequest.getLeaderId(), appendRequest.getPrevLogIndex(), appendRequest.getPrevLogTerm(),
+                appendRequest.getLeaderCommitIndex(), Boolean.TRUE.equals(appendRequest.getResetLog()),
+                Boolean.TRUE.equals(appendRequest.getPipelined()),
+                DistributedConsistentDatabaseSAO.toLogEntries(appendRequest.getPrevLogIndex() + 1,
+                    appendRequest.getEntries())));
+            final AppendEntriesResponse response = new AppendEntriesResponse();
+            response.setTerm(result.getTerm());
+            response.setSuccess(result.isSuccess());
+            response.setLastIndex(result.getLastIndex());
+            response.setAppliedIndex(result.getAppliedIndex());
+            return Response.status(Status.OK).entity(response).build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
+        }
+    }
+
+    @GET
+    @Path("internal/log/tail")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getLogTail(@QueryParam("from") final Long fromIndex) {
+        if (fromIndex == null) {
+            return Response.status(Status.BAD_REQUEST).entity("from is required").build();
+        }
+        final LogTail tail = nodeManager.getLogTail(fromIndex);
+        final LogEntriesResponse response = new LogEntriesResponse();
+        response.setTerm(tail.getTerm());
+        response.setLeaderId(tail.getLeaderId());
+        response.setLeading(tail.isLeading());
+        response.setLastIndex(tail.getLastIndex());
+        response.setLastTerm(tail.getLastTerm());
+        response.setEntries(DistributedConsistentDatabaseSAO.toLogEntryDetails(tail.getEntries()));
+        return Response.status(Status.OK).entity(response).build();
+    }
+
+    @POST
+    @Path("internal/antiEntropy/repairNode")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response repairNode(final JoinClusterRequest repairNodeRequest) {
+        try {
+            return Response.status(Status.OK)
+                .entity(String.valueOf(nodeManager.repairNode(repairNodeRequest.getNode()))).build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
+        }
+    }
+
+    @GET
+    @Path("internal/stateTransfer")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response transferState() {
+        final StreamingOutput stateOutput = output -> nodeManager.writeState(output);
+        return Response.status(Status.OK).entity(stateOutput).build();
+    }
+
+    @POST
+    @Path("internal/keyValuePairs/get")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response internalGetValues(final KeyValueGetRequest getRequest) {
+        final KeyValueEntriesResponse response = new KeyValueEntriesResponse();
+        response.setEntries(toKeyValueDetails(nodeManager.getVersionedEntries(getRequest.getKeys())));
+        return Response.status(Status.OK).entity(response).build();
+    }
+
     @GET
     @Path("internal/keyValuePair/{param}")
     @Produces(MediaType.APPLICATION_JSON)
     public Response internalGetValue(@PathParam("param") String key) {
-        return Response.status(Status.OK).entity(nodeManager.getValue(key)).build();
+        final VersionedEntry entry = nodeManager.getVersionedEntry(key);
+        if (entry == null || entry.getExpiresAtMillis() == ExpiringKeyValueStore.NO_EXPIRY) {
+            return versionedValueResponse((entry == null) ? null
+                : new VersionedValue(entry.getValue(), entry.getVersion()));
+        }
+        // the deadline lets a quorum read repair the replicas with the whole entry.
+        return Response.status(Status.OK).entity(entry.getValue())
+            .header(DistributedConsistentDatabaseSAO.VERSION_HEADER, entry.getVersion())
+            .header(DistributedConsistentDatabaseSAO.EXPIRES_AT_HEADER, entry.getExpiresAtMillis()).build();
+    }
+
+    @PUT
+    @Path("/binaryKeyValuePair/{key}")
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response putBinaryValue(@PathParam("key") final String key, final byte[] value) {
+        try {
+            final boolean result = nodeManager.putBinaryValueToCluster(key, value);
+            return Response.status(Status.OK).entity(result ? "TRUE" : "FALSE").build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
+        }
+    }
+
+    @GET
+    @Path("/binaryKeyValuePair/{key}")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response getBinaryValue(@PathParam("key") final String key) {
+        try {
+            return binaryValueResponse(nodeManager.getBinaryValueFromCluster(key));
+        } catch (final Exception e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR).entity(null).build();
+        }
+    }
+
+    @DELETE
+    @Path("/binaryKeyValuePair/{key}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response deleteBinaryValue(@PathParam("key") final String key) {
+        try {
+            final boolean result = nodeManager.deleteBinaryValueFromCluster(key);
+            return Response.status(Status.OK).entity(result ? "TRUE" : "FALSE").build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
+        }
+    }
+
+    @PUT
+    @Path("internal/binaryKeyValuePair/{key}")
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response internalPutBinaryValue(@PathParam("key") final String key, final byte[] value) {
+        try {
+            final boolean result = nodeManager.putBinaryValue(key, value);
+            return Response.status(Status.OK).entity(result ? "TRUE" : "FALSE").build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
+        }
+    }
+
+    @GET
+    @Path("internal/binaryKeyValuePair/{key}")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response internalGetBinaryValue(@PathParam("key") final String key) {
+        return binaryValueResponse(nodeManager.getBinaryValue(key));
+    }
+
+    @DELETE
+    @Path("internal/binaryKeyValuePair/{key}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response internalDeleteBinaryValue(@PathParam("key") final String key) {
+        try {
+            final boolean result = nodeManager.deleteBinaryValue(key);
+            return Response.status(Status.OK).entity(result ? "TRUE" : "FALSE").build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
+        }
     }
 
     @POST
@@ -125,7 +665,8 @@ public class DistributedConsistentDatabaseService {
         currentNode.setPort(bootstrapRequest.getPort());
 
         //initialize node manager with the current node and the seed server.
-        nodeManager.initialize(currentNode, bootstrapRequest.getSeedServer());
+        nodeManager.initialize(currentNode, bootstrapRequest.getSeedServer(), bootstrapRequest.getGroupId(),
+            bootstrapRequest.getMeshSeedServer());
         return Response.status(Status.OK).entity("Bootstraped").build();
     }
 
@@ -143,7 +684,23 @@ public class DistributedConsistentDatabaseService {
     @Consumes(MediaType.APPLICATION_JSON)
     public Response addClusterNode(final JoinClusterRequest joinClusterRequest) {
         try {
-            this.nodeManager.addOtherClusterNode(joinClusterRequest.getNode());
+            if (Boolean.TRUE.equals(joinClusterRequest.getLearner())) {
+                this.nodeManager.addLearnerClusterNode(joinClusterRequest.getNode());
+            } else {
+                this.nodeManager.addOtherClusterNode(joinClusterRequest.getNode());
+            }
+            return Response.status(Status.OK).build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
+        }
+    }
+
+    @POST
+    @Path("internal/promoteClusterNode")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response promoteClusterNode(final JoinClusterRequest joinClusterRequest) {
+        try {
+            this.nodeManager.promoteClusterNode(joinClusterRequest.getNode());
             return Response.status(Status.OK).build();
         } catch (final Exception e) {
             return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
@@ -159,10 +716,239 @@ public class DistributedConsistentDatabaseService {
         return response;
     }
 
+    @GET
+    @Path("internal/mesh")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ClusterMeshResponse getClusterMesh() {
+        final ClusterMesh mesh = this.nodeManager.getClusterMesh();
+        final List<ReplicaGroupDetails> groups = new ArrayList<>();
+        for (final Entry<Integer, List<ClusterNode>> group : mesh.getGroups().entrySet()) {
+            final ReplicaGroupDetails groupDetails = new ReplicaGroupDetails();
+            groupDetails.setGroupId(group.getKey());
+            groupDetails.setNodes(group.getValue());
+            groups.add(groupDetails);
+        }
+        final ClusterMeshResponse response = new ClusterMeshResponse();
+        response.setGroups(groups);
+        response.setOwnerGroupIds(new ArrayList<>(mesh.getHashRing().getGroupIds()));
+        if (mesh.isMigrating()) {
+            response.setTargetGroupIds(new ArrayList<>(mesh.getTargetRing().getGroupIds()));
+        }
+        response.setVirtualNodesPerGroup(mesh.getVirtualNodesPerGroup());
+        return response;
+    }
+
+    @POST
+    @Path("internal/mesh/addNode")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response addMeshNode(final JoinClusterRequest joinMeshRequest) {
+        if (joinMeshRequest.getGroupId() == null || joinMeshRequest.getNode() == null) {
+            return Response.status(Status.BAD_REQUEST).entity("groupId and node are required").build();
+        }
+        try {
+            this.nodeManager.addMeshNode(joinMeshRequest.getGroupId(), joinMeshRequest.getNode());
+            return Response.status(Status.OK).build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
+        }
+    }
+
+    /**
+     * Moves the keys to a ring of the given replica groups, e.g. once new groups joined the mesh. Returns once the
+     * new groups own their keys, with the progress of the rebalance, which GET reports while it runs.
+     */
+    @POST
+    @Path("internal/mesh/rebalance")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response rebalanceMesh(final MeshMigrationRequest rebalanceRequest) {
+        if (rebalanceRequest.getTargetGroupIds() == null || rebalanceRequest.getTargetGroupIds().isEmpty()) {
+            return Response.status(Status.BAD_REQUEST).entity("targetGroupIds is required").build();
+        }
+        try {
+            return Response.status(Status.OK).entity(this.nodeManager.rebalanceMesh(
+                rebalanceRequest.getTargetGroupIds())).build();
+        } catch (final IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e.getMessage()).build();
+        }
+    }
+
+    @GET
+    @Path("internal/mesh/rebalance")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getRebalanceProgress() {
+        return Response.status(Status.OK).entity(this.nodeManager.getRebalanceProgress()).build();
+    }
+
+    @POST
+    @Path("internal/mesh/migration/start")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response startMeshMigration(final MeshMigrationRequest migrationRequest) {
+        try {
+            this.nodeManager.startMeshMigration(migrationRequest.getTargetGroupIds());
+            return Response.status(Status.OK).build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
+        }
+    }
+
+    @POST
+    @Path("internal/mesh/migration/stream")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response migrateMeshKeys(final MeshMigrationRequest migrationRequest) {
+        try {
+            final MigrationResult result = this.nodeManager.migrateMeshKeys();
+            final MeshMigrationResponse response = new MeshMigrationResponse();
+            response.setMovedEntries(result.getMovedEntries());
+            response.setMovedBytes(result.getMovedBytes());
+            return Response.status(Status.OK).entity(response).build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e.getMessage()).build();
+        }
+    }
+
+    @POST
+    @Path("internal/mesh/migration/handover")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response handOverMeshKeys(final MeshMigrationRequest migrationRequest) {
+        try {
+            this.nodeManager.handOverMeshKeys();
+            return Response.status(Status.OK).build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
+        }
+    }
+
+    @POST
+    @Path("internal/mesh/migration/complete")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response completeMeshMigration(final MeshMigrationRequest migrationRequest) {
+        try {
+            this.nodeManager.completeMeshMigration(migrationRequest.getTargetGroupIds());
+            return Response.status(Status.OK).build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
+        }
+    }
+
+    @POST
+    @Path("internal/mesh/migration/abort")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response abortMeshMigration(final MeshMigrationRequest migrationRequest) {
+        try {
+            this.nodeManager.abortMeshMigration();
+            return Response.status(Status.OK).build();
+        } catch (final Exception e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e).build();
+        }
+    }
+
+    @POST
+    @Path("internal/snapshot")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response createSnapshot() {
+        try {
+            return Response.status(Status.OK).entity(nodeManager.createSnapshot()).build();
+        } catch (final Exception e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR).entity(e).build();
+        }
+    }
+
+    @GET
+    @Path("internal/keyValueStore/stats")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getKeyValueStoreStats() {
+        final CacheStats stats = nodeManager.getKeyValueStoreStats();
+        if (stats == null) {
+            return Response.status(Status.NOT_FOUND).entity("key value store does not keep statistics").build();
+        }
+        return Response.status(Status.OK).entity(stats).build();
+    }
+
     @GET
     @Path("internal/getClusterLeader")
     @Produces(MediaType.APPLICATION_JSON)
     public Response isLeader() {
         return Response.status(Status.OK).entity(nodeManager.getClusterLeader(null)).build();
     }
+
+    /**
+     * @return : true if the key is in the key range of the binary values, which the string values cannot be written to.
+     */
+    private static boolean isReservedKey(final String key) {
+        return key != null && BinaryKeyValueStore.isStoredKey(key);
+    }
+
+    private static int[] toArray(final List<Integer> nodes) {
+        final int[] nodeArray = new int[nodes.size()];
+        for (int i = 0; i < nodeArray.length; i++) {
+            nodeArray[i] = nodes.get(i);
+        }
+        return nodeArray;
+    }
+
+    /**
+     * @throws IllegalArgumentException : if the consistency is unknown, or misses its bound.
+     */
+    private static ReadConsistency toReadConsistency(final String consistency, final Long maxStalenessMillis,
+            final Long sessionToken) {
+        final ReadConsistency.Level level = (consistency == null) ? ReadConsistency.Level.LINEARIZABLE
+            : ReadConsistency.Level.valueOf(consistency);
+        switch (level) {
+        case BOUNDED_STALENESS:
+            if (maxStalenessMillis == null || maxStalenessMillis < 0) {
+                throw new IllegalArgumentException("maxStalenessMillis has to be set and not negative");
+            }
+            return ReadConsistency.boundedStaleness(maxStalenessMillis);
+        case SESSION:
+            if (sessionToken == null) {
+                throw new IllegalArgumentException("sessionToken is required");
+            }
+            return ReadConsistency.session(sessionToken);
+        default:
+            return ReadConsistency.LINEARIZABLE;
+        }
+    }
+
+    /**
+     * @return : key, value, version and expiry deadline of every entry.
+     */
+    private static List<KeyValueDetails> toKeyValueDetails(final List<VersionedEntry> entries) {
+        final List<KeyValueDetails> entryDetails = new ArrayList<>();
+        for (final VersionedEntry entry : entries) {
+            final KeyValueDetails details = new KeyValueDetails();
+            details.setKey(entry.getKey());
+            details.setValue(entry.getValue());
+            details.setVersion(entry.getVersion());
+            if (entry.getExpiresAtMillis() != ExpiringKeyValueStore.NO_EXPIRY) {
+                details.setExpiresAtMillis(entry.getExpiresAtMillis());
+            }
+            entryDetails.add(details);
+        }
+        return entryDetails;
+    }
+
+    /**
+     * The version of the value is returned in a header, and only when the key exists.
+     */
+    private static Response versionedValueResponse(final VersionedValue versionedValue) {
+        if (versionedValue == null) {
+            return Response.status(Status.OK).entity(null).build();
+        }
+        return Response.status(Status.OK).entity(versionedValue.getValue())
+            .header(DistributedConsistentDatabaseSAO.VERSION_HEADER, versionedValue.getVersion()).build();
+    }
+
+    /**
+     * A missing binary value is a 404, as an empty body is a valid value.
+     */
+    private static Response binaryValueResponse(final byte[] value) {
+        if (value == null) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
+        return Response.status(Status.OK).entity(value).build();
+    }
 }
@@ -0,0 +1,59 @@
+package com.distributedConsistentDatabase.requestHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedValue;
+
+/**
+ * Streams the values read for a multi-get as JSON, writing the entries to the response one by one instead of
+ * buffering the whole body: {"entries":[{"key":..,"value":..,"version":..},..]}. The entries follow the order of the
+ * requested keys, a missing key having a null value and no version.
+ * @author abshukla
+ */
+public class KeyValueMultiGetOutput implements StreamingOutput {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int ENTRIES_PER_FLUSH = 64;
+
+    private final List<String> keys;
+    private final List<VersionedValue> values;
+
+    /**
+     * @param keys : requested keys.
+     * @param values : value read for every key, in the same order.
+     */
+    public KeyValueMultiGetOutput(final List<String> keys, final List<VersionedValue> values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    @Override
+    public void write(final OutputStream output) throws IOException {
+        final JsonGenerator generator = JSON_FACTORY.createJsonGenerator(output, JsonEncoding.UTF8);
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("entries");
+        for (int i = 0; i < keys.size(); i++) {
+            final VersionedValue value = values.get(i);
+            generator.writeStartObject();
+            generator.writeStringField("key", keys.get(i));
+            generator.writeStringField("value", (value == null) ? null : value.getValue());
+            if (value != null) {
+                generator.writeNumberField("version", value.getVersion());
+            }
+            generator.writeEndObject();
+            if ((i + 1) % ENTRIES_PER_FLUSH == 0) {
+                generator.flush();
+            }
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.flush();
+    }
+}
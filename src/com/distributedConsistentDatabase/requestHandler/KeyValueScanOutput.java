@@ -0,0 +1,96 @@
+package com.distributedConsistentDatabase.requestHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+
+import com.distributedConsistentDatabase.cluster.NodeManager;
+
+/**
+ * Streams a page of a key range scan as JSON, writing the entries to the response while the store is scanned
+ * instead of buffering the page: {"entries":[{"key":..,"value":..},..],"cursor":..}. The cursor is only known once
+ * the page is complete, so it is written after the entries. It is null on the last page, and otherwise continues the
+ * scan from the first key after the page.
+ * @author abshukla
+ */
+public class KeyValueScanOutput implements StreamingOutput {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int ENTRIES_PER_FLUSH = 64;
+
+    private final NodeManager nodeManager;
+    private final String fromKey;
+    private final String toKey;
+    private final int limit;
+
+    /**
+     * @param nodeManager : node manager serving the scan.
+     * @param fromKey : inclusive lower bound of the page, null for no bound.
+     * @param toKey : exclusive upper bound of the scan, null for no bound.
+     * @param limit : maximum number of entries in the page.
+     */
+    public KeyValueScanOutput(final NodeManager nodeManager, final String fromKey, final String toKey,
+            final int limit) {
+        this.nodeManager = nodeManager;
+        this.fromKey = fromKey;
+        this.toKey = toKey;
+        this.limit = limit;
+    }
+
+    @Override
+    public void write(final OutputStream output) throws IOException {
+        final JsonGenerator generator = JSON_FACTORY.createJsonGenerator(output, JsonEncoding.UTF8);
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("entries");
+        final String[] nextKey = new String[1];
+        final int[] writtenCount = new int[1];
+        try {
+            // one entry past the page tells whether there is a next page, and where it starts.
+            nodeManager.scanValues(fromKey, toKey, limit + 1, (key, value) -> {
+                if (writtenCount[0] == limit) {
+                    nextKey[0] = key;
+                    return;
+                }
+                try {
+                    generator.writeStartObject();
+                    generator.writeStringField("key", key);
+                    generator.writeStringField("value", value);
+                    generator.writeEndObject();
+                    if (++writtenCount[0] % ENTRIES_PER_FLUSH == 0) {
+                        generator.flush();
+                    }
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generator.writeEndArray();
+        generator.writeStringField("cursor", (nextKey[0] == null) ? null : encodeCursor(nextKey[0]));
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    /**
+     * @return : opaque, url safe cursor continuing a scan from the key.
+     */
+    public static String encodeCursor(final String key) {
+        return Base64.getUrlEncoder().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return : key from which the scan continues.
+     * @throws IllegalArgumentException : if the cursor was not produced by {@link #encodeCursor(String)}.
+     */
+    public static String decodeCursor(final String cursor) {
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,35 @@
+package com.distributedConsistentDatabase.requestHandler;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import com.distributedConsistentDatabase.cluster.NodeManager;
+import com.distributedConsistentDatabase.sao.DistributedConsistentDatabaseSAO;
+import com.distributedConsistentDatabase.sao.JerseyClientBuilder;
+
+/**
+ * Creates the node manager of the application when it starts, and shuts it down when it stops, so that its
+ * executors do not outlive the application, e.g. when it is redeployed. The node manager is kept as an attribute of
+ * the servlet context, from which the service takes it.
+ * @author abshukla
+ */
+public class NodeManagerContextListener implements ServletContextListener {
+    static final String NODE_MANAGER_ATTRIBUTE = NodeManager.class.getName();
+
+    @Override
+    public void contextInitialized(final ServletContextEvent event) {
+        event.getServletContext().setAttribute(NODE_MANAGER_ATTRIBUTE,
+            new NodeManager(new DistributedConsistentDatabaseSAO(JerseyClientBuilder.getClient())));
+    }
+
+    @Override
+    public void contextDestroyed(final ServletContextEvent event) {
+        final ServletContext servletContext = event.getServletContext();
+        final NodeManager nodeManager = (NodeManager) servletContext.getAttribute(NODE_MANAGER_ATTRIBUTE);
+        if (nodeManager != null) {
+            servletContext.removeAttribute(NODE_MANAGER_ATTRIBUTE);
+            nodeManager.shutdown();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.distributedConsistentDatabase.requestHandler.pojo;
+
+import java.util.List;
+
+public class AntiEntropyRepairRequest {
+    // entries to put unless the local entry is newer.
+    private List<KeyValueDetails> puts;
+    // key and version of the entries to delete, unless they were written since.
+    private List<KeyValueDetails> deletes;
+
+    public List<KeyValueDetails> getPuts() {
+        return puts;
+    }
+
+    public void setPuts(final List<KeyValueDetails> puts) {
+        this.puts = puts;
+    }
+
+    public List<KeyValueDetails> getDeletes() {
+        return deletes;
+    }
+
+    public void setDeletes(final List<KeyValueDetails> deletes) {
+        this.deletes = deletes;
+    }
+}
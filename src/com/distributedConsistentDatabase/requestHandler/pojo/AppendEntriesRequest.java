@@ -0,0 +1,81 @@
+package com.distributedConsistentDatabase.requestHandler.pojo;
+
+import java.util.List;
+
+public class AppendEntriesRequest {
+    private Long term;
+    private Integer leaderId;
+    // index and term of the entry preceding the appended ones.
+    private Long prevLogIndex;
+    private Long prevLogTerm;
+    private Long leaderCommitIndex;
+    // true if the leader no longer holds the entries the node misses. the node restarts its log after prevLogIndex.
+    private Boolean resetLog;
+    // true if the batch was sent while earlier batches were in flight. it waits for them if they arrive later.
+    private Boolean pipelined;
+    private List<LogEntryDetails> entries;
+
+    public Long getTerm() {
+        return term;
+    }
+
+    public void setTerm(final Long term) {
+        this.term = term;
+    }
+
+    public Integer getLeaderId() {
+        return leaderId;
+    }
+
+    public void setLeaderId(final Integer leaderId) {
+        this.leaderId = leaderId;
+    }
+
+    public Long getPrevLogIndex() {
+        return prevLogIndex;
+    }
+
+    public void setPrevLogIndex(final Long prevLogIndex) {
+        this.prevLogIndex = prevLogIndex;
+    }
+
+    public Long getPrevLogTerm() {
+        return prevLogTerm;
+    }
+
+    public void setPrevLogTerm(final Long prevLogTerm) {
+        this.prevLogTerm = prevLogTerm;
+    }
+
+    public Long getLeaderCommitIndex() {
+        return leaderCommitIndex;
+    }
+
+    public void setLeaderCommitIndex(final Long leaderCommitIndex) {
+        this.leaderCommitIndex = leaderCommitIndex;
+    }
+
+    public Boolean getResetLog() {
+        return resetLog;
+    }
+
+    public void setResetLog(final Boolean resetLog) {
+        this.resetLog = resetLog;
+    }
+
+    public Boolean getPipelined() {
+        return pipelined;
+    }
+
+    public void setPipelined(final Boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    public List<LogEntryDetails> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(final List<LogEntryDetails> entries) {
+        this.entries = entries;
+    }
+}
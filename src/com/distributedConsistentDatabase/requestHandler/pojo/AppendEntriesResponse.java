@@ -0,0 +1,43 @@
+package com.distributedConsistentDatabase.requestHandler.pojo;
+
+public class AppendEntriesResponse {
+    // current term of the node, higher than the one of the request if the leader is stale.
+    private Long term;
+    private Boolean success;
+    // last entry of the log of the node. on a rejection, the last entry which may still match the leader.
+    private Long lastIndex;
+    // last entry the node applied to its store.
+    private Long appliedIndex;
+
+    public Long getTerm() {
+        return term;
+    }
+
+    public void setTerm(final Long term) {
+        this.term = term;
+    }
+
+    public Boolean getSuccess() {
+        return success;
+    }
+
+    public void setSuccess(final Boolean success) {
+        this.success = success;
+    }
+
+    public Long getLastIndex() {
+        return lastIndex;
+    }
+
+    public void setLastIndex(final Long lastIndex) {
+        this.lastIndex = lastIndex;
+    }
+
+    public Long getAppliedIndex() {
+        return appliedIndex;
+    }
+
+    public void setAppliedIndex(final Long appliedIndex) {
+        this.appliedIndex = appliedIndex;
+    }
+}
@@ -7,6 +7,10 @@ public class BootstrapRequest {
     private String ip;
     private String port;
     private String nodeId;
+    // replica group of the node, null if the keyspace is not partitioned.
+    private Integer groupId;
+    // node of another group of the mesh, for the first node of a group.
+    private ClusterNode meshSeedServer;
 
     public ClusterNode getSeedServer() {
         return seedServer;
@@ -39,4 +43,20 @@ public class BootstrapRequest {
     public void setNodeId(String nodeId) {
         this.nodeId = nodeId;
     }
+
+    public Integer getGroupId() {
+        return groupId;
+    }
+
+    public void setGroupId(Integer groupId) {
+        this.groupId = groupId;
+    }
+
+    public ClusterNode getMeshSeedServer() {
+        return meshSeedServer;
+    }
+
+    public void setMeshSeedServer(ClusterNode meshSeedServer) {
+        this.meshSeedServer = meshSeedServer;
+    }
 }
@@ -0,0 +1,45 @@
+package com.distributedConsistentDatabase.requestHandler.pojo;
+
+import java.util.List;
+
+public class ClusterMeshResponse {
+    // empty if the node is not part of a mesh.
+    private List<ReplicaGroupDetails> groups;
+    // groups owning the keys.
+    private List<Integer> ownerGroupIds;
+    // groups the keys are migrated to, null if the mesh is not being rebalanced.
+    private List<Integer> targetGroupIds;
+    private Integer virtualNodesPerGroup;
+
+    public List<ReplicaGroupDetails> getGroups() {
+        return groups;
+    }
+
+    public void setGroups(final List<ReplicaGroupDetails> groups) {
+        this.groups = groups;
+    }
+
+    public List<Integer> getOwnerGroupIds() {
+        return ownerGroupIds;
+    }
+
+    public void setOwnerGroupIds(final List<Integer> ownerGroupIds) {
+        this.ownerGroupIds = ownerGroupIds;
+    }
+
+    public List<Integer> getTargetGroupIds() {
+        return targetGroupIds;
+    }
+
+    public void setTargetGroupIds(final List<Integer> targetGroupIds) {
+        this.targetGroupIds = targetGroupIds;
+    }
+
+    public Integer getVirtualNodesPerGroup() {
+        return virtualNodesPerGroup;
+    }
+
+    public void setVirtualNodesPerGroup(final Integer virtualNodesPerGroup) {
+        this.virtualNodesPerGroup = virtualNodesPerGroup;
+    }
+}
@@ -0,0 +1,26 @@
+package com.distributedConsistentDatabase.requestHandler.pojo;
+
+import java.util.List;
+
+public class ExpireKeysRequest {
+    // key and expiresAtMillis of every expired entry.
+    private List<KeyValueDetails> keys;
+    // version of the removals, shared by the batch.
+    private Long version;
+
+    public List<KeyValueDetails> getKeys() {
+        return keys;
+    }
+
+    public void setKeys(final List<KeyValueDetails> keys) {
+        this.keys = keys;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(final Long version) {
+        this.version = version;
+    }
+}
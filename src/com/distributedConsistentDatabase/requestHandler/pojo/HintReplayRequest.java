@@ -0,0 +1,16 @@
+package com.distributedConsistentDatabase.requestHandler.pojo;
+
+import java.util.List;
+
+public class HintReplayRequest {
+    // missed writes, in the order they were made. an entry without a value is a delete.
+    private List<KeyValueDetails> hints;
+
+    public List<KeyValueDetails> getHints() {
+        return hints;
+    }
+
+    public void setHints(final List<KeyValueDetails> hints) {
+        this.hints = hints;
+    }
+}
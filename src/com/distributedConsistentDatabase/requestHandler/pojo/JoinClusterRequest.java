@@ -4,6 +4,10 @@ import com.distributedConsistentDatabase.cluster.pojo.ClusterNode;
 
 public class JoinClusterRequest {
     private ClusterNode node;
+    // true if the node joins as a learner, which does not vote until it holds the dataset.
+    private Boolean learner;
+    // replica group of the node, when it joins a mesh.
+    private Integer groupId;
 
     public ClusterNode getNode() {
         return node;
@@ -12,4 +16,20 @@ public class JoinClusterRequest {
     public void setNode(final ClusterNode node) {
         this.node = node;
     }
+
+    public Boolean getLearner() {
+        return learner;
+    }
+
+    public void setLearner(final Boolean learner) {
+        this.learner = learner;
+    }
+
+    public Integer getGroupId() {
+        return groupId;
+    }
+
+    public void setGroupId(final Integer groupId) {
+        this.groupId = groupId;
+    }
 }
@@ -0,0 +1,16 @@
+package com.distributedConsistentDatabase.requestHandler.pojo;
+
+import java.util.List;
+
+public class KeyValueBatchRequest {
+    // key, value and optional ttlMillis of every mutation. A mutation without a value deletes its key.
+    private List<KeyValueDetails> mutations;
+
+    public List<KeyValueDetails> getMutations() {
+        return mutations;
+    }
+
+    public void setMutations(final List<KeyValueDetails> mutations) {
+        this.mutations = mutations;
+    }
+}
@@ -0,0 +1,16 @@
+package com.distributedConsistentDatabase.requestHandler.pojo;
+
+import java.util.List;
+
+public class KeyValueBatchResponse {
+    // result of every mutation, in the order of the request.
+    private List<Boolean> results;
+
+    public List<Boolean> getResults() {
+        return results;
+    }
+
+    public void setResults(final List<Boolean> results) {
+        this.results = results;
+    }
+}
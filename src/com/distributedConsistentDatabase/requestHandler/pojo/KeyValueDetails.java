@@ -3,6 +3,12 @@ package com.distributedConsistentDatabase.requestHandler.pojo;
 public class KeyValueDetails {
     private String key;
     private String value;
+    // optional time to live of the entry, set by clients.
+    private Long ttlMillis;
+    // absolute expiry deadline, set by the leader when it replicates an entry with a time to live.
+    private Long expiresAtMillis;
+    // version of the write, set by the leader when it replicates an entry.
+    private Long version;
 
     public String getKey() {
         return key;
@@ -19,4 +25,28 @@ public class KeyValueDetails {
     public void setValue(String value) {
         this.value = value;
     }
+
+    public Long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public void setTtlMillis(Long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public Long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    public void setExpiresAtMillis(Long expiresAtMillis) {
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,16 @@
+package com.distributedConsistentDatabase.requestHandler.pojo;
+
+import java.util.List;
+
+public class KeyValueGetRequest {
+    // keys to read, in the order their values are returned.
+    private List<String> keys;
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    public void setKeys(final List<String> keys) {
+        this.keys = keys;
+    }
+}
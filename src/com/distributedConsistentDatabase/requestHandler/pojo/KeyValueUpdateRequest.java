@@ -0,0 +1,63 @@
+package com.distributedConsistentDatabase.requestHandler.pojo;
+
+public class KeyValueUpdateRequest {
+    private String key;
+    // value to set with a compare and set, null to delete the key. Suffix to append with an append.
+    private String value;
+    // value the key has to hold for a compare and set to apply, null for a missing key.
+    private String expectedValue;
+    // version the key has to hold for a compare and set to apply, 0 for a missing key. Not checked if not set.
+    private Long expectedVersion;
+    // amount to add with an add.
+    private Long delta;
+    // optional time to live of the value set with a compare and set.
+    private Long ttlMillis;
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(final String key) {
+        this.key = key;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(final String value) {
+        this.value = value;
+    }
+
+    public String getExpectedValue() {
+        return expectedValue;
+    }
+
+    public void setExpectedValue(final String expectedValue) {
+        this.expectedValue = expectedValue;
+    }
+
+    public Long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public void setExpectedVersion(final Long expectedVersion) {
+        this.expectedVersion = expectedVersion;
+    }
+
+    public Long getDelta() {
+        return delta;
+    }
+
+    public void setDelta(final Long delta) {
+        this.delta = delta;
+    }
+
+    public Long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public void setTtlMillis(final Long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+}
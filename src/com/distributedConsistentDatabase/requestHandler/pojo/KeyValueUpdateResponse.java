@@ -0,0 +1,33 @@
+package com.distributedConsistentDatabase.requestHandler.pojo;
+
+public class KeyValueUpdateResponse {
+    // whether a compare and set was applied. Not set for the other updates, which always apply.
+    private Boolean applied;
+    // value and version of the key after the update, null if the key does not exist.
+    private String value;
+    private Long version;
+
+    public Boolean getApplied() {
+        return applied;
+    }
+
+    public void setApplied(final Boolean applied) {
+        this.applied = applied;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(final String value) {
+        this.value = value;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(final Long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,61 @@
+package com.distributedConsistentDatabase.requestHandler.pojo;
+
+import java.util.List;
+
+public class LogEntriesResponse {
+    private Long term;
+    private Integer leaderId;
+    private Boolean leading;
+    private Long lastIndex;
+    private Long lastTerm;
+    // entries from the requested index on. empty if the node no longer holds the requested index.
+    private List<LogEntryDetails> entries;
+
+    public Long getTerm() {
+        return term;
+    }
+
+    public void setTerm(final Long term) {
+        this.term = term;
+    }
+
+    public Integer getLeaderId() {
+        return leaderId;
+    }
+
+    public void setLeaderId(final Integer leaderId) {
+        this.leaderId = leaderId;
+    }
+
+    public Boolean getLeading() {
+        return leading;
+    }
+
+    public void setLeading(final Boolean leading) {
+        this.leading = leading;
+    }
+
+    public Long getLastIndex() {
+        return lastIndex;
+    }
+
+    public void setLastIndex(final Long lastIndex) {
+        this.lastIndex = lastIndex;
+    }
+
+    public Long getLastTerm() {
+        return lastTerm;
+    }
+
+    public void setLastTerm(final Long lastTerm) {
+        this.lastTerm = lastTerm;
+    }
+
+    public List<LogEntryDetails> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(final List<LogEntryDetails> entries) {
+        this.entries = entries;
+    }
+}
@@ -0,0 +1,26 @@
+package com.distributedConsistentDatabase.requestHandler.pojo;
+
+import java.util.List;
+
+public class LogEntryDetails {
+    // term of the leader which appended the entry.
+    private Long term;
+    // writes of the entry, with their version. Empty for the entry a leader appends when it takes over.
+    private List<KeyValueDetails> writes;
+
+    public Long getTerm() {
+        return term;
+    }
+
+    public void setTerm(final Long term) {
+        this.term = term;
+    }
+
+    public List<KeyValueDetails> getWrites() {
+        return writes;
+    }
+
+    public void setWrites(final List<KeyValueDetails> writes) {
+        this.writes = writes;
+    }
+}
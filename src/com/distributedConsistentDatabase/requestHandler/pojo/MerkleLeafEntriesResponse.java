@@ -0,0 +1,16 @@
+package com.distributedConsistentDatabase.requestHandler.pojo;
+
+import java.util.List;
+
+public class MerkleLeafEntriesResponse {
+    // key, value, version and expiresAtMillis of every entry in the requested leaves.
+    private List<KeyValueDetails> entries;
+
+    public List<KeyValueDetails> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(final List<KeyValueDetails> entries) {
+        this.entries = entries;
+    }
+}
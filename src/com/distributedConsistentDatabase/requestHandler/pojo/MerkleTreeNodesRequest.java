@@ -0,0 +1,16 @@
+package com.distributedConsistentDatabase.requestHandler.pojo;
+
+import java.util.List;
+
+public class MerkleTreeNodesRequest {
+    // ids of the merkle tree nodes, or of the leaves when their entries are requested.
+    private List<Integer> nodes;
+
+    public List<Integer> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(final List<Integer> nodes) {
+        this.nodes = nodes;
+    }
+}
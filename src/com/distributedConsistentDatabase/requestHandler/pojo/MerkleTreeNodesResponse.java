@@ -0,0 +1,16 @@
+package com.distributedConsistentDatabase.requestHandler.pojo;
+
+import java.util.List;
+
+public class MerkleTreeNodesResponse {
+    // hashes of the requested nodes, in the order of the request.
+    private List<Long> hashes;
+
+    public List<Long> getHashes() {
+        return hashes;
+    }
+
+    public void setHashes(final List<Long> hashes) {
+        this.hashes = hashes;
+    }
+}
@@ -0,0 +1,16 @@
+package com.distributedConsistentDatabase.requestHandler.pojo;
+
+import java.util.List;
+
+public class MeshMigrationRequest {
+    // groups owning the keys once the migration completes.
+    private List<Integer> targetGroupIds;
+
+    public List<Integer> getTargetGroupIds() {
+        return targetGroupIds;
+    }
+
+    public void setTargetGroupIds(final List<Integer> targetGroupIds) {
+        this.targetGroupIds = targetGroupIds;
+    }
+}
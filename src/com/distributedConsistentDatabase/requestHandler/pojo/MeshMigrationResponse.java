@@ -0,0 +1,23 @@
+package com.distributedConsistentDatabase.requestHandler.pojo;
+
+public class MeshMigrationResponse {
+    // entries and bytes the replica group streamed to the groups taking over its keys.
+    private Long movedEntries;
+    private Long movedBytes;
+
+    public Long getMovedEntries() {
+        return movedEntries;
+    }
+
+    public void setMovedEntries(final Long movedEntries) {
+        this.movedEntries = movedEntries;
+    }
+
+    public Long getMovedBytes() {
+        return movedBytes;
+    }
+
+    public void setMovedBytes(final Long movedBytes) {
+        this.movedBytes = movedBytes;
+    }
+}
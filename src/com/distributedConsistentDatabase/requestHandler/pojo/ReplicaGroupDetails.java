@@ -0,0 +1,26 @@
+package com.distributedConsistentDatabase.requestHandler.pojo;
+
+import java.util.List;
+
+import com.distributedConsistentDatabase.cluster.pojo.ClusterNode;
+
+public class ReplicaGroupDetails {
+    private Integer groupId;
+    private List<ClusterNode> nodes;
+
+    public Integer getGroupId() {
+        return groupId;
+    }
+
+    public void setGroupId(final Integer groupId) {
+        this.groupId = groupId;
+    }
+
+    public List<ClusterNode> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(final List<ClusterNode> nodes) {
+        this.nodes = nodes;
+    }
+}
@@ -1,19 +1,62 @@
 package com.distributedConsistentDatabase.sao;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response.Status;
 
+import com.distributedConsistentDatabase.cluster.log.AppendEntries;
+import com.distributedConsistentDatabase.cluster.log.AppendResult;
+import com.distributedConsistentDatabase.cluster.log.LogEntry;
+import com.distributedConsistentDatabase.cluster.log.LogTail;
+import com.distributedConsistentDatabase.cluster.log.ReplicatedLog;
+import com.distributedConsistentDatabase.cluster.mesh.ClusterMesh;
+import com.distributedConsistentDatabase.cluster.mesh.KeyHandedOverException;
+import com.distributedConsistentDatabase.cluster.mesh.MigrationResult;
 import com.distributedConsistentDatabase.cluster.pojo.ClusterNode;
+import com.distributedConsistentDatabase.cluster.pojo.CompareAndSetResult;
+import com.distributedConsistentDatabase.cluster.pojo.KeyValueMutation;
+import com.distributedConsistentDatabase.cluster.pojo.ReadConsistency;
+import com.distributedConsistentDatabase.cluster.pojo.WriteResult;
+import com.distributedConsistentDatabase.dataStore.ExpiringKeyValueStore;
+import com.distributedConsistentDatabase.dataStore.expiry.ExpiringKey;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedValue;
+import com.distributedConsistentDatabase.dataStore.snapshot.SnapshotStreamReader;
+import com.distributedConsistentDatabase.requestHandler.pojo.AntiEntropyRepairRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.AppendEntriesRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.AppendEntriesResponse;
+import com.distributedConsistentDatabase.requestHandler.pojo.ClusterMeshResponse;
+import com.distributedConsistentDatabase.requestHandler.pojo.ExpireKeysRequest;
 import com.distributedConsistentDatabase.requestHandler.pojo.GetClusterResponse;
+import com.distributedConsistentDatabase.requestHandler.pojo.HintReplayRequest;
 import com.distributedConsistentDatabase.requestHandler.pojo.JoinClusterRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueBatchRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueBatchResponse;
 import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueDetails;
+import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueEntriesResponse;
+import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueGetRequest;
 import com.distributedConsistentDatabase.requestHandler.pojo.KeyValuePutRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueUpdateRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueUpdateResponse;
+import com.distributedConsistentDatabase.requestHandler.pojo.LogEntriesResponse;
+import com.distributedConsistentDatabase.requestHandler.pojo.LogEntryDetails;
+import com.distributedConsistentDatabase.requestHandler.pojo.MeshMigrationRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.MeshMigrationResponse;
+import com.distributedConsistentDatabase.requestHandler.pojo.MerkleLeafEntriesResponse;
+import com.distributedConsistentDatabase.requestHandler.pojo.MerkleTreeNodesRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.MerkleTreeNodesResponse;
+import com.distributedConsistentDatabase.requestHandler.pojo.ReplicaGroupDetails;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.api.client.config.ClientConfig;
 
 /**
  * Service access object for DistributedConsistentDatabase web application. The class provides utility methods
@@ -21,11 +64,50 @@ import com.sun.jersey.api.client.WebResource;
  * @author abshukla
  */
 public class DistributedConsistentDatabaseSAO {
+    // response header carrying the version of the returned value.
+    public static final String VERSION_HEADER = "X-DCDB-Version";
+    // response header carrying the expiry deadline of the returned value, if it has one.
+    public static final String EXPIRES_AT_HEADER = "X-DCDB-Expires-At";
+    // response header of the writes carrying the session token, which later reads pass back to observe the write.
+    public static final String SESSION_TOKEN_HEADER = "X-DCDB-Session-Token";
     private static final String KEY_VALUE_PAIR_PATH = "keyValuePair";
+    private static final String KEY_VALUE_PAIRS_PATH = "keyValuePairs";
+    private static final String BINARY_KEY_VALUE_PAIR_PATH = "binaryKeyValuePair";
+    private static final String EXPIRE_PATH = "expire";
+    private static final String BATCH_PATH = "batch";
+    private static final String GET_PATH = "get";
+    private static final String COMPARE_AND_SET_PATH = "compareAndSet";
+    private static final String ADD_PATH = "add";
+    private static final String APPEND_PATH = "append";
+    private static final String ANTI_ENTROPY_PATH = "antiEntropy";
+    private static final String TREE_NODES_PATH = "treeNodes";
+    private static final String LEAF_ENTRIES_PATH = "leafEntries";
+    private static final String REPAIR_PATH = "repair";
+    private static final String REPAIR_NODE_PATH = "repairNode";
+    private static final String STATE_TRANSFER_PATH = "stateTransfer";
+    private static final String HINTS_PATH = "hints";
+    private static final String REPLAY_PATH = "replay";
+    private static final String LOG_PATH = "log";
+    private static final String APPEND_ENTRIES_PATH = "appendEntries";
+    private static final String TAIL_PATH = "tail";
+    private static final String VERSION_PARAM = "version";
+    private static final String FROM_PARAM = "from";
+    private static final String CONSISTENCY_PARAM = "consistency";
+    private static final String MAX_STALENESS_PARAM = "maxStalenessMillis";
+    private static final String SESSION_TOKEN_PARAM = "sessionToken";
     private static final String INTERNAL_PATH = "internal";
     private static final String GET_CLUSTER_PATH = "getCluster";
     private static final String ADD_CLUSTER_NODE_PATH = "addClusterNode";
+    private static final String PROMOTE_CLUSTER_NODE_PATH = "promoteClusterNode";
     private static final String HEARTBEAT_PATH = "heartbeat";
+    private static final String MESH_PATH = "mesh";
+    private static final String ADD_NODE_PATH = "addNode";
+    private static final String MIGRATION_PATH = "migration";
+    private static final String START_PATH = "start";
+    private static final String STREAM_PATH = "stream";
+    private static final String HANDOVER_PATH = "handover";
+    private static final String COMPLETE_PATH = "complete";
+    private static final String ABORT_PATH = "abort";
     private static final String RESPONSE_VALUE_TRUE = "TRUE";
 
     private final Client restClient;
@@ -45,14 +127,30 @@ public class DistributedConsistentDatabaseSAO {
      * @param node : Cluster node to which putValue call is to be made.
      * @param key : key to put
      * @param value : value to put
-     * @return : true if put is successful, false otherwise.
+     * @return : true if put is successful, false otherwise, with the session token of the write.
+     */
+    public WriteResult<Boolean> putValue(final ClusterNode node, final String key, final String value) {
+        return putValue(node, key, value, ExpiringKeyValueStore.NO_EXPIRY);
+    }
+
+    /**
+     * Makes the putValue call to the provided node for an entry which expires after the time to live.
+     * @param node : Cluster node to which putValue call is to be made.
+     * @param key : key to put
+     * @param value : value to put
+     * @param ttlMillis : time to live of the entry, {@link ExpiringKeyValueStore#NO_EXPIRY} if it does not expire.
+     * @return : true if put is successful, false otherwise, with the session token of the write.
      */
-    public boolean putValue(final ClusterNode node, final String key, final String value) {
+    public WriteResult<Boolean> putValue(final ClusterNode node, final String key, final String value,
+            final long ttlMillis) {
         final String baseUrl = createBaseUrl(node);
         final WebResource webTarget = this.restClient.resource(baseUrl).path(KEY_VALUE_PAIR_PATH);
         final KeyValueDetails  kvDetails = new KeyValueDetails();
         kvDetails.setKey(key);
         kvDetails.setValue(value);
+        if (ttlMillis != ExpiringKeyValueStore.NO_EXPIRY) {
+            kvDetails.setTtlMillis(ttlMillis);
+        }
         final KeyValuePutRequest putRequest = new KeyValuePutRequest();
         putRequest.setRequest(kvDetails);
         final ClientResponse invocationResponse = webTarget.type(MediaType.APPLICATION_JSON)
@@ -60,7 +158,180 @@ public class DistributedConsistentDatabaseSAO {
             .post(ClientResponse.class, putRequest);
 
         if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
-            return RESPONSE_VALUE_TRUE.equals(invocationResponse.getEntity(String.class));
+            return new WriteResult<>(RESPONSE_VALUE_TRUE.equals(invocationResponse.getEntity(String.class)),
+                sessionToken(invocationResponse));
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Makes the batch write call to the provided node, which applies the mutations to the cluster together.
+     * @param node : Cluster node to which the batch is sent.
+     * @param mutations : puts and deletes of distinct keys.
+     * @return : result of every mutation, in order, with the session token of the batch.
+     * @throws IllegalArgumentException : if the node refused the batch as invalid, without applying it.
+     * @throws KeyHandedOverException : if one of the keys is being handed over, the batch was not applied.
+     * @throws IllegalStateException : if the batch failed otherwise, e.g. its quorum was not met in time, in which
+     * case the batch may still be applied.
+     */
+    public WriteResult<List<Boolean>> writeValues(final ClusterNode node, final List<KeyValueMutation> mutations) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(KEY_VALUE_PAIRS_PATH).path(BATCH_PATH);
+        final List<KeyValueDetails> mutationDetails = new ArrayList<>();
+        for (final KeyValueMutation mutation : mutations) {
+            final KeyValueDetails kvDetails = new KeyValueDetails();
+            kvDetails.setKey(mutation.getKey());
+            kvDetails.setValue(mutation.getValue());
+            if (mutation.getTtlMillis() != ExpiringKeyValueStore.NO_EXPIRY) {
+                kvDetails.setTtlMillis(mutation.getTtlMillis());
+            }
+            mutationDetails.add(kvDetails);
+        }
+        final KeyValueBatchRequest batchRequest = new KeyValueBatchRequest();
+        batchRequest.setMutations(mutationDetails);
+        final ClientResponse invocationResponse = webTarget.type(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_JSON).post(ClientResponse.class, batchRequest);
+
+        if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
+            return new WriteResult<>(invocationResponse.getEntity(KeyValueBatchResponse.class).getResults(),
+                sessionToken(invocationResponse));
+        }
+        if (invocationResponse.getStatus() == Status.BAD_REQUEST.getStatusCode()) {
+            throw new IllegalArgumentException(invocationResponse.getEntity(String.class));
+        }
+        if (invocationResponse.getStatus() == Status.CONFLICT.getStatusCode()) {
+            throw new KeyHandedOverException(invocationResponse.getEntity(String.class));
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Makes the compare and set call to the provided node, which sets the key if it holds the expected value.
+     * @param node : Cluster node to which the call is to be made.
+     * @param expectedValue : value the key has to hold, null for a missing key.
+     * @param expectedVersion : version the key has to hold, 0 for a missing key. Null to compare the value instead.
+     * @param value : new value of the key, null to delete it.
+     * @param ttlMillis : time to live of the new value, {@link ExpiringKeyValueStore#NO_EXPIRY} if it does not expire.
+     * @return : whether the write was applied and the value of the key after it, with the session token of the write.
+     */
+    public WriteResult<CompareAndSetResult> compareAndSet(final ClusterNode node, final String key,
+            final String expectedValue, final Long expectedVersion, final String value, final long ttlMillis) {
+        final KeyValueUpdateRequest updateRequest = new KeyValueUpdateRequest();
+        updateRequest.setKey(key);
+        updateRequest.setExpectedValue(expectedValue);
+        updateRequest.setExpectedVersion(expectedVersion);
+        updateRequest.setValue(value);
+        if (ttlMillis != ExpiringKeyValueStore.NO_EXPIRY) {
+            updateRequest.setTtlMillis(ttlMillis);
+        }
+        final WriteResult<KeyValueUpdateResponse> result = updateValue(node, COMPARE_AND_SET_PATH, updateRequest);
+        return new WriteResult<>(new CompareAndSetResult(result.getResult().getApplied(),
+            toVersionedValue(result.getResult())), result.getSessionToken());
+    }
+
+    /**
+     * Makes the add call to the provided node, which adds to the number held by the key.
+     * @param node : Cluster node to which the call is to be made.
+     * @return : value of the key after the addition, with the session token of the write.
+     * @throws IllegalArgumentException : if the key does not hold a number.
+     */
+    public WriteResult<VersionedValue> addValue(final ClusterNode node, final String key, final long delta) {
+        final KeyValueUpdateRequest updateRequest = new KeyValueUpdateRequest();
+        updateRequest.setKey(key);
+        updateRequest.setDelta(delta);
+        final WriteResult<KeyValueUpdateResponse> result = updateValue(node, ADD_PATH, updateRequest);
+        return new WriteResult<>(toVersionedValue(result.getResult()), result.getSessionToken());
+    }
+
+    /**
+     * Makes the append call to the provided node, which appends to the value of the key.
+     * @param node : Cluster node to which the call is to be made.
+     * @return : value of the key after the append, with the session token of the write.
+     */
+    public WriteResult<VersionedValue> appendValue(final ClusterNode node, final String key, final String suffix) {
+        final KeyValueUpdateRequest updateRequest = new KeyValueUpdateRequest();
+        updateRequest.setKey(key);
+        updateRequest.setValue(suffix);
+        final WriteResult<KeyValueUpdateResponse> result = updateValue(node, APPEND_PATH, updateRequest);
+        return new WriteResult<>(toVersionedValue(result.getResult()), result.getSessionToken());
+    }
+
+    private WriteResult<KeyValueUpdateResponse> updateValue(final ClusterNode node, final String updatePath,
+            final KeyValueUpdateRequest updateRequest) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(KEY_VALUE_PAIR_PATH).path(updatePath);
+        final ClientResponse invocationResponse = webTarget.type(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_JSON).post(ClientResponse.class, updateRequest);
+
+        if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
+            return new WriteResult<>(invocationResponse.getEntity(KeyValueUpdateResponse.class),
+                sessionToken(invocationResponse));
+        }
+        if (invocationResponse.getStatus() == Status.BAD_REQUEST.getStatusCode()) {
+            throw new IllegalArgumentException(invocationResponse.getEntity(String.class));
+        }
+        throw new IllegalStateException();
+    }
+
+    private static VersionedValue toVersionedValue(final KeyValueUpdateResponse updateResponse) {
+        return (updateResponse.getVersion() == null) ? null
+            : new VersionedValue(updateResponse.getValue(), updateResponse.getVersion());
+    }
+
+    /**
+     * Makes the get call to the provided node, which reads the key from its cluster with the requested consistency.
+     * @param node : Cluster node to which the call is to be made.
+     * @param key : Key to look up
+     * @param consistency : consistency of the read.
+     * @return : value with its version if found, null otherwise.
+     */
+    public VersionedValue getValue(final ClusterNode node, final String key, final ReadConsistency consistency) {
+        final String baseUrl = createBaseUrl(node);
+        WebResource webTarget = this.restClient.resource(baseUrl).path(KEY_VALUE_PAIR_PATH).path(key)
+            .queryParam(CONSISTENCY_PARAM, consistency.getLevel().name());
+        switch (consistency.getLevel()) {
+        case BOUNDED_STALENESS:
+            webTarget = webTarget.queryParam(MAX_STALENESS_PARAM, String.valueOf(consistency.getMaxStalenessMillis()));
+            break;
+        case SESSION:
+            webTarget = webTarget.queryParam(SESSION_TOKEN_PARAM, String.valueOf(consistency.getSessionToken()));
+            break;
+        default:
+            break;
+        }
+        final ClientResponse invocationResponse = webTarget.accept(MediaType.APPLICATION_JSON).get(ClientResponse.class);
+        if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
+            // only a value which exists carries a version.
+            final String version = (invocationResponse.getHeaders() == null) ? null
+                : invocationResponse.getHeaders().getFirst(VERSION_HEADER);
+            return (version == null) ? null
+                : new VersionedValue(invocationResponse.getEntity(String.class), Long.parseLong(version));
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Makes the multi-get call to the provided node, which reads the keys from its cluster.
+     * @param node : Cluster node to which the call is to be made.
+     * @param keys : keys to look up.
+     * @return : value with its version of every key, in order, null where the key is not found.
+     */
+    public List<VersionedValue> getValues(final ClusterNode node, final List<String> keys) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(KEY_VALUE_PAIRS_PATH).path(GET_PATH);
+        final KeyValueGetRequest getRequest = new KeyValueGetRequest();
+        getRequest.setKeys(keys);
+        final ClientResponse invocationResponse = webTarget.type(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_JSON).post(ClientResponse.class, getRequest);
+
+        if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
+            final List<VersionedValue> values = new ArrayList<>();
+            for (final KeyValueDetails details : invocationResponse.getEntity(KeyValueEntriesResponse.class)
+                .getEntries()) {
+                values.add((details.getVersion() == null) ? null
+                    : new VersionedValue(details.getValue(), details.getVersion()));
+            }
+            return values;
         }
         throw new IllegalStateException();
     }
@@ -74,11 +345,49 @@ public class DistributedConsistentDatabaseSAO {
      * @return : true if put is successful, false otherwise.
      */
     public boolean internalPutValue(final ClusterNode node, final String key, final String value) {
+        return internalPutValue(node, key, value, ExpiringKeyValueStore.NO_EXPIRY);
+    }
+
+    /**
+     * Makes the internalPutValue call to the provided node for an entry with an expiry deadline.
+     * @param node : Cluster node to which putValue call is to be made.
+     * @param key : key to put
+     * @param value : value to put
+     * @param expiresAtMillis : expiry deadline decided by the leader, {@link ExpiringKeyValueStore#NO_EXPIRY} if the
+     * entry does not expire.
+     * @return : true if put is successful, false otherwise.
+     */
+    public boolean internalPutValue(final ClusterNode node, final String key, final String value,
+            final long expiresAtMillis) {
+        return internalPutValue(node, key, value, expiresAtMillis, null);
+    }
+
+    /**
+     * Makes the internalPutValue call to the provided node for a write with the version decided by the leader.
+     * @param node : Cluster node to which putValue call is to be made.
+     * @param key : key to put
+     * @param value : value to put
+     * @param expiresAtMillis : expiry deadline decided by the leader, {@link ExpiringKeyValueStore#NO_EXPIRY} if the
+     * entry does not expire.
+     * @param version : version of the write.
+     * @return : true if put is successful, false otherwise.
+     */
+    public boolean internalPutValue(final ClusterNode node, final String key, final String value,
+            final long expiresAtMillis, final long version) {
+        return internalPutValue(node, key, value, expiresAtMillis, Long.valueOf(version));
+    }
+
+    private boolean internalPutValue(final ClusterNode node, final String key, final String value,
+            final long expiresAtMillis, final Long version) {
         final String baseUrl = createBaseUrl(node);
         final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(KEY_VALUE_PAIR_PATH);
         final KeyValueDetails kvDetails = new KeyValueDetails();
         kvDetails.setKey(key);
         kvDetails.setValue(value);
+        if (expiresAtMillis != ExpiringKeyValueStore.NO_EXPIRY) {
+            kvDetails.setExpiresAtMillis(expiresAtMillis);
+        }
+        kvDetails.setVersion(version);
 
         final KeyValuePutRequest putRequest = new KeyValuePutRequest();
         putRequest.setRequest(kvDetails);
@@ -95,9 +404,10 @@ public class DistributedConsistentDatabaseSAO {
      * Method to delete a key from the cluster. The method takes a node as input (Leader node).
      * @param node : node to make the call on.
      * @param key : key to delete from the cluster
-     * @return : true if deleted, false if the key does not exist in the cluster.
+     * @return : true if deleted, false if the key does not exist in the cluster, with the session token of the
+     * delete.
      */
-    public boolean deleteValue(final ClusterNode node, final String key) {
+    public WriteResult<Boolean> deleteValue(final ClusterNode node, final String key) {
         final String baseUrl = createBaseUrl(node);
         final WebResource webTarget = this.restClient.resource(baseUrl).path(KEY_VALUE_PAIR_PATH).path(key);
 
@@ -105,7 +415,8 @@ public class DistributedConsistentDatabaseSAO {
             .delete(ClientResponse.class);
 
         if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
-            return RESPONSE_VALUE_TRUE.equals(invocationResponse.getEntity(String.class));
+            return new WriteResult<>(RESPONSE_VALUE_TRUE.equals(invocationResponse.getEntity(String.class)),
+                sessionToken(invocationResponse));
         }
         throw new IllegalStateException();
     }
@@ -119,14 +430,53 @@ public class DistributedConsistentDatabaseSAO {
     public boolean internalDeleteValue(final ClusterNode node, final String key) {
         final String baseUrl = createBaseUrl(node);
         final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(KEY_VALUE_PAIR_PATH).path(key);
+        return delete(webTarget);
+    }
 
-        final ClientResponse invocationResponse = webTarget.accept(MediaType.APPLICATION_JSON)
-            .delete(ClientResponse.class);
+    /**
+     * Method to delete a key from the provided node with the version decided by the leader.
+     * @param node : node to make the call on.
+     * @param key : key to delete from the node
+     * @param version : version of the delete.
+     * @return : true if deleted, false if the key does not exist in the node.
+     */
+    public boolean internalDeleteValue(final ClusterNode node, final String key, final long version) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(KEY_VALUE_PAIR_PATH)
+            .path(key).queryParam(VERSION_PARAM, String.valueOf(version));
+        return delete(webTarget);
+    }
+
+    /**
+     * Method to remove a batch of expired keys from the provided node. A key is only removed if it still carries the
+     * deadline with which it expired.
+     * @param node : node to make the call on.
+     * @param expiredKeys : expired keys with their deadline.
+     * @param version : version of the removals.
+     * @return : true if successful, false otherwise.
+     */
+    public boolean internalExpireValues(final ClusterNode node, final List<ExpiringKey> expiredKeys,
+            final long version) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(KEY_VALUE_PAIRS_PATH)
+            .path(EXPIRE_PATH);
+        final List<KeyValueDetails> keys = new ArrayList<>();
+        for (final ExpiringKey expiredKey : expiredKeys) {
+            final KeyValueDetails kvDetails = new KeyValueDetails();
+            kvDetails.setKey(expiredKey.getKey());
+            kvDetails.setExpiresAtMillis(expiredKey.getExpiresAtMillis());
+            keys.add(kvDetails);
+        }
+        final ExpireKeysRequest expireRequest = new ExpireKeysRequest();
+        expireRequest.setKeys(keys);
+        expireRequest.setVersion(version);
+        final ClientResponse invocationResponse = webTarget.type(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_JSON).post(ClientResponse.class, expireRequest);
 
         if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
-            return RESPONSE_VALUE_TRUE.equals(invocationResponse.getEntity(String.class));
+            return true;
         }
-        throw new IllegalStateException();
+        return false;
     }
 
     /**
@@ -145,6 +495,315 @@ public class DistributedConsistentDatabaseSAO {
         throw new IllegalStateException();
     }
 
+    /**
+     * Method to get the value associated to a specific key in the node passed in the parameters, along with the
+     * version of the write which put it.
+     * @param node : node where the key is to be looked up.
+     * @param key : Key to look up
+     * @return : value with its version if found, null otherwise.
+     */
+    public VersionedValue internalGetVersionedValue(final ClusterNode node, final String key) {
+        final VersionedEntry entry = internalGetVersionedEntry(node, key);
+        return (entry == null) ? null : new VersionedValue(entry.getValue(), entry.getVersion());
+    }
+
+    /**
+     * Method to get the entry of a specific key in the node passed in the parameters.
+     * @param node : node where the key is to be looked up.
+     * @param key : Key to look up
+     * @return : value with its version and expiry deadline if found, null otherwise.
+     */
+    public VersionedEntry internalGetVersionedEntry(final ClusterNode node, final String key) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(KEY_VALUE_PAIR_PATH).path(key);
+        final ClientResponse invocationResponse = webTarget.accept(MediaType.APPLICATION_JSON).get(ClientResponse.class);
+        if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
+            // only a value which exists carries a version.
+            final String version = (invocationResponse.getHeaders() == null) ? null
+                : invocationResponse.getHeaders().getFirst(VERSION_HEADER);
+            if (version == null) {
+                return null;
+            }
+            final String expiresAtMillis = invocationResponse.getHeaders().getFirst(EXPIRES_AT_HEADER);
+            return new VersionedEntry(key, invocationResponse.getEntity(String.class), Long.parseLong(version),
+                (expiresAtMillis == null) ? ExpiringKeyValueStore.NO_EXPIRY : Long.parseLong(expiresAtMillis));
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Method to get the entries of several keys in the node passed in the parameters, with a single call.
+     * @param node : node where the keys are to be looked up.
+     * @param keys : keys to look up.
+     * @return : value with its version and expiry deadline of every key the node holds, in no particular order.
+     */
+    public List<VersionedEntry> internalGetVersionedEntries(final ClusterNode node, final List<String> keys) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(KEY_VALUE_PAIRS_PATH)
+            .path(GET_PATH);
+        final KeyValueGetRequest getRequest = new KeyValueGetRequest();
+        getRequest.setKeys(keys);
+        final ClientResponse invocationResponse = webTarget.type(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_JSON).post(ClientResponse.class, getRequest);
+
+        if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
+            final List<VersionedEntry> entries = new ArrayList<>();
+            for (final KeyValueDetails details : invocationResponse.getEntity(KeyValueEntriesResponse.class)
+                .getEntries()) {
+                entries.add(new VersionedEntry(details.getKey(), details.getValue(), details.getVersion(),
+                    (details.getExpiresAtMillis() == null) ? ExpiringKeyValueStore.NO_EXPIRY
+                        : details.getExpiresAtMillis()));
+            }
+            return entries;
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Makes the putBinaryValue call to the provided node. The value is sent as the raw bytes of the request body.
+     * Callers need ensure that this call is being made to the Leader node.
+     * @param node : Cluster node to which the call is to be made.
+     * @param key : key to put
+     * @param value : value to put
+     * @return : true if put is successful, false otherwise.
+     */
+    public boolean putBinaryValue(final ClusterNode node, final String key, final byte[] value) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(BINARY_KEY_VALUE_PAIR_PATH).path(key);
+        return putBinaryValue(webTarget, value);
+    }
+
+    /**
+     * Makes the internalPutBinaryValue call to the provided node. This is an internal API call and will take affect
+     * only on the node it is called on.
+     * @param node : Cluster node to which the call is to be made.
+     * @param key : key to put
+     * @param value : value to put
+     * @return : true if put is successful, false otherwise.
+     */
+    public boolean internalPutBinaryValue(final ClusterNode node, final String key, final byte[] value) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH)
+            .path(BINARY_KEY_VALUE_PAIR_PATH).path(key);
+        return putBinaryValue(webTarget, value);
+    }
+
+    /**
+     * Method to delete a binary key from the cluster. The method takes a node as input (Leader node).
+     * @param node : node to make the call on.
+     * @param key : key to delete from the cluster
+     * @return : true if deleted, false if the key does not exist in the cluster.
+     */
+    public boolean deleteBinaryValue(final ClusterNode node, final String key) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(BINARY_KEY_VALUE_PAIR_PATH).path(key);
+        return delete(webTarget);
+    }
+
+    /**
+     * Method to delete a binary key from the provided node.
+     * @param node : node to make the call on.
+     * @param key : key to delete from the node
+     * @return : true if deleted, false if the key does not exist in the node.
+     */
+    public boolean internalDeleteBinaryValue(final ClusterNode node, final String key) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH)
+            .path(BINARY_KEY_VALUE_PAIR_PATH).path(key);
+        return delete(webTarget);
+    }
+
+    /**
+     * Makes the getBinaryValue call to the provided node, which reads the key from its cluster.
+     * @param node : Cluster node to which the call is to be made.
+     * @param key : Key to look up
+     * @return : raw bytes of the value if found, null otherwise.
+     */
+    public byte[] getBinaryValue(final ClusterNode node, final String key) {
+        final String baseUrl = createBaseUrl(node);
+        return getBinaryValue(this.restClient.resource(baseUrl).path(BINARY_KEY_VALUE_PAIR_PATH).path(key));
+    }
+
+    /**
+     * Method to get the binary value associated to a specific key in the node passed in the parameters.
+     * @param node : node where the key is to be looked up.
+     * @param key : Key to look up
+     * @return : raw bytes of the value if found, null otherwise.
+     */
+    public byte[] internalGetBinaryValue(final ClusterNode node, final String key) {
+        final String baseUrl = createBaseUrl(node);
+        return getBinaryValue(this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(BINARY_KEY_VALUE_PAIR_PATH)
+            .path(key));
+    }
+
+    /**
+     * Method to get the hashes of nodes of the merkle tree of the store of the provided node.
+     * @param node : node to make the call on.
+     * @param treeNodes : ids of the merkle tree nodes.
+     * @return : hashes of the merkle tree nodes, in the order of their ids.
+     */
+    public long[] internalGetMerkleTreeHashes(final ClusterNode node, final int[] treeNodes) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(ANTI_ENTROPY_PATH)
+            .path(TREE_NODES_PATH);
+        final ClientResponse invocationResponse = webTarget.type(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_JSON).post(ClientResponse.class, treeNodesRequest(treeNodes));
+
+        if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
+            final List<Long> hashes = invocationResponse.getEntity(MerkleTreeNodesResponse.class).getHashes();
+            final long[] hashArray = new long[hashes.size()];
+            for (int i = 0; i < hashArray.length; i++) {
+                hashArray[i] = hashes.get(i);
+            }
+            return hashArray;
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Method to get the entries in leaves of the merkle tree of the store of the provided node.
+     * @param node : node to make the call on.
+     * @param leaves : ids of the merkle tree leaves.
+     * @return : entries in the leaves, expired entries included.
+     */
+    public List<VersionedEntry> internalGetMerkleLeafEntries(final ClusterNode node, final int[] leaves) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(ANTI_ENTROPY_PATH)
+            .path(LEAF_ENTRIES_PATH);
+        final ClientResponse invocationResponse = webTarget.type(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_JSON).post(ClientResponse.class, treeNodesRequest(leaves));
+
+        if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
+            final List<VersionedEntry> entries = new ArrayList<>();
+            for (final KeyValueDetails details : invocationResponse.getEntity(MerkleLeafEntriesResponse.class)
+                .getEntries()) {
+                entries.add(new VersionedEntry(details.getKey(), details.getValue(), details.getVersion(),
+                    (details.getExpiresAtMillis() == null) ? ExpiringKeyValueStore.NO_EXPIRY
+                        : details.getExpiresAtMillis()));
+            }
+            return entries;
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Method to repair entries of the provided node found to differ from the ones of the leader.
+     * @param node : node to make the call on.
+     * @param puts : entries to put, unless the node holds a newer entry.
+     * @param deletes : entries to delete, with the version they had when they were compared.
+     * @return : number of applied repairs.
+     */
+    public int internalRepairValues(final ClusterNode node, final List<VersionedEntry> puts,
+            final List<VersionedEntry> deletes) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(ANTI_ENTROPY_PATH)
+            .path(REPAIR_PATH);
+        final List<KeyValueDetails> putDetails = new ArrayList<>();
+        for (final VersionedEntry entry : puts) {
+            final KeyValueDetails kvDetails = new KeyValueDetails();
+            kvDetails.setKey(entry.getKey());
+            kvDetails.setValue(entry.getValue());
+            kvDetails.setVersion(entry.getVersion());
+            if (entry.getExpiresAtMillis() != ExpiringKeyValueStore.NO_EXPIRY) {
+                kvDetails.setExpiresAtMillis(entry.getExpiresAtMillis());
+            }
+            putDetails.add(kvDetails);
+        }
+        final List<KeyValueDetails> deleteDetails = new ArrayList<>();
+        for (final VersionedEntry entry : deletes) {
+            final KeyValueDetails kvDetails = new KeyValueDetails();
+            kvDetails.setKey(entry.getKey());
+            kvDetails.setVersion(entry.getVersion());
+            deleteDetails.add(kvDetails);
+        }
+        final AntiEntropyRepairRequest repairRequest = new AntiEntropyRepairRequest();
+        repairRequest.setPuts(putDetails);
+        repairRequest.setDeletes(deleteDetails);
+        final ClientResponse invocationResponse = webTarget.type(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_JSON).post(ClientResponse.class, repairRequest);
+
+        if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
+            return Integer.parseInt(invocationResponse.getEntity(String.class));
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Method to replay on the provided node the writes it missed.
+     * @param node : node to make the call on.
+     * @param hints : missed writes, in the order they were made. An entry without a value is a delete.
+     * @return : number of applied writes. Writes older than the entry held by the node are skipped.
+     */
+    public int internalReplayHints(final ClusterNode node, final List<VersionedEntry> hints) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(HINTS_PATH)
+            .path(REPLAY_PATH);
+        final List<KeyValueDetails> hintDetails = new ArrayList<>();
+        for (final VersionedEntry hint : hints) {
+            final KeyValueDetails kvDetails = new KeyValueDetails();
+            kvDetails.setKey(hint.getKey());
+            kvDetails.setValue(hint.getValue());
+            kvDetails.setVersion(hint.getVersion());
+            if (hint.getExpiresAtMillis() != ExpiringKeyValueStore.NO_EXPIRY) {
+                kvDetails.setExpiresAtMillis(hint.getExpiresAtMillis());
+            }
+            hintDetails.add(kvDetails);
+        }
+        final HintReplayRequest replayRequest = new HintReplayRequest();
+        replayRequest.setHints(hintDetails);
+        final ClientResponse invocationResponse = webTarget.type(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_JSON).post(ClientResponse.class, replayRequest);
+
+        if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
+            return Integer.parseInt(invocationResponse.getEntity(String.class));
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Method to make the provided node repair the entries of the target node which differ from its own, e.g. to let a
+     * joining node catch up with the writes it missed while its state was transferred.
+     * @param node : node to make the call on, usually the leader.
+     * @param targetNode : node to repair.
+     * @return : number of repaired entries.
+     */
+    public int internalRepairNode(final ClusterNode node, final ClusterNode targetNode) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(ANTI_ENTROPY_PATH)
+            .path(REPAIR_NODE_PATH);
+        final JoinClusterRequest repairNodeRequest = new JoinClusterRequest();
+        repairNodeRequest.setNode(targetNode);
+        final ClientResponse invocationResponse = webTarget.type(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_JSON).post(ClientResponse.class, repairNodeRequest);
+
+        if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
+            return Integer.parseInt(invocationResponse.getEntity(String.class));
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Method to stream every entry of the store of the provided node. The entries arrive as checksummed frames and
+     * are handed out frame by frame, so the dataset is never held in memory as a whole.
+     * @param node : node to read the entries from.
+     * @param action : action to perform on every entry.
+     * @return : number of transferred entries.
+     */
+    public long internalTransferState(final ClusterNode node, final Consumer<VersionedEntry> action) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(STATE_TRANSFER_PATH);
+        final ClientResponse invocationResponse = webTarget.accept(MediaType.APPLICATION_OCTET_STREAM)
+            .get(ClientResponse.class);
+        if (invocationResponse.getStatus() != Status.OK.getStatusCode()) {
+            throw new IllegalStateException();
+        }
+        try (InputStream input = invocationResponse.getEntityInputStream()) {
+            return SnapshotStreamReader.read(input, action);
+        } catch (final IOException e) {
+            throw new IllegalStateException("unable to close state transfer stream", e);
+        }
+    }
+
     /**
      * Method to execute a heartbeat on the provided cluster node.
      * @param node : node to ping.
@@ -168,10 +827,37 @@ public class DistributedConsistentDatabaseSAO {
      * @return : true if added successfully, false otherwise.
      */
     public boolean addClusterNode(final ClusterNode targetNode, final ClusterNode currentNode) {
+        return joinClusterNode(targetNode, currentNode, ADD_CLUSTER_NODE_PATH, null);
+    }
+
+    /**
+     * Method to add a new node to the existing cluster as a learner, which receives the writes but does not vote
+     * until it is promoted with {@link #promoteClusterNode(ClusterNode, ClusterNode)}.
+     * @param targetNode : Target node on which the current node will be added.
+     * @param currentNode : Node to add to the cluster (new node)
+     * @return : true if added successfully, false otherwise.
+     */
+    public boolean addLearnerClusterNode(final ClusterNode targetNode, final ClusterNode currentNode) {
+        return joinClusterNode(targetNode, currentNode, ADD_CLUSTER_NODE_PATH, Boolean.TRUE);
+    }
+
+    /**
+     * Method to make a learner a voting node of the cluster, once it holds the dataset.
+     * @param targetNode : Target node on which the current node will be promoted.
+     * @param currentNode : Node to promote.
+     * @return : true if promoted successfully, false otherwise.
+     */
+    public boolean promoteClusterNode(final ClusterNode targetNode, final ClusterNode currentNode) {
+        return joinClusterNode(targetNode, currentNode, PROMOTE_CLUSTER_NODE_PATH, null);
+    }
+
+    private boolean joinClusterNode(final ClusterNode targetNode, final ClusterNode currentNode, final String path,
+            final Boolean learner) {
         final String baseUrl = createBaseUrl(targetNode);
-        final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(ADD_CLUSTER_NODE_PATH);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(path);
         final JoinClusterRequest joinClusterRequest = new JoinClusterRequest();
         joinClusterRequest.setNode(currentNode);
+        joinClusterRequest.setLearner(learner);
         final ClientResponse invocationResponse = webTarget.type(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
             .post(ClientResponse.class, joinClusterRequest);
 
@@ -198,6 +884,273 @@ public class DistributedConsistentDatabaseSAO {
         return new ArrayList<>();
     }
 
+    /**
+     * Method to get the view of the mesh of a specific node.
+     * @param node : node from where the mesh is to be fetched.
+     * @return : replica groups of the mesh, and the groups owning the keys. Empty if the node is not part of a mesh.
+     */
+    public ClusterMesh getClusterMesh(final ClusterNode node) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(MESH_PATH);
+        final ClientResponse invocationResponse = webTarget.accept(MediaType.APPLICATION_JSON)
+            .get(ClientResponse.class);
+
+        if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
+            final ClusterMeshResponse response = invocationResponse.getEntity(ClusterMeshResponse.class);
+            final Map<Integer, List<ClusterNode>> groups = new TreeMap<>();
+            for (final ReplicaGroupDetails group : response.getGroups()) {
+                groups.put(group.getGroupId(), group.getNodes());
+            }
+            return new ClusterMesh((response.getVirtualNodesPerGroup() == null)
+                ? ClusterMesh.DEFAULT_VIRTUAL_NODES_PER_GROUP : response.getVirtualNodesPerGroup(), groups,
+                (response.getOwnerGroupIds() == null) ? new ArrayList<>() : response.getOwnerGroupIds(),
+                response.getTargetGroupIds());
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Method to add a node to a replica group of the mesh, as seen by the target node.
+     * @param targetNode : node on which the node will be added.
+     * @param groupId : replica group of the node.
+     * @param node : node to add to the mesh.
+     * @return : true if added successfully, false otherwise.
+     */
+    public boolean addMeshNode(final ClusterNode targetNode, final int groupId, final ClusterNode node) {
+        final String baseUrl = createBaseUrl(targetNode);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(MESH_PATH)
+            .path(ADD_NODE_PATH);
+        final JoinClusterRequest joinMeshRequest = new JoinClusterRequest();
+        joinMeshRequest.setNode(node);
+        joinMeshRequest.setGroupId(groupId);
+        final ClientResponse invocationResponse = webTarget.type(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_JSON).post(ClientResponse.class, joinMeshRequest);
+        return invocationResponse.getStatus() == Status.OK.getStatusCode();
+    }
+
+    /**
+     * Method to make a node copy the writes of the keys which change owner to their new replica group, from now on
+     * until the migration completes or is aborted.
+     * @param node : node to make the call on.
+     * @param targetGroupIds : groups owning the keys once the migration completes.
+     * @return : true if the migration started on the node, false otherwise.
+     */
+    public boolean startMeshMigration(final ClusterNode node, final List<Integer> targetGroupIds) {
+        return postMeshMigration(node, START_PATH, targetGroupIds).getStatus() == Status.OK.getStatusCode();
+    }
+
+    /**
+     * Method to make the replica group of a node stream the keys it hands over to their new groups.
+     * @param node : node to make the call on, a node of a group handing over keys.
+     * @return : amount of data streamed.
+     */
+    public MigrationResult migrateMeshKeys(final ClusterNode node) {
+        final ClientResponse invocationResponse = postMeshMigration(node, STREAM_PATH, null);
+
+        if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
+            final MeshMigrationResponse response = invocationResponse.getEntity(MeshMigrationResponse.class);
+            return new MigrationResult(response.getMovedEntries(), response.getMovedBytes());
+        }
+        throw new IllegalStateException("replica group of node " + node.getNodeId()
+            + " could not stream its keys: " + invocationResponse.getEntity(String.class));
+    }
+
+    /**
+     * Method to make a node stop serving the keys its group hands over.
+     * @param node : node to make the call on.
+     * @return : true if the node stopped serving the keys, false otherwise.
+     */
+    public boolean handOverMeshKeys(final ClusterNode node) {
+        return postMeshMigration(node, HANDOVER_PATH, null).getStatus() == Status.OK.getStatusCode();
+    }
+
+    /**
+     * Method to make a node hand the keys over to the groups of the migration.
+     * @param node : node to make the call on.
+     * @param targetGroupIds : groups owning the keys from now on.
+     * @return : true if the node took the new owners of the keys, false otherwise.
+     */
+    public boolean completeMeshMigration(final ClusterNode node, final List<Integer> targetGroupIds) {
+        return postMeshMigration(node, COMPLETE_PATH, targetGroupIds).getStatus() == Status.OK.getStatusCode();
+    }
+
+    /**
+     * Method to make a node drop the running migration, and the keys it holds but does not own.
+     * @param node : node to make the call on.
+     * @return : true if the migration was dropped, false otherwise.
+     */
+    public boolean abortMeshMigration(final ClusterNode node) {
+        return postMeshMigration(node, ABORT_PATH, null).getStatus() == Status.OK.getStatusCode();
+    }
+
+    private ClientResponse postMeshMigration(final ClusterNode node, final String path,
+            final List<Integer> targetGroupIds) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(MESH_PATH)
+            .path(MIGRATION_PATH).path(path);
+        if (STREAM_PATH.equals(path)) {
+            // the reply comes once the keys were streamed at the migration rate, the read timeout does not apply.
+            webTarget.setProperty(ClientConfig.PROPERTY_READ_TIMEOUT, 0);
+        }
+        final MeshMigrationRequest migrationRequest = new MeshMigrationRequest();
+        migrationRequest.setTargetGroupIds(targetGroupIds);
+        return webTarget.type(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
+            .post(ClientResponse.class, migrationRequest);
+    }
+
+    /**
+     * Method to append a batch of log entries of the leader to the log of the provided node.
+     * @param node : node to make the call on.
+     * @param batch : batch of the leader.
+     * @return : reply of the node.
+     */
+    public AppendResult internalAppendEntries(final ClusterNode node, final AppendEntries batch) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(LOG_PATH)
+            .path(APPEND_ENTRIES_PATH);
+        final AppendEntriesRequest appendRequest = new AppendEntriesRequest();
+        appendRequest.setTerm(batch.getTerm());
+        appendRequest.setLeaderId(batch.getLeaderId());
+        appendRequest.setPrevLogIndex(batch.getPrevLogIndex());
+        appendRequest.setPrevLogTerm(batch.getPrevLogTerm());
+        appendRequest.setLeaderCommitIndex(batch.getLeaderCommitIndex());
+        appendRequest.setResetLog(batch.isResetLog());
+        appendRequest.setPipelined(batch.isPipelined());
+        appendRequest.setEntries(toLogEntryDetails(batch.getEntries()));
+        final ClientResponse invocationResponse = webTarget.type(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_JSON).post(ClientResponse.class, appendRequest);
+
+        if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
+            final AppendEntriesResponse response = invocationResponse.getEntity(AppendEntriesResponse.class);
+            return new AppendResult(response.getTerm(), response.getSuccess(), response.getLastIndex(),
+                response.getAppliedIndex());
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Method to get the last entries of the log of the provided node.
+     * @param node : node to make the call on.
+     * @param fromIndex : index of the first entry to get.
+     * @return : last entries of the log, with the current term of the node.
+     */
+    public LogTail internalGetLogTail(final ClusterNode node, final long fromIndex) {
+        final String baseUrl = createBaseUrl(node);
+        final WebResource webTarget = this.restClient.resource(baseUrl).path(INTERNAL_PATH).path(LOG_PATH)
+            .path(TAIL_PATH).queryParam(FROM_PARAM, String.valueOf(fromIndex));
+        final ClientResponse invocationResponse = webTarget.accept(MediaType.APPLICATION_JSON)
+            .get(ClientResponse.class);
+
+        if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
+            final LogEntriesResponse response = invocationResponse.getEntity(LogEntriesResponse.class);
+            return new LogTail(response.getTerm(),
+                (response.getLeaderId() == null) ? ReplicatedLog.NO_LEADER : response.getLeaderId(),
+                false == Boolean.FALSE.equals(response.getLeading()), response.getLastIndex(), response.getLastTerm(),
+                toLogEntries(fromIndex, response.getEntries()));
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * @return : log entries as sent over the wire. Their indexes follow from the position of the batch.
+     */
+    public static List<LogEntryDetails> toLogEntryDetails(final List<LogEntry> entries) {
+        final List<LogEntryDetails> entryDetails = new ArrayList<>();
+        for (final LogEntry entry : entries) {
+            final LogEntryDetails details = new LogEntryDetails();
+            details.setTerm(entry.getTerm());
+            final List<KeyValueDetails> writes = new ArrayList<>();
+            for (final VersionedEntry write : entry.getWrites()) {
+                final KeyValueDetails kvDetails = new KeyValueDetails();
+                kvDetails.setKey(write.getKey());
+                kvDetails.setValue(write.getValue());
+                kvDetails.setVersion(write.getVersion());
+                if (write.getExpiresAtMillis() != ExpiringKeyValueStore.NO_EXPIRY) {
+                    kvDetails.setExpiresAtMillis(write.getExpiresAtMillis());
+                }
+                writes.add(kvDetails);
+            }
+            details.setWrites(writes);
+            entryDetails.add(details);
+        }
+        return entryDetails;
+    }
+
+    /**
+     * @param fromIndex : index of the first entry.
+     * @return : log entries received over the wire.
+     */
+    public static List<LogEntry> toLogEntries(final long fromIndex, final List<LogEntryDetails> entryDetails) {
+        final List<LogEntry> entries = new ArrayList<>();
+        if (entryDetails == null) {
+            return entries;
+        }
+        long index = fromIndex;
+        for (final LogEntryDetails details : entryDetails) {
+            final List<VersionedEntry> writes = new ArrayList<>();
+            if (details.getWrites() != null) {
+                for (final KeyValueDetails kvDetails : details.getWrites()) {
+                    writes.add(new VersionedEntry(kvDetails.getKey(), kvDetails.getValue(), kvDetails.getVersion(),
+                        (kvDetails.getExpiresAtMillis() == null)
+                            ? ExpiringKeyValueStore.NO_EXPIRY : kvDetails.getExpiresAtMillis()));
+                }
+            }
+            entries.add(new LogEntry(details.getTerm(), index++, writes));
+        }
+        return entries;
+    }
+
+    /**
+     * @return : session token of a write response, 0 if the response does not carry one.
+     */
+    private static long sessionToken(final ClientResponse invocationResponse) {
+        final String sessionToken = (invocationResponse.getHeaders() == null) ? null
+            : invocationResponse.getHeaders().getFirst(SESSION_TOKEN_HEADER);
+        return (sessionToken == null) ? 0L : Long.parseLong(sessionToken);
+    }
+
+    private static MerkleTreeNodesRequest treeNodesRequest(final int[] treeNodes) {
+        final List<Integer> nodes = new ArrayList<>();
+        for (final int treeNode : treeNodes) {
+            nodes.add(treeNode);
+        }
+        final MerkleTreeNodesRequest treeNodesRequest = new MerkleTreeNodesRequest();
+        treeNodesRequest.setNodes(nodes);
+        return treeNodesRequest;
+    }
+
+    private static boolean putBinaryValue(final WebResource webTarget, final byte[] value) {
+        final ClientResponse invocationResponse = webTarget.type(MediaType.APPLICATION_OCTET_STREAM)
+            .accept(MediaType.APPLICATION_JSON).put(ClientResponse.class, value);
+
+        if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
+            return RESPONSE_VALUE_TRUE.equals(invocationResponse.getEntity(String.class));
+        }
+        throw new IllegalStateException();
+    }
+
+    private static byte[] getBinaryValue(final WebResource webTarget) {
+        final ClientResponse invocationResponse = webTarget.accept(MediaType.APPLICATION_OCTET_STREAM)
+            .get(ClientResponse.class);
+        if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
+            return invocationResponse.getEntity(byte[].class);
+        }
+        if (invocationResponse.getStatus() == Status.NOT_FOUND.getStatusCode()) {
+            return null;
+        }
+        throw new IllegalStateException();
+    }
+
+    private static boolean delete(final WebResource webTarget) {
+        final ClientResponse invocationResponse = webTarget.accept(MediaType.APPLICATION_JSON)
+            .delete(ClientResponse.class);
+
+        if (invocationResponse.getStatus() == Status.OK.getStatusCode()) {
+            return RESPONSE_VALUE_TRUE.equals(invocationResponse.getEntity(String.class));
+        }
+        throw new IllegalStateException();
+    }
+
     protected static String createBaseUrl(final ClusterNode node) {
         return new StringBuilder()
             .append("http://")
@@ -11,15 +11,25 @@ import com.sun.jersey.api.json.JSONConfiguration;
  *
  */
 public class JerseyClientBuilder {
+    public static final String CONNECT_TIMEOUT_PROPERTY = "dcdb.client.connectTimeoutMillis";
+    public static final String READ_TIMEOUT_PROPERTY = "dcdb.client.readTimeoutMillis";
+    private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 2000;
+    // longer than the log commit timeout, which a forwarded write may wait for.
+    private static final int DEFAULT_READ_TIMEOUT_MILLIS = 30000;
 
     /**
-     * Creates a client object which is thread-safe by default.
+     * Creates a client object which is thread-safe by default. A call to a node which hangs fails once the connect
+     * timeout ({@value #CONNECT_TIMEOUT_PROPERTY}) or the read timeout ({@value #READ_TIMEOUT_PROPERTY}) passes,
+     * rather than blocking the caller forever.
      * @return : Jersey client.
      */
     public static Client getClient() {
         final ClientConfig clientConfig = new DefaultClientConfig();
         clientConfig.getFeatures().put(
                 JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
-        return Client.create(clientConfig);
+        final Client client = Client.create(clientConfig);
+        client.setConnectTimeout(Integer.getInteger(CONNECT_TIMEOUT_PROPERTY, DEFAULT_CONNECT_TIMEOUT_MILLIS));
+        client.setReadTimeout(Integer.getInteger(READ_TIMEOUT_PROPERTY, DEFAULT_READ_TIMEOUT_MILLIS));
+        return client;
     }
 }
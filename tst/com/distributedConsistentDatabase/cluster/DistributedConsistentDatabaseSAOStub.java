@@ -1,11 +1,28 @@
 package com.distributedConsistentDatabase.cluster;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
+import com.distributedConsistentDatabase.cluster.log.AppendEntries;
+import com.distributedConsistentDatabase.cluster.log.AppendResult;
+import com.distributedConsistentDatabase.cluster.log.LogTail;
+import com.distributedConsistentDatabase.cluster.mesh.ClusterMesh;
+import com.distributedConsistentDatabase.cluster.mesh.MigrationResult;
 import com.distributedConsistentDatabase.cluster.pojo.ClusterNode;
+import com.distributedConsistentDatabase.cluster.pojo.CompareAndSetResult;
+import com.distributedConsistentDatabase.cluster.pojo.KeyValueMutation;
+import com.distributedConsistentDatabase.cluster.pojo.ReadConsistency;
+import com.distributedConsistentDatabase.cluster.pojo.WriteResult;
+import com.distributedConsistentDatabase.dataStore.expiry.ExpiringKey;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedValue;
+import com.distributedConsistentDatabase.dataStore.snapshot.SnapshotStreamReader;
 import com.distributedConsistentDatabase.sao.DistributedConsistentDatabaseSAO;
 
 /**
@@ -24,23 +41,80 @@ public class DistributedConsistentDatabaseSAOStub extends DistributedConsistentD
         nodeIdToNodeManagerMap.put(nodeId, nodeManager);
     }
 
+    public void removeNodeIdToNodeManagerMapping(final int nodeId) {
+        nodeIdToNodeManagerMap.remove(nodeId);
+    }
+
     public void clear() {
         nodeIdToNodeManagerMap.clear();
     }
 
     @Override
-    public boolean putValue(final ClusterNode node, final String key, final String value) {
-        return nodeIdToNodeManagerMap.get(node.getNodeId()).putValueToCluster(key, value);
+    public WriteResult<Boolean> putValue(final ClusterNode node, final String key, final String value,
+            final long ttlMillis) {
+        final NodeManager nodeManager = nodeIdToNodeManagerMap.get(node.getNodeId());
+        return new WriteResult<>(nodeManager.putValueToCluster(key, value, ttlMillis), nodeManager.getSessionToken());
+    }
+
+    @Override
+    public WriteResult<List<Boolean>> writeValues(final ClusterNode node, final List<KeyValueMutation> mutations) {
+        final NodeManager nodeManager = nodeIdToNodeManagerMap.get(node.getNodeId());
+        return new WriteResult<>(nodeManager.writeValuesToCluster(mutations), nodeManager.getSessionToken());
+    }
+
+    @Override
+    public WriteResult<CompareAndSetResult> compareAndSet(final ClusterNode node, final String key,
+            final String expectedValue, final Long expectedVersion, final String value, final long ttlMillis) {
+        final NodeManager nodeManager = nodeIdToNodeManagerMap.get(node.getNodeId());
+        return new WriteResult<>(nodeManager.compareAndSetInCluster(key, expectedValue, expectedVersion, value,
+            ttlMillis), nodeManager.getSessionToken());
+    }
+
+    @Override
+    public WriteResult<VersionedValue> addValue(final ClusterNode node, final String key, final long delta) {
+        final NodeManager nodeManager = nodeIdToNodeManagerMap.get(node.getNodeId());
+        return new WriteResult<>(nodeManager.addToCluster(key, delta), nodeManager.getSessionToken());
+    }
+
+    @Override
+    public WriteResult<VersionedValue> appendValue(final ClusterNode node, final String key, final String suffix) {
+        final NodeManager nodeManager = nodeIdToNodeManagerMap.get(node.getNodeId());
+        return new WriteResult<>(nodeManager.appendToCluster(key, suffix), nodeManager.getSessionToken());
     }
 
     @Override
-    public boolean internalPutValue(final ClusterNode node, final String key, final String value) {
-        return nodeIdToNodeManagerMap.get(node.getNodeId()).putValue(key, value);
+    public VersionedValue getValue(final ClusterNode node, final String key, final ReadConsistency consistency) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).getVersionedValueFromCluster(key, consistency);
     }
 
     @Override
-    public boolean deleteValue(final ClusterNode node, final String key) {
-        return nodeIdToNodeManagerMap.get(node.getNodeId()).deleteValueFromCluster(key);
+    public List<VersionedValue> getValues(final ClusterNode node, final List<String> keys) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).getVersionedValuesFromCluster(keys);
+    }
+
+    @Override
+    public boolean internalPutValue(final ClusterNode node, final String key, final String value,
+            final long expiresAtMillis) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).putValue(key, value, expiresAtMillis);
+    }
+
+    @Override
+    public boolean internalPutValue(final ClusterNode node, final String key, final String value,
+            final long expiresAtMillis, final long version) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).putValue(key, value, expiresAtMillis, version);
+    }
+
+    @Override
+    public boolean internalExpireValues(final ClusterNode node, final List<ExpiringKey> expiredKeys,
+            final long version) {
+        nodeIdToNodeManagerMap.get(node.getNodeId()).expireValues(expiredKeys, version);
+        return true;
+    }
+
+    @Override
+    public WriteResult<Boolean> deleteValue(final ClusterNode node, final String key) {
+        final NodeManager nodeManager = nodeIdToNodeManagerMap.get(node.getNodeId());
+        return new WriteResult<>(nodeManager.deleteValueFromCluster(key), nodeManager.getSessionToken());
     }
 
     @Override
@@ -48,11 +122,103 @@ public class DistributedConsistentDatabaseSAOStub extends DistributedConsistentD
         return nodeIdToNodeManagerMap.get(node.getNodeId()).delete(key);
     }
 
+    @Override
+    public boolean internalDeleteValue(final ClusterNode node, final String key, final long version) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).delete(key, version);
+    }
+
     @Override
     public String internalGetValue(final ClusterNode node, final String key) {
         return nodeIdToNodeManagerMap.get(node.getNodeId()).getValue(key);
     }
 
+    @Override
+    public AppendResult internalAppendEntries(final ClusterNode node, final AppendEntries batch) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).appendEntries(batch);
+    }
+
+    @Override
+    public LogTail internalGetLogTail(final ClusterNode node, final long fromIndex) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).getLogTail(fromIndex);
+    }
+
+    @Override
+    public VersionedEntry internalGetVersionedEntry(final ClusterNode node, final String key) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).getVersionedEntry(key);
+    }
+
+    @Override
+    public List<VersionedEntry> internalGetVersionedEntries(final ClusterNode node, final List<String> keys) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).getVersionedEntries(keys);
+    }
+
+    @Override
+    public boolean putBinaryValue(final ClusterNode node, final String key, final byte[] value) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).putBinaryValueToCluster(key, value);
+    }
+
+    @Override
+    public boolean internalPutBinaryValue(final ClusterNode node, final String key, final byte[] value) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).putBinaryValue(key, value);
+    }
+
+    @Override
+    public boolean deleteBinaryValue(final ClusterNode node, final String key) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).deleteBinaryValueFromCluster(key);
+    }
+
+    @Override
+    public boolean internalDeleteBinaryValue(final ClusterNode node, final String key) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).deleteBinaryValue(key);
+    }
+
+    @Override
+    public byte[] getBinaryValue(final ClusterNode node, final String key) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).getBinaryValueFromCluster(key);
+    }
+
+    @Override
+    public byte[] internalGetBinaryValue(final ClusterNode node, final String key) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).getBinaryValue(key);
+    }
+
+    @Override
+    public long[] internalGetMerkleTreeHashes(final ClusterNode node, final int[] treeNodes) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).getMerkleTreeHashes(treeNodes);
+    }
+
+    @Override
+    public List<VersionedEntry> internalGetMerkleLeafEntries(final ClusterNode node, final int[] leaves) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).getMerkleLeafEntries(leaves);
+    }
+
+    @Override
+    public int internalRepairValues(final ClusterNode node, final List<VersionedEntry> puts,
+            final List<VersionedEntry> deletes) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).repairValues(puts, deletes);
+    }
+
+    @Override
+    public int internalReplayHints(final ClusterNode node, final List<VersionedEntry> hints) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).applyHints(hints);
+    }
+
+    @Override
+    public int internalRepairNode(final ClusterNode node, final ClusterNode targetNode) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).repairNode(targetNode);
+    }
+
+    @Override
+    public long internalTransferState(final ClusterNode node, final Consumer<VersionedEntry> action) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            nodeIdToNodeManagerMap.get(node.getNodeId()).writeState(output);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return SnapshotStreamReader.read(new ByteArrayInputStream(output.toByteArray()), action);
+    }
+
     @Override
     public boolean isHeartbeatSuccessfull(final ClusterNode node) {
         nodeIdToNodeManagerMap.get(node.getNodeId()).ping();
@@ -65,8 +231,60 @@ public class DistributedConsistentDatabaseSAOStub extends DistributedConsistentD
         return false;
     }
 
+    @Override
+    public boolean addLearnerClusterNode(final ClusterNode targetNode, final ClusterNode currentNode) {
+        nodeIdToNodeManagerMap.get(targetNode.getNodeId()).addLearnerClusterNode(currentNode);
+        return true;
+    }
+
+    @Override
+    public boolean promoteClusterNode(final ClusterNode targetNode, final ClusterNode currentNode) {
+        nodeIdToNodeManagerMap.get(targetNode.getNodeId()).promoteClusterNode(currentNode);
+        return true;
+    }
+
     @Override
     public List<ClusterNode> getClusterDetails(final ClusterNode node) {
         return new ArrayList<>(nodeIdToNodeManagerMap.get(node.getNodeId()).getClusterDetails(null));
     }
+
+    @Override
+    public ClusterMesh getClusterMesh(final ClusterNode node) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).getClusterMesh();
+    }
+
+    @Override
+    public boolean addMeshNode(final ClusterNode targetNode, final int groupId, final ClusterNode node) {
+        nodeIdToNodeManagerMap.get(targetNode.getNodeId()).addMeshNode(groupId, node);
+        return true;
+    }
+
+    @Override
+    public boolean startMeshMigration(final ClusterNode node, final List<Integer> targetGroupIds) {
+        nodeIdToNodeManagerMap.get(node.getNodeId()).startMeshMigration(targetGroupIds);
+        return true;
+    }
+
+    @Override
+    public MigrationResult migrateMeshKeys(final ClusterNode node) {
+        return nodeIdToNodeManagerMap.get(node.getNodeId()).migrateMeshKeys();
+    }
+
+    @Override
+    public boolean handOverMeshKeys(final ClusterNode node) {
+        nodeIdToNodeManagerMap.get(node.getNodeId()).handOverMeshKeys();
+        return true;
+    }
+
+    @Override
+    public boolean completeMeshMigration(final ClusterNode node, final List<Integer> targetGroupIds) {
+        nodeIdToNodeManagerMap.get(node.getNodeId()).completeMeshMigration(targetGroupIds);
+        return true;
+    }
+
+    @Override
+    public boolean abortMeshMigration(final ClusterNode node) {
+        nodeIdToNodeManagerMap.get(node.getNodeId()).abortMeshMigration();
+        return true;
+    }
 }
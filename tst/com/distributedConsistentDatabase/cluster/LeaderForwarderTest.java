@@ -0,0 +1,175 @@
+package com.distributedConsistentDatabase.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.distributedConsistentDatabase.cluster.mesh.KeyHandedOverException;
+import com.distributedConsistentDatabase.cluster.pojo.ClusterNode;
+import com.distributedConsistentDatabase.cluster.pojo.KeyValueMutation;
+import com.distributedConsistentDatabase.cluster.pojo.WriteResult;
+
+/**
+ * Forwards writes to a leader simulated by the SAO stub, which refuses the batches holding a key being handed over,
+ * and fails the batches holding a key whose quorum is not met.
+ * @author abshukla
+ */
+public class LeaderForwarderTest {
+    private static final String REJECTED_KEY = "rejected";
+    private static final String UNACKNOWLEDGED_KEY = "unacknowledged";
+
+    private ExecutorService forwarderExecutorService;
+    private ExecutorService writerExecutorService;
+    private CountDownLatch leaderReplies;
+    private AtomicInteger batchCount;
+    private List<String> sentValues;
+    private LeaderForwarder leaderForwarder;
+
+    @Before
+    public void setUp() throws Exception {
+        forwarderExecutorService = Executors.newFixedThreadPool(LeaderForwarder.MAX_BATCHES_IN_FLIGHT);
+        writerExecutorService = Executors.newFixedThreadPool(16);
+        leaderReplies = new CountDownLatch(0);
+        batchCount = new AtomicInteger();
+        sentValues = Collections.synchronizedList(new ArrayList<>());
+        final ClusterNode leader = new ClusterNode();
+        leader.setNodeId(1);
+        final DistributedConsistentDatabaseSAOStub saoStub = new DistributedConsistentDatabaseSAOStub() {
+            @Override
+            public WriteResult<List<Boolean>> writeValues(final ClusterNode node,
+                    final List<KeyValueMutation> mutations) {
+                batchCount.incrementAndGet();
+                try {
+                    leaderReplies.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                final List<Boolean> results = new ArrayList<>();
+                for (final KeyValueMutation mutation : mutations) {
+                    sentValues.add(mutation.getValue());
+                }
+                for (final KeyValueMutation mutation : mutations) {
+                    if (REJECTED_KEY.equals(mutation.getKey())) {
+                        throw new KeyHandedOverException("key " + REJECTED_KEY + " is being handed over");
+                    }
+                    if (UNACKNOWLEDGED_KEY.equals(mutation.getKey())) {
+                        throw new IllegalStateException("quorum not met for key " + UNACKNOWLEDGED_KEY);
+                    }
+                    results.add(true);
+                }
+                return new WriteResult<>(results, 1);
+            }
+        };
+        leaderForwarder = new LeaderForwarder(saoStub, () -> leader, forwarderExecutorService, 500);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        leaderReplies.countDown();
+        forwarderExecutorService.shutdownNow();
+        writerExecutorService.shutdownNow();
+    }
+
+    @Test
+    public void testRejectedWriteDoesNotFailTheOtherWritesOfItsBatch() throws Exception {
+        // the writes pile up while the leader holds the first batch, so the next ones share a batch.
+        leaderReplies = new CountDownLatch(1);
+        final List<Future<WriteResult<Boolean>>> writes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            final KeyValueMutation mutation = KeyValueMutation.put((i == 25) ? REJECTED_KEY : "key-" + i, "value-" + i);
+            writes.add(writerExecutorService.submit(() -> leaderForwarder.forward(mutation)));
+        }
+        Thread.sleep(100);
+        leaderReplies.countDown();
+        for (int i = 0; i < writes.size(); i++) {
+            try {
+                Assert.assertTrue(writes.get(i).get(5, TimeUnit.SECONDS).getResult());
+                Assert.assertTrue(i != 25);
+            } catch (final Exception e) {
+                Assert.assertEquals(i, 25);
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("is being handed over"));
+            }
+        }
+        // the writes were batched, and the batch holding the rejected write was sent again one write at a time.
+        Assert.assertTrue(batchCount.get() + " batches", batchCount.get() < 50);
+    }
+
+    @Test
+    public void testBatchWhichMayBeAppliedIsNotSentAgain() throws Exception {
+        leaderReplies = new CountDownLatch(1);
+        final List<Future<WriteResult<Boolean>>> writes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            final KeyValueMutation mutation = KeyValueMutation.put((i == 25) ? UNACKNOWLEDGED_KEY : "key-" + i,
+                "value-" + i);
+            writes.add(writerExecutorService.submit(() -> leaderForwarder.forward(mutation)));
+        }
+        Thread.sleep(100);
+        leaderReplies.countDown();
+        try {
+            writes.get(25).get(5, TimeUnit.SECONDS);
+            Assert.fail("unacknowledged write did not fail");
+        } catch (final ExecutionException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("quorum not met"));
+        }
+        for (final Future<WriteResult<Boolean>> write : writes) {
+            try {
+                write.get(5, TimeUnit.SECONDS);
+            } catch (final ExecutionException e) {
+                // the writes batched with the unacknowledged one fail with it.
+            }
+        }
+        // every write was sent once, the writes of the failed batch were not sent again.
+        Assert.assertEquals(sentValues.size(), 50);
+        Assert.assertEquals(new HashSet<>(sentValues).size(), 50);
+    }
+
+    @Test
+    public void testWriteTimingOutBeforeItIsSentIsWithdrawn() throws Exception {
+        leaderReplies = new CountDownLatch(1);
+        final Future<WriteResult<Boolean>> firstWrite = writerExecutorService.submit(
+            () -> leaderForwarder.forward(KeyValueMutation.put("key", "first")));
+        Thread.sleep(100);
+        // the second write of the key waits for the first one, which the leader holds.
+        try {
+            leaderForwarder.forward(KeyValueMutation.put("key", "second"));
+            Assert.fail("write did not time out");
+        } catch (final IllegalStateException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("it was not sent to the leader"));
+        }
+        leaderReplies.countDown();
+        try {
+            firstWrite.get(5, TimeUnit.SECONDS);
+        } catch (final ExecutionException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("it may still be applied"));
+        }
+        Assert.assertTrue(leaderForwarder.forward(KeyValueMutation.put("key", "third")).getResult());
+        Assert.assertEquals(sentValues, Arrays.asList("first", "third"));
+    }
+
+    @Test
+    public void testWriteTimesOutWhileTheLeaderDoesNotReply() throws Exception {
+        leaderReplies = new CountDownLatch(1);
+        final long startMillis = System.currentTimeMillis();
+        try {
+            leaderForwarder.forward(KeyValueMutation.put("key", "value"));
+            Assert.fail("write did not time out");
+        } catch (final IllegalStateException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("within 500 ms"));
+        }
+        Assert.assertTrue(System.currentTimeMillis() - startMillis < 2000);
+    }
+}
@@ -1,13 +1,43 @@
 package com.distributedConsistentDatabase.cluster;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.distributedConsistentDatabase.cluster.log.AppendEntries;
+import com.distributedConsistentDatabase.cluster.log.AppendResult;
+import com.distributedConsistentDatabase.cluster.log.LogTail;
+import com.distributedConsistentDatabase.cluster.mesh.ClusterMesh;
+import com.distributedConsistentDatabase.cluster.mesh.HashRing;
+import com.distributedConsistentDatabase.cluster.mesh.RebalanceProgress;
 import com.distributedConsistentDatabase.cluster.pojo.ClusterNode;
+import com.distributedConsistentDatabase.cluster.pojo.CompareAndSetResult;
+import com.distributedConsistentDatabase.cluster.pojo.KeyValueMutation;
+import com.distributedConsistentDatabase.cluster.pojo.ReadConsistency;
+import com.distributedConsistentDatabase.dataStore.ExpiringKeyValueStore;
+import com.distributedConsistentDatabase.dataStore.KeyValueStoreFactory;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedValue;
+import com.distributedConsistentDatabase.dataStore.snapshot.SnapshotMetadata;
+import com.distributedConsistentDatabase.sao.DistributedConsistentDatabaseSAO;
 
 /**
  * This test class simulates the cluster structure by initializing multiple node managers
@@ -18,16 +48,48 @@ public class NodeManagerTest {
 
     private NodeManager nodeManager;
     private DistributedConsistentDatabaseSAOStub saoStub;
+    private File dataDirectory;
+    // node managers created by the test, shut down once it ran.
+    private List<NodeManager> createdNodeManagers;
 
     @Before
     public void setUp() throws Exception {
+        // hints of failed replications are kept on disk, so every test gets its own data directory.
+        dataDirectory = Files.createTempDirectory("node-manager").toFile();
+        System.setProperty(KeyValueStoreFactory.DATA_DIRECTORY_PROPERTY, dataDirectory.getPath());
         saoStub = new DistributedConsistentDatabaseSAOStub();
-        nodeManager = new NodeManager(saoStub);
+        createdNodeManagers = new ArrayList<>();
+        nodeManager = newNodeManager(saoStub);
     }
 
     @After
     public void tearDown() throws Exception {
+        createdNodeManagers.forEach(NodeManager::shutdown);
         saoStub.clear();
+        System.clearProperty(KeyValueStoreFactory.DATA_DIRECTORY_PROPERTY);
+        delete(dataDirectory);
+    }
+
+    private NodeManager newNodeManager(final DistributedConsistentDatabaseSAO dcdbSao) {
+        final NodeManager createdNodeManager = new NodeManager(dcdbSao);
+        createdNodeManagers.add(createdNodeManager);
+        return createdNodeManager;
+    }
+
+    private NodeManager newNodeManager(final DistributedConsistentDatabaseSAO dcdbSao, final File snapshotFile) {
+        final NodeManager createdNodeManager = new NodeManager(dcdbSao, snapshotFile);
+        createdNodeManagers.add(createdNodeManager);
+        return createdNodeManager;
+    }
+
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
     }
 
     @Test
@@ -39,6 +101,37 @@ public class NodeManagerTest {
         // Nothing to assert here as the leader does not have anyone to ping
     }
 
+    @Test
+    public void testShutdownStopsTheThreadsOfTheNode() throws Exception {
+        final Set<Thread> existingThreads = new HashSet<>(Thread.getAllStackTraces().keySet());
+        final ClusterNode leaderNode = new ClusterNode();
+        leaderNode.setNodeId(1);
+        saoStub.addNodeIdToNodeManagerMapping(1, nodeManager);
+        nodeManager.initialize(leaderNode, null);
+        final List<NodeManager> followerNodeManagers = new ArrayList<>();
+        for (int i = 2; i <= 3; i++) {
+            final NodeManager followerNodeManager = newNodeManager(saoStub);
+            final ClusterNode followerNode = new ClusterNode();
+            followerNode.setNodeId(i);
+            saoStub.addNodeIdToNodeManagerMapping(i, followerNodeManager);
+            followerNodeManager.initialize(followerNode, leaderNode);
+            followerNodeManagers.add(followerNodeManager);
+        }
+        // the write is forwarded to the leader, which replicates it, and read from a quorum.
+        Assert.assertTrue(followerNodeManagers.get(0).putValueToCluster("key", "value"));
+        Assert.assertEquals(followerNodeManagers.get(1).getValueFromCluster("key"), "value");
+        nodeManager.shutdown();
+        followerNodeManagers.forEach(NodeManager::shutdown);
+        // shutting a node down again is a no-op.
+        nodeManager.shutdown();
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (false == existingThreads.contains(thread)) {
+                thread.join(5000);
+                Assert.assertFalse(thread.getName() + " is still running", thread.isAlive());
+            }
+        }
+    }
+
     @Test
     public void testInitializeLeaderFollowedByFollowerNode() {
         final ClusterNode leaderNode = new ClusterNode();
@@ -46,7 +139,7 @@ public class NodeManagerTest {
         saoStub.addNodeIdToNodeManagerMapping(1, nodeManager);
         nodeManager.initialize(leaderNode, null);
 
-        final NodeManager followerNodeManager = new NodeManager(saoStub);
+        final NodeManager followerNodeManager = newNodeManager(saoStub);
         final ClusterNode followerNode = new ClusterNode();
         followerNode.setNodeId(2);
         saoStub.addNodeIdToNodeManagerMapping(2, followerNodeManager);
@@ -64,7 +157,7 @@ public class NodeManagerTest {
 
     @Test
     public void testInitializeFollowerFollowedByLeaderNode() {
-        final NodeManager followerNodeManager = new NodeManager(saoStub);
+        final NodeManager followerNodeManager = newNodeManager(saoStub);
         final ClusterNode followerNode = new ClusterNode();
         followerNode.setNodeId(2);
         saoStub.addNodeIdToNodeManagerMapping(2, followerNodeManager);
@@ -87,7 +180,7 @@ public class NodeManagerTest {
 
     @Test
     public void testQuorumMetForPutOnFollower() {
-        final NodeManager firstFollowerNodeManager = new NodeManager(saoStub);
+        final NodeManager firstFollowerNodeManager = newNodeManager(saoStub);
         final ClusterNode firstFollowerNode = new ClusterNode();
         firstFollowerNode.setNodeId(2);
         saoStub.addNodeIdToNodeManagerMapping(2, firstFollowerNodeManager);
@@ -98,7 +191,7 @@ public class NodeManagerTest {
         saoStub.addNodeIdToNodeManagerMapping(1, nodeManager);
         nodeManager.initialize(leaderNode, firstFollowerNode);
 
-        final NodeManager secondFollowerNodeManager = new NodeManager(saoStub);
+        final NodeManager secondFollowerNodeManager = newNodeManager(saoStub);
         final ClusterNode secondFollowerNode = new ClusterNode();
         secondFollowerNode.setNodeId(3);
         saoStub.addNodeIdToNodeManagerMapping(3, secondFollowerNodeManager);
@@ -111,7 +204,7 @@ public class NodeManagerTest {
 
     @Test(expected = IllegalStateException.class)
     public void testQuorumNotMetForPutOnLeader() {
-        final NodeManager firstFollowerNodeManager = new NodeManager(saoStub);
+        final NodeManager firstFollowerNodeManager = newNodeManager(saoStub);
         final ClusterNode firstFollowerNode = new ClusterNode();
         firstFollowerNode.setNodeId(2);
         saoStub.addNodeIdToNodeManagerMapping(2, firstFollowerNodeManager);
@@ -129,7 +222,7 @@ public class NodeManagerTest {
 
     @Test
     public void testQuorumMetForGetOnFollower() {
-        final NodeManager firstFollowerNodeManager = new NodeManager(saoStub);
+        final NodeManager firstFollowerNodeManager = newNodeManager(saoStub);
         final ClusterNode firstFollowerNode = new ClusterNode();
         firstFollowerNode.setNodeId(2);
         saoStub.addNodeIdToNodeManagerMapping(2, firstFollowerNodeManager);
@@ -140,7 +233,7 @@ public class NodeManagerTest {
         saoStub.addNodeIdToNodeManagerMapping(1, nodeManager);
         nodeManager.initialize(leaderNode, firstFollowerNode);
 
-        final NodeManager secondFollowerNodeManager = new NodeManager(saoStub);
+        final NodeManager secondFollowerNodeManager = newNodeManager(saoStub);
         final ClusterNode secondFollowerNode = new ClusterNode();
         secondFollowerNode.setNodeId(3);
         saoStub.addNodeIdToNodeManagerMapping(3, secondFollowerNodeManager);
@@ -149,16 +242,17 @@ public class NodeManagerTest {
         final String key = UUID.randomUUID().toString();
         final String value = UUID.randomUUID().toString();
 
-        // setup all nodes to contain the same key value pair so that quorum can be met.
-        nodeManager.putValue(key, value);
-        firstFollowerNodeManager.putValue(key, value);
-        secondFollowerNodeManager.putValue(key, value);
+        // setup all nodes to contain the same write of the key value pair so that quorum can be met.
+        final long version = 1L;
+        nodeManager.putValue(key, value, ExpiringKeyValueStore.NO_EXPIRY, version);
+        firstFollowerNodeManager.putValue(key, value, ExpiringKeyValueStore.NO_EXPIRY, version);
+        secondFollowerNodeManager.putValue(key, value, ExpiringKeyValueStore.NO_EXPIRY, version);
         Assert.assertEquals(secondFollowerNodeManager.getValueFromCluster(key), value);
     }
 
     @Test(expected = IllegalStateException.class)
-    public void testQuorumNotMetForGetOnLeader() {
-        final NodeManager firstFollowerNodeManager = new NodeManager(saoStub);
+    public void testQuorumNotMetForGetOnFollower() {
+        final NodeManager firstFollowerNodeManager = newNodeManager(saoStub);
         final ClusterNode firstFollowerNode = new ClusterNode();
         firstFollowerNode.setNodeId(2);
         saoStub.addNodeIdToNodeManagerMapping(2, firstFollowerNodeManager);
@@ -169,7 +263,7 @@ public class NodeManagerTest {
         saoStub.addNodeIdToNodeManagerMapping(1, nodeManager);
         nodeManager.initialize(leaderNode, firstFollowerNode);
 
-        final NodeManager secondFollowerNodeManager = new NodeManager(saoStub);
+        final NodeManager secondFollowerNodeManager = newNodeManager(saoStub);
         final ClusterNode secondFollowerNode = new ClusterNode();
         secondFollowerNode.setNodeId(3);
         saoStub.addNodeIdToNodeManagerMapping(3, secondFollowerNodeManager);
@@ -183,12 +277,12 @@ public class NodeManagerTest {
         nodeManager.putValue(key, value);
         firstFollowerNodeManager.putValue(key, value);
         secondFollowerNodeManager.putValue(key, garbageValue);
-        nodeManager.getValueFromCluster(key);
+        firstFollowerNodeManager.getValueFromCluster(key);
     }
 
     @Test
     public void testQuorumMetForDeleteOnFollower() {
-        final NodeManager firstFollowerNodeManager = new NodeManager(saoStub);
+        final NodeManager firstFollowerNodeManager = newNodeManager(saoStub);
         final ClusterNode firstFollowerNode = new ClusterNode();
         firstFollowerNode.setNodeId(2);
         saoStub.addNodeIdToNodeManagerMapping(2, firstFollowerNodeManager);
@@ -199,7 +293,7 @@ public class NodeManagerTest {
         saoStub.addNodeIdToNodeManagerMapping(1, nodeManager);
         nodeManager.initialize(leaderNode, firstFollowerNode);
 
-        final NodeManager secondFollowerNodeManager = new NodeManager(saoStub);
+        final NodeManager secondFollowerNodeManager = newNodeManager(saoStub);
         final ClusterNode secondFollowerNode = new ClusterNode();
         secondFollowerNode.setNodeId(3);
         saoStub.addNodeIdToNodeManagerMapping(3, secondFollowerNodeManager);
@@ -217,7 +311,7 @@ public class NodeManagerTest {
 
     @Test(expected = IllegalStateException.class)
     public void testQuorumNotMetForDeleteOnLeader() {
-        final NodeManager firstFollowerNodeManager = new NodeManager(saoStub);
+        final NodeManager firstFollowerNodeManager = newNodeManager(saoStub);
         final ClusterNode firstFollowerNode = new ClusterNode();
         firstFollowerNode.setNodeId(2);
         saoStub.addNodeIdToNodeManagerMapping(2, firstFollowerNodeManager);
@@ -236,4 +330,1232 @@ public class NodeManagerTest {
         firstFollowerNodeManager.putValue(key, value);
         nodeManager.deleteValueFromCluster(key);
     }
+
+    @Test
+    public void testRestoreFromSnapshotOnInitialize() throws Exception {
+        final File snapshotFile = Files.createTempFile("node-manager", ".snapshot").toFile();
+        snapshotFile.delete();
+        try {
+            final NodeManager snapshotNodeManager = newNodeManager(saoStub, snapshotFile);
+            final String key = UUID.randomUUID().toString();
+            final String value = UUID.randomUUID().toString();
+            snapshotNodeManager.putValue(key, value);
+            snapshotNodeManager.putValue(key + "-deleted", value);
+            snapshotNodeManager.delete(key + "-deleted");
+            final SnapshotMetadata snapshotMetadata = snapshotNodeManager.createSnapshot();
+            Assert.assertEquals(snapshotMetadata.getLastAppliedWritePosition(), 3L);
+            Assert.assertEquals(snapshotMetadata.getEntryCount(), 1L);
+
+            final NodeManager restartedNodeManager = newNodeManager(saoStub, snapshotFile);
+            final ClusterNode restartedNode = new ClusterNode();
+            restartedNode.setNodeId(1);
+            saoStub.addNodeIdToNodeManagerMapping(1, restartedNodeManager);
+            restartedNodeManager.initialize(restartedNode, null);
+            Assert.assertEquals(restartedNodeManager.getValue(key), value);
+            Assert.assertNull(restartedNodeManager.getValue(key + "-deleted"));
+            Assert.assertEquals(restartedNodeManager.getLastAppliedWritePosition(), 3L);
+        } finally {
+            snapshotFile.delete();
+        }
+    }
+
+    @Test
+    public void testRestartedLeaderResumesTheLogAfterTheSnapshot() throws Exception {
+        final File snapshotFile = Files.createTempFile("node-manager", ".snapshot").toFile();
+        snapshotFile.delete();
+        try {
+            final NodeManager leaderNodeManager = newNodeManager(saoStub, snapshotFile);
+            final ClusterNode leaderNode = new ClusterNode();
+            leaderNode.setNodeId(1);
+            saoStub.addNodeIdToNodeManagerMapping(1, leaderNodeManager);
+            leaderNodeManager.initialize(leaderNode, null);
+            for (int i = 2; i <= 3; i++) {
+                final NodeManager followerNodeManager = newNodeManager(saoStub);
+                final ClusterNode followerNode = new ClusterNode();
+                followerNode.setNodeId(i);
+                saoStub.addNodeIdToNodeManagerMapping(i, followerNodeManager);
+                followerNodeManager.initialize(followerNode, leaderNode);
+            }
+            for (int i = 0; i < 3; i++) {
+                Assert.assertTrue(leaderNodeManager.putValueToCluster("key-" + i, "value-" + i));
+            }
+
+            // the log position is the one of the last applied entry, not the count of the applied writes.
+            final LogTail logTail = leaderNodeManager.getLogTail(1);
+            final SnapshotMetadata snapshotMetadata = leaderNodeManager.createSnapshot();
+            Assert.assertEquals(snapshotMetadata.getLastAppliedWritePosition(), 3L);
+            Assert.assertEquals(snapshotMetadata.getLogIndex(), logTail.getLastIndex());
+            Assert.assertEquals(snapshotMetadata.getLogTerm(), logTail.getLastTerm());
+
+            saoStub.clear();
+            final NodeManager restartedNodeManager = newNodeManager(saoStub, snapshotFile);
+            saoStub.addNodeIdToNodeManagerMapping(1, restartedNodeManager);
+            restartedNodeManager.initialize(leaderNode, null);
+            // the new term is opened right after the entries of the snapshot.
+            final LogTail restartedLogTail = restartedNodeManager.getLogTail(1);
+            Assert.assertEquals(restartedLogTail.getLastIndex(), logTail.getLastIndex() + 1);
+            Assert.assertEquals(restartedLogTail.getTerm(), logTail.getTerm() + 1);
+            Assert.assertEquals(restartedNodeManager.getValue("key-2"), "value-2");
+        } finally {
+            snapshotFile.delete();
+        }
+    }
+
+    @Test
+    public void testExpiryIsReplicatedByTheLeader() throws Exception {
+        final ClusterNode leaderNode = new ClusterNode();
+        leaderNode.setNodeId(1);
+        saoStub.addNodeIdToNodeManagerMapping(1, nodeManager);
+        nodeManager.initialize(leaderNode, null);
+
+        final NodeManager firstFollowerNodeManager = newNodeManager(saoStub);
+        final ClusterNode firstFollowerNode = new ClusterNode();
+        firstFollowerNode.setNodeId(2);
+        saoStub.addNodeIdToNodeManagerMapping(2, firstFollowerNodeManager);
+        firstFollowerNodeManager.initialize(firstFollowerNode, leaderNode);
+
+        final NodeManager secondFollowerNodeManager = newNodeManager(saoStub);
+        final ClusterNode secondFollowerNode = new ClusterNode();
+        secondFollowerNode.setNodeId(3);
+        saoStub.addNodeIdToNodeManagerMapping(3, secondFollowerNodeManager);
+        secondFollowerNodeManager.initialize(secondFollowerNode, leaderNode);
+
+        final String key = UUID.randomUUID().toString();
+        final String value = UUID.randomUUID().toString();
+        Assert.assertTrue(secondFollowerNodeManager.putValueToCluster(key, value, 500L));
+        Assert.assertEquals(firstFollowerNodeManager.getValue(key), value);
+        Assert.assertEquals(firstFollowerNodeManager.getLastAppliedWritePosition(), 1L);
+
+        Thread.sleep(3000);
+        Assert.assertNull(nodeManager.getValue(key));
+        Assert.assertNull(firstFollowerNodeManager.getValue(key));
+        // the removal was replicated as a write by the leader.
+        Assert.assertEquals(nodeManager.getLastAppliedWritePosition(), 2L);
+        Assert.assertEquals(firstFollowerNodeManager.getLastAppliedWritePosition(), 2L);
+        Assert.assertEquals(secondFollowerNodeManager.getLastAppliedWritePosition(), 2L);
+    }
+
+    @Test
+    public void testVersionIsReplicatedByTheLeader() {
+        final ClusterNode leaderNode = new ClusterNode();
+        leaderNode.setNodeId(1);
+        saoStub.addNodeIdToNodeManagerMapping(1, nodeManager);
+        nodeManager.initialize(leaderNode, null);
+
+        final NodeManager firstFollowerNodeManager = newNodeManager(saoStub);
+        final ClusterNode firstFollowerNode = new ClusterNode();
+        firstFollowerNode.setNodeId(2);
+        saoStub.addNodeIdToNodeManagerMapping(2, firstFollowerNodeManager);
+        firstFollowerNodeManager.initialize(firstFollowerNode, leaderNode);
+
+        final NodeManager secondFollowerNodeManager = newNodeManager(saoStub);
+        final ClusterNode secondFollowerNode = new ClusterNode();
+        secondFollowerNode.setNodeId(3);
+        saoStub.addNodeIdToNodeManagerMapping(3, secondFollowerNodeManager);
+        secondFollowerNodeManager.initialize(secondFollowerNode, leaderNode);
+
+        final String key = UUID.randomUUID().toString();
+        Assert.assertTrue(secondFollowerNodeManager.putValueToCluster(key, "first"));
+        final VersionedValue firstWrite = firstFollowerNodeManager.getVersionedValueFromCluster(key);
+        Assert.assertEquals(firstWrite.getValue(), "first");
+        Assert.assertEquals(nodeManager.getVersionedValue(key).getVersion(), firstWrite.getVersion());
+        Assert.assertEquals(secondFollowerNodeManager.getVersionedValue(key).getVersion(), firstWrite.getVersion());
+
+        Assert.assertTrue(firstFollowerNodeManager.putValueToCluster(key, "second"));
+        final VersionedValue secondWrite = nodeManager.getVersionedValueFromCluster(key);
+        Assert.assertEquals(secondWrite.getValue(), "second");
+        Assert.assertTrue(secondWrite.getVersion() > firstWrite.getVersion());
+    }
+
+    @Test
+    public void testAntiEntropyRepairsDivergedFollower() throws Exception {
+        final ClusterNode leaderNode = new ClusterNode();
+        leaderNode.setNodeId(1);
+        saoStub.addNodeIdToNodeManagerMapping(1, nodeManager);
+        nodeManager.initialize(leaderNode, null);
+
+        final NodeManager firstFollowerNodeManager = newNodeManager(saoStub);
+        final ClusterNode firstFollowerNode = new ClusterNode();
+        firstFollowerNode.setNodeId(2);
+        saoStub.addNodeIdToNodeManagerMapping(2, firstFollowerNodeManager);
+        firstFollowerNodeManager.initialize(firstFollowerNode, leaderNode);
+
+        final NodeManager secondFollowerNodeManager = newNodeManager(saoStub);
+        final ClusterNode secondFollowerNode = new ClusterNode();
+        secondFollowerNode.setNodeId(3);
+        saoStub.addNodeIdToNodeManagerMapping(3, secondFollowerNodeManager);
+        secondFollowerNodeManager.initialize(secondFollowerNode, leaderNode);
+
+        for (int i = 0; i < 100; i++) {
+            nodeManager.putValueToCluster("key-" + i, "value-" + i);
+        }
+        // writes the follower missed.
+        nodeManager.putValue("missed", "value", ExpiringKeyValueStore.NO_EXPIRY, nodeManager.getVersionedValue(
+            "key-0").getVersion() + 1);
+        nodeManager.putValue("key-1", "updated", ExpiringKeyValueStore.NO_EXPIRY, nodeManager.getVersionedValue(
+            "key-1").getVersion() + 1);
+        nodeManager.delete("key-2");
+        Assert.assertEquals(firstFollowerNodeManager.getValue("key-2"), "value-2");
+        // write the leader never saw, in a later millisecond so that its version is newer than the delete.
+        Thread.sleep(5);
+        firstFollowerNodeManager.putValue("unseen", "value");
+
+        // 3 entries on every follower, and the unseen entry on the leader and the second follower.
+        Assert.assertEquals(nodeManager.repairReplicas(), 8);
+        for (final NodeManager followerNodeManager : new NodeManager[] {firstFollowerNodeManager,
+            secondFollowerNodeManager}) {
+            Assert.assertEquals(followerNodeManager.getValue("missed"), "value");
+            Assert.assertEquals(followerNodeManager.getValue("key-1"), "updated");
+            Assert.assertNull(followerNodeManager.getValue("key-2"));
+            Assert.assertEquals(followerNodeManager.getValue("unseen"), "value");
+            Assert.assertArrayEquals(followerNodeManager.getMerkleTreeHashes(new int[] {1}),
+                nodeManager.getMerkleTreeHashes(new int[] {1}));
+        }
+        // nothing left to repair.
+        Assert.assertEquals(nodeManager.repairReplicas(), 0);
+    }
+
+    @Test
+    public void testJoiningNodeReceivesStateBeforeVoting() {
+        final ClusterNode leaderNode = new ClusterNode();
+        leaderNode.setNodeId(2);
+        saoStub.addNodeIdToNodeManagerMapping(2, nodeManager);
+        nodeManager.initialize(leaderNode, null);
+
+        final NodeManager firstFollowerNodeManager = newNodeManager(saoStub);
+        final ClusterNode firstFollowerNode = new ClusterNode();
+        firstFollowerNode.setNodeId(3);
+        saoStub.addNodeIdToNodeManagerMapping(3, firstFollowerNodeManager);
+        firstFollowerNodeManager.initialize(firstFollowerNode, leaderNode);
+
+        final NodeManager secondFollowerNodeManager = newNodeManager(saoStub);
+        final ClusterNode secondFollowerNode = new ClusterNode();
+        secondFollowerNode.setNodeId(4);
+        saoStub.addNodeIdToNodeManagerMapping(4, secondFollowerNodeManager);
+        secondFollowerNodeManager.initialize(secondFollowerNode, leaderNode);
+
+        for (int i = 0; i < 1000; i++) {
+            nodeManager.putValueToCluster("key-" + i, "value-" + i, (i % 10 == 0) ? 60000L
+                : ExpiringKeyValueStore.NO_EXPIRY);
+        }
+        nodeManager.deleteValueFromCluster("key-1");
+
+        // the joining node has the lowest id, so it takes over the leader position once it is promoted.
+        final NodeManager joiningNodeManager = newNodeManager(saoStub);
+        final ClusterNode joiningNode = new ClusterNode();
+        joiningNode.setNodeId(1);
+        saoStub.addNodeIdToNodeManagerMapping(1, joiningNodeManager);
+        joiningNodeManager.initialize(joiningNode, firstFollowerNode);
+
+        Assert.assertFalse(joiningNodeManager.isLearner());
+        Assert.assertEquals(joiningNodeManager.getLastAppliedWritePosition(), 999L);
+        Assert.assertNull(joiningNodeManager.getValue("key-1"));
+        for (int i = 0; i < 1000; i += 7) {
+            if (i != 1) {
+                Assert.assertEquals(joiningNodeManager.getVersionedValue("key-" + i),
+                    nodeManager.getVersionedValue("key-" + i));
+            }
+        }
+        Assert.assertArrayEquals(joiningNodeManager.getMerkleTreeHashes(new int[] {1}),
+            nodeManager.getMerkleTreeHashes(new int[] {1}));
+        for (final NodeManager otherNodeManager : new NodeManager[] {nodeManager, firstFollowerNodeManager,
+            secondFollowerNodeManager, joiningNodeManager}) {
+            Assert.assertEquals(otherNodeManager.getClusterLeader(null).getNodeId(), 1);
+        }
+
+        Assert.assertTrue(secondFollowerNodeManager.putValueToCluster("key-1", "value"));
+        Assert.assertEquals(firstFollowerNodeManager.getValueFromCluster("key-1"), "value");
+    }
+
+    @Test
+    public void testLeaderCutOffFromTheVotingNodesDoesNotTakeOver() throws Exception {
+        final AtomicBoolean isCutOff = new AtomicBoolean();
+        final DistributedConsistentDatabaseSAOStub cutOffSaoStub = new DistributedConsistentDatabaseSAOStub() {
+            @Override
+            public LogTail internalGetLogTail(final ClusterNode node, final long fromIndex) {
+                if (isCutOff.get()) {
+                    throw new IllegalStateException("node " + node.getNodeId() + " is unreachable");
+                }
+                return super.internalGetLogTail(node, fromIndex);
+            }
+        };
+        final NodeManager[] nodeManagers = new NodeManager[4];
+        final ClusterNode[] nodes = new ClusterNode[4];
+        try {
+            for (int i = 1; i < nodeManagers.length; i++) {
+                nodeManagers[i] = newNodeManager(cutOffSaoStub);
+                nodes[i] = new ClusterNode();
+                nodes[i].setNodeId(i + 1);
+                cutOffSaoStub.addNodeIdToNodeManagerMapping(i + 1, nodeManagers[i]);
+                nodeManagers[i].initialize(nodes[i], (i == 1) ? null : nodes[1]);
+            }
+            Assert.assertTrue(nodeManagers[1].putValueToCluster("key", "value"));
+
+            // the joining node has the lowest id, but none of the other voting nodes can tell it their logs.
+            isCutOff.set(true);
+            nodeManagers[0] = newNodeManager(cutOffSaoStub);
+            nodes[0] = new ClusterNode();
+            nodes[0].setNodeId(1);
+            cutOffSaoStub.addNodeIdToNodeManagerMapping(1, nodeManagers[0]);
+            nodeManagers[0].initialize(nodes[0], nodes[2]);
+            Assert.assertFalse(nodeManagers[0].isLearner());
+            Thread.sleep(2000);
+            try {
+                nodeManagers[0].getClusterLeader(null);
+                Assert.fail("node 1 took over without a majority");
+            } catch (final IllegalStateException e) {
+                Assert.assertEquals(e.getMessage(),
+                    "node 1 did not reach a majority of the voting nodes to take over as the leader");
+            }
+
+            // the takeover is retried with the heartbeat once the node reaches a majority of the voting nodes.
+            isCutOff.set(false);
+            final long deadlineMillis = System.currentTimeMillis() + 5000L;
+            while (nodeManagers[0].isTakeOverPending() && System.currentTimeMillis() < deadlineMillis) {
+                Thread.sleep(100);
+            }
+            Assert.assertEquals(nodeManagers[0].getClusterLeader(null).getNodeId(), 1);
+            Assert.assertTrue(nodeManagers[3].putValueToCluster("key", "other value"));
+            Assert.assertEquals(nodeManagers[2].getValueFromCluster("key"), "other value");
+        } finally {
+            cutOffSaoStub.clear();
+        }
+    }
+
+    @Test
+    public void testNewLeaderWaitsOutTheLeaseOfALeaderWhichDidNotStepDown() throws Exception {
+        // the leader never learns that the joining node was promoted, so it keeps leading with its lease.
+        final DistributedConsistentDatabaseSAOStub lostPromotionSaoStub = new DistributedConsistentDatabaseSAOStub() {
+            @Override
+            public boolean promoteClusterNode(final ClusterNode targetNode, final ClusterNode currentNode) {
+                return (targetNode.getNodeId() == 2 && currentNode.getNodeId() == 1)
+                    || super.promoteClusterNode(targetNode, currentNode);
+            }
+        };
+        final long leaseDurationMillis = 2000L;
+        System.setProperty(NodeManager.LEASE_DURATION_PROPERTY, String.valueOf(leaseDurationMillis));
+        final NodeManager[] nodeManagers = new NodeManager[4];
+        try {
+            final ClusterNode[] nodes = new ClusterNode[4];
+            for (int i = 1; i < nodeManagers.length; i++) {
+                nodeManagers[i] = newNodeManager(lostPromotionSaoStub);
+                nodes[i] = new ClusterNode();
+                nodes[i].setNodeId(i + 1);
+                lostPromotionSaoStub.addNodeIdToNodeManagerMapping(i + 1, nodeManagers[i]);
+                nodeManagers[i].initialize(nodes[i], (i == 1) ? null : nodes[1]);
+            }
+            Assert.assertTrue(nodeManagers[1].putValueToCluster("key", "value"));
+
+            nodeManagers[0] = newNodeManager(lostPromotionSaoStub);
+            nodes[0] = new ClusterNode();
+            nodes[0].setNodeId(1);
+            lostPromotionSaoStub.addNodeIdToNodeManagerMapping(1, nodeManagers[0]);
+            nodeManagers[0].initialize(nodes[0], nodes[2]);
+            Assert.assertEquals(nodeManagers[0].getClusterLeader(null).getNodeId(), 1);
+
+            // the first write of the new leader is committed once the lease of the previous one expired.
+            final long startMillis = System.currentTimeMillis();
+            Assert.assertTrue(nodeManagers[0].putValueToCluster("key", "other value"));
+            final long elapsedMillis = System.currentTimeMillis() - startMillis;
+            Assert.assertTrue("committed after " + elapsedMillis + " ms", elapsedMillis >= leaseDurationMillis / 2);
+            Assert.assertEquals(nodeManagers[3].getValueFromCluster("key"), "other value");
+        } finally {
+            System.clearProperty(NodeManager.LEASE_DURATION_PROPERTY);
+            lostPromotionSaoStub.clear();
+        }
+    }
+
+    @Test
+    public void testLaggingFollowerCatchesUpFromTheLogAndHints() throws Exception {
+        // the log holds few entries, the entries dropped before the follower appended them are hinted for it.
+        System.setProperty(NodeManager.LOG_MAX_RETAINED_ENTRIES_PROPERTY, "20");
+        final NodeManager leaderNodeManager;
+        try {
+            leaderNodeManager = newNodeManager(saoStub);
+        } finally {
+            System.clearProperty(NodeManager.LOG_MAX_RETAINED_ENTRIES_PROPERTY);
+        }
+        final ClusterNode leaderNode = new ClusterNode();
+        leaderNode.setNodeId(1);
+        saoStub.addNodeIdToNodeManagerMapping(1, leaderNodeManager);
+        leaderNodeManager.initialize(leaderNode, null);
+
+        final NodeManager[] followerNodeManagers = new NodeManager[3];
+        final ClusterNode[] followerNodes = new ClusterNode[3];
+        for (int i = 0; i < 3; i++) {
+            followerNodeManagers[i] = newNodeManager(saoStub);
+            followerNodes[i] = new ClusterNode();
+            followerNodes[i].setNodeId(i + 2);
+            saoStub.addNodeIdToNodeManagerMapping(i + 2, followerNodeManagers[i]);
+            followerNodeManagers[i].initialize(followerNodes[i], leaderNode);
+        }
+        leaderNodeManager.putValueToCluster("deleted", "value");
+        leaderNodeManager.putValueToCluster("overwritten", "value");
+        // the writes are acknowledged at the quorum, waiting for the last follower to apply them.
+        while (followerNodeManagers[2].getValue("overwritten") == null) {
+            Thread.sleep(10);
+        }
+
+        // the last follower is unreachable, the writes still meet the quorum of 3 out of 4.
+        saoStub.removeNodeIdToNodeManagerMapping(4);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(leaderNodeManager.putValueToCluster("key-" + i, "value-" + i));
+        }
+        Assert.assertTrue(leaderNodeManager.deleteValueFromCluster("deleted"));
+        leaderNodeManager.putValueToCluster("overwritten", "first");
+        leaderNodeManager.putValueToCluster("overwritten", "second");
+        for (int i = 0; i < 500 && leaderNodeManager.getHintStats().getBacklog() < 83L; i++) {
+            Thread.sleep(10);
+        }
+        // at least the writes over the 20 retained entries are hinted.
+        Assert.assertTrue(leaderNodeManager.getHintStats().getBacklogByNode().get(4) >= 83L);
+
+        saoStub.addNodeIdToNodeManagerMapping(4, followerNodeManagers[2]);
+        leaderNodeManager.replayHints(followerNodes[2]);
+        Assert.assertEquals(leaderNodeManager.getHintStats().getBacklog(), 0L);
+        // the retained entries are sent from the log.
+        for (int i = 0; i < 500 && false == leaderNodeManager.getVersionedValue("overwritten").equals(
+            followerNodeManagers[2].getVersionedValue("overwritten")); i++) {
+            Thread.sleep(10);
+        }
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(followerNodeManagers[2].getValue("key-" + i), "value-" + i);
+        }
+        Assert.assertNull(followerNodeManagers[2].getValue("deleted"));
+        Assert.assertEquals(followerNodeManagers[2].getVersionedValue("overwritten"),
+            leaderNodeManager.getVersionedValue("overwritten"));
+        Assert.assertArrayEquals(followerNodeManagers[2].getMerkleTreeHashes(new int[] {1}),
+            leaderNodeManager.getMerkleTreeHashes(new int[] {1}));
+    }
+
+    @Test
+    public void testQuorumReadRepairsStaleReplicas() throws Exception {
+        final ClusterNode leaderNode = new ClusterNode();
+        leaderNode.setNodeId(1);
+        saoStub.addNodeIdToNodeManagerMapping(1, nodeManager);
+        nodeManager.initialize(leaderNode, null);
+
+        // 5 nodes, so that a quorum of 3 is met with a stale node.
+        final NodeManager[] followerNodeManagers = new NodeManager[4];
+        for (int i = 0; i < 4; i++) {
+            followerNodeManagers[i] = newNodeManager(saoStub);
+            final ClusterNode followerNode = new ClusterNode();
+            followerNode.setNodeId(i + 2);
+            saoStub.addNodeIdToNodeManagerMapping(i + 2, followerNodeManagers[i]);
+            followerNodeManagers[i].initialize(followerNode, leaderNode);
+        }
+        final NodeManager firstFollowerNodeManager = followerNodeManagers[0];
+        final NodeManager secondFollowerNodeManager = followerNodeManagers[1];
+
+        nodeManager.putValueToCluster("missed", "value", 60000L);
+        // the write is acknowledged at the quorum, every follower applies it before one of them loses it.
+        for (final NodeManager followerNodeManager : followerNodeManagers) {
+            while (followerNodeManager.getValue("missed") == null) {
+                Thread.sleep(10);
+            }
+        }
+        secondFollowerNodeManager.delete("missed", nodeManager.getVersionedValue("missed").getVersion() - 1);
+        // an old write the other nodes never saw, or deleted since.
+        secondFollowerNodeManager.putValue("deleted", "value", ExpiringKeyValueStore.NO_EXPIRY, 1L);
+
+        Assert.assertEquals(firstFollowerNodeManager.getValueFromCluster("missed"), "value");
+        Assert.assertNull(firstFollowerNodeManager.getValueFromCluster("deleted"));
+        for (int i = 0; i < 100 && (secondFollowerNodeManager.getValue("missed") == null
+            || secondFollowerNodeManager.getValue("deleted") != null); i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(secondFollowerNodeManager.getVersionedEntry("missed").getExpiresAtMillis(),
+            nodeManager.getVersionedEntry("missed").getExpiresAtMillis());
+        Assert.assertEquals(secondFollowerNodeManager.getVersionedValue("missed"),
+            nodeManager.getVersionedValue("missed"));
+        Assert.assertNull(secondFollowerNodeManager.getValue("deleted"));
+        Assert.assertArrayEquals(secondFollowerNodeManager.getMerkleTreeHashes(new int[] {1}),
+            nodeManager.getMerkleTreeHashes(new int[] {1}));
+    }
+
+    @Test
+    public void testQuorumReadToleratesUnreachableNodes() throws Exception {
+        final ClusterNode leaderNode = new ClusterNode();
+        leaderNode.setNodeId(1);
+        saoStub.addNodeIdToNodeManagerMapping(1, nodeManager);
+        nodeManager.initialize(leaderNode, null);
+
+        final NodeManager[] followerNodeManagers = new NodeManager[4];
+        for (int i = 0; i < 4; i++) {
+            followerNodeManagers[i] = newNodeManager(saoStub);
+            final ClusterNode followerNode = new ClusterNode();
+            followerNode.setNodeId(i + 2);
+            saoStub.addNodeIdToNodeManagerMapping(i + 2, followerNodeManagers[i]);
+            followerNodeManagers[i].initialize(followerNode, leaderNode);
+        }
+        nodeManager.putValueToCluster("key", "value");
+        // the write is acknowledged at the quorum, every follower applies it before some of them are unreachable.
+        for (final NodeManager followerNodeManager : followerNodeManagers) {
+            while (followerNodeManager.getValue("key") == null) {
+                Thread.sleep(10);
+            }
+        }
+
+        // 3 out of 5 nodes still make the quorum.
+        saoStub.removeNodeIdToNodeManagerMapping(4);
+        saoStub.removeNodeIdToNodeManagerMapping(5);
+        Assert.assertEquals(followerNodeManagers[0].getValueFromCluster("key"), "value");
+        Assert.assertNull(followerNodeManagers[0].getValueFromCluster("missing"));
+
+        saoStub.removeNodeIdToNodeManagerMapping(3);
+        try {
+            followerNodeManagers[0].getValueFromCluster("key");
+            Assert.fail("quorum met with 2 out of 5 nodes");
+        } catch (final IllegalStateException e) {
+            Assert.assertEquals(e.getMessage(), "quorum not met for key: key");
+        }
+    }
+
+    @Test
+    public void testRelaxedReadsAreServedByTheFollower() throws Exception {
+        final ClusterNode leaderNode = new ClusterNode();
+        leaderNode.setNodeId(1);
+        saoStub.addNodeIdToNodeManagerMapping(1, nodeManager);
+        nodeManager.initialize(leaderNode, null);
+        final NodeManager[] followerNodeManagers = new NodeManager[2];
+        for (int i = 0; i < 2; i++) {
+            followerNodeManagers[i] = newNodeManager(saoStub);
+            final ClusterNode followerNode = new ClusterNode();
+            followerNode.setNodeId(i + 2);
+            saoStub.addNodeIdToNodeManagerMapping(i + 2, followerNodeManagers[i]);
+            followerNodeManagers[i].initialize(followerNode, leaderNode);
+        }
+        // the write is redirected to the leader, which returns the session token of the write.
+        Assert.assertTrue(followerNodeManagers[0].putValueToCluster("key", "value"));
+        final long sessionToken = followerNodeManagers[0].getSessionToken();
+        Assert.assertTrue(sessionToken > 0);
+        Assert.assertEquals(nodeManager.getStalenessMillis(), 0L);
+
+        // the other nodes cannot be read from, the follower serves the relaxed reads from its own store.
+        saoStub.removeNodeIdToNodeManagerMapping(1);
+        saoStub.removeNodeIdToNodeManagerMapping(2);
+        final NodeManager followerNodeManager = followerNodeManagers[1];
+        Assert.assertEquals(followerNodeManager.getVersionedValueFromCluster("key",
+            ReadConsistency.session(sessionToken)).getValue(), "value");
+        Assert.assertEquals(followerNodeManager.getVersionedValueFromCluster("key",
+            ReadConsistency.boundedStaleness(10000L)).getValue(), "value");
+        try {
+            followerNodeManager.getVersionedValueFromCluster("key", ReadConsistency.session(sessionToken + 1000));
+            Assert.fail("read served before the follower applied the session token");
+        } catch (final IllegalStateException e) {
+            Assert.assertEquals(e.getMessage(), "quorum not met for key: key");
+        }
+
+        // the leader can no longer reach the follower, which falls behind the bound.
+        saoStub.removeNodeIdToNodeManagerMapping(3);
+        Thread.sleep(1000);
+        Assert.assertTrue(followerNodeManager.getStalenessMillis() >= 500L);
+        Assert.assertEquals(followerNodeManager.getVersionedValueFromCluster("key",
+            ReadConsistency.boundedStaleness(60000L)).getValue(), "value");
+        try {
+            followerNodeManager.getVersionedValueFromCluster("key", ReadConsistency.boundedStaleness(100L));
+            Assert.fail("read served beyond the staleness bound");
+        } catch (final IllegalStateException e) {
+            Assert.assertEquals(e.getMessage(), "quorum not met for key: key");
+        }
+    }
+
+    @Test
+    public void testConcurrentIncrementsAreNotLost() throws Exception {
+        final NodeManager[] nodeManagers = initializeCluster(3);
+        final ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> writers = new ArrayList<>();
+            for (int writer = 0; writer < 8; writer++) {
+                final NodeManager writerNodeManager = nodeManagers[writer % nodeManagers.length];
+                writers.add(executorService.submit(() -> {
+                    for (int i = 0; i < 25; i++) {
+                        writerNodeManager.addToCluster("counter", 1L);
+                    }
+                }));
+            }
+            for (final Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        // a quorum of 3 out of 3 nodes applied every increment.
+        for (final NodeManager otherNodeManager : nodeManagers) {
+            Assert.assertEquals(otherNodeManager.getValue("counter"), "200");
+        }
+        Assert.assertEquals(nodeManagers[1].addToCluster("counter", -50L).getValue(), "150");
+        nodeManagers[0].putValueToCluster("text", "abc");
+        try {
+            nodeManagers[1].addToCluster("text", 1L);
+            Assert.fail("added to a value which is not a number");
+        } catch (final IllegalArgumentException e) {
+            Assert.assertEquals(nodeManagers[0].getValue("text"), "abc");
+        }
+        Assert.assertEquals(nodeManagers[2].appendToCluster("text", "def").getValue(), "abcdef");
+        Assert.assertEquals(nodeManagers[2].appendToCluster("new", "def").getValue(), "def");
+    }
+
+    @Test
+    public void testCompareAndSetAppliesOnlyOnTheExpectedValue() throws Exception {
+        final NodeManager[] nodeManagers = initializeCluster(3);
+        // a missing key is expected as a null value, or as version 0.
+        final CompareAndSetResult created = nodeManagers[1].compareAndSetInCluster("key", null, null, "first",
+            ExpiringKeyValueStore.NO_EXPIRY);
+        Assert.assertTrue(created.isApplied());
+        Assert.assertEquals(created.getValue(), nodeManagers[0].getVersionedValue("key"));
+        Assert.assertFalse(nodeManagers[1].compareAndSetInCluster("key", null, 0L, "second",
+            ExpiringKeyValueStore.NO_EXPIRY).isApplied());
+
+        // the failed compare and set returns the current value to retry with.
+        final CompareAndSetResult stale = nodeManagers[2].compareAndSetInCluster("key", "other", null, "second",
+            ExpiringKeyValueStore.NO_EXPIRY);
+        Assert.assertFalse(stale.isApplied());
+        Assert.assertEquals(stale.getValue(), created.getValue());
+        final CompareAndSetResult updated = nodeManagers[2].compareAndSetInCluster("key", null,
+            stale.getValue().getVersion(), "second", ExpiringKeyValueStore.NO_EXPIRY);
+        Assert.assertTrue(updated.isApplied());
+        Assert.assertEquals(updated.getValue().getValue(), "second");
+        Assert.assertFalse(nodeManagers[0].compareAndSetInCluster("key", null, created.getValue().getVersion(),
+            "third", ExpiringKeyValueStore.NO_EXPIRY).isApplied());
+
+        // a compare and set without a value deletes the key.
+        final CompareAndSetResult deleted = nodeManagers[0].compareAndSetInCluster("key", "second", null, null,
+            ExpiringKeyValueStore.NO_EXPIRY);
+        Assert.assertTrue(deleted.isApplied());
+        Assert.assertNull(deleted.getValue());
+        for (final NodeManager otherNodeManager : nodeManagers) {
+            Assert.assertNull(otherNodeManager.getValue("key"));
+        }
+    }
+
+    /**
+     * @return : node managers of a cluster of the given size, led by the first one.
+     */
+    private NodeManager[] initializeCluster(final int nodeCount) {
+        final NodeManager[] nodeManagers = new NodeManager[nodeCount];
+        ClusterNode leaderNode = null;
+        for (int i = 0; i < nodeCount; i++) {
+            nodeManagers[i] = (i == 0) ? nodeManager : newNodeManager(saoStub);
+            final ClusterNode node = new ClusterNode();
+            node.setNodeId(i + 1);
+            saoStub.addNodeIdToNodeManagerMapping(i + 1, nodeManagers[i]);
+            nodeManagers[i].initialize(node, leaderNode);
+            leaderNode = (leaderNode == null) ? node : leaderNode;
+        }
+        return nodeManagers;
+    }
+
+    /**
+     * @return : node managers of a mesh of replica groups, the nodes of group g having the ids following the ones of
+     * group g - 1. The first node of every group is its leader. Every group owns keys.
+     */
+    private NodeManager[] initializeMesh(final int groupCount, final int nodesPerGroup) {
+        return initializeMesh(groupCount, nodesPerGroup, groupCount);
+    }
+
+    /**
+     * @param ownerGroupCount : number of groups owning keys, the first ones.
+     * @return : node managers of a mesh of replica groups, see {@link #initializeMesh(int, int)}.
+     */
+    private NodeManager[] initializeMesh(final int groupCount, final int nodesPerGroup, final int ownerGroupCount) {
+        final NodeManager[] nodeManagers = new NodeManager[groupCount * nodesPerGroup];
+        ClusterNode meshSeedNode = null;
+        for (int group = 0; group < groupCount; group++) {
+            ClusterNode leaderNode = null;
+            for (int i = group * nodesPerGroup; i < (group + 1) * nodesPerGroup; i++) {
+                nodeManagers[i] = (i == 0) ? nodeManager : newNodeManager(saoStub);
+                final ClusterNode node = new ClusterNode();
+                node.setNodeId(i + 1);
+                saoStub.addNodeIdToNodeManagerMapping(i + 1, nodeManagers[i]);
+                nodeManagers[i].initialize(node, leaderNode, group + 1, meshSeedNode);
+                leaderNode = (leaderNode == null) ? node : leaderNode;
+                meshSeedNode = (meshSeedNode == null) ? node : meshSeedNode;
+            }
+        }
+        // the first group owns every key until the mesh is rebalanced, which moves no key while the mesh is empty.
+        final List<Integer> ownerGroupIds = new ArrayList<>();
+        for (int group = 1; group <= ownerGroupCount; group++) {
+            ownerGroupIds.add(group);
+        }
+        nodeManagers[0].rebalanceMesh(ownerGroupIds);
+        return nodeManagers;
+    }
+
+    @Test
+    public void testMeshPartitionsTheKeysAcrossReplicaGroups() throws Exception {
+        final NodeManager[] nodeManagers = initializeMesh(2, 3);
+        final HashRing hashRing = new HashRing(Arrays.asList(1, 2), ClusterMesh.DEFAULT_VIRTUAL_NODES_PER_GROUP);
+        final List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            keys.add("key-" + i);
+            // every node takes the writes of every key.
+            Assert.assertTrue(nodeManagers[i % nodeManagers.length].putValueToCluster("key-" + i, "value-" + i));
+        }
+        final int[] groupKeyCounts = new int[2];
+        for (int i = 0; i < 100; i++) {
+            final int groupId = hashRing.getGroupId("key-" + i);
+            groupKeyCounts[groupId - 1]++;
+            for (int node = 0; node < nodeManagers.length; node++) {
+                // only the nodes of the owning group hold the key, every node reads it.
+                Assert.assertEquals(nodeManagers[node].getValue("key-" + i),
+                    (node / 3 + 1 == groupId) ? "value-" + i : null);
+                Assert.assertEquals(nodeManagers[node].getValueFromCluster("key-" + i), "value-" + i);
+            }
+            Assert.assertEquals(nodeManagers[0].getClusterLeader("key-" + i).getNodeId(), (groupId == 1) ? 1 : 4);
+        }
+        Assert.assertTrue(groupKeyCounts[0] > 20 && groupKeyCounts[1] > 20);
+        Assert.assertEquals(nodeManagers[5].getClusterMesh().getGroupNodes(1).size(), 3);
+        Assert.assertEquals(nodeManagers[5].getClusterMesh().getGroupNodes(2).size(), 3);
+
+        final List<VersionedValue> values = nodeManagers[1].getVersionedValuesFromCluster(keys);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(values.get(i), nodeManagers[(hashRing.getGroupId("key-" + i) - 1) * 3]
+                .getVersionedValue("key-" + i));
+        }
+
+        // a batch is a single entry of the log of a group.
+        final String firstGroupKey = keys.stream().filter(key -> hashRing.getGroupId(key) == 1).findFirst().get();
+        final String secondGroupKey = keys.stream().filter(key -> hashRing.getGroupId(key) == 2).findFirst().get();
+        try {
+            nodeManagers[0].writeValuesToCluster(Arrays.asList(KeyValueMutation.delete(firstGroupKey),
+                KeyValueMutation.delete(secondGroupKey)));
+            Assert.fail("batch spanning both groups was applied");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+        Assert.assertEquals(nodeManagers[0].writeValuesToCluster(Arrays.asList(
+            KeyValueMutation.delete(secondGroupKey))), Arrays.asList(true));
+        Assert.assertNull(nodeManagers[4].getValue(secondGroupKey));
+        Assert.assertEquals(nodeManagers[4].addToCluster(firstGroupKey + "-counter", 5L).getValue(), "5");
+    }
+
+    @Test
+    public void testRebalanceMovesTheKeysToANewReplicaGroupWhileTheyAreWritten() throws Exception {
+        // the migration is slowed down, so that the keys are written while they move.
+        System.setProperty(NodeManager.MESH_MIGRATION_RATE_PROPERTY, "200");
+        final NodeManager[] nodeManagers;
+        try {
+            nodeManagers = initializeMesh(3, 3, 2);
+        } finally {
+            System.clearProperty(NodeManager.MESH_MIGRATION_RATE_PROPERTY);
+        }
+        final HashRing hashRing = new HashRing(Arrays.asList(1, 2), ClusterMesh.DEFAULT_VIRTUAL_NODES_PER_GROUP);
+        final HashRing grownHashRing = new HashRing(Arrays.asList(1, 2, 3),
+            ClusterMesh.DEFAULT_VIRTUAL_NODES_PER_GROUP);
+        final Map<String, String> expectedValues = new ConcurrentHashMap<>();
+        for (int i = 0; i < 150; i++) {
+            Assert.assertTrue(nodeManagers[i % 6].putValueToCluster("key-" + i, "value-" + i));
+            expectedValues.put("key-" + i, "value-" + i);
+        }
+        // the new group does not own any key before the rebalance.
+        for (int i = 6; i < 9; i++) {
+            Assert.assertEquals(nodeManagers[i].getValue("key-0"), null);
+        }
+
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            final Future<RebalanceProgress> rebalance = executorService.submit(
+                () -> nodeManagers[7].rebalanceMesh(Arrays.asList(1, 2, 3)));
+            // the keys are deleted and written again while they move, in turns.
+            for (int i = 0; false == rebalance.isDone(); i = (i + 1) % 150) {
+                final String key = "key-" + i;
+                try {
+                    if (expectedValues.containsKey(key)) {
+                        Assert.assertTrue(nodeManagers[i % 9].deleteValueFromCluster(key));
+                        expectedValues.remove(key);
+                    } else {
+                        Assert.assertTrue(nodeManagers[i % 9].putValueToCluster(key, "rewritten-" + i));
+                        expectedValues.put(key, "rewritten-" + i);
+                    }
+                } catch (final IllegalStateException e) {
+                    // the keys which are handed over are not served until the new groups own them.
+                    Assert.assertTrue(e.getMessage(), e.getMessage().contains("is being handed over"));
+                }
+            }
+            final RebalanceProgress progress = rebalance.get();
+            Assert.assertEquals(progress.getState(), RebalanceProgress.State.COMPLETED);
+            Assert.assertEquals(progress.getCompletedRanges(), progress.getPlannedRanges());
+            Assert.assertTrue(progress.getMovedEntries() > 0);
+            Assert.assertEquals(progress.getMovedShare(), 1.0 / 3, 0.1);
+            Assert.assertEquals(nodeManagers[7].getRebalanceProgress().getState(), RebalanceProgress.State.COMPLETED);
+            Assert.assertEquals(nodeManagers[8].getRebalanceProgress().getState(), RebalanceProgress.State.IDLE);
+        } finally {
+            executorService.shutdown();
+        }
+
+        int movedKeyCount = 0;
+        for (int i = 0; i < 150; i++) {
+            final String key = "key-" + i;
+            final int groupId = grownHashRing.getGroupId(key);
+            // a key only moves to the new group.
+            if (groupId != hashRing.getGroupId(key)) {
+                Assert.assertEquals(groupId, 3);
+                movedKeyCount++;
+            }
+            for (int node = 0; node < nodeManagers.length; node++) {
+                // the groups which handed a key over dropped it, a deleted key was not brought back.
+                Assert.assertEquals(nodeManagers[node].getValue(key),
+                    (node / 3 + 1 == groupId) ? expectedValues.get(key) : null);
+                Assert.assertEquals(nodeManagers[node].getValueFromCluster(key), expectedValues.get(key));
+            }
+        }
+        Assert.assertTrue(movedKeyCount > 20);
+        Assert.assertEquals(nodeManagers[2].getClusterMesh().getHashRing().getGroupIds(),
+            grownHashRing.getGroupIds());
+        Assert.assertFalse(nodeManagers[2].getClusterMesh().isMigrating());
+    }
+
+    @Test
+    public void testRebalanceIsAbortedWhileAWriteOfAHandedOverKeyIsNotApplied() throws Exception {
+        final AtomicBoolean isFirstGroupCutOff = new AtomicBoolean(false);
+        saoStub = new DistributedConsistentDatabaseSAOStub() {
+            @Override
+            public AppendResult internalAppendEntries(final ClusterNode node, final AppendEntries batch) {
+                if (isFirstGroupCutOff.get() && node.getNodeId() <= 3) {
+                    throw new IllegalStateException("node " + node.getNodeId() + " cannot be reached");
+                }
+                return super.internalAppendEntries(node, batch);
+            }
+        };
+        System.setProperty(NodeManager.LOG_COMMIT_TIMEOUT_PROPERTY, "1000");
+        final NodeManager[] nodeManagers;
+        try {
+            nodeManager = newNodeManager(saoStub);
+            nodeManagers = initializeMesh(3, 3, 2);
+        } finally {
+            System.clearProperty(NodeManager.LOG_COMMIT_TIMEOUT_PROPERTY);
+        }
+        final HashRing hashRing = new HashRing(Arrays.asList(1, 2), ClusterMesh.DEFAULT_VIRTUAL_NODES_PER_GROUP);
+        final HashRing grownHashRing = new HashRing(Arrays.asList(1, 2, 3),
+            ClusterMesh.DEFAULT_VIRTUAL_NODES_PER_GROUP);
+        String movingKey = null;
+        for (int i = 0; movingKey == null; i++) {
+            if (hashRing.getGroupId("key-" + i) == 1 && grownHashRing.getGroupId("key-" + i) == 3) {
+                movingKey = "key-" + i;
+            }
+        }
+        Assert.assertTrue(nodeManagers[0].putValueToCluster(movingKey, "value"));
+
+        // the write of the key stays in the log of the first group, its new group would miss it.
+        isFirstGroupCutOff.set(true);
+        try {
+            nodeManagers[0].putValueToCluster(movingKey, "rewritten");
+            Assert.fail("write was acknowledged without a quorum");
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+        try {
+            nodeManagers[7].rebalanceMesh(Arrays.asList(1, 2, 3));
+            Assert.fail("keys were handed over before their writes were applied");
+        } catch (final IllegalStateException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("were not applied within 1000 ms"));
+        }
+        Assert.assertEquals(nodeManagers[7].getRebalanceProgress().getState(), RebalanceProgress.State.FAILED);
+        for (int node = 0; node < nodeManagers.length; node++) {
+            Assert.assertFalse(nodeManagers[node].getClusterMesh().isMigrating());
+            Assert.assertEquals(nodeManagers[node].getClusterMesh().getHashRing().getGroupIds(),
+                hashRing.getGroupIds());
+        }
+        Assert.assertEquals(nodeManagers[0].getValue(movingKey), "value");
+        Assert.assertNull(nodeManagers[6].getValue(movingKey));
+    }
+
+    @Test
+    public void testRebalanceReportsTheNodesWhichDidNotTakeTheNewRing() throws Exception {
+        final AtomicBoolean isLastNodeDown = new AtomicBoolean(false);
+        final AtomicInteger completeCount = new AtomicInteger();
+        saoStub = new DistributedConsistentDatabaseSAOStub() {
+            @Override
+            public boolean completeMeshMigration(final ClusterNode node, final List<Integer> targetGroupIds) {
+                // the first attempt on node 8 fails, node 9 fails every attempt while it is down.
+                if ((node.getNodeId() == 8 && completeCount.incrementAndGet() == 1)
+                        || (node.getNodeId() == 9 && isLastNodeDown.get())) {
+                    throw new IllegalStateException("node " + node.getNodeId() + " cannot be reached");
+                }
+                return super.completeMeshMigration(node, targetGroupIds);
+            }
+        };
+        nodeManager = newNodeManager(saoStub);
+        final NodeManager[] nodeManagers = initializeMesh(3, 3, 2);
+        final HashRing grownHashRing = new HashRing(Arrays.asList(1, 2, 3),
+            ClusterMesh.DEFAULT_VIRTUAL_NODES_PER_GROUP);
+        for (int i = 0; i < 50; i++) {
+            Assert.assertTrue(nodeManagers[i % 6].putValueToCluster("key-" + i, "value-" + i));
+        }
+
+        isLastNodeDown.set(true);
+        completeCount.set(0);
+        try {
+            nodeManagers[0].rebalanceMesh(Arrays.asList(1, 2, 3));
+            Assert.fail("rebalance completed while node 9 did not take the new ring");
+        } catch (final IllegalStateException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("did not take the new ring"));
+        }
+        final RebalanceProgress progress = nodeManagers[0].getRebalanceProgress();
+        Assert.assertEquals(progress.getState(), RebalanceProgress.State.INCOMPLETE);
+        Assert.assertEquals(progress.getPendingNodeIds(), Arrays.asList(9));
+        Assert.assertEquals(progress.getCompletedRanges(), progress.getPlannedRanges());
+        for (int node = 0; node < 8; node++) {
+            Assert.assertEquals(nodeManagers[node].getClusterMesh().getHashRing().getGroupIds(),
+                grownHashRing.getGroupIds());
+        }
+        Assert.assertTrue(nodeManagers[8].getClusterMesh().isMigrating());
+
+        // running the rebalance again hands the new ring to the node.
+        isLastNodeDown.set(false);
+        Assert.assertEquals(nodeManagers[0].rebalanceMesh(Arrays.asList(1, 2, 3)).getState(),
+            RebalanceProgress.State.COMPLETED);
+        Assert.assertEquals(nodeManagers[0].getRebalanceProgress().getPendingNodeIds(), Arrays.asList());
+        Assert.assertEquals(nodeManagers[8].getClusterMesh().getHashRing().getGroupIds(),
+            grownHashRing.getGroupIds());
+        Assert.assertFalse(nodeManagers[8].getClusterMesh().isMigrating());
+        for (int i = 0; i < 50; i++) {
+            Assert.assertEquals(nodeManagers[8].getValueFromCluster("key-" + i), "value-" + i);
+        }
+    }
+
+    @Test
+    public void testMultiGetReadsEveryNodeOnce() throws Exception {
+        final AtomicInteger batchReadCount = new AtomicInteger();
+        final DistributedConsistentDatabaseSAOStub countingSaoStub = new DistributedConsistentDatabaseSAOStub() {
+            @Override
+            public List<VersionedEntry> internalGetVersionedEntries(final ClusterNode node, final List<String> keys) {
+                batchReadCount.incrementAndGet();
+                return super.internalGetVersionedEntries(node, keys);
+            }
+        };
+        final NodeManager[] nodeManagers = new NodeManager[5];
+        ClusterNode leaderNode = null;
+        for (int i = 0; i < nodeManagers.length; i++) {
+            nodeManagers[i] = newNodeManager(countingSaoStub);
+            final ClusterNode node = new ClusterNode();
+            node.setNodeId(i + 1);
+            countingSaoStub.addNodeIdToNodeManagerMapping(i + 1, nodeManagers[i]);
+            nodeManagers[i].initialize(node, leaderNode);
+            leaderNode = (leaderNode == null) ? node : leaderNode;
+        }
+        try {
+            final List<KeyValueMutation> mutations = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                mutations.add(KeyValueMutation.put("key-" + i, "value-" + i));
+            }
+            nodeManagers[0].writeValuesToCluster(mutations);
+            // the batch is acknowledged at the quorum, every follower applies it before the reads.
+            for (final NodeManager otherNodeManager : nodeManagers) {
+                while (otherNodeManager.getValue("key-49") == null) {
+                    Thread.sleep(10);
+                }
+            }
+            // a stale replica is outvoted on its key.
+            nodeManagers[4].putValue("key-0", "stale");
+
+            final List<String> keys = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                keys.add("key-" + i);
+            }
+            keys.add("missing");
+            keys.add("key-0");
+            final List<VersionedValue> values = nodeManagers[1].getVersionedValuesFromCluster(keys);
+            // at most one read per node, the ones still outstanding at the quorum may be cancelled.
+            Assert.assertTrue(batchReadCount.get() + " reads of 5 nodes", batchReadCount.get() <= 5);
+            Assert.assertEquals(values.size(), 52);
+            for (int i = 0; i < 50; i++) {
+                Assert.assertEquals(values.get(i), nodeManagers[0].getVersionedValue("key-" + i));
+            }
+            Assert.assertNull(values.get(50));
+            Assert.assertEquals(values.get(51).getValue(), "value-0");
+
+            // 3 out of 5 nodes still make the quorum of every key.
+            countingSaoStub.removeNodeIdToNodeManagerMapping(4);
+            countingSaoStub.removeNodeIdToNodeManagerMapping(5);
+            Assert.assertEquals(nodeManagers[1].getVersionedValuesFromCluster(Arrays.asList("key-1", "key-0")).get(1)
+                .getValue(), "value-0");
+            countingSaoStub.removeNodeIdToNodeManagerMapping(3);
+            try {
+                nodeManagers[1].getVersionedValuesFromCluster(keys);
+                Assert.fail("quorum met with 2 out of 5 nodes");
+            } catch (final IllegalStateException e) {
+                Assert.assertEquals(e.getMessage(), "quorum not met for key: key-0");
+            }
+        } finally {
+            countingSaoStub.clear();
+        }
+    }
+
+    @Test
+    public void testLeaderServesReadsLocallyWhileHoldingTheLease() {
+        final ClusterNode leaderNode = new ClusterNode();
+        leaderNode.setNodeId(1);
+        saoStub.addNodeIdToNodeManagerMapping(1, nodeManager);
+        nodeManager.initialize(leaderNode, null);
+        for (int i = 0; i < 2; i++) {
+            final NodeManager followerNodeManager = newNodeManager(saoStub);
+            final ClusterNode followerNode = new ClusterNode();
+            followerNode.setNodeId(i + 2);
+            saoStub.addNodeIdToNodeManagerMapping(i + 2, followerNodeManager);
+            followerNodeManager.initialize(followerNode, leaderNode);
+        }
+        Assert.assertTrue(nodeManager.putValueToCluster("key", "value"));
+
+        // the quorum appended the write, the followers cannot take over before the lease expires.
+        saoStub.removeNodeIdToNodeManagerMapping(2);
+        saoStub.removeNodeIdToNodeManagerMapping(3);
+        Assert.assertEquals(nodeManager.getValueFromCluster("key"), "value");
+        Assert.assertNull(nodeManager.getValueFromCluster("missing"));
+    }
+
+    @Test
+    public void testLeaderConfirmsItsLeadershipForReadsWithoutTheLease() throws Exception {
+        final AtomicInteger appendCount = new AtomicInteger();
+        final DistributedConsistentDatabaseSAOStub countingSaoStub = new DistributedConsistentDatabaseSAOStub() {
+            @Override
+            public AppendResult internalAppendEntries(final ClusterNode node, final AppendEntries batch) {
+                appendCount.incrementAndGet();
+                try {
+                    Thread.sleep(5L);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.internalAppendEntries(node, batch);
+            }
+        };
+        System.setProperty(NodeManager.LEASE_DURATION_PROPERTY, "0");
+        System.setProperty(NodeManager.LOG_COMMIT_TIMEOUT_PROPERTY, "500");
+        final NodeManager[] nodeManagers = new NodeManager[3];
+        try {
+            ClusterNode leaderNode = null;
+            for (int i = 0; i < nodeManagers.length; i++) {
+                nodeManagers[i] = newNodeManager(countingSaoStub);
+                final ClusterNode node = new ClusterNode();
+                node.setNodeId(i + 1);
+                countingSaoStub.addNodeIdToNodeManagerMapping(i + 1, nodeManagers[i]);
+                nodeManagers[i].initialize(node, leaderNode);
+                leaderNode = (leaderNode == null) ? node : leaderNode;
+            }
+        } finally {
+            System.clearProperty(NodeManager.LEASE_DURATION_PROPERTY);
+            System.clearProperty(NodeManager.LOG_COMMIT_TIMEOUT_PROPERTY);
+        }
+        Assert.assertTrue(nodeManagers[0].putValueToCluster("key", "value"));
+
+        // concurrent reads share the rounds of batches which confirm the leadership.
+        final ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            appendCount.set(0);
+            final List<Future<String>> reads = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                reads.add(executorService.submit(() -> nodeManagers[0].getValueFromCluster("key")));
+            }
+            for (final Future<String> read : reads) {
+                Assert.assertEquals(read.get(), "value");
+            }
+            Assert.assertTrue(appendCount.get() + " appends for 200 reads", appendCount.get() < 200);
+        } finally {
+            executorService.shutdown();
+        }
+
+        // a single follower does not confirm the leadership. the read falls back to the quorum, which fails as well.
+        countingSaoStub.removeNodeIdToNodeManagerMapping(3);
+        try {
+            nodeManagers[0].getValueFromCluster("key");
+            Assert.fail("leadership confirmed by 2 out of 3 nodes");
+        } catch (final IllegalStateException e) {
+            Assert.assertEquals(e.getMessage(), "quorum not met for key: key");
+        } finally {
+            countingSaoStub.clear();
+        }
+    }
+
+    @Test
+    public void testBatchOfMutationsIsAppliedTogether() throws Exception {
+        final ClusterNode leaderNode = new ClusterNode();
+        leaderNode.setNodeId(1);
+        saoStub.addNodeIdToNodeManagerMapping(1, nodeManager);
+        nodeManager.initialize(leaderNode, null);
+        final NodeManager[] followerNodeManagers = new NodeManager[2];
+        for (int i = 0; i < 2; i++) {
+            followerNodeManagers[i] = newNodeManager(saoStub);
+            final ClusterNode followerNode = new ClusterNode();
+            followerNode.setNodeId(i + 2);
+            saoStub.addNodeIdToNodeManagerMapping(i + 2, followerNodeManagers[i]);
+            followerNodeManagers[i].initialize(followerNode, leaderNode);
+        }
+        nodeManager.putValueToCluster("deleted", "value");
+
+        // the batch is sent through a follower, which redirects it to the leader.
+        final List<KeyValueMutation> mutations = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            mutations.add(KeyValueMutation.put("key-" + i, "value-" + i));
+        }
+        mutations.add(new KeyValueMutation("expiring", "value", 60000L));
+        mutations.add(KeyValueMutation.delete("deleted"));
+        mutations.add(KeyValueMutation.delete("missing"));
+        final List<Boolean> results = followerNodeManagers[0].writeValuesToCluster(mutations);
+        Assert.assertEquals(results.size(), 103);
+        Assert.assertTrue(results.subList(0, 102).stream().allMatch(result -> result));
+        Assert.assertFalse(results.get(102));
+
+        // a quorum of 3 out of 3 nodes applied the batch, with a single version.
+        final long version = nodeManager.getVersionedValue("key-0").getVersion();
+        for (final NodeManager otherNodeManager : new NodeManager[] {nodeManager, followerNodeManagers[0],
+            followerNodeManagers[1]}) {
+            for (int i = 0; i < 100; i++) {
+                Assert.assertEquals(otherNodeManager.getVersionedValue("key-" + i),
+                    new VersionedValue("value-" + i, version));
+            }
+            Assert.assertEquals(otherNodeManager.getVersionedEntry("expiring").getExpiresAtMillis(),
+                nodeManager.getVersionedEntry("expiring").getExpiresAtMillis());
+            Assert.assertNull(otherNodeManager.getValue("deleted"));
+        }
+
+        try {
+            nodeManager.writeValuesToCluster(Arrays.asList(KeyValueMutation.put("key", "first"),
+                KeyValueMutation.put("key", "second")));
+            Assert.fail("batch with a duplicate key applied");
+        } catch (final IllegalArgumentException e) {
+            Assert.assertEquals(e.getMessage(), "duplicate key in the batch: key");
+        }
+        Assert.assertNull(nodeManager.getValue("key"));
+    }
+
+    @Test
+    public void testBinaryValueIsReplicatedAsBytes() {
+        final ClusterNode leaderNode = new ClusterNode();
+        leaderNode.setNodeId(1);
+        saoStub.addNodeIdToNodeManagerMapping(1, nodeManager);
+        nodeManager.initialize(leaderNode, null);
+
+        final NodeManager firstFollowerNodeManager = newNodeManager(saoStub);
+        final ClusterNode firstFollowerNode = new ClusterNode();
+        firstFollowerNode.setNodeId(2);
+        saoStub.addNodeIdToNodeManagerMapping(2, firstFollowerNodeManager);
+        firstFollowerNodeManager.initialize(firstFollowerNode, leaderNode);
+
+        final NodeManager secondFollowerNodeManager = newNodeManager(saoStub);
+        final ClusterNode secondFollowerNode = new ClusterNode();
+        secondFollowerNode.setNodeId(3);
+        saoStub.addNodeIdToNodeManagerMapping(3, secondFollowerNodeManager);
+        secondFollowerNodeManager.initialize(secondFollowerNode, leaderNode);
+
+        final String key = UUID.randomUUID().toString();
+        // not valid utf-8, so it would not survive a round trip through a string.
+        final byte[] value = new byte[] {(byte) 0xff, 0x00, (byte) 0xc3, 0x28};
+        Assert.assertTrue(secondFollowerNodeManager.putBinaryValueToCluster(key, value));
+        Assert.assertArrayEquals(firstFollowerNodeManager.getBinaryValueFromCluster(key), value);
+        Assert.assertNull(nodeManager.getValue(key));
+
+        Assert.assertTrue(firstFollowerNodeManager.deleteBinaryValueFromCluster(key));
+        Assert.assertNull(secondFollowerNodeManager.getBinaryValue(key));
+        Assert.assertNull(nodeManager.getBinaryValueFromCluster(key));
+    }
+
+    @Test
+    public void testBinaryValueIsRestoredFromSnapshot() throws Exception {
+        final File snapshotFile = Files.createTempFile("node-manager", ".snapshot").toFile();
+        snapshotFile.delete();
+        try {
+            final NodeManager snapshotNodeManager = newNodeManager(saoStub, snapshotFile);
+            final String key = UUID.randomUUID().toString();
+            final byte[] value = new byte[] {(byte) 0xff, 0x00, (byte) 0xc3, 0x28};
+            snapshotNodeManager.putValue(key, "value");
+            snapshotNodeManager.putBinaryValue(key, value);
+            final SnapshotMetadata snapshotMetadata = snapshotNodeManager.createSnapshot();
+            Assert.assertEquals(snapshotMetadata.getLastAppliedWritePosition(), 2L);
+            Assert.assertEquals(snapshotMetadata.getEntryCount(), 2L);
+
+            final NodeManager restartedNodeManager = newNodeManager(saoStub, snapshotFile);
+            final ClusterNode restartedNode = new ClusterNode();
+            restartedNode.setNodeId(1);
+            saoStub.addNodeIdToNodeManagerMapping(1, restartedNodeManager);
+            restartedNodeManager.initialize(restartedNode, null);
+            Assert.assertArrayEquals(restartedNodeManager.getBinaryValue(key), value);
+            Assert.assertEquals(restartedNodeManager.getValue(key), "value");
+            // the binary values are not listed with the string values.
+            final List<String> keys = new ArrayList<>();
+            restartedNodeManager.scanValues(null, null, 10, (scannedKey, scannedValue) -> keys.add(scannedKey));
+            Assert.assertEquals(keys.size(), 1);
+            Assert.assertEquals(keys.get(0), key);
+        } finally {
+            snapshotFile.delete();
+        }
+    }
+
+    @Test
+    public void testQuorumReadsTolerateNodesWhichFailOrHang() throws Exception {
+        final Set<Integer> failingNodeIds = ConcurrentHashMap.newKeySet();
+        final Set<Integer> hangingNodeIds = ConcurrentHashMap.newKeySet();
+        final DistributedConsistentDatabaseSAOStub faultySaoStub = new DistributedConsistentDatabaseSAOStub() {
+            @Override
+            public VersionedEntry internalGetVersionedEntry(final ClusterNode node, final String key) {
+                fail(node);
+                return super.internalGetVersionedEntry(node, key);
+            }
+
+            @Override
+            public byte[] internalGetBinaryValue(final ClusterNode node, final String key) {
+                fail(node);
+                return super.internalGetBinaryValue(node, key);
+            }
+
+            private void fail(final ClusterNode node) {
+                if (failingNodeIds.contains(node.getNodeId())) {
+                    throw new IllegalStateException("node " + node.getNodeId() + " is down");
+                }
+                if (hangingNodeIds.contains(node.getNodeId())) {
+                    try {
+                        Thread.sleep(10000L);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        System.setProperty(NodeManager.LOG_COMMIT_TIMEOUT_PROPERTY, "500");
+        final NodeManager[] nodeManagers = new NodeManager[5];
+        try {
+            ClusterNode leaderNode = null;
+            for (int i = 0; i < nodeManagers.length; i++) {
+                nodeManagers[i] = newNodeManager(faultySaoStub);
+                final ClusterNode node = new ClusterNode();
+                node.setNodeId(i + 1);
+                faultySaoStub.addNodeIdToNodeManagerMapping(i + 1, nodeManagers[i]);
+                nodeManagers[i].initialize(node, leaderNode);
+                leaderNode = (leaderNode == null) ? node : leaderNode;
+            }
+        } finally {
+            System.clearProperty(NodeManager.LOG_COMMIT_TIMEOUT_PROPERTY);
+        }
+        final byte[] value = new byte[] {(byte) 0xff, 0x00};
+        try {
+            Assert.assertTrue(nodeManagers[0].putValueToCluster("key", "value"));
+            Assert.assertTrue(nodeManagers[0].putBinaryValueToCluster("key", value));
+
+            // 4 out of 5 nodes still make a quorum of 3.
+            failingNodeIds.add(5);
+            Assert.assertEquals(nodeManagers[1].getValueFromCluster("key"), "value");
+            Assert.assertArrayEquals(nodeManagers[1].getBinaryValueFromCluster("key"), value);
+
+            // the nodes which hang are given up on once the timeout passes.
+            failingNodeIds.clear();
+            hangingNodeIds.addAll(Arrays.asList(3, 4, 5));
+            final long startNanos = System.nanoTime();
+            try {
+                nodeManagers[1].getValueFromCluster("key");
+                Assert.fail("quorum met by 2 out of 5 nodes");
+            } catch (final IllegalStateException e) {
+                Assert.assertEquals(e.getMessage(), "quorum not met for key: key");
+            }
+            try {
+                nodeManagers[1].getBinaryValueFromCluster("key");
+                Assert.fail("quorum met by 2 out of 5 nodes");
+            } catch (final IllegalStateException e) {
+                Assert.assertEquals(e.getMessage(), "quorum not met for key: key");
+            }
+            final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            Assert.assertTrue("2 reads took " + elapsedMillis + " ms", elapsedMillis < 5000);
+        } finally {
+            faultySaoStub.clear();
+        }
+    }
 }
@@ -0,0 +1,282 @@
+package com.distributedConsistentDatabase.cluster;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.distributedConsistentDatabase.cluster.log.AppendEntries;
+import com.distributedConsistentDatabase.cluster.log.AppendResult;
+import com.distributedConsistentDatabase.cluster.pojo.ClusterNode;
+import com.distributedConsistentDatabase.cluster.pojo.KeyValueMutation;
+import com.distributedConsistentDatabase.cluster.pojo.WriteResult;
+import com.distributedConsistentDatabase.dataStore.KeyValueStoreFactory;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+
+/**
+ * Checks how the leader overlaps and batches the round trips to the followers, with a simulated round trip time.
+ * The assertions count the requests seen by the SAO stub rather than timing them.
+ * @author abshukla
+ */
+public class NodeManagerThroughputTest {
+
+    private static final long ROUND_TRIP_MILLIS = 5L;
+    private static final int WRITES_PER_WRITER = 40;
+
+    private DistributedConsistentDatabaseSAOStub saoStub;
+    private NodeManager[] nodeManagers;
+    // nodes which do not reply until the gate opens.
+    private Set<Integer> slowNodeIds;
+    private CountDownLatch slowNodeGate;
+    private File dataDirectory;
+    // batches sent to the followers.
+    private AtomicInteger appendCount;
+    // requests the followers sent to the leader.
+    private AtomicInteger forwardCount;
+    // batches in flight to every follower, and the most seen at once by a follower.
+    private Map<Integer, AtomicInteger> inflightAppendCounts;
+    private AtomicInteger maxInflightAppendCount;
+
+    @Before
+    public void setUp() throws Exception {
+        // hints of failed replications are kept on disk, so every test gets its own data directory.
+        dataDirectory = Files.createTempDirectory("node-manager-throughput").toFile();
+        System.setProperty(KeyValueStoreFactory.DATA_DIRECTORY_PROPERTY, dataDirectory.getPath());
+        slowNodeIds = new HashSet<>();
+        slowNodeGate = new CountDownLatch(1);
+        appendCount = new AtomicInteger();
+        forwardCount = new AtomicInteger();
+        inflightAppendCounts = new ConcurrentHashMap<>();
+        maxInflightAppendCount = new AtomicInteger();
+        saoStub = new DistributedConsistentDatabaseSAOStub() {
+            @Override
+            public AppendResult internalAppendEntries(final ClusterNode node, final AppendEntries batch) {
+                appendCount.incrementAndGet();
+                final AtomicInteger inflightAppendCount = inflightAppendCounts.computeIfAbsent(node.getNodeId(),
+                    nodeId -> new AtomicInteger());
+                maxInflightAppendCount.accumulateAndGet(inflightAppendCount.incrementAndGet(), Math::max);
+                try {
+                    awaitRoundTrip(node);
+                    return super.internalAppendEntries(node, batch);
+                } finally {
+                    inflightAppendCount.decrementAndGet();
+                }
+            }
+
+            @Override
+            public WriteResult<Boolean> putValue(final ClusterNode node, final String key, final String value,
+                    final long ttlMillis) {
+                forwardCount.incrementAndGet();
+                return super.putValue(node, key, value, ttlMillis);
+            }
+
+            @Override
+            public WriteResult<List<Boolean>> writeValues(final ClusterNode node,
+                    final List<KeyValueMutation> mutations) {
+                forwardCount.incrementAndGet();
+                return super.writeValues(node, mutations);
+            }
+
+            @Override
+            public VersionedEntry internalGetVersionedEntry(final ClusterNode node, final String key) {
+                if (slowNodeIds.contains(node.getNodeId())) {
+                    awaitRoundTrip(node);
+                }
+                return super.internalGetVersionedEntry(node, key);
+            }
+        };
+        nodeManagers = new NodeManager[5];
+        ClusterNode leaderNode = null;
+        for (int i = 0; i < nodeManagers.length; i++) {
+            nodeManagers[i] = new NodeManager(saoStub);
+            final ClusterNode node = new ClusterNode();
+            node.setNodeId(i + 1);
+            saoStub.addNodeIdToNodeManagerMapping(i + 1, nodeManagers[i]);
+            nodeManagers[i].initialize(node, leaderNode);
+            leaderNode = (leaderNode == null) ? node : leaderNode;
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        slowNodeGate.countDown();
+        for (final NodeManager nodeManager : nodeManagers) {
+            nodeManager.shutdown();
+        }
+        saoStub.clear();
+        System.clearProperty(KeyValueStoreFactory.DATA_DIRECTORY_PROPERTY);
+        delete(dataDirectory);
+    }
+
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testWriteLatencyIsBoundedByTheQuorum() throws Exception {
+        // 3 out of 5 nodes make the quorum, the 2 slow followers complete in the background.
+        slowNodeIds.add(4);
+        slowNodeIds.add(5);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(nodeManagers[0].putValueToCluster("latency", "value-" + i));
+        }
+        // the writes were acknowledged while the slow followers did not apply any of them.
+        Assert.assertNull(nodeManagers[3].getVersionedValue("latency"));
+        Assert.assertNull(nodeManagers[4].getVersionedValue("latency"));
+
+        // the slow followers apply the writes of the key in order, ending with the last one.
+        slowNodeGate.countDown();
+        waitForReplication("latency");
+        for (final NodeManager nodeManager : nodeManagers) {
+            Assert.assertEquals(nodeManager.getVersionedValue("latency"),
+                nodeManagers[0].getVersionedValue("latency"));
+        }
+    }
+
+    @Test
+    public void testReadLatencyIsBoundedByTheQuorum() throws Exception {
+        nodeManagers[0].putValueToCluster("latency", "value");
+        waitForReplication("latency");
+        // the 2 slow followers do not reply, 3 out of 5 nodes agree on the value.
+        slowNodeIds.add(4);
+        slowNodeIds.add(5);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(nodeManagers[1].getValueFromCluster("latency"), "value");
+        }
+    }
+
+    @Test
+    public void testWritesToDifferentKeysReplicateConcurrently() throws Exception {
+        appendCount.set(0);
+        writeConcurrently(1, "single");
+        final int singleWriterAppendCount = appendCount.getAndSet(0);
+        maxInflightAppendCount.set(0);
+        writeConcurrently(8, "concurrent");
+        final int concurrentWriterAppendCount = appendCount.get();
+        // the writes of 8 writers share the round trips to the followers, several of which are in flight at once.
+        Assert.assertTrue("1 writer: " + singleWriterAppendCount + " appends, 8 writers: "
+            + concurrentWriterAppendCount + " appends", concurrentWriterAppendCount < 4 * singleWriterAppendCount);
+        Assert.assertTrue(maxInflightAppendCount.get() + " appends in flight", maxInflightAppendCount.get() > 1);
+    }
+
+    @Test
+    public void testConcurrentWritesAreBatched() throws Exception {
+        appendCount.set(0);
+        writeConcurrently(8, "batched");
+        // without batching every write would take 2 appends per follower: one for the entry, one for its commit.
+        final int followerWriteCount = 8 * WRITES_PER_WRITER * (nodeManagers.length - 1);
+        Assert.assertTrue(appendCount.get() + " appends for " + followerWriteCount + " follower writes",
+            appendCount.get() < followerWriteCount);
+    }
+
+    @Test
+    public void testConcurrentWritesToTheSameKeysAreOrdered() throws Exception {
+        writeConcurrently(8, "shared");
+        // every writer wrote the same keys. all nodes hold the last write of every key.
+        for (int i = 0; i < WRITES_PER_WRITER; i++) {
+            waitForReplication("shared-" + i);
+            for (final NodeManager nodeManager : nodeManagers) {
+                Assert.assertEquals(nodeManager.getVersionedValue("shared-" + i),
+                    nodeManagers[0].getVersionedValue("shared-" + i));
+            }
+        }
+    }
+
+    @Test
+    public void testForwardedWritesArePipelinedToTheLeader() throws Exception {
+        forwardCount.set(0);
+        writeConcurrently(32, "forwarded");
+        // the writes the followers forward concurrently share the requests to the leader.
+        final int writeCount = 32 * WRITES_PER_WRITER;
+        Assert.assertTrue(forwardCount.get() + " requests for " + writeCount + " forwarded writes",
+            forwardCount.get() < writeCount / 2);
+        for (int writer = 0; writer < 32; writer++) {
+            for (int i = 0; i < WRITES_PER_WRITER; i++) {
+                Assert.assertEquals(nodeManagers[0].getValue("forwarded-" + writer + "-" + i), "value-" + writer);
+            }
+        }
+        // a forwarded delete gets its own result back.
+        Assert.assertTrue(nodeManagers[1].deleteValueFromCluster("forwarded-0-0"));
+        Assert.assertFalse(nodeManagers[2].deleteValueFromCluster("forwarded-0-0"));
+        Assert.assertEquals(nodeManagers[0].getValue("forwarded-0-0"), null);
+    }
+
+    /**
+     * Waits until every node applied the last write of the key, the slowest followers are acknowledged after the
+     * quorum.
+     */
+    private void waitForReplication(final String key) throws Exception {
+        final long deadlineMillis = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadlineMillis) {
+            boolean replicated = true;
+            for (final NodeManager nodeManager : nodeManagers) {
+                replicated &= nodeManagers[0].getVersionedValue(key).equals(nodeManager.getVersionedValue(key));
+            }
+            if (replicated) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        Assert.fail("key " + key + " was not replicated to every node");
+    }
+
+    /**
+     * Simulates the round trip to the node. A slow node does not reply until the gate opens.
+     */
+    private void awaitRoundTrip(final ClusterNode node) {
+        try {
+            if (slowNodeIds.contains(node.getNodeId())) {
+                slowNodeGate.await();
+            } else {
+                Thread.sleep(ROUND_TRIP_MILLIS);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes through the followers, each writer writing its own keys unless the prefix is "shared".
+     */
+    private void writeConcurrently(final int writerCount, final String prefix) throws Exception {
+        final ExecutorService executorService = Executors.newFixedThreadPool(writerCount);
+        try {
+            final List<Future<?>> writers = new ArrayList<>();
+            for (int writer = 0; writer < writerCount; writer++) {
+                final String keyPrefix = "shared".equals(prefix) ? prefix : prefix + "-" + writer;
+                final int writerId = writer;
+                writers.add(executorService.submit(() -> {
+                    for (int i = 0; i < WRITES_PER_WRITER; i++) {
+                        // writes go through a follower, which redirects them to the leader.
+                        nodeManagers[1 + (i % 2)].putValueToCluster(keyPrefix + "-" + i, "value-" + writerId);
+                    }
+                }));
+            }
+            for (final Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+}
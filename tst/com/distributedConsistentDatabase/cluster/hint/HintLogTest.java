@@ -0,0 +1,88 @@
+package com.distributedConsistentDatabase.cluster.hint;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.distributedConsistentDatabase.dataStore.ExpiringKeyValueStore;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+
+public class HintLogTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("hints").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (final File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testHintsAreReplayedInBatchesWhileAppending() {
+        final HintLog hintLog = new HintLog(directory, 2, 1000);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(hintLog.append(new VersionedEntry("key-" + i, "value-" + i, i + 1, 1000L + i)));
+        }
+        Assert.assertTrue(hintLog.append(new VersionedEntry("deleted", null, 11, ExpiringKeyValueStore.NO_EXPIRY)));
+
+        final HintLog.HintBatch firstBatch = hintLog.peek(4);
+        Assert.assertEquals(firstBatch.getHints().size(), 4);
+        // peeking again without acknowledging returns the same hints.
+        Assert.assertEquals(hintLog.peek(4).getHints().get(0).getKey(), "key-0");
+        hintLog.acknowledge(firstBatch);
+        // hints appended during the replay go to the next replay.
+        hintLog.append(new VersionedEntry("late", "value", 12, ExpiringKeyValueStore.NO_EXPIRY));
+        Assert.assertEquals(hintLog.size(), 8);
+
+        final HintLog.HintBatch secondBatch = hintLog.peek(100);
+        Assert.assertEquals(secondBatch.getHints().size(), 7);
+        Assert.assertEquals(secondBatch.getHints().get(0).getKey(), "key-4");
+        Assert.assertEquals(secondBatch.getHints().get(0).getValue(), "value-4");
+        Assert.assertEquals(secondBatch.getHints().get(0).getVersion(), 5);
+        Assert.assertEquals(secondBatch.getHints().get(0).getExpiresAtMillis(), 1004L);
+        Assert.assertNull(secondBatch.getHints().get(6).getValue());
+        hintLog.acknowledge(secondBatch);
+
+        final HintLog.HintBatch lastBatch = hintLog.peek(100);
+        Assert.assertEquals(lastBatch.getHints().size(), 1);
+        Assert.assertEquals(lastBatch.getHints().get(0).getKey(), "late");
+        hintLog.acknowledge(lastBatch);
+        Assert.assertEquals(hintLog.size(), 0);
+        Assert.assertTrue(hintLog.peek(100).getHints().isEmpty());
+    }
+
+    @Test
+    public void testHintsSurviveRestartAndAreBounded() throws Exception {
+        final HintLog hintLog = new HintLog(directory, 3, 5);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(hintLog.append(new VersionedEntry("key-" + i, "value-" + i, i + 1,
+                ExpiringKeyValueStore.NO_EXPIRY)));
+        }
+        Assert.assertFalse(hintLog.append(new VersionedEntry("key-5", "value-5", 6,
+            ExpiringKeyValueStore.NO_EXPIRY)));
+        // a record torn by a crash is ignored.
+        try (FileOutputStream output = new FileOutputStream(new File(directory, "3.hints"), true)) {
+            output.write(new byte[] {0, 0, 0, 42, 1, 2});
+        }
+
+        final HintLog reopenedHintLog = new HintLog(directory, 3, 5);
+        Assert.assertEquals(reopenedHintLog.size(), 5);
+        final HintLog.HintBatch batch = reopenedHintLog.peek(100);
+        Assert.assertEquals(batch.getHints().size(), 5);
+        Assert.assertEquals(batch.getHints().get(4).getKey(), "key-4");
+        reopenedHintLog.clear();
+        Assert.assertEquals(new HintLog(directory, 3, 5).size(), 0);
+    }
+}
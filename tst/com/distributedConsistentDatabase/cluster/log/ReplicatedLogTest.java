@@ -0,0 +1,133 @@
+package com.distributedConsistentDatabase.cluster.log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.distributedConsistentDatabase.dataStore.ExpiringKeyValueStore;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+
+public class ReplicatedLogTest {
+
+    @Test
+    public void testFollowerRejectsStaleLeadersAndReplacesConflictingEntries() throws Exception {
+        final ReplicatedLog replicatedLog = new ReplicatedLog();
+        Assert.assertTrue(replicatedLog.append(batch(1, 1, 0, 0, 1, entry(1, 1), entry(1, 2), entry(1, 3)), 0L)
+            .isSuccess());
+        Assert.assertEquals(replicatedLog.getCommitIndex(), 1L);
+
+        // another leader of the same term, and a leader of an earlier one, are not followed.
+        Assert.assertFalse(replicatedLog.append(batch(1, 2, 3, 1, 3), 0L).isSuccess());
+        replicatedLog.append(batch(2, 2, 1, 1, 1), 0L);
+        Assert.assertFalse(replicatedLog.append(batch(1, 1, 3, 1, 3), 0L).isSuccess());
+
+        // the entries of term 1 after the committed one were never committed by the new leader.
+        final AppendResult conflict = replicatedLog.append(batch(2, 2, 3, 2, 1), 0L);
+        Assert.assertFalse(conflict.isSuccess());
+        Assert.assertEquals(conflict.getLastIndex(), 1L);
+        Assert.assertTrue(replicatedLog.append(batch(2, 2, 1, 1, 3, entry(2, 2), entry(2, 3)), 0L).isSuccess());
+        Assert.assertEquals(replicatedLog.getLastIndex(), 3L);
+        Assert.assertEquals(replicatedLog.termAt(2), 2L);
+        Assert.assertEquals(replicatedLog.getCommitIndex(), 3L);
+
+        final List<Long> appliedIndexes = new ArrayList<>();
+        Assert.assertEquals(replicatedLog.applyCommitted(entry -> appliedIndexes.add(entry.getIndex())), 3);
+        Assert.assertEquals(appliedIndexes, Arrays.asList(1L, 2L, 3L));
+        // applied entries are dropped, the log then starts after them.
+        Assert.assertEquals(replicatedLog.compact(2).size(), 2);
+        Assert.assertEquals(replicatedLog.getFirstIndex(), 3L);
+        Assert.assertEquals(replicatedLog.termAt(2), 2L);
+        Assert.assertTrue(replicatedLog.append(batch(2, 2, 3, 2, 4, entry(2, 4)), 0L).isSuccess());
+        Assert.assertEquals(replicatedLog.getLastIndex(), 4L);
+    }
+
+    @Test
+    public void testPipelinedBatchWaitsForThePrecedingOne() throws Exception {
+        final ReplicatedLog replicatedLog = new ReplicatedLog();
+        // the second batch of the leader arrives first.
+        final CompletableFuture<AppendResult> secondBatch = CompletableFuture.supplyAsync(() -> {
+            try {
+                return replicatedLog.append(batch(1, 1, 2, 1, 0, entry(1, 3)).pipelined(), 5000L);
+            } catch (final InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        Assert.assertFalse(secondBatch.isDone());
+        // a batch which is not pipelined does not wait.
+        Assert.assertFalse(replicatedLog.append(batch(1, 1, 2, 1, 0, entry(1, 3)), 5000L).isSuccess());
+
+        Assert.assertTrue(replicatedLog.append(batch(1, 1, 0, 0, 0, entry(1, 1), entry(1, 2)), 0L).isSuccess());
+        Assert.assertTrue(secondBatch.get().isSuccess());
+        Assert.assertEquals(replicatedLog.getLastIndex(), 3L);
+    }
+
+    @Test
+    public void testResetBatchRestartsTheLogAfterTheMissedEntries() throws Exception {
+        final ReplicatedLog leaderLog = new ReplicatedLog();
+        leaderLog.startTerm(1, 1);
+        for (int i = 0; i < 10; i++) {
+            leaderLog.append(1, Collections.singletonList(write(i)));
+        }
+        leaderLog.commit(10);
+        leaderLog.applyCommitted(entry -> { });
+        leaderLog.compact(8);
+        Assert.assertNull(leaderLog.getBatch(1, 1, 5, 100));
+
+        final ReplicatedLog followerLog = new ReplicatedLog();
+        final AppendResult result = followerLog.append(leaderLog.getResetBatch(1, 1, leaderLog.getFirstIndex(), 100),
+            0L);
+        Assert.assertTrue(result.isSuccess());
+        Assert.assertEquals(result.getLastIndex(), 10L);
+        // the entries before the batch arrive otherwise, they count as applied.
+        Assert.assertEquals(followerLog.getAppliedIndex(), 8L);
+        Assert.assertEquals(followerLog.getFirstIndex(), 9L);
+        Assert.assertEquals(followerLog.applyCommitted(entry -> { }), 2);
+    }
+
+    @Test
+    public void testConflictWithACommittedEntryIsAnError() throws Exception {
+        final ReplicatedLog replicatedLog = new ReplicatedLog();
+        Assert.assertTrue(replicatedLog.append(batch(1, 1, 0, 0, 2, entry(1, 1), entry(1, 2), entry(1, 3)), 0L)
+            .isSuccess());
+
+        // a leader whose log lost the committed entry 2 is refused, the log is left as it was.
+        try {
+            replicatedLog.append(batch(2, 2, 1, 1, 2, entry(2, 2)), 0L);
+            Assert.fail("committed entry replaced");
+        } catch (final IllegalStateException e) {
+            Assert.assertEquals(e.getMessage(), "entry 2 of term 2 conflicts with the committed entry of term 1");
+        }
+        try {
+            replicatedLog.replaceAfter(1, Arrays.asList(entry(2, 2), entry(2, 3)));
+            Assert.fail("committed entry replaced");
+        } catch (final IllegalStateException e) {
+            Assert.assertEquals(e.getMessage(), "entry 2 of term 2 conflicts with the committed entry of term 1");
+        }
+        Assert.assertEquals(replicatedLog.termAt(2), 1L);
+        Assert.assertEquals(replicatedLog.getLastIndex(), 3L);
+
+        // the uncommitted entry 3 is still replaced.
+        Assert.assertTrue(replicatedLog.append(batch(2, 2, 2, 1, 2, entry(2, 3)), 0L).isSuccess());
+        Assert.assertEquals(replicatedLog.termAt(3), 2L);
+    }
+
+    private static AppendEntries batch(final long term, final int leaderId, final long prevLogIndex,
+            final long prevLogTerm, final long leaderCommitIndex, final LogEntry... entries) {
+        return new AppendEntries(term, leaderId, prevLogIndex, prevLogTerm, leaderCommitIndex, false, false,
+            (entries.length == 0) ? Collections.emptyList() : Arrays.asList(entries));
+    }
+
+    private static LogEntry entry(final long term, final long index) {
+        return new LogEntry(term, index, Collections.singletonList(write(index)));
+    }
+
+    private static VersionedEntry write(final long index) {
+        return new VersionedEntry("key-" + index, "value-" + index, index, ExpiringKeyValueStore.NO_EXPIRY);
+    }
+}
@@ -0,0 +1,57 @@
+package com.distributedConsistentDatabase.cluster.mesh;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HashRingTest {
+
+    private static final int KEY_COUNT = 20000;
+
+    @Test
+    public void testKeysAreSpreadEvenlyAcrossTheGroups() {
+        final HashRing hashRing = new HashRing(Arrays.asList(1, 2, 3, 4), ClusterMesh.DEFAULT_VIRTUAL_NODES_PER_GROUP);
+        final Map<Integer, Integer> keyCounts = new HashMap<>();
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keyCounts.merge(hashRing.getGroupId("key-" + i), 1, Integer::sum);
+        }
+        Assert.assertEquals(keyCounts.size(), 4);
+        for (final int keyCount : keyCounts.values()) {
+            Assert.assertTrue("group holds " + keyCount + " keys", Math.abs(keyCount - KEY_COUNT / 4) < KEY_COUNT / 20);
+        }
+    }
+
+    @Test
+    public void testAddingAGroupOnlyMovesKeysToIt() {
+        final HashRing hashRing = new HashRing(Arrays.asList(1, 2, 3, 4), ClusterMesh.DEFAULT_VIRTUAL_NODES_PER_GROUP);
+        final HashRing grownHashRing = new HashRing(Arrays.asList(1, 2, 3, 4, 5),
+            ClusterMesh.DEFAULT_VIRTUAL_NODES_PER_GROUP);
+        int movedKeyCount = 0;
+        for (int i = 0; i < KEY_COUNT; i++) {
+            final int groupId = hashRing.getGroupId("key-" + i);
+            final int grownGroupId = grownHashRing.getGroupId("key-" + i);
+            if (groupId != grownGroupId) {
+                Assert.assertEquals(grownGroupId, 5);
+                movedKeyCount++;
+            }
+        }
+        // the new group takes about a fifth of the keys.
+        Assert.assertTrue(movedKeyCount + " keys moved", Math.abs(movedKeyCount - KEY_COUNT / 5) < KEY_COUNT / 20);
+    }
+
+    @Test
+    public void testRingDoesNotDependOnTheOrderOfTheGroups() {
+        final HashRing hashRing = new HashRing(Arrays.asList(1, 2, 3), 16);
+        final HashRing otherHashRing = new HashRing(Arrays.asList(3, 1, 2), 16);
+        Assert.assertEquals(hashRing.getVirtualNodes(), otherHashRing.getVirtualNodes());
+        Assert.assertEquals(hashRing.getVirtualNodes().size(), 48);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEmptyRingDoesNotOwnAnyKey() {
+        new HashRing(Arrays.<Integer>asList(), 16).getGroupId("key");
+    }
+}
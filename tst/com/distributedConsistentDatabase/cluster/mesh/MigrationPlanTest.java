@@ -0,0 +1,62 @@
+package com.distributedConsistentDatabase.cluster.mesh;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MigrationPlanTest {
+
+    private static final int KEY_COUNT = 20000;
+
+    @Test
+    public void testPlanMovesOnlyTheKeysWhichChangeOwner() {
+        final HashRing hashRing = new HashRing(Arrays.asList(1, 2, 3), ClusterMesh.DEFAULT_VIRTUAL_NODES_PER_GROUP);
+        final HashRing grownHashRing = new HashRing(Arrays.asList(1, 2, 3, 4),
+            ClusterMesh.DEFAULT_VIRTUAL_NODES_PER_GROUP);
+        final MigrationPlan plan = MigrationPlan.between(hashRing, grownHashRing);
+        int movedKeyCount = 0;
+        for (int i = 0; i < KEY_COUNT; i++) {
+            final long keyHash = HashRing.hash("key-" + i);
+            final RangeMove move = plan.getMove(keyHash);
+            if (hashRing.getGroupId(keyHash) == grownHashRing.getGroupId(keyHash)) {
+                Assert.assertNull(move);
+            } else {
+                Assert.assertEquals(move.getSourceGroupId(), hashRing.getGroupId(keyHash));
+                Assert.assertEquals(move.getTargetGroupId(), 4);
+                movedKeyCount++;
+            }
+        }
+        Assert.assertEquals(plan.getSourceGroupIds(), new TreeSet<>(Arrays.asList(1, 2, 3)));
+        // the new group takes about a quarter of the ring, and of the keys.
+        Assert.assertEquals(plan.getMovedShare(), 0.25, 0.05);
+        Assert.assertTrue(movedKeyCount + " keys moved", Math.abs(movedKeyCount - KEY_COUNT / 4) < KEY_COUNT / 20);
+        Assert.assertEquals(plan.getMoves(1).size() + plan.getMoves(2).size() + plan.getMoves(3).size(),
+            plan.getMoves().size());
+    }
+
+    @Test
+    public void testPlanFromASingleGroupCoversTheWrappingArc() {
+        final HashRing hashRing = new HashRing(Collections.singletonList(1), 4);
+        final HashRing grownHashRing = new HashRing(Arrays.asList(1, 2), 4);
+        final MigrationPlan plan = MigrationPlan.between(hashRing, grownHashRing);
+        // the hashes before the first virtual node and after the last one belong to the same arc.
+        for (final long keyHash : new long[] {Long.MIN_VALUE, Long.MAX_VALUE,
+                grownHashRing.getVirtualNodes().firstKey(), grownHashRing.getVirtualNodes().lastKey()}) {
+            final RangeMove move = plan.getMove(keyHash);
+            Assert.assertEquals(move != null, grownHashRing.getGroupId(keyHash) == 2);
+        }
+        Assert.assertTrue(plan.getMoves().stream().allMatch(move -> move.getSourceGroupId() == 1));
+    }
+
+    @Test
+    public void testPlanBetweenEqualRingsIsEmpty() {
+        final HashRing hashRing = new HashRing(Arrays.asList(1, 2), 16);
+        Assert.assertTrue(MigrationPlan.between(hashRing, new HashRing(Arrays.asList(2, 1), 16)).isEmpty());
+        // an empty ring does not hold any key to move.
+        Assert.assertTrue(MigrationPlan.between(new HashRing(Collections.emptyList(), 16), hashRing).isEmpty());
+        Assert.assertEquals(MigrationPlan.between(hashRing, hashRing).getMovedShare(), 0, 0);
+    }
+}
@@ -0,0 +1,71 @@
+package com.distributedConsistentDatabase.dataStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryKeyValueStoreTest {
+
+    private MultiVersionKeyValueStore stringKeyValueStore;
+    private BinaryKeyValueStore keyValueStore;
+
+    @Before
+    public void setUp() throws Exception {
+        stringKeyValueStore = new MultiVersionKeyValueStore(new ExpiringKeyValueStore(new InMemoryKeyValueStore()));
+        keyValueStore = new BinaryKeyValueStore(stringKeyValueStore);
+    }
+
+    @Test
+    public void testPutGetDelete() {
+        final String key = UUID.randomUUID().toString();
+        final byte[] value = new byte[] {(byte) 0xff, 0x00, (byte) 0xfe};
+        Assert.assertNull(keyValueStore.get(key));
+        Assert.assertTrue(keyValueStore.put(key, value));
+        Assert.assertFalse(keyValueStore.put(key, value.clone()));
+        Assert.assertArrayEquals(keyValueStore.get(key), value);
+        Assert.assertTrue(keyValueStore.put(key, new byte[0]));
+        Assert.assertEquals(keyValueStore.get(key).length, 0);
+        Assert.assertTrue(keyValueStore.delete(key));
+        Assert.assertFalse(keyValueStore.delete(key));
+        Assert.assertNull(keyValueStore.get(key));
+    }
+
+    @Test
+    public void testScan() {
+        for (int i = 0; i < 20; i++) {
+            keyValueStore.put(String.format("key-%02d", i), new byte[] {(byte) i});
+        }
+        final List<String> keys = new ArrayList<>();
+        keyValueStore.scan("key-05", "key-10", 3, (key, value) -> {
+            Assert.assertEquals(value[0], Integer.parseInt(key.substring(4)));
+            keys.add(key);
+        });
+        Assert.assertEquals(keys.size(), 3);
+        Assert.assertEquals(keys.get(0), "key-05");
+        Assert.assertEquals(keys.get(2), "key-07");
+    }
+
+    @Test
+    public void testBinaryValuesAreKeptApartFromStringValues() {
+        final String key = UUID.randomUUID().toString();
+        Assert.assertTrue(stringKeyValueStore.put(key, "value"));
+        Assert.assertNull(keyValueStore.get(key));
+        Assert.assertTrue(keyValueStore.put(key, new byte[] {1, 2}));
+        Assert.assertEquals(stringKeyValueStore.get(key), "value");
+        Assert.assertEquals(stringKeyValueStore.get(BinaryKeyValueStore.toStoredKey(key)),
+            BinaryKeyValueStore.encode(new byte[] {1, 2}));
+
+        final List<String> keys = new ArrayList<>();
+        keyValueStore.forEach((binaryKey, value) -> keys.add(binaryKey));
+        Assert.assertEquals(keys.size(), 1);
+        Assert.assertEquals(keys.get(0), key);
+
+        keyValueStore.clear();
+        Assert.assertNull(keyValueStore.get(key));
+        Assert.assertEquals(stringKeyValueStore.get(key), "value");
+    }
+}
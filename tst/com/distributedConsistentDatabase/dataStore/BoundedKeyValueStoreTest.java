@@ -0,0 +1,136 @@
+package com.distributedConsistentDatabase.dataStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.distributedConsistentDatabase.dataStore.cache.CacheStats;
+
+public class BoundedKeyValueStoreTest {
+
+    private static final long MAXIMUM_WEIGHT_BYTES = 64 * 1024;
+    private static final int HOT_KEY_COUNT = 100;
+    private static final int WRITERS = 16;
+
+    private BoundedKeyValueStore keyValueStore;
+
+    @Before
+    public void setUp() throws Exception {
+        keyValueStore = new BoundedKeyValueStore(MAXIMUM_WEIGHT_BYTES);
+    }
+
+    @Test
+    public void testPutGetDelete() {
+        final String key = UUID.randomUUID().toString();
+        final String value = UUID.randomUUID().toString();
+        Assert.assertNull(keyValueStore.get(key));
+        Assert.assertTrue(keyValueStore.put(key, value));
+        Assert.assertFalse(keyValueStore.put(key, new String(value)));
+        Assert.assertEquals(keyValueStore.get(key), value);
+        Assert.assertTrue(keyValueStore.delete(key));
+        Assert.assertFalse(keyValueStore.delete(key));
+        Assert.assertNull(keyValueStore.get(key));
+    }
+
+    @Test
+    public void testWeightIsBoundedByEvictions() {
+        for (int i = 0; i < 10000; i++) {
+            keyValueStore.put("key-" + i, "value-" + i);
+        }
+        keyValueStore.cleanUp();
+
+        final CacheStats stats = keyValueStore.getStats();
+        Assert.assertTrue(stats.getWeightedSizeBytes() <= MAXIMUM_WEIGHT_BYTES);
+        Assert.assertTrue(stats.getEvictionCount() > 0);
+        Assert.assertEquals(stats.getWeightedSizeBytes(), weighContents());
+    }
+
+    @Test
+    public void testFrequentKeysSurviveScan() {
+        for (int i = 0; i < HOT_KEY_COUNT; i++) {
+            keyValueStore.put("hot-" + i, "value-" + i);
+        }
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < HOT_KEY_COUNT; i++) {
+                Assert.assertNotNull(keyValueStore.get("hot-" + i));
+            }
+        }
+        for (int i = 0; i < 20000; i++) {
+            keyValueStore.put("scan-" + i, "value-" + i);
+        }
+        keyValueStore.cleanUp();
+
+        int hotKeysPresent = 0;
+        for (int i = 0; i < HOT_KEY_COUNT; i++) {
+            if (keyValueStore.get("hot-" + i) != null) {
+                hotKeysPresent++;
+            }
+        }
+        Assert.assertTrue("only " + hotKeysPresent + " hot keys survived", hotKeysPresent >= HOT_KEY_COUNT * 9 / 10);
+    }
+
+    @Test
+    public void testConcurrentReadersAndWriters() throws Exception {
+        final ExecutorService executorService = Executors.newFixedThreadPool(WRITERS);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int writer = 0; writer < WRITERS; writer++) {
+            futures.add(executorService.submit(() -> {
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 20000; i++) {
+                    final String key = "key-" + random.nextInt(5000);
+                    final int operation = random.nextInt(10);
+                    if (operation < 5) {
+                        keyValueStore.get(key);
+                    } else if (operation < 9) {
+                        keyValueStore.put(key, "value-" + random.nextInt(1000));
+                    } else {
+                        keyValueStore.delete(key);
+                    }
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+        keyValueStore.cleanUp();
+
+        final CacheStats stats = keyValueStore.getStats();
+        Assert.assertTrue(stats.getWeightedSizeBytes() <= MAXIMUM_WEIGHT_BYTES);
+        Assert.assertEquals(stats.getWeightedSizeBytes(), weighContents());
+    }
+
+    @Test
+    public void testStats() {
+        keyValueStore.put("key", "value");
+        keyValueStore.get("key");
+        keyValueStore.get("key");
+        keyValueStore.get("missing");
+
+        final CacheStats stats = keyValueStore.getStats();
+        Assert.assertEquals(stats.getHitCount(), 2);
+        Assert.assertEquals(stats.getMissCount(), 1);
+        Assert.assertEquals(stats.getHitRatio(), 2.0 / 3, 0.0001);
+        Assert.assertEquals(stats.getMaximumWeightBytes(), MAXIMUM_WEIGHT_BYTES);
+
+        keyValueStore.clear();
+        Assert.assertNull(keyValueStore.get("key"));
+        Assert.assertEquals(keyValueStore.getStats().getWeightedSizeBytes(), 0);
+    }
+
+    private long weighContents() {
+        final AtomicLong weight = new AtomicLong();
+        // same estimate as the store: fixed overhead plus two bytes per character.
+        keyValueStore.forEach((key, value) -> weight.addAndGet(128 + 2 * (key.length() + value.length())));
+        return weight.get();
+    }
+}
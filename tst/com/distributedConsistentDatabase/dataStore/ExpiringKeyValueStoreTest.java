@@ -0,0 +1,114 @@
+package com.distributedConsistentDatabase.dataStore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.distributedConsistentDatabase.dataStore.expiry.ExpiringKey;
+
+public class ExpiringKeyValueStoreTest {
+
+    private InMemoryKeyValueStore underlyingStore;
+    private ExpiringKeyValueStore keyValueStore;
+
+    @Before
+    public void setUp() throws Exception {
+        underlyingStore = new InMemoryKeyValueStore();
+        keyValueStore = new ExpiringKeyValueStore(underlyingStore);
+    }
+
+    @Test
+    public void testExpiredEntryIsInvisible() {
+        final long nowMillis = System.currentTimeMillis();
+        keyValueStore.put("expired", "value", nowMillis - 1);
+        keyValueStore.put("live", "value", nowMillis + 60000);
+        keyValueStore.put("permanent", "value");
+
+        Assert.assertNull(keyValueStore.get("expired"));
+        Assert.assertEquals(keyValueStore.get("live"), "value");
+        Assert.assertEquals(keyValueStore.get("permanent"), "value");
+        final Map<String, String> entries = new HashMap<>();
+        keyValueStore.forEach(entries::put);
+        Assert.assertEquals(entries.keySet().size(), 2);
+        Assert.assertFalse(entries.containsKey("expired"));
+        // reclaimed lazily.
+        Assert.assertNotNull(underlyingStore.get("expired"));
+        Assert.assertFalse(keyValueStore.delete("expired"));
+    }
+
+    @Test
+    public void testScanSkipsExpiredEntries() {
+        final OrderedKeyValueStore orderedStore = new OrderedKeyValueStore();
+        final ExpiringKeyValueStore orderedKeyValueStore = new ExpiringKeyValueStore(orderedStore);
+        final long nowMillis = System.currentTimeMillis();
+        for (int i = 0; i < 30; i++) {
+            final String key = String.format("key-%02d", i);
+            if (i < 20 && i % 2 == 0) {
+                orderedKeyValueStore.put(key, "value-" + i, nowMillis - 1);
+            } else {
+                orderedKeyValueStore.put(key, "value-" + i);
+            }
+        }
+
+        final List<String> keys = new ArrayList<>();
+        orderedKeyValueStore.scan("key-00", null, 12, (key, value) -> {
+            Assert.assertEquals(value, orderedKeyValueStore.get(key));
+            keys.add(key);
+        });
+        Assert.assertEquals(keys.size(), 12);
+        Assert.assertEquals(keys.get(0), "key-01");
+        Assert.assertEquals(keys.get(11), "key-21");
+    }
+
+    @Test
+    public void testPollAndExpire() throws Exception {
+        final long expiresAtMillis = System.currentTimeMillis() + 150;
+        keyValueStore.put("first", "value", expiresAtMillis);
+        keyValueStore.put("second", "value", expiresAtMillis);
+        keyValueStore.put("third", "value", expiresAtMillis);
+        // written again without a time to live, so its deadline is stale.
+        keyValueStore.put("third", "value");
+
+        Assert.assertTrue(keyValueStore.pollExpired(System.currentTimeMillis(), 10).isEmpty());
+        Thread.sleep(400);
+        final List<ExpiringKey> expiredKeys = keyValueStore.pollExpired(System.currentTimeMillis(), 1);
+        Assert.assertEquals(expiredKeys.size(), 1);
+        expiredKeys.addAll(keyValueStore.pollExpired(System.currentTimeMillis(), 10));
+        Assert.assertEquals(expiredKeys.size(), 2);
+        for (final ExpiringKey expiredKey : expiredKeys) {
+            Assert.assertTrue(keyValueStore.expire(expiredKey.getKey(), expiredKey.getExpiresAtMillis()));
+            Assert.assertNull(underlyingStore.get(expiredKey.getKey()));
+        }
+        Assert.assertEquals(keyValueStore.get("third"), "value");
+        Assert.assertFalse(keyValueStore.expire("third", expiresAtMillis));
+    }
+
+    @Test
+    public void testDeadlinesSurviveRewrapping() throws Exception {
+        keyValueStore.put("key", "value", System.currentTimeMillis() + 100);
+        final ExpiringKeyValueStore reopenedStore = new ExpiringKeyValueStore(underlyingStore);
+        Assert.assertEquals(reopenedStore.get("key"), "value");
+        Thread.sleep(300);
+        Assert.assertNull(reopenedStore.get("key"));
+        Assert.assertEquals(reopenedStore.pollExpired(System.currentTimeMillis(), 10).size(), 1);
+    }
+
+    @Test
+    public void testValuesStartingWithMarkers() {
+        final String plainMarkerValue = "\u0000value";
+        final String expiryMarkerValue = "\u00011:value";
+        keyValueStore.put("plain", plainMarkerValue);
+        keyValueStore.put("expiry", expiryMarkerValue);
+        keyValueStore.put("empty", "");
+        keyValueStore.put("timed", expiryMarkerValue, System.currentTimeMillis() + 60000);
+        Assert.assertEquals(keyValueStore.get("plain"), plainMarkerValue);
+        Assert.assertEquals(keyValueStore.get("expiry"), expiryMarkerValue);
+        Assert.assertEquals(keyValueStore.get("empty"), "");
+        Assert.assertEquals(keyValueStore.get("timed"), expiryMarkerValue);
+    }
+}
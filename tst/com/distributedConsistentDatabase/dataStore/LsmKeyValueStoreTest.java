@@ -0,0 +1,282 @@
+package com.distributedConsistentDatabase.dataStore;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LsmKeyValueStoreTest {
+
+    private static final long SMALL_MEMTABLE_SIZE_BYTES = 16 * 1024;
+    private static final int KEY_COUNT = 5000;
+    private static final int WRITERS = 32;
+
+    private File directory;
+    private LsmKeyValueStore keyValueStore;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("lsm-store").toFile();
+        keyValueStore = new LsmKeyValueStore(directory, SMALL_MEMTABLE_SIZE_BYTES);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        keyValueStore.close();
+        deleteRecursively(directory);
+    }
+
+    @Test
+    public void testPutGetDelete() {
+        final String key = UUID.randomUUID().toString();
+        final String value = UUID.randomUUID().toString();
+        Assert.assertNull(keyValueStore.get(key));
+        Assert.assertTrue(keyValueStore.put(key, value));
+        Assert.assertFalse(keyValueStore.put(key, value));
+        Assert.assertEquals(keyValueStore.get(key), value);
+        Assert.assertTrue(keyValueStore.delete(key));
+        Assert.assertFalse(keyValueStore.delete(key));
+        Assert.assertNull(keyValueStore.get(key));
+    }
+
+    @Test
+    public void testReadsAcrossFlushedLevels() throws Exception {
+        writeConcurrently(i -> keyValueStore.put(key(i), "first-" + i));
+        writeConcurrently(i -> {
+            if (i % 2 == 0) {
+                keyValueStore.put(key(i), "second-" + i);
+            }
+        });
+        writeConcurrently(i -> {
+            if (i % 5 == 0) {
+                keyValueStore.delete(key(i));
+            }
+        });
+        keyValueStore.flush();
+
+        Assert.assertTrue(keyValueStore.getTableCountPerLevel().get(0) < 4);
+        Assert.assertTrue(keyValueStore.getTableCountPerLevel().get(1) > 0);
+        assertContents();
+    }
+
+    @Test
+    public void testRecoveryAfterRestart() throws Exception {
+        writeConcurrently(i -> keyValueStore.put(key(i), "first-" + i));
+        writeConcurrently(i -> {
+            if (i % 2 == 0) {
+                keyValueStore.put(key(i), "second-" + i);
+            }
+        });
+        writeConcurrently(i -> {
+            if (i % 5 == 0) {
+                keyValueStore.delete(key(i));
+            }
+        });
+
+        // part of the data is in the tables and the rest only in the write ahead log.
+        keyValueStore.close();
+        keyValueStore = new LsmKeyValueStore(directory, SMALL_MEMTABLE_SIZE_BYTES);
+        assertContents();
+    }
+
+    @Test
+    public void testForEachAcrossLevels() throws Exception {
+        writeConcurrently(i -> keyValueStore.put(key(i), "first-" + i));
+        keyValueStore.flush();
+        writeConcurrently(i -> {
+            if (i % 2 == 0) {
+                keyValueStore.put(key(i), "second-" + i);
+            }
+        });
+        writeConcurrently(i -> {
+            if (i % 5 == 0) {
+                keyValueStore.delete(key(i));
+            }
+        });
+
+        final Map<String, String> entries = new HashMap<>();
+        keyValueStore.forEach((key, value) -> Assert.assertNull(entries.put(key, value)));
+        Assert.assertEquals(entries.size(), KEY_COUNT - KEY_COUNT / 5);
+        for (final Map.Entry<String, String> entry : entries.entrySet()) {
+            Assert.assertEquals(keyValueStore.get(entry.getKey()), entry.getValue());
+        }
+    }
+
+    @Test
+    public void testScanAcrossLevels() throws Exception {
+        writeConcurrently(i -> keyValueStore.put(key(i), "first-" + i));
+        keyValueStore.flush();
+        writeConcurrently(i -> {
+            if (i % 5 == 0) {
+                keyValueStore.delete(key(i));
+            }
+        });
+
+        final TreeMap<String, String> expected = new TreeMap<>();
+        keyValueStore.forEach(expected::put);
+        final List<String> expectedKeys = new ArrayList<>(
+            expected.subMap("key-2000", "key-3").keySet());
+
+        final List<String> keys = new ArrayList<>();
+        keyValueStore.scan("key-2000", "key-3", KEY_COUNT, (key, value) -> {
+            Assert.assertEquals(value, keyValueStore.get(key));
+            keys.add(key);
+        });
+        Assert.assertEquals(keys, expectedKeys);
+
+        keys.clear();
+        keyValueStore.scan("key-2000", "key-3", 10, (key, value) -> keys.add(key));
+        Assert.assertEquals(keys, expectedKeys.subList(0, 10));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        writeConcurrently(i -> keyValueStore.put(key(i), "value-" + i));
+        keyValueStore.flush();
+        keyValueStore.clear();
+        Assert.assertNull(keyValueStore.get(key(1)));
+
+        keyValueStore.close();
+        keyValueStore = new LsmKeyValueStore(directory, SMALL_MEMTABLE_SIZE_BYTES);
+        Assert.assertNull(keyValueStore.get(key(1)));
+    }
+
+    @Test
+    public void testFailedFlushKeepsItsWritesAcrossRestart() throws Exception {
+        keyValueStore.close();
+        keyValueStore = new LsmKeyValueStore(directory, LsmKeyValueStore.DEFAULT_MEMTABLE_SIZE_BYTES);
+        // the tables cannot be written while their files are taken by directories.
+        final List<File> blockedTableFiles = new ArrayList<>();
+        for (int fileNumber = 0; fileNumber < 100; fileNumber++) {
+            final File blockedTableFile = new File(directory, String.format("%012d.sst", fileNumber));
+            Assert.assertTrue(blockedTableFile.mkdir());
+            blockedTableFiles.add(blockedTableFile);
+        }
+        for (int i = 0; i < 100; i++) {
+            keyValueStore.put("first-" + i, "value-" + i);
+        }
+        try {
+            keyValueStore.flush();
+            Assert.fail("the flush was expected to fail");
+        } catch (final IllegalStateException e) {
+            // the memtable stays in the log.
+        }
+        for (int i = 0; i < 100; i++) {
+            keyValueStore.put("second-" + i, "value-" + i);
+        }
+        try {
+            keyValueStore.flush();
+            Assert.fail("the flush was expected to fail");
+        } catch (final IllegalStateException e) {
+            // the newer memtable is not flushed before the failed one.
+        }
+        Assert.assertEquals(keyValueStore.getTableCountPerLevel().get(0).intValue(), 0);
+
+        for (final File blockedTableFile : blockedTableFiles) {
+            Assert.assertTrue(blockedTableFile.delete());
+        }
+        // the failed memtable is flushed first, then the newer one truncates the log of both.
+        keyValueStore.flush();
+        for (int i = 0; i < 100; i++) {
+            keyValueStore.put("third-" + i, "value-" + i);
+        }
+        keyValueStore.close();
+        keyValueStore = new LsmKeyValueStore(directory, LsmKeyValueStore.DEFAULT_MEMTABLE_SIZE_BYTES);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(keyValueStore.get("first-" + i), "value-" + i);
+            Assert.assertEquals(keyValueStore.get("second-" + i), "value-" + i);
+            Assert.assertEquals(keyValueStore.get("third-" + i), "value-" + i);
+        }
+    }
+
+    @Test
+    public void testFailedCompactionIsRetried() throws Exception {
+        keyValueStore.close();
+        deleteRecursively(directory);
+        keyValueStore = new LsmKeyValueStore(directory, LsmKeyValueStore.DEFAULT_MEMTABLE_SIZE_BYTES);
+        for (int table = 0; table < 3; table++) {
+            keyValueStore.put("key-" + table, "value-" + table);
+            keyValueStore.flush();
+        }
+        // the fourth table triggers the compaction of level 0, whose tables cannot be written.
+        final List<File> blockedTableFiles = new ArrayList<>();
+        for (int fileNumber = 4; fileNumber < 100; fileNumber++) {
+            final File blockedTableFile = new File(directory, String.format("%012d.sst", fileNumber));
+            Assert.assertTrue(blockedTableFile.mkdir());
+            blockedTableFiles.add(blockedTableFile);
+        }
+        keyValueStore.put("key-3", "value-3");
+        keyValueStore.flush();
+        Assert.assertNotNull(keyValueStore.getCompactionFailure());
+        Assert.assertEquals(keyValueStore.getTableCountPerLevel().get(0).intValue(), 4);
+
+        for (final File blockedTableFile : blockedTableFiles) {
+            Assert.assertTrue(blockedTableFile.delete());
+        }
+        final long deadlineMillis = System.currentTimeMillis() + 10000;
+        while (keyValueStore.getTableCountPerLevel().get(0) > 0 && System.currentTimeMillis() < deadlineMillis) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(keyValueStore.getTableCountPerLevel().get(0).intValue(), 0);
+        Assert.assertNull(keyValueStore.getCompactionFailure());
+        for (int table = 0; table < 4; table++) {
+            Assert.assertEquals(keyValueStore.get("key-" + table), "value-" + table);
+        }
+    }
+
+    private void writeConcurrently(final IntConsumer write) throws Exception {
+        final ExecutorService executorService = Executors.newFixedThreadPool(WRITERS);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int writer = 0; writer < WRITERS; writer++) {
+            final int firstKey = writer;
+            futures.add(executorService.submit(() -> {
+                for (int i = firstKey; i < KEY_COUNT; i += WRITERS) {
+                    write.accept(i);
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+    }
+
+    private void assertContents() {
+        for (int i = 0; i < KEY_COUNT; i++) {
+            if (i % 5 == 0) {
+                Assert.assertNull(keyValueStore.get(key(i)));
+            } else if (i % 2 == 0) {
+                Assert.assertEquals(keyValueStore.get(key(i)), "second-" + i);
+            } else {
+                Assert.assertEquals(keyValueStore.get(key(i)), "first-" + i);
+            }
+        }
+    }
+
+    private static String key(final int i) {
+        return "key-" + (i * 7919 % KEY_COUNT);
+    }
+
+    private static void deleteRecursively(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,164 @@
+package com.distributedConsistentDatabase.dataStore;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.distributedConsistentDatabase.dataStore.merkle.MerkleTree;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedValue;
+
+public class MultiVersionKeyValueStoreTest {
+
+    private InMemoryKeyValueStore underlyingStore;
+    private MultiVersionKeyValueStore keyValueStore;
+
+    @Before
+    public void setUp() throws Exception {
+        underlyingStore = new InMemoryKeyValueStore();
+        keyValueStore = new MultiVersionKeyValueStore(new ExpiringKeyValueStore(underlyingStore));
+    }
+
+    @Test
+    public void testVersionsIncrease() {
+        Assert.assertTrue(keyValueStore.put("key", "first"));
+        final VersionedValue first = keyValueStore.getVersioned("key");
+        Assert.assertFalse(keyValueStore.put("key", "first"));
+        final VersionedValue second = keyValueStore.getVersioned("key");
+        Assert.assertEquals(second.getValue(), "first");
+        Assert.assertTrue(second.getVersion() > first.getVersion());
+        Assert.assertEquals(keyValueStore.getLatestVersion(), second.getVersion());
+
+        // a replicated version moves the local clock past it.
+        final long replicatedVersion = second.getVersion() + 1000000L;
+        keyValueStore.put("key", "replicated", ExpiringKeyValueStore.NO_EXPIRY, replicatedVersion);
+        Assert.assertTrue(keyValueStore.nextVersion() > replicatedVersion);
+    }
+
+    @Test
+    public void testSnapshotIsIsolatedFromLaterWrites() {
+        keyValueStore.put("updated", "old");
+        keyValueStore.put("deleted", "old");
+        try (MultiVersionKeyValueStore.Snapshot snapshot = keyValueStore.openSnapshot()) {
+            keyValueStore.put("updated", "new");
+            keyValueStore.put("updated", "newer");
+            keyValueStore.delete("deleted");
+            keyValueStore.put("created", "new");
+
+            Assert.assertEquals(snapshot.get("updated"), "old");
+            Assert.assertEquals(snapshot.get("deleted"), "old");
+            Assert.assertNull(snapshot.get("created"));
+            Assert.assertEquals(keyValueStore.get("updated"), "newer");
+            Assert.assertNull(keyValueStore.get("deleted"));
+            Assert.assertEquals(keyValueStore.get("created"), "new");
+        }
+    }
+
+    @Test
+    public void testPriorVersionsAreReclaimedBelowTheLowWatermark() {
+        keyValueStore.put("key", "first");
+        final MultiVersionKeyValueStore.Snapshot snapshot = keyValueStore.openSnapshot();
+        keyValueStore.put("key", "second");
+        keyValueStore.put("key", "third");
+        // the first value is read by the snapshot, the second one by no one.
+        Assert.assertEquals(keyValueStore.getPriorVersionCount(), 2L);
+        Assert.assertEquals(snapshot.get("key"), "first");
+
+        snapshot.close();
+        keyValueStore.collectGarbage();
+        Assert.assertEquals(keyValueStore.getPriorVersionCount(), 0L);
+        Assert.assertEquals(keyValueStore.get("key"), "third");
+
+        // without an open snapshot, writes do not keep prior versions.
+        keyValueStore.put("key", "fourth");
+        keyValueStore.delete("key");
+        Assert.assertEquals(keyValueStore.getPriorVersionCount(), 0L);
+    }
+
+    @Test
+    public void testDeleteBeforeTheSnapshotIsNotVisible() {
+        keyValueStore.put("key", "value");
+        keyValueStore.delete("key");
+        try (MultiVersionKeyValueStore.Snapshot snapshot = keyValueStore.openSnapshot()) {
+            keyValueStore.put("key", "recreated");
+            Assert.assertNull(snapshot.get("key"));
+            Assert.assertEquals(keyValueStore.get("key"), "recreated");
+        }
+    }
+
+    @Test
+    public void testExpiredEntryIsNotVisibleInSnapshot() {
+        final long nowMillis = System.currentTimeMillis();
+        keyValueStore.put("key", "value", nowMillis - 1, keyValueStore.nextVersion());
+        try (MultiVersionKeyValueStore.Snapshot snapshot = keyValueStore.openSnapshot()) {
+            Assert.assertNull(snapshot.get("key"));
+            Assert.assertTrue(keyValueStore.expire("key", nowMillis - 1, keyValueStore.nextVersion()));
+            Assert.assertNull(snapshot.get("key"));
+        }
+        Assert.assertNull(underlyingStore.get("key"));
+    }
+
+    @Test
+    public void testIterationDecodesValues() {
+        keyValueStore.put("a", "1");
+        keyValueStore.put("b", "2");
+        final Map<String, String> entries = new HashMap<>();
+        keyValueStore.forEach(entries::put);
+        Assert.assertEquals(entries.get("a"), "1");
+        Assert.assertEquals(entries.get("b"), "2");
+
+        // values written before the store was versioned read with no version.
+        underlyingStore.put("legacy", "value");
+        Assert.assertEquals(keyValueStore.getVersioned("legacy").getVersion(), MultiVersionKeyValueStore.NO_VERSION);
+        Assert.assertEquals(keyValueStore.get("legacy"), "value");
+    }
+
+    @Test
+    public void testEntriesOfLeavesHoldTheKeysOfTheLeaves() {
+        for (int i = 0; i < 1000; i++) {
+            keyValueStore.put("key-" + i, "value-" + i);
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            keyValueStore.delete("key-" + i);
+        }
+        keyValueStore.put("expired", "value", 1L, keyValueStore.nextVersion());
+        final MerkleTree merkleTree = keyValueStore.getMerkleTree();
+        final Set<Integer> leaves = new HashSet<>(Arrays.asList(merkleTree.leafOf("key-1"),
+            merkleTree.leafOf("key-3"), merkleTree.leafOf("expired")));
+        final Map<String, VersionedEntry> expectedEntries = new HashMap<>();
+        keyValueStore.forEachEntry(entry -> {
+            if (leaves.contains(merkleTree.leafOf(entry.getKey()))) {
+                expectedEntries.put(entry.getKey(), entry);
+            }
+        });
+        Assert.assertTrue(expectedEntries.containsKey("key-1"));
+        Assert.assertFalse(expectedEntries.containsKey("key-3"));
+        Assert.assertTrue(expectedEntries.containsKey("expired"));
+        assertEntries(keyValueStore.getEntries(leaves), expectedEntries);
+
+        // the keys of the entries loaded into the underlying store are found once the store is rebuilt.
+        underlyingStore.put("key-3", "loaded");
+        keyValueStore.rebuild();
+        expectedEntries.put("key-3", new VersionedEntry("key-3", "loaded", MultiVersionKeyValueStore.NO_VERSION,
+            ExpiringKeyValueStore.NO_EXPIRY));
+        assertEntries(keyValueStore.getEntries(leaves), expectedEntries);
+    }
+
+    private static void assertEntries(final List<VersionedEntry> entries,
+            final Map<String, VersionedEntry> expectedEntries) {
+        Assert.assertEquals(entries.size(), expectedEntries.size());
+        for (final VersionedEntry entry : entries) {
+            final VersionedEntry expectedEntry = expectedEntries.get(entry.getKey());
+            Assert.assertEquals(entry.getValue(), expectedEntry.getValue());
+            Assert.assertEquals(entry.getVersion(), expectedEntry.getVersion());
+            Assert.assertEquals(entry.getExpiresAtMillis(), expectedEntry.getExpiresAtMillis());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.distributedConsistentDatabase.dataStore;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffHeapKeyValueStoreTest {
+
+    private OffHeapKeyValueStore keyValueStore;
+
+    @Before
+    public void setUp() throws Exception {
+        keyValueStore = new OffHeapKeyValueStore(64L * 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        keyValueStore.clear();
+    }
+
+    @Test
+    public void testPutGetDelete() {
+        final String key = UUID.randomUUID().toString();
+        final String value = UUID.randomUUID().toString();
+        Assert.assertNull(keyValueStore.get(key));
+        Assert.assertTrue(keyValueStore.put(key, value));
+        Assert.assertFalse(keyValueStore.put(key, new String(value)));
+        Assert.assertEquals(keyValueStore.get(key), value);
+        Assert.assertTrue(keyValueStore.delete(key));
+        Assert.assertFalse(keyValueStore.delete(key));
+        Assert.assertNull(keyValueStore.get(key));
+    }
+
+    @Test
+    public void testUpdateAcrossSizeClasses() {
+        final String key = UUID.randomUUID().toString();
+        final StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            value.append("value-").append(i);
+            Assert.assertTrue(keyValueStore.put(key, value.toString()));
+            Assert.assertEquals(keyValueStore.get(key), value.toString());
+        }
+        Assert.assertEquals(keyValueStore.size(), 1);
+    }
+
+    @Test
+    public void testManyEntriesWithDeletes() {
+        for (int i = 0; i < 100000; i++) {
+            keyValueStore.put("key-" + i, "value-" + i);
+        }
+        for (int i = 0; i < 100000; i += 3) {
+            Assert.assertTrue(keyValueStore.delete("key-" + i));
+        }
+        for (int i = 0; i < 100000; i++) {
+            Assert.assertEquals(keyValueStore.get("key-" + i), (i % 3 == 0) ? null : "value-" + i);
+        }
+        Assert.assertEquals(keyValueStore.size(), 100000 - 33334);
+    }
+
+    @Test
+    public void testForEachWithConcurrentDeletes() throws Exception {
+        for (int i = 0; i < 20000; i++) {
+            keyValueStore.put("stable-" + i, "value-" + i);
+        }
+        final AtomicBoolean isRunning = new AtomicBoolean(true);
+        final Thread churner = new Thread(() -> {
+            int i = 0;
+            while (isRunning.get()) {
+                keyValueStore.put("churn-" + (i % 5000), "value-" + i);
+                keyValueStore.delete("churn-" + ((i + 2500) % 5000));
+                i++;
+            }
+        });
+        churner.start();
+        try {
+            final Map<String, String> entries = new HashMap<>();
+            keyValueStore.forEach(entries::put);
+            for (int i = 0; i < 20000; i++) {
+                Assert.assertEquals(entries.get("stable-" + i), "value-" + i);
+            }
+        } finally {
+            isRunning.set(false);
+            churner.join();
+        }
+    }
+
+    @Test
+    public void testFreedChunksAreReused() {
+        for (int i = 0; i < 10000; i++) {
+            keyValueStore.put("key-" + i, "value-" + i);
+        }
+        final long reservedMemory = keyValueStore.getReservedMemoryBytes();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 10000; i++) {
+                keyValueStore.delete("key-" + i);
+            }
+            for (int i = 0; i < 10000; i++) {
+                keyValueStore.put("key-" + i, "value-" + i);
+            }
+        }
+        Assert.assertEquals(keyValueStore.getReservedMemoryBytes(), reservedMemory);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMemoryLimit() {
+        keyValueStore = new OffHeapKeyValueStore(1024 * 1024);
+        final String value = new String(new char[1000]).replace('\0', 'x');
+        for (int i = 0; i < 10000; i++) {
+            keyValueStore.put("key-" + i, value);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.distributedConsistentDatabase.dataStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.distributedConsistentDatabase.dataStore.scan.KeyRange;
+
+public class OrderedKeyValueStoreTest {
+
+    private OrderedKeyValueStore keyValueStore;
+
+    @Before
+    public void setUp() throws Exception {
+        keyValueStore = new OrderedKeyValueStore();
+        for (int user = 0; user < 20; user++) {
+            for (int item = 0; item < 10; item++) {
+                keyValueStore.put(String.format("user:%02d:%d", user, item), "value-" + user + "-" + item);
+            }
+        }
+    }
+
+    @Test
+    public void testPutGetDelete() {
+        final String key = UUID.randomUUID().toString();
+        final String value = UUID.randomUUID().toString();
+        Assert.assertNull(keyValueStore.get(key));
+        Assert.assertTrue(keyValueStore.put(key, value));
+        Assert.assertFalse(keyValueStore.put(key, new String(value)));
+        Assert.assertEquals(keyValueStore.get(key), value);
+        Assert.assertTrue(keyValueStore.delete(key));
+        Assert.assertFalse(keyValueStore.delete(key));
+        Assert.assertNull(keyValueStore.get(key));
+    }
+
+    @Test
+    public void testScanRange() {
+        final List<String> keys = new ArrayList<>();
+        keyValueStore.scan("user:03:5", "user:05", 100, (key, value) -> keys.add(key));
+        Assert.assertEquals(keys.size(), 15);
+        Assert.assertEquals(keys.get(0), "user:03:5");
+        Assert.assertEquals(keys.get(14), "user:04:9");
+
+        keys.clear();
+        keyValueStore.scan(null, null, 7, (key, value) -> keys.add(key));
+        Assert.assertEquals(keys.size(), 7);
+        Assert.assertEquals(keys.get(6), "user:00:6");
+
+        keys.clear();
+        keyValueStore.scan("user:05", "user:03", 100, (key, value) -> keys.add(key));
+        Assert.assertTrue(keys.isEmpty());
+    }
+
+    @Test
+    public void testScanPrefixMatchesUnorderedScan() {
+        final String prefix = "user:07:";
+        final List<String> orderedKeys = new ArrayList<>();
+        keyValueStore.scan(prefix, KeyRange.prefixEnd(prefix), 100, (key, value) -> orderedKeys.add(key));
+        Assert.assertEquals(orderedKeys.size(), 10);
+
+        final InMemoryKeyValueStore unorderedStore = new InMemoryKeyValueStore();
+        keyValueStore.forEach(unorderedStore::put);
+        final List<String> unorderedKeys = new ArrayList<>();
+        unorderedStore.scan(prefix, KeyRange.prefixEnd(prefix), 100, (key, value) -> unorderedKeys.add(key));
+        Assert.assertEquals(unorderedKeys, orderedKeys);
+    }
+}
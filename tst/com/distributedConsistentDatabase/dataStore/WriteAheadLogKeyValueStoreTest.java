@@ -0,0 +1,147 @@
+package com.distributedConsistentDatabase.dataStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WriteAheadLogKeyValueStoreTest {
+
+    private File directory;
+    private WriteAheadLogKeyValueStore keyValueStore;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("wal-store").toFile();
+        keyValueStore = new WriteAheadLogKeyValueStore(directory);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        keyValueStore.close();
+        deleteRecursively(directory);
+    }
+
+    @Test
+    public void testRePutValue() {
+        final String key = UUID.randomUUID().toString();
+        final String value = UUID.randomUUID().toString();
+        Assert.assertTrue(keyValueStore.put(key, value));
+        Assert.assertFalse(keyValueStore.put(key, new String(value)));
+        Assert.assertEquals(keyValueStore.get(key), value);
+    }
+
+    @Test
+    public void testDeleteValue() {
+        final String key = UUID.randomUUID().toString();
+        Assert.assertFalse(keyValueStore.delete(key));
+        Assert.assertTrue(keyValueStore.put(key, UUID.randomUUID().toString()));
+        Assert.assertTrue(keyValueStore.delete(key));
+        Assert.assertNull(keyValueStore.get(key));
+    }
+
+    @Test
+    public void testReplayAfterRestart() {
+        final String key = UUID.randomUUID().toString();
+        final String value = UUID.randomUUID().toString();
+        final String deletedKey = UUID.randomUUID().toString();
+        keyValueStore.put(key, UUID.randomUUID().toString());
+        keyValueStore.put(key, value);
+        keyValueStore.put(deletedKey, value);
+        keyValueStore.delete(deletedKey);
+
+        keyValueStore.close();
+        keyValueStore = new WriteAheadLogKeyValueStore(directory);
+        Assert.assertEquals(keyValueStore.get(key), value);
+        Assert.assertNull(keyValueStore.get(deletedKey));
+    }
+
+    @Test
+    public void testReplayIgnoresTornTail() throws IOException {
+        final String key = UUID.randomUUID().toString();
+        final String value = UUID.randomUUID().toString();
+        keyValueStore.put(key, value);
+        keyValueStore.close();
+
+        // simulate a crash in the middle of the next append
+        final File segment = directory.listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.seek(file.length());
+            file.writeInt(100);
+            file.writeLong(42L);
+        }
+
+        keyValueStore = new WriteAheadLogKeyValueStore(directory);
+        Assert.assertEquals(keyValueStore.get(key), value);
+        final String otherKey = UUID.randomUUID().toString();
+        keyValueStore.put(otherKey, value);
+        keyValueStore.close();
+        keyValueStore = new WriteAheadLogKeyValueStore(directory);
+        Assert.assertEquals(keyValueStore.get(otherKey), value);
+    }
+
+    @Test
+    public void testCheckpointTruncatesSegments() {
+        keyValueStore.close();
+        keyValueStore = new WriteAheadLogKeyValueStore(directory, 256, 0, Integer.MAX_VALUE);
+        final String key = UUID.randomUUID().toString();
+        for (int i = 0; i < 100; i++) {
+            keyValueStore.put(key, String.valueOf(i));
+        }
+        Assert.assertTrue(directory.listFiles().length > 10);
+
+        keyValueStore.checkpoint();
+        Assert.assertTrue(directory.listFiles().length <= 2);
+
+        keyValueStore.close();
+        keyValueStore = new WriteAheadLogKeyValueStore(directory);
+        Assert.assertEquals(keyValueStore.get(key), "99");
+    }
+
+    @Test
+    public void testConcurrentWritersAreDurable() throws Exception {
+        final ExecutorService executorService = Executors.newFixedThreadPool(16);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int writer = 0; writer < 16; writer++) {
+            final int writerId = writer;
+            futures.add(executorService.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    keyValueStore.put(writerId + ":" + i, String.valueOf(i));
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        keyValueStore.close();
+        keyValueStore = new WriteAheadLogKeyValueStore(directory);
+        for (int writer = 0; writer < 16; writer++) {
+            for (int i = 0; i < 200; i++) {
+                Assert.assertEquals(keyValueStore.get(writer + ":" + i), String.valueOf(i));
+            }
+        }
+    }
+
+    private static void deleteRecursively(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,55 @@
+package com.distributedConsistentDatabase.dataStore.expiry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HierarchicalTimingWheelTest {
+
+    private static final long TICK_MILLIS = 10L;
+    private static final int WHEEL_SIZE = 8;
+
+    @Test
+    public void testDeadlinesFireOnTheirTickAcrossLevels() {
+        final long startMillis = 1000L;
+        final HierarchicalTimingWheel timingWheel = new HierarchicalTimingWheel(TICK_MILLIS, WHEEL_SIZE, startMillis);
+        final Random random = new Random(7);
+        final Map<String, Long> deadlines = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            // up to three levels above the lowest one.
+            final long expiresAtMillis = startMillis + (long) random.nextInt(40000);
+            deadlines.put("key-" + i, expiresAtMillis);
+            Assert.assertTrue(timingWheel.add(new ExpiringKey("key-" + i, expiresAtMillis)));
+        }
+        Assert.assertEquals(timingWheel.size(), 5000);
+
+        final Map<String, Long> firedAtMillis = new HashMap<>();
+        for (long nowMillis = startMillis; nowMillis <= startMillis + 41000; nowMillis += 7) {
+            final List<ExpiringKey> expiredKeys = new ArrayList<>();
+            timingWheel.advance(nowMillis, expiredKeys);
+            for (final ExpiringKey expiredKey : expiredKeys) {
+                Assert.assertNull(firedAtMillis.put(expiredKey.getKey(), nowMillis));
+            }
+        }
+        Assert.assertEquals(firedAtMillis.size(), 5000);
+        Assert.assertEquals(timingWheel.size(), 0);
+        for (final Map.Entry<String, Long> deadline : deadlines.entrySet()) {
+            final long firedMillis = firedAtMillis.get(deadline.getKey());
+            // never early, and late by at most a tick plus the advance step.
+            Assert.assertTrue(firedMillis > deadline.getValue());
+            Assert.assertTrue(firedMillis <= deadline.getValue() + TICK_MILLIS + 7);
+        }
+    }
+
+    @Test
+    public void testPastDeadlineIsRejected() {
+        final HierarchicalTimingWheel timingWheel = new HierarchicalTimingWheel(TICK_MILLIS, WHEEL_SIZE, 1000L);
+        Assert.assertFalse(timingWheel.add(new ExpiringKey("key", 999L)));
+        Assert.assertTrue(timingWheel.add(new ExpiringKey("key", 1000L)));
+    }
+}
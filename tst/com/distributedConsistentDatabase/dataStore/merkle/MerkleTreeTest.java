@@ -0,0 +1,52 @@
+package com.distributedConsistentDatabase.dataStore.merkle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MerkleTreeTest {
+
+    @Test
+    public void testTreeDoesNotDependOnTheOrderOfTheWrites() {
+        final MerkleTree firstTree = new MerkleTree();
+        final MerkleTree secondTree = new MerkleTree();
+        for (int i = 0; i < 1000; i++) {
+            firstTree.update("key-" + i, MerkleTree.NO_ENTRY, MerkleTree.entryHash("key-" + i, "value-" + i, 0L));
+        }
+        for (int i = 999; i >= 0; i--) {
+            // an intermediate value which is overwritten leaves no trace.
+            secondTree.update("key-" + i, MerkleTree.NO_ENTRY, MerkleTree.entryHash("key-" + i, "old", 0L));
+            secondTree.update("key-" + i, MerkleTree.entryHash("key-" + i, "old", 0L),
+                MerkleTree.entryHash("key-" + i, "value-" + i, 0L));
+        }
+        Assert.assertEquals(firstTree.getHash(MerkleTree.ROOT), secondTree.getHash(MerkleTree.ROOT));
+
+        for (int i = 0; i < 1000; i++) {
+            firstTree.update("key-" + i, MerkleTree.entryHash("key-" + i, "value-" + i, 0L), MerkleTree.NO_ENTRY);
+        }
+        Assert.assertEquals(firstTree.getHash(MerkleTree.ROOT), 0L);
+    }
+
+    @Test
+    public void testDifferenceIsConfinedToThePathOfTheKey() {
+        final MerkleTree firstTree = new MerkleTree(4);
+        final MerkleTree secondTree = new MerkleTree(4);
+        for (int i = 0; i < 100; i++) {
+            final long entryHash = MerkleTree.entryHash("key-" + i, "value", 0L);
+            firstTree.update("key-" + i, MerkleTree.NO_ENTRY, entryHash);
+            secondTree.update("key-" + i, MerkleTree.NO_ENTRY, entryHash);
+        }
+        // a different deadline is a different entry.
+        secondTree.update("key-7", MerkleTree.entryHash("key-7", "value", 0L), MerkleTree.entryHash("key-7", "value",
+            1L));
+
+        final int leaf = firstTree.leafOf("key-7");
+        Assert.assertTrue(firstTree.isLeaf(leaf));
+        for (int node = MerkleTree.ROOT; node < 2 << firstTree.getDepth(); node++) {
+            boolean isOnPath = false;
+            for (int pathNode = leaf; pathNode >= MerkleTree.ROOT; pathNode >>>= 1) {
+                isOnPath |= pathNode == node;
+            }
+            Assert.assertEquals(firstTree.getHash(node) != secondTree.getHash(node), isOnPath);
+        }
+    }
+}
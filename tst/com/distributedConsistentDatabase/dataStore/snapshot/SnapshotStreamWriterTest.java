@@ -0,0 +1,70 @@
+package com.distributedConsistentDatabase.dataStore.snapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.distributedConsistentDatabase.dataStore.ExpiringKeyValueStore;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+
+public class SnapshotStreamWriterTest {
+
+    private static final int ENTRY_COUNT = 20000;
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final SnapshotStreamWriter writer = new SnapshotStreamWriter(output);
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            writer.write(new VersionedEntry("key-" + i, "v\u00e4lue-" + i, i + 1, (i % 2 == 0)
+                ? ExpiringKeyValueStore.NO_EXPIRY : 1000L + i));
+        }
+        Assert.assertEquals(writer.finish(), ENTRY_COUNT);
+
+        final List<VersionedEntry> entries = new ArrayList<>();
+        Assert.assertEquals(SnapshotStreamReader.read(new ByteArrayInputStream(output.toByteArray()), entries::add),
+            ENTRY_COUNT);
+        Assert.assertEquals(entries.size(), ENTRY_COUNT);
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            final VersionedEntry entry = entries.get(i);
+            Assert.assertEquals(entry.getKey(), "key-" + i);
+            Assert.assertEquals(entry.getValue(), "v\u00e4lue-" + i);
+            Assert.assertEquals(entry.getVersion(), i + 1);
+            Assert.assertEquals(entry.getExpiresAtMillis(), (i % 2 == 0) ? ExpiringKeyValueStore.NO_EXPIRY
+                : 1000L + i);
+        }
+    }
+
+    @Test
+    public void testCorruptAndTruncatedStreamsAreRejected() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final SnapshotStreamWriter writer = new SnapshotStreamWriter(output);
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            writer.write(new VersionedEntry("key-" + i, "value-" + i, i + 1, ExpiringKeyValueStore.NO_EXPIRY));
+        }
+        writer.finish();
+        final byte[] frames = output.toByteArray();
+
+        final byte[] corruptFrames = frames.clone();
+        corruptFrames[corruptFrames.length / 2] ^= 0x01;
+        try {
+            SnapshotStreamReader.read(new ByteArrayInputStream(corruptFrames), entry -> { });
+            Assert.fail("corrupt stream was read");
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+
+        final byte[] truncatedFrames = new byte[frames.length - 4];
+        System.arraycopy(frames, 0, truncatedFrames, 0, truncatedFrames.length);
+        try {
+            SnapshotStreamReader.read(new ByteArrayInputStream(truncatedFrames), entry -> { });
+            Assert.fail("truncated stream was read");
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+    }
+}
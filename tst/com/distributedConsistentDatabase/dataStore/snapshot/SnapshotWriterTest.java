@@ -0,0 +1,170 @@
+package com.distributedConsistentDatabase.dataStore.snapshot;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.distributedConsistentDatabase.dataStore.ExpiringKeyValueStore;
+import com.distributedConsistentDatabase.dataStore.InMemoryKeyValueStore;
+import com.distributedConsistentDatabase.dataStore.MultiVersionKeyValueStore;
+import com.distributedConsistentDatabase.dataStore.OffHeapKeyValueStore;
+import com.distributedConsistentDatabase.dataStore.merkle.MerkleTree;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedValue;
+
+public class SnapshotWriterTest {
+
+    private static final int KEY_COUNT = 20000;
+
+    private File directory;
+    private File snapshotFile;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("snapshot").toFile();
+        snapshotFile = new File(directory, "store.snapshot");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (final File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testWriteAndLoad() {
+        final InMemoryKeyValueStore keyValueStore = new InMemoryKeyValueStore();
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keyValueStore.put("key-" + i, "value-" + i);
+        }
+        final SnapshotMetadata writtenMetadata = SnapshotWriter.write(keyValueStore, 42L, 7L, 2L, snapshotFile);
+        Assert.assertEquals(writtenMetadata.getEntryCount(), KEY_COUNT);
+        Assert.assertFalse(new File(snapshotFile.getPath() + ".tmp").exists());
+
+        // small windows, so that entries straddle the window boundaries.
+        final OffHeapKeyValueStore restoredStore = new OffHeapKeyValueStore(64L * 1024 * 1024);
+        final SnapshotMetadata loadedMetadata = SnapshotReader.load(snapshotFile, restoredStore, 1000);
+        Assert.assertEquals(loadedMetadata.getLastAppliedWritePosition(), 42L);
+        Assert.assertEquals(loadedMetadata.getLogIndex(), 7L);
+        Assert.assertEquals(loadedMetadata.getLogTerm(), 2L);
+        Assert.assertEquals(loadedMetadata.getEntryCount(), KEY_COUNT);
+        Assert.assertEquals(loadedMetadata.getChecksum(), writtenMetadata.getChecksum());
+        Assert.assertEquals(restoredStore.size(), KEY_COUNT);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            Assert.assertEquals(restoredStore.get("key-" + i), "value-" + i);
+        }
+    }
+
+    @Test
+    public void testWriteDoesNotBlockWriters() throws Exception {
+        final OffHeapKeyValueStore keyValueStore = new OffHeapKeyValueStore(64L * 1024 * 1024);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keyValueStore.put("key-" + i, "value-" + i);
+        }
+        final AtomicBoolean isRunning = new AtomicBoolean(true);
+        final Thread writer = new Thread(() -> {
+            int i = 0;
+            while (isRunning.get()) {
+                keyValueStore.put("concurrent-" + (i % 1000), "value-" + i);
+                keyValueStore.delete("concurrent-" + ((i + 500) % 1000));
+                i++;
+            }
+        });
+        writer.start();
+        try {
+            SnapshotWriter.write(keyValueStore, KEY_COUNT, 0L, 0L, snapshotFile);
+        } finally {
+            isRunning.set(false);
+            writer.join();
+        }
+
+        final InMemoryKeyValueStore restoredStore = new InMemoryKeyValueStore();
+        SnapshotReader.load(snapshotFile, restoredStore);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            Assert.assertEquals(restoredStore.get("key-" + i), "value-" + i);
+        }
+    }
+
+    @Test
+    public void testReplayingTheLogAfterTheSnapshotReachesTheStateOfTheLog() throws Exception {
+        // log of puts and deletes of a few keys, as the node manager applies them.
+        final List<VersionedEntry> log = new ArrayList<>();
+        for (int i = 0; i < KEY_COUNT; i++) {
+            log.add(new VersionedEntry("key-" + (i % 100), (i % 7 == 0) ? null : "value-" + i, i + 1,
+                ExpiringKeyValueStore.NO_EXPIRY));
+        }
+        final int logIndex = KEY_COUNT / 4;
+        final InMemoryKeyValueStore keyValueStore = new InMemoryKeyValueStore();
+        final MultiVersionKeyValueStore multiVersionKeyValueStore =
+            new MultiVersionKeyValueStore(new ExpiringKeyValueStore(keyValueStore));
+        apply(multiVersionKeyValueStore, log.subList(0, logIndex));
+        // the entries after the log index are applied while the snapshot is taken, so any of them may be part of it.
+        final Thread writer = new Thread(() -> apply(multiVersionKeyValueStore, log.subList(logIndex, KEY_COUNT)));
+        writer.start();
+        try {
+            SnapshotWriter.write(keyValueStore, logIndex, logIndex, 1L, snapshotFile);
+        } finally {
+            writer.join();
+        }
+
+        final InMemoryKeyValueStore restoredStore = new InMemoryKeyValueStore();
+        Assert.assertEquals(SnapshotReader.load(snapshotFile, restoredStore).getLogIndex(), logIndex);
+        final MultiVersionKeyValueStore restoredMultiVersionStore =
+            new MultiVersionKeyValueStore(new ExpiringKeyValueStore(restoredStore));
+        apply(restoredMultiVersionStore, log.subList(logIndex, KEY_COUNT));
+        for (int i = 0; i < 100; i++) {
+            final VersionedValue value = multiVersionKeyValueStore.getVersioned("key-" + i);
+            final VersionedValue restoredValue = restoredMultiVersionStore.getVersioned("key-" + i);
+            Assert.assertEquals((restoredValue == null) ? null : restoredValue.getValue(),
+                (value == null) ? null : value.getValue());
+            Assert.assertEquals((restoredValue == null) ? 0L : restoredValue.getVersion(),
+                (value == null) ? 0L : value.getVersion());
+        }
+        Assert.assertEquals(restoredMultiVersionStore.getMerkleTree().getHash(MerkleTree.ROOT),
+            multiVersionKeyValueStore.getMerkleTree().getHash(MerkleTree.ROOT));
+    }
+
+    @Test
+    public void testCorruptSnapshotIsRejected() throws Exception {
+        final InMemoryKeyValueStore keyValueStore = new InMemoryKeyValueStore();
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keyValueStore.put("key-" + i, "value-" + i);
+        }
+        SnapshotWriter.write(keyValueStore, 1L, 0L, 0L, snapshotFile);
+        try (RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw")) {
+            file.seek(file.length() / 2);
+            final int original = file.read();
+            file.seek(file.length() / 2);
+            file.write(original ^ 0x01);
+        }
+
+        final InMemoryKeyValueStore restoredStore = new InMemoryKeyValueStore();
+        try {
+            SnapshotReader.load(snapshotFile, restoredStore);
+            Assert.fail("corrupt snapshot was loaded");
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+        Assert.assertNull(restoredStore.get("key-1"));
+    }
+
+    private static void apply(final MultiVersionKeyValueStore keyValueStore, final List<VersionedEntry> writes) {
+        for (final VersionedEntry write : writes) {
+            if (write.getValue() == null) {
+                keyValueStore.delete(write.getKey(), write.getVersion());
+            } else {
+                keyValueStore.put(write.getKey(), write.getValue(), write.getExpiresAtMillis(), write.getVersion());
+            }
+        }
+    }
+}
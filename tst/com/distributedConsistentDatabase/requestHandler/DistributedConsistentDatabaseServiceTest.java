@@ -1,12 +1,18 @@
 package com.distributedConsistentDatabase.requestHandler;
 
+import java.io.ByteArrayOutputStream;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.function.BiConsumer;
 
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -18,11 +24,23 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import com.distributedConsistentDatabase.cluster.NodeManager;
 import com.distributedConsistentDatabase.cluster.pojo.ClusterNode;
+import com.distributedConsistentDatabase.cluster.pojo.CompareAndSetResult;
+import com.distributedConsistentDatabase.cluster.pojo.KeyValueMutation;
+import com.distributedConsistentDatabase.cluster.pojo.ReadConsistency;
+import com.distributedConsistentDatabase.dataStore.ExpiringKeyValueStore;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedEntry;
+import com.distributedConsistentDatabase.dataStore.mvcc.VersionedValue;
 import com.distributedConsistentDatabase.requestHandler.pojo.BootstrapRequest;
 import com.distributedConsistentDatabase.requestHandler.pojo.GetClusterResponse;
 import com.distributedConsistentDatabase.requestHandler.pojo.JoinClusterRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueBatchRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueBatchResponse;
 import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueDetails;
+import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueGetRequest;
 import com.distributedConsistentDatabase.requestHandler.pojo.KeyValuePutRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueUpdateRequest;
+import com.distributedConsistentDatabase.requestHandler.pojo.KeyValueUpdateResponse;
+import com.distributedConsistentDatabase.sao.DistributedConsistentDatabaseSAO;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest(DistributedConsistentDatabaseService.class)
@@ -69,6 +87,7 @@ public class DistributedConsistentDatabaseServiceTest {
     public void testDelete_Success() {
         final String key = UUID.randomUUID().toString();
         EasyMock.expect(this.mockNodeManager.deleteValueFromCluster(key)).andReturn(true);
+        EasyMock.expect(this.mockNodeManager.getSessionToken()).andReturn(3L);
         replayMocks();
         Assert.assertEquals(service.deleteValue(key).getStatus(), Status.OK.getStatusCode());
     }
@@ -81,6 +100,110 @@ public class DistributedConsistentDatabaseServiceTest {
         Assert.assertEquals(service.deleteValue(key).getStatus(), Status.SERVICE_UNAVAILABLE.getStatusCode());
     }
 
+    @Test
+    public void testWriteValues_Success() {
+        final KeyValueDetails put = new KeyValueDetails();
+        put.setKey("put");
+        put.setValue("value");
+        put.setTtlMillis(1000L);
+        final KeyValueDetails delete = new KeyValueDetails();
+        delete.setKey("delete");
+        final KeyValueBatchRequest batchRequest = new KeyValueBatchRequest();
+        batchRequest.setMutations(Arrays.asList(put, delete));
+        EasyMock.expect(this.mockNodeManager.writeValuesToCluster(EasyMock.anyObject())).andAnswer(
+            new IAnswer<List<Boolean>>() {
+                @Override
+                public List<Boolean> answer() throws Throwable {
+                    @SuppressWarnings("unchecked")
+                    final List<KeyValueMutation> mutations = (List<KeyValueMutation>) EasyMock.getCurrentArguments()[0];
+                    Assert.assertEquals(mutations.get(0).getTtlMillis(), 1000L);
+                    Assert.assertFalse(mutations.get(0).isDelete());
+                    Assert.assertTrue(mutations.get(1).isDelete());
+                    return Arrays.asList(true, false);
+                }
+            });
+        EasyMock.expect(this.mockNodeManager.getSessionToken()).andReturn(3L);
+        replayMocks();
+
+        final Response response = service.writeValues(batchRequest);
+        Assert.assertEquals(response.getStatus(), Status.OK.getStatusCode());
+        Assert.assertEquals(((KeyValueBatchResponse) response.getEntity()).getResults(), Arrays.asList(true, false));
+    }
+
+    @Test
+    public void testWriteValues_InvalidBatch() {
+        replayMocks();
+        final KeyValueBatchRequest batchRequest = new KeyValueBatchRequest();
+        batchRequest.setMutations(Collections.emptyList());
+        Assert.assertEquals(service.writeValues(batchRequest).getStatus(), Status.BAD_REQUEST.getStatusCode());
+        final KeyValueDetails details = new KeyValueDetails();
+        details.setKey("key");
+        details.setValue("value");
+        details.setTtlMillis(0L);
+        batchRequest.setMutations(Arrays.asList(details));
+        Assert.assertEquals(service.writeValues(batchRequest).getStatus(), Status.BAD_REQUEST.getStatusCode());
+    }
+
+    @Test
+    public void testCompareAndSet_Success() {
+        final KeyValueUpdateRequest updateRequest = new KeyValueUpdateRequest();
+        updateRequest.setKey("key");
+        updateRequest.setExpectedVersion(5L);
+        updateRequest.setValue("value");
+        EasyMock.expect(this.mockNodeManager.compareAndSetInCluster("key", null, 5L, "value",
+            ExpiringKeyValueStore.NO_EXPIRY)).andReturn(new CompareAndSetResult(false, new VersionedValue("other", 6L)));
+        EasyMock.expect(this.mockNodeManager.getSessionToken()).andReturn(3L);
+        replayMocks();
+
+        final Response response = service.compareAndSet(updateRequest);
+        Assert.assertEquals(response.getStatus(), Status.OK.getStatusCode());
+        final KeyValueUpdateResponse updateResponse = (KeyValueUpdateResponse) response.getEntity();
+        Assert.assertFalse(updateResponse.getApplied());
+        Assert.assertEquals(updateResponse.getValue(), "other");
+        Assert.assertEquals(updateResponse.getVersion(), Long.valueOf(6L));
+    }
+
+    @Test
+    public void testAddValue_Failure() {
+        final KeyValueUpdateRequest updateRequest = new KeyValueUpdateRequest();
+        updateRequest.setKey("key");
+        updateRequest.setDelta(1L);
+        EasyMock.expect(this.mockNodeManager.addToCluster("key", 1L))
+            .andThrow(new IllegalArgumentException("not a number"));
+        replayMocks();
+
+        Assert.assertEquals(service.addValue(updateRequest).getStatus(), Status.BAD_REQUEST.getStatusCode());
+        updateRequest.setDelta(null);
+        Assert.assertEquals(service.addValue(updateRequest).getStatus(), Status.BAD_REQUEST.getStatusCode());
+    }
+
+    @Test
+    public void testGetValues_Success() throws Exception {
+        final List<String> keys = Arrays.asList("first", "missing", "first");
+        EasyMock.expect(this.mockNodeManager.getVersionedValuesFromCluster(keys)).andReturn(
+            Arrays.asList(new VersionedValue("value", 7L), null, new VersionedValue("value", 7L)));
+        replayMocks();
+        final KeyValueGetRequest getRequest = new KeyValueGetRequest();
+        getRequest.setKeys(keys);
+        final Response response = service.getValues(getRequest);
+        Assert.assertEquals(response.getStatus(), Status.OK.getStatusCode());
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(output);
+        Assert.assertEquals(output.toString("UTF-8"), "{\"entries\":[{\"key\":\"first\",\"value\":\"value\","
+            + "\"version\":7},{\"key\":\"missing\",\"value\":null},{\"key\":\"first\",\"value\":\"value\","
+            + "\"version\":7}]}");
+    }
+
+    @Test
+    public void testGetValues_InvalidKeys() {
+        replayMocks();
+        final KeyValueGetRequest getRequest = new KeyValueGetRequest();
+        Assert.assertEquals(service.getValues(getRequest).getStatus(), Status.BAD_REQUEST.getStatusCode());
+        getRequest.setKeys(Arrays.asList("key", null));
+        Assert.assertEquals(service.getValues(getRequest).getStatus(), Status.BAD_REQUEST.getStatusCode());
+    }
+
     @Test
     public void testGetClusterDetails_Success() {
         final ClusterNode node = new ClusterNode();
@@ -106,7 +229,8 @@ public class DistributedConsistentDatabaseServiceTest {
         request.setIp(currentNode.getIp());
         request.setNodeId(String.valueOf(currentNode.getNodeId()));
         request.setPort(currentNode.getPort());
-        this.mockNodeManager.initialize(currentNode, seedServer);
+        request.setGroupId(2);
+        this.mockNodeManager.initialize(currentNode, seedServer, 2, null);
         EasyMock.expectLastCall();
         replayMocks();
 
@@ -126,24 +250,80 @@ public class DistributedConsistentDatabaseServiceTest {
     public void testGetValue_Success() {
         final String key = UUID.randomUUID().toString();
         final String value = UUID.randomUUID().toString();
-        EasyMock.expect(this.mockNodeManager.getValueFromCluster(key)).andReturn(value);
+        EasyMock.expect(this.mockNodeManager.getVersionedValueFromCluster(key, ReadConsistency.LINEARIZABLE))
+            .andReturn(new VersionedValue(value, 42L));
         replayMocks();
 
-        final Response response = service.getValue(key);
+        final Response response = service.getValue(key, null, null, null);
         Assert.assertEquals(response.getStatus(), Status.OK.getStatusCode());
         Assert.assertEquals(response.getEntity(), value);
+        Assert.assertEquals(response.getMetadata().getFirst(DistributedConsistentDatabaseSAO.VERSION_HEADER), 42L);
+    }
+
+    @Test
+    public void testGetValueWithRelaxedConsistency_Success() {
+        final String key = UUID.randomUUID().toString();
+        EasyMock.expect(this.mockNodeManager.getVersionedValueFromCluster(EasyMock.eq(key), EasyMock.anyObject()))
+            .andAnswer(new IAnswer<VersionedValue>() {
+                @Override
+                public VersionedValue answer() {
+                    final ReadConsistency consistency = (ReadConsistency) EasyMock.getCurrentArguments()[1];
+                    Assert.assertEquals(consistency.getLevel(), ReadConsistency.Level.SESSION);
+                    Assert.assertEquals(consistency.getSessionToken(), 12L);
+                    return null;
+                }
+            });
+        replayMocks();
+
+        Assert.assertEquals(service.getValue(key, "SESSION", null, 12L).getStatus(), Status.OK.getStatusCode());
+        Assert.assertEquals(service.getValue(key, "SESSION", null, null).getStatus(),
+            Status.BAD_REQUEST.getStatusCode());
+        Assert.assertEquals(service.getValue(key, "BOUNDED_STALENESS", -1L, null).getStatus(),
+            Status.BAD_REQUEST.getStatusCode());
+        Assert.assertEquals(service.getValue(key, "EVENTUAL", null, null).getStatus(),
+            Status.BAD_REQUEST.getStatusCode());
     }
 
     @Test
     public void testGetValueInternal_Success() {
         final String key = UUID.randomUUID().toString();
         final String value = UUID.randomUUID().toString();
-        EasyMock.expect(this.mockNodeManager.getValue(key)).andReturn(value);
+        EasyMock.expect(this.mockNodeManager.getVersionedEntry(key))
+            .andReturn(new VersionedEntry(key, value, 7L, ExpiringKeyValueStore.NO_EXPIRY));
         replayMocks();
 
         final Response response = service.internalGetValue(key);
         Assert.assertEquals(response.getStatus(), Status.OK.getStatusCode());
         Assert.assertEquals(response.getEntity(), value);
+        Assert.assertEquals(response.getMetadata().getFirst(DistributedConsistentDatabaseSAO.VERSION_HEADER), 7L);
+        Assert.assertNull(response.getMetadata().getFirst(DistributedConsistentDatabaseSAO.EXPIRES_AT_HEADER));
+    }
+
+    @Test
+    public void testGetValueInternal_Expiring() {
+        final String key = UUID.randomUUID().toString();
+        final String value = UUID.randomUUID().toString();
+        EasyMock.expect(this.mockNodeManager.getVersionedEntry(key)).andReturn(new VersionedEntry(key, value, 7L,
+            12345L));
+        replayMocks();
+
+        final Response response = service.internalGetValue(key);
+        Assert.assertEquals(response.getEntity(), value);
+        Assert.assertEquals(response.getMetadata().getFirst(DistributedConsistentDatabaseSAO.VERSION_HEADER), 7L);
+        Assert.assertEquals(response.getMetadata().getFirst(DistributedConsistentDatabaseSAO.EXPIRES_AT_HEADER),
+            12345L);
+    }
+
+    @Test
+    public void testGetValueInternal_NotFound() {
+        final String key = UUID.randomUUID().toString();
+        EasyMock.expect(this.mockNodeManager.getVersionedEntry(key)).andReturn(null);
+        replayMocks();
+
+        final Response response = service.internalGetValue(key);
+        Assert.assertEquals(response.getStatus(), Status.OK.getStatusCode());
+        Assert.assertNull(response.getEntity());
+        Assert.assertNull(response.getMetadata().getFirst(DistributedConsistentDatabaseSAO.VERSION_HEADER));
     }
 
     @Test
@@ -156,9 +336,12 @@ public class DistributedConsistentDatabaseServiceTest {
         final KeyValuePutRequest request = new KeyValuePutRequest();
         request.setRequest(details);
         EasyMock.expect(this.mockNodeManager.putValueToCluster(key, value)).andReturn(true);
+        EasyMock.expect(this.mockNodeManager.getSessionToken()).andReturn(3L);
         replayMocks();
 
-        Assert.assertEquals(service.putValue(request).getStatus(), Status.OK.getStatusCode());
+        final Response response = service.putValue(request);
+        Assert.assertEquals(response.getStatus(), Status.OK.getStatusCode());
+        Assert.assertEquals(response.getMetadata().getFirst(DistributedConsistentDatabaseSAO.SESSION_TOKEN_HEADER), 3L);
     }
 
     @Test
@@ -176,6 +359,36 @@ public class DistributedConsistentDatabaseServiceTest {
         Assert.assertEquals(service.putValue(request).getStatus(), Status.SERVICE_UNAVAILABLE.getStatusCode());
     }
 
+    @Test
+    public void testPutValueWithTtl_Success() {
+        final String key = UUID.randomUUID().toString();
+        final String value = UUID.randomUUID().toString();
+        final KeyValueDetails details = new KeyValueDetails();
+        details.setKey(key);
+        details.setValue(value);
+        details.setTtlMillis(1000L);
+        final KeyValuePutRequest request = new KeyValuePutRequest();
+        request.setRequest(details);
+        EasyMock.expect(this.mockNodeManager.putValueToCluster(key, value, 1000L)).andReturn(true);
+        EasyMock.expect(this.mockNodeManager.getSessionToken()).andReturn(3L);
+        replayMocks();
+
+        Assert.assertEquals(service.putValue(request).getStatus(), Status.OK.getStatusCode());
+    }
+
+    @Test
+    public void testPutValueWithInvalidTtl_Failure() {
+        final KeyValueDetails details = new KeyValueDetails();
+        details.setKey(UUID.randomUUID().toString());
+        details.setValue(UUID.randomUUID().toString());
+        details.setTtlMillis(0L);
+        final KeyValuePutRequest request = new KeyValuePutRequest();
+        request.setRequest(details);
+        replayMocks();
+
+        Assert.assertEquals(service.putValue(request).getStatus(), Status.BAD_REQUEST.getStatusCode());
+    }
+
     @Test
     public void testPutValueInternal_Success() {
         final String key = UUID.randomUUID().toString();
@@ -207,6 +420,72 @@ public class DistributedConsistentDatabaseServiceTest {
         Assert.assertEquals(service.internalPutValue(request).getStatus(), Status.SERVICE_UNAVAILABLE.getStatusCode());
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testScanValuesByPrefix_Success() throws Exception {
+        this.mockNodeManager.scanValues(EasyMock.eq("user:1:"), EasyMock.eq("user:1;"), EasyMock.eq(3),
+            EasyMock.anyObject(BiConsumer.class));
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Void>() {
+            @Override
+            public Void answer() {
+                final BiConsumer<String, String> action =
+                    (BiConsumer<String, String>) EasyMock.getCurrentArguments()[3];
+                action.accept("user:1:a", "first");
+                action.accept("user:1:b", "second");
+                action.accept("user:1:c", "third");
+                return null;
+            }
+        });
+        replayMocks();
+        final Response response = service.scanValues(null, null, "user:1:", 2, null);
+        Assert.assertEquals(response.getStatus(), Status.OK.getStatusCode());
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(output);
+        Assert.assertEquals(output.toString("UTF-8"), "{\"entries\":[{\"key\":\"user:1:a\",\"value\":\"first\"},"
+            + "{\"key\":\"user:1:b\",\"value\":\"second\"}],\"cursor\":\""
+            + KeyValueScanOutput.encodeCursor("user:1:c") + "\"}");
+    }
+
+    @Test
+    public void testScanValuesWithInvalidLimit_Failure() {
+        replayMocks();
+        Assert.assertEquals(service.scanValues("a", "b", null, 0, null).getStatus(),
+            Status.BAD_REQUEST.getStatusCode());
+        Assert.assertEquals(service.scanValues("a", null, "user:", 10, null).getStatus(),
+            Status.BAD_REQUEST.getStatusCode());
+    }
+
+    @Test
+    public void testPutBinaryValue_Success() {
+        final String key = UUID.randomUUID().toString();
+        final byte[] value = new byte[] {1, 2, 3};
+        EasyMock.expect(this.mockNodeManager.putBinaryValueToCluster(key, value)).andReturn(true);
+        replayMocks();
+        final Response response = service.putBinaryValue(key, value);
+        Assert.assertEquals(response.getStatus(), Status.OK.getStatusCode());
+        Assert.assertEquals(response.getEntity(), "TRUE");
+    }
+
+    @Test
+    public void testGetBinaryValue_Success() {
+        final String key = UUID.randomUUID().toString();
+        final byte[] value = new byte[] {1, 2, 3};
+        EasyMock.expect(this.mockNodeManager.getBinaryValueFromCluster(key)).andReturn(value);
+        replayMocks();
+        final Response response = service.getBinaryValue(key);
+        Assert.assertEquals(response.getStatus(), Status.OK.getStatusCode());
+        Assert.assertSame(response.getEntity(), value);
+    }
+
+    @Test
+    public void testGetBinaryValueInternal_NotFound() {
+        final String key = UUID.randomUUID().toString();
+        EasyMock.expect(this.mockNodeManager.getBinaryValue(key)).andReturn(null);
+        replayMocks();
+        Assert.assertEquals(service.internalGetBinaryValue(key).getStatus(), Status.NOT_FOUND.getStatusCode());
+    }
+
     private void resetMocks() {
         EasyMock.reset(mockNodeManager);
     }
@@ -83,7 +83,7 @@ public class DistributedConsistentDatabaseSAOTest {
             new ClientResponseStub(Status.OK.getStatusCode(), null));
 
         replayMocks();
-        Assert.assertFalse(dcdbSAO.deleteValue(node, key));
+        Assert.assertFalse(dcdbSAO.deleteValue(node, key).getResult());
     }
 
     @Test(expected = IllegalStateException.class)
@@ -190,7 +190,7 @@ public class DistributedConsistentDatabaseSAOTest {
             new ClientResponseStub(Status.OK.getStatusCode(), null));
 
         replayMocks();
-        Assert.assertFalse(dcdbSAO.putValue(node, key, value));
+        Assert.assertFalse(dcdbSAO.putValue(node, key, value).getResult());
         Assert.assertTrue(requestCapture.hasCaptured());
         Assert.assertEquals(requestCapture.getValue().getRequest().getKey(), key);
         Assert.assertEquals(requestCapture.getValue().getRequest().getValue(), value);
@@ -233,6 +233,47 @@ public class DistributedConsistentDatabaseSAOTest {
         Assert.assertFalse(dcdbSAO.isHeartbeatSuccessfull(node));
     }
 
+    @Test
+    public void testInternalPutBinaryValue_SuccessResponse() {
+        final ClusterNode node = getRandomClusterNode();
+        final String key = UUID.randomUUID().toString();
+        final byte[] value = UUID.randomUUID().toString().getBytes();
+        final Capture<byte[]> requestCapture = new Capture<>();
+        staticWebResourceMock(node);
+        EasyMock.expect(mockBuilder.put(EasyMock.anyObject(Class.class), EasyMock.capture(requestCapture))).andReturn(
+            new ClientResponseStub(Status.OK.getStatusCode(), "TRUE"));
+
+        replayMocks();
+        Assert.assertTrue(dcdbSAO.internalPutBinaryValue(node, key, value));
+        Assert.assertSame(requestCapture.getValue(), value);
+    }
+
+    @Test
+    public void testInternalGetBinaryValue_NotFoundResponse() {
+        final ClusterNode node = getRandomClusterNode();
+        staticWebResourceMock(node);
+        EasyMock.expect(mockBuilder.get(ClientResponse.class)).andReturn(
+            new ClientResponseStub(Status.NOT_FOUND.getStatusCode(), null));
+
+        replayMocks();
+        Assert.assertNull(dcdbSAO.internalGetBinaryValue(node, UUID.randomUUID().toString()));
+    }
+
+    @Test
+    public void testAddMeshNode_SuccessResponse() {
+        final ClusterNode target = getRandomClusterNode();
+        final ClusterNode source = getRandomClusterNode();
+        final Capture<JoinClusterRequest> requestCapture = new Capture<JoinClusterRequest>();
+        staticWebResourceMock(target);
+        EasyMock.expect(mockBuilder.post(EasyMock.anyObject(Class.class), EasyMock.capture(requestCapture))).andReturn(
+            new ClientResponseStub(Status.OK.getStatusCode(), null));
+
+        replayMocks();
+        Assert.assertTrue(dcdbSAO.addMeshNode(target, 2, source));
+        Assert.assertEquals(requestCapture.getValue().getNode(), source);
+        Assert.assertEquals(requestCapture.getValue().getGroupId(), Integer.valueOf(2));
+    }
+
     private ClusterNode getRandomClusterNode() {
         final ClusterNode node = new ClusterNode();
         node.setIp(UUID.randomUUID().toString());